@@ -106,7 +106,7 @@ public class ClassAnalyzer extends Analyzer
 			case "}":
 				if (enumOpen)
 				{
-					// Log.d("Enum closed on line: " + Extractor.lineno);
+					// Log.d("Enum closed on line: " + Extractor.getLineno());
 					enumOpen = false;
 				}
 				else if (structOpen)
@@ -300,8 +300,8 @@ public class ClassAnalyzer extends Analyzer
 					}
 					catch (ArrayIndexOutOfBoundsException e)
 					{
-						Log.e("Expected ')'.\n  File: " + Extractor.currentFile
-								+ "\n  Line: " + Extractor.lineno);
+						Log.e("Expected ')'.\n  File: " + Extractor.getCurrentFile()
+								+ "\n  Line: " + Extractor.getLineno());
 					}
 				}
 				else
@@ -339,7 +339,7 @@ public class ClassAnalyzer extends Analyzer
 		}
 
 		// Finally, store the CppFunc object
-		cf.fileOfFunc = Extractor.currentFile;
+		cf.fileOfFunc = Extractor.getCurrentFile();
 
 		// ParsedObjectManager.getInstance().currentScope.addFunc(cf);
 		ParsedObjectManager.getInstance().addFunction(cf, false);
@@ -389,8 +389,8 @@ public class ClassAnalyzer extends Analyzer
 				if (classWordCount > 1)
 				{
 					Log.e("Two class declarations on the same line\n  File: "
-							+ Extractor.currentFile + "\n  Line: "
-							+ Extractor.lineno);
+							+ Extractor.getCurrentFile() + "\n  Line: "
+							+ Extractor.getLineno());
 				}
 
 				// Log.d("Found "+tokens[i]);
@@ -398,7 +398,7 @@ public class ClassAnalyzer extends Analyzer
 				{
 					CppScope cc = createScope(tokens[i],
 							tokens[tokens.length - 2]);
-					cc.nameOfFile = Extractor.currentFile;
+					cc.nameOfFile = Extractor.getCurrentFile();
 
 					return true;
 				}
@@ -442,7 +442,7 @@ public class ClassAnalyzer extends Analyzer
 												ParsedObjectManager
 														.getInstance().currentNamespace);
 							}
-							cc.nameOfFile = Extractor.currentFile;
+							cc.nameOfFile = Extractor.getCurrentFile();
 							cc.braceCount = sentenceAnalyzer.braceCount;
 							cc.namespace = ParsedObjectManager.getInstance().currentNamespace;
 							// cc.parentScope =
@@ -579,7 +579,7 @@ public class ClassAnalyzer extends Analyzer
 			}
 
 			pcc.addChild(cc);
-			pcc.nameOfFile = Extractor.currentFile;
+			pcc.nameOfFile = Extractor.getCurrentFile();
 		}
 	}
 
@@ -602,7 +602,7 @@ public class ClassAnalyzer extends Analyzer
 			}
 			CppScope cc = createScope(tokens[i], name);
 
-			cc.nameOfFile = Extractor.currentFile;
+			cc.nameOfFile = Extractor.getCurrentFile();
 			cc.braceCount = sentenceAnalyzer.braceCount;
 			// cc.parentScope = ParsedObjectManager.getInstance().currentScope;
 			sentenceAnalyzer.setCurrentScope(cc.getName(), true);
@@ -648,7 +648,7 @@ public class ClassAnalyzer extends Analyzer
 			// This warning is caused by wrong handling of templates(and
 			// possibly arrays in struct/class definitions
 			Log.d("Warning: Index out of bounds while parsing template:"
-					+ Extractor.currentFile + " line:" + Extractor.lineno + " "
+					+ Extractor.getCurrentFile() + " line:" + Extractor.getLineno() + " "
 					+ name);
 		}
 		return name;
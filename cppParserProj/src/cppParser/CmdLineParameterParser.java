@@ -3,6 +3,9 @@ package cppParser;
 import java.io.File;
 import java.io.FileNotFoundException;
 
+import cppParser.utils.Log;
+import cppStructures.CppFunc;
+
 /**
  * 
  * @author Tomi
@@ -16,6 +19,15 @@ public class CmdLineParameterParser
 	static boolean output = false;
 	static boolean dir = false;
 	static boolean stringLiteral = false;
+	static int threads = 1;
+	static boolean threadCount = false;
+	static boolean dumps = false;
+	static boolean cache = false;
+	static boolean logLevel = false;
+	static int maxVariants = 1;
+	static boolean variantCount = false;
+	static CppFunc.VariantPolicy variantPolicy = CppFunc.VariantPolicy.MAX;
+	static boolean variantMerge = false;
 
 	public static void parseParameters(String[] parameters) throws Exception
 	{
@@ -23,6 +35,26 @@ public class CmdLineParameterParser
 		{
 			pushParams(s);
 		}
+		if (threadCount)
+		{
+			throw new InvalidParameterException(
+					"Invalid parameters: -threads needs a positive number");
+		}
+		if (logLevel)
+		{
+			throw new InvalidParameterException(
+					"Invalid parameters: -log needs a level (debug, info, error or off)");
+		}
+		if (variantCount)
+		{
+			throw new InvalidParameterException(
+					"Invalid parameters: -variants needs a positive number");
+		}
+		if (variantMerge)
+		{
+			throw new InvalidParameterException(
+					"Invalid parameters: -variantMerge needs a policy (max, union or first)");
+		}
 
 		File f = new File(inputDir);
 		if (!f.exists())
@@ -47,7 +79,73 @@ public class CmdLineParameterParser
 	private static void pushParams(String param)
 			throws InvalidParameterException
 	{
-		if (!dir)
+		if (threadCount)
+		{
+			// if threadCount==true then param should be the number of threads
+			threadCount = false;
+			try
+			{
+				threads = Integer.parseInt(param);
+			}
+			catch (NumberFormatException e)
+			{
+				threads = 0;
+			}
+			if (threads < 1)
+			{
+				throw new InvalidParameterException(
+						"Invalid parameters: -threads needs a positive number");
+			}
+		}
+		else if (logLevel)
+		{
+			// if logLevel==true then param should be the level of the log
+			logLevel = false;
+			try
+			{
+				Log.level = Log.Level.valueOf(param.toUpperCase());
+			}
+			catch (IllegalArgumentException e)
+			{
+				throw new InvalidParameterException(
+						"Invalid parameters: -log needs a level (debug, info, error or off)");
+			}
+		}
+		else if (variantCount)
+		{
+			// if variantCount==true then param should be the maximum number
+			// of variants
+			variantCount = false;
+			try
+			{
+				maxVariants = Integer.parseInt(param);
+			}
+			catch (NumberFormatException e)
+			{
+				maxVariants = 0;
+			}
+			if (maxVariants < 1)
+			{
+				throw new InvalidParameterException(
+						"Invalid parameters: -variants needs a positive number");
+			}
+		}
+		else if (variantMerge)
+		{
+			// if variantMerge==true then param should be the merge policy
+			variantMerge = false;
+			try
+			{
+				variantPolicy = CppFunc.VariantPolicy.valueOf(param
+						.toUpperCase());
+			}
+			catch (IllegalArgumentException e)
+			{
+				throw new InvalidParameterException(
+						"Invalid parameters: -variantMerge needs a policy (max, union or first)");
+			}
+		}
+		else if (!dir)
 		{
 			if (param.equalsIgnoreCase("-parse"))
 			{
@@ -75,6 +173,30 @@ public class CmdLineParameterParser
 			{
 				includeStructs = true;
 			}
+			else if (param.equalsIgnoreCase("-threads"))
+			{
+				threadCount = true;
+			}
+			else if (param.equalsIgnoreCase("-log"))
+			{
+				logLevel = true;
+			}
+			else if (param.equalsIgnoreCase("-dump"))
+			{
+				dumps = true;
+			}
+			else if (param.equalsIgnoreCase("-cache"))
+			{
+				cache = true;
+			}
+			else if (param.equalsIgnoreCase("-variants"))
+			{
+				variantCount = true;
+			}
+			else if (param.equalsIgnoreCase("-variantMerge"))
+			{
+				variantMerge = true;
+			}
 			else
 			{
 				throw new InvalidParameterException("Invalid parameters");
@@ -137,4 +259,29 @@ public class CmdLineParameterParser
 	{
 		return inputDir;
 	}
+
+	public static int getThreads()
+	{
+		return threads;
+	}
+
+	public static boolean getDumps()
+	{
+		return dumps;
+	}
+
+	public static boolean getCaching()
+	{
+		return cache;
+	}
+
+	public static int getMaxVariants()
+	{
+		return maxVariants;
+	}
+
+	public static CppFunc.VariantPolicy getVariantPolicy()
+	{
+		return variantPolicy;
+	}
 }
@@ -0,0 +1,272 @@
+package cppParser;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+import cppParser.utils.CharScanner;
+
+/**
+ * The conditional compilation regions (#if, #ifdef or #ifndef ... #elif ...
+ * #else ... #endif) of a file, recorded in the pre-pass as char ranges of the
+ * file. A file whose regions have alternative branches can be analyzed once
+ * per variant: each variant selects one branch of every region and skips the
+ * others, so that code like
+ * 
+ * <pre>
+ * void Foo::Bar()
+ * #ifndef TEST
+ * { }
+ * #else
+ * { ... }
+ * #endif
+ * </pre>
+ * 
+ * is seen with a single function body. Variant n selects the nth branch of
+ * each region, or its last branch if it has fewer. A region without #elif or
+ * #else, like an include guard, has a single branch that is always selected.
+ * The directive lines of the regions are skipped in every variant.
+ * 
+ * The directives are found line by line, so directives inside multi-line
+ * comments are taken as directives.
+ */
+public class ConditionalRegions
+{
+
+	// The outermost regions of the file
+	private ArrayList<Region> regions = new ArrayList<Region>();
+
+	// The largest number of branches of a region
+	private int maxBranches = 1;
+
+	private ConditionalRegions()
+	{
+	}
+
+	/**
+	 * Finds the conditional regions of a file
+	 * 
+	 * @param scanner
+	 *            Scanner holding the chars of the file
+	 * @return The regions of the file
+	 */
+	public static ConditionalRegions scan(CharScanner scanner)
+	{
+		ConditionalRegions result = new ConditionalRegions();
+		ArrayList<Region> open = new ArrayList<Region>();
+		int length = scanner.length();
+		int lineStart = 0;
+
+		while (lineStart < length)
+		{
+			// Find the end of the line, including the continued lines
+			int lineEnd = lineStart;
+			while (lineEnd < length)
+			{
+				char c = scanner.charAt(lineEnd++);
+				if ((c == '\n') && !isContinued(scanner, lineStart, lineEnd - 1))
+				{
+					break;
+				}
+			}
+
+			String directive = readDirective(scanner, lineStart, lineEnd);
+			if (directive != null)
+			{
+				switch (directive)
+				{
+				case "if":
+				case "ifdef":
+				case "ifndef":
+					Region region = new Region();
+					region.directives.add(new int[] { lineStart, lineEnd });
+					region.branches.add(new Branch(lineEnd));
+					if (open.isEmpty())
+					{
+						result.regions.add(region);
+					}
+					else
+					{
+						open.get(open.size() - 1).currentBranch().regions
+								.add(region);
+					}
+					open.add(region);
+					break;
+				case "elif":
+				case "else":
+					if (!open.isEmpty())
+					{
+						Region current = open.get(open.size() - 1);
+						current.currentBranch().end = lineStart;
+						current.directives.add(new int[] { lineStart, lineEnd });
+						current.branches.add(new Branch(lineEnd));
+						result.maxBranches = Math.max(result.maxBranches,
+								current.branches.size());
+					}
+					break;
+				case "endif":
+					if (!open.isEmpty())
+					{
+						Region current = open.remove(open.size() - 1);
+						current.currentBranch().end = lineStart;
+						current.directives.add(new int[] { lineStart, lineEnd });
+					}
+					break;
+				}
+			}
+
+			lineStart = lineEnd;
+		}
+
+		// Regions left open end with the file
+		for (Region region : open)
+		{
+			region.currentBranch().end = length;
+		}
+
+		return result;
+	}
+
+	/**
+	 * Retrieves the number of distinct variants of the file
+	 * 
+	 * @return The largest number of branches of a region, 1 if the file has
+	 *         no alternative branches
+	 */
+	public int getVariantCount()
+	{
+		return maxBranches;
+	}
+
+	/**
+	 * Retrieves the chars a variant skips
+	 * 
+	 * @param variant
+	 *            Index of the variant
+	 * @return The indices of the skipped chars
+	 */
+	public BitSet getSkipped(int variant)
+	{
+		BitSet skipped = new BitSet();
+		skip(regions, variant, skipped);
+		return skipped;
+	}
+
+	/**
+	 * Marks the chars of the given regions a variant skips
+	 */
+	private static void skip(ArrayList<Region> regions, int variant,
+			BitSet skipped)
+	{
+		for (Region region : regions)
+		{
+			for (int[] directive : region.directives)
+			{
+				skipped.set(directive[0], directive[1]);
+			}
+
+			int selected = Math.min(variant, region.branches.size() - 1);
+			for (int i = 0; i < region.branches.size(); ++i)
+			{
+				Branch branch = region.branches.get(i);
+				if (i == selected)
+				{
+					skip(branch.regions, variant, skipped);
+				}
+				else
+				{
+					skipped.set(branch.start, branch.end);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks whether a line ends with a backslash before the newline
+	 */
+	private static boolean isContinued(CharScanner scanner, int lineStart,
+			int newline)
+	{
+		int i = newline - 1;
+		if ((i >= lineStart) && (scanner.charAt(i) == '\r'))
+		{
+			i--;
+		}
+		return (i >= lineStart) && (scanner.charAt(i) == '\\');
+	}
+
+	/**
+	 * Reads the name of a preprocessor directive
+	 * 
+	 * @return The name of the directive, or null if the line is not a
+	 *         directive
+	 */
+	private static String readDirective(CharScanner scanner, int lineStart,
+			int lineEnd)
+	{
+		int i = skipBlanks(scanner, lineStart, lineEnd);
+		if ((i == lineEnd) || (scanner.charAt(i) != '#'))
+		{
+			return null;
+		}
+
+		i = skipBlanks(scanner, i + 1, lineEnd);
+		int nameStart = i;
+		while ((i < lineEnd) && Character.isLetter(scanner.charAt(i)))
+		{
+			i++;
+		}
+
+		StringBuilder name = new StringBuilder(i - nameStart);
+		for (int k = nameStart; k < i; ++k)
+		{
+			name.append(scanner.charAt(k));
+		}
+		return name.toString();
+	}
+
+	private static int skipBlanks(CharScanner scanner, int i, int end)
+	{
+		while ((i < end)
+				&& ((scanner.charAt(i) == ' ') || (scanner.charAt(i) == '\t')))
+		{
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * A conditional region from #if to #endif
+	 */
+	private static class Region
+	{
+		// Char ranges of the directive lines
+		ArrayList<int[]> directives = new ArrayList<int[]>();
+
+		// The branches, in the order of the file
+		ArrayList<Branch> branches = new ArrayList<Branch>();
+
+		Branch currentBranch()
+		{
+			return branches.get(branches.size() - 1);
+		}
+	}
+
+	/**
+	 * The lines between two directives of a region
+	 */
+	private static class Branch
+	{
+		// Char range of the lines
+		int start;
+		int end;
+
+		// Regions nested in the branch
+		ArrayList<Region> regions = new ArrayList<Region>();
+
+		Branch(int start)
+		{
+			this.start = start;
+			this.end = start;
+		}
+	}
+}
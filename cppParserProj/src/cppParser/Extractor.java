@@ -1,16 +1,22 @@
 package cppParser;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import cppParser.utils.*;
 import cppStructures.CppClass;
+import cppStructures.CppDefine;
 import cppStructures.CppFile;
 import cppStructures.CppFunc;
 import cppStructures.CppNamespace;
@@ -43,8 +49,21 @@ public class Extractor
 	// Directory for the output files;
 	private String outputDir = "";
 
-	// File that is currently being processed
-	public static String currentFile = "";
+	// Results of the previous run, null if the cache is not used
+	private ResultCache cache = null;
+
+	// File and line that are currently being processed by each thread
+	private static ThreadLocal<Position> position = new ThreadLocal<Position>()
+	{
+		@Override
+		protected Position initialValue()
+		{
+			return new Position();
+		}
+	};
+
+	// Position of the thread that processes the current file
+	private Position filePosition = null;
 
 	// Current class stack under processing
 	private Stack<CppScope> cppScopeStack = new Stack<CppScope>();
@@ -52,8 +71,6 @@ public class Extractor
 	// If 'true', all "std"-starting stuff is ignored
 	// private boolean ignoreStd = true;
 
-	// Current line in the source file (may not reflect the actual processing)
-	public static int lineno = 0;
 	public int loc = 0;
 	public int lloc = 0;
 	public int ploc = 0;
@@ -95,6 +112,28 @@ public class Extractor
 		objManager = ParsedObjectManager.getInstance();
 	}
 
+	/**
+	 * Retrieves the file that is currently being processed by the calling
+	 * thread
+	 * 
+	 * @return Name of the file
+	 */
+	public static String getCurrentFile()
+	{
+		return position.get().file;
+	}
+
+	/**
+	 * Retrieves the current line in the file that is being processed by the
+	 * calling thread (may not reflect the actual processing)
+	 * 
+	 * @return Line number
+	 */
+	public static int getLineno()
+	{
+		return position.get().line;
+	}
+
 	/**
 	 * Starts processing the files
 	 */
@@ -103,12 +142,12 @@ public class Extractor
 		// Setup the file loader and load files
 		FileLoader fileLoader = new FileLoader(this.file);
 
-		Log.d("Processing started.");
+		Log.i("Processing started.");
 
 		// Setup the hashsets for stringtools
 		StringTools.setup();
 
-		Log.d("Finding files and sorting... ");
+		Log.i("Finding files and sorting... ");
 
 		long startTime = System.currentTimeMillis();
 
@@ -116,9 +155,19 @@ public class Extractor
 		sentenceAnalyzer = new SentenceAnalyzer();
 		prepassAnalyzer = new PreprocessorPass();
 
-		Log.d("Files sorted in "
+		Log.i("Files sorted in "
 				+ ((System.currentTimeMillis() - startTime) / 1000.0) + " s.");
-		Log.d("Found " + fileLoader.getFiles().size() + " files.");
+		Log.i("Found " + fileLoader.getFiles().size() + " files.");
+
+		// The cache holds the results of both passes
+		if (CmdLineParameterParser.getCaching()
+				&& (currentMode == Mode.ALL_PASSES))
+		{
+			cache = new ResultCache(outputDir.isEmpty() ? FileLoader
+					.getTargetPath() : outputDir, "variants="
+					+ CmdLineParameterParser.getMaxVariants() + " merge="
+					+ CmdLineParameterParser.getVariantPolicy());
+		}
 
 		// Execute the pre-pass if needed
 		if (currentMode != Mode.MAINPASS_ONLY)
@@ -131,27 +180,33 @@ public class Extractor
 		{
 			doMainPass(fileLoader);
 		}
+
+		if (cache != null)
+		{
+			cache.save();
+		}
 		
-		sumClassMetrics();
-		sumFileMetrics();
+		sumMetrics();
 
 		// Verify that no macro calls are in the operands
 		// verifyToFile();
 
 		// Debug dump
-		// TODO REMOVE WHEN DONE
-		dumpFunctions();
-		dumpScopes();
+		if (CmdLineParameterParser.getDumps())
+		{
+			dumpFunctions();
+			dumpScopes();
+		}
 
 		// Dump tree results to a file
 		ResultExporter exp = new ResultExporter(outputDir,
 				CmdLineParameterParser.includeStructs);
 		exp.exportAll();
 
-		Log.d("Dump done.");
+		Log.i("Dump done.");
 
 		long duration = System.currentTimeMillis() - startTime;
-		Log.d("Processing took " + (duration / 1000.0) + " s.");
+		Log.i("Processing took " + (duration / 1000.0) + " s.");
 	}
 
 	/**
@@ -161,19 +216,474 @@ public class Extractor
 	{
 		currentPass = Pass.MAINPASS;
 
+		// The cached results are restored as contexts, so the main pass
+		// results are only cached with several threads
+		int threads = CmdLineParameterParser.getThreads();
+		if (threads > 1)
+		{
+			doParallelMainPass(fileLoader.getFiles(), threads);
+			Log.i("Main pass done.");
+			return;
+		}
+
 		// Loop through the found files
+		boolean analyzed = false;
 		for (String s : fileLoader.getFiles())
 		{
-			ParsedObjectManager.getInstance().setCurrentFile(s);
-			locM = new LOCMetrics();
-			ParsedObjectManager.getInstance().addLocMetric(locM);
-			sentenceAnalyzer.fileChanged(s, locM);
+			int variants = getVariantCount(s);
+			if (variants > 1)
+			{
+				// The variants are analyzed in contexts of their own, and
+				// the next file gets a new sentence analyzer
+				if (analyzed)
+				{
+					sentenceAnalyzer.lastFileProcessed();
+					sentenceAnalyzer = new SentenceAnalyzer();
+					analyzed = false;
+				}
+				ArrayList<ParsedObjectManager> contexts = new ArrayList<ParsedObjectManager>();
+				SharedSource source = new SharedSource(s);
+				for (int v = 0; v < variants; ++v)
+				{
+					contexts.add(processInContext(s, source, getSkipped(s, v),
+							SentenceAnalyzer.State.INITIAL));
+				}
+				ParsedObjectManager.getInstance().merge(mergeVariants(contexts));
+			}
+			else
+			{
+				processMainPassFile(s);
+				analyzed = true;
+			}
+		}
+
+		if (analyzed)
+		{
+			sentenceAnalyzer.lastFileProcessed();
+		}
+		Log.i("Main pass done.");
+	}
 
-			process(s);
+	/**
+	 * Runs the main pass on a single file with the current sentence analyzer
+	 * 
+	 * @param file
+	 *            File to process
+	 */
+	private void processMainPassFile(String file)
+	{
+		processMainPassFile(file, null, null);
+	}
+
+	/**
+	 * Runs the main pass on a single file or a preprocessor branch variant of
+	 * it with the current sentence analyzer
+	 * 
+	 * @param file
+	 *            File to process
+	 * @param source
+	 *            Chars of the file shared by its variants, or null to read
+	 *            the file
+	 * @param skipped
+	 *            Chars the variant skips, or null
+	 */
+	private void processMainPassFile(String file, SharedSource source,
+			BitSet skipped)
+	{
+		ParsedObjectManager.getInstance().setCurrentFile(file);
+		CppFile cf = ParsedObjectManager.getInstance().getCurrentFile();
+		if ((cf != null)
+				&& (ParsedObjectManager.getInstance().getIncludeGraph() != null))
+		{
+			MacroExpander.setCurrentDefines(cf.getDefinesRecursively());
+		}
+		else
+		{
+			MacroExpander.setCurrentDefines(PersistentMap
+					.<String, CppDefine> empty());
+		}
+		locM = new LOCMetrics();
+		ParsedObjectManager.getInstance().addLocMetric(locM);
+		sentenceAnalyzer.fileChanged(file, locM);
+
+		process(file, source, skipped);
+	}
+
+	/**
+	 * Runs the main pass with several threads. Each file is analyzed in an
+	 * object manager context of its own by a fresh sentence analyzer. The
+	 * headers are analyzed before the sources, as in the serial main pass, so
+	 * that the sources see the scopes found from the headers. The preprocessor
+	 * branch variants of a file are analyzed concurrently as separate tasks
+	 * and merged into a single context.
+	 * 
+	 * The serial main pass analyzes a file after the files before it: the
+	 * brace count and open quotes left by an unbalanced file carry over, and
+	 * the scopes found from the files of the same group are seen. Once all
+	 * the files of a group are done, the files that started from another state
+	 * than the files before them leave are analyzed again from the predicted
+	 * state. The contexts are then merged into the object manager in the
+	 * order of the files. A context is analyzed again before it is merged if
+	 * its file started from another state than the previous file left, or if
+	 * it looked up a scope that the files merged before it added or changed.
+	 * The results are thus those of the serial main pass, whatever the number
+	 * of threads and their scheduling.
+	 * 
+	 * @param files
+	 *            Files to process, headers first
+	 * @param threads
+	 *            Number of worker threads
+	 */
+	private void doParallelMainPass(ArrayList<String> files, int threads)
+	{
+		ArrayList<String> headers = new ArrayList<String>();
+		ArrayList<String> sources = new ArrayList<String>();
+		for (String s : files)
+		{
+			if (s.charAt(s.lastIndexOf('.') + 1) == 'c')
+			{
+				sources.add(s);
+			}
+			else
+			{
+				headers.add(s);
+			}
+		}
+
+		if (threads > 1)
+		{
+			Log.i("Main pass with " + threads + " threads.");
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try
+		{
+			SentenceAnalyzer.State state = processInParallel(headers,
+					executor, SentenceAnalyzer.State.INITIAL);
+			processInParallel(sources, executor, state);
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Analyzes the given files in parallel and merges their contexts into the
+	 * object manager in the order of the files. The contexts of the files
+	 * whose cached results are still valid are restored instead, and the
+	 * contexts of the analyzed files are stored in the cache.
+	 * 
+	 * @param files
+	 *            Files to process
+	 * @param executor
+	 *            Executor of the worker threads
+	 * @param state
+	 *            State of the sentence analyzer left by the previous files
+	 * @return State of the sentence analyzer left by the files
+	 */
+	private SentenceAnalyzer.State processInParallel(ArrayList<String> files,
+			ExecutorService executor, SentenceAnalyzer.State state)
+	{
+		// The tasks of the variants of each file
+		ArrayList<ArrayList<Future<ParsedObjectManager>>> futures = new ArrayList<ArrayList<Future<ParsedObjectManager>>>();
+		// The restored contexts by the index of the file
+		HashMap<Integer, ParsedObjectManager> restored = new HashMap<Integer, ParsedObjectManager>();
+		for (final String s : files)
+		{
+			ArrayList<Future<ParsedObjectManager>> variantFutures = new ArrayList<Future<ParsedObjectManager>>();
+			futures.add(variantFutures);
+			ParsedObjectManager context = (cache != null) ? cache
+					.restoreContext(s) : null;
+			if (context != null)
+			{
+				restored.put(futures.size() - 1, context);
+				continue;
+			}
+
+			int variants = getVariantCount(s);
+			final SharedSource source = (variants > 1) ? new SharedSource(s)
+					: null;
+			for (int v = 0; v < variants; ++v)
+			{
+				final BitSet skipped = (variants > 1) ? getSkipped(s, v) : null;
+				variantFutures.add(executor
+						.submit(new Callable<ParsedObjectManager>()
+						{
+							@Override
+							public ParsedObjectManager call()
+							{
+								return processInContext(s, source, skipped,
+										SentenceAnalyzer.State.INITIAL);
+							}
+						}));
+			}
+		}
+
+		// The workers read the scopes of the object manager, so nothing is
+		// merged before all of them are done
+		ArrayList<ParsedObjectManager> contexts = new ArrayList<ParsedObjectManager>();
+		try
+		{
+			for (int i = 0; i < futures.size(); ++i)
+			{
+				if (restored.containsKey(i))
+				{
+					contexts.add(restored.get(i));
+					continue;
+				}
+
+				ArrayList<ParsedObjectManager> variantContexts = new ArrayList<ParsedObjectManager>();
+				for (Future<ParsedObjectManager> future : futures.get(i))
+				{
+					variantContexts.add(future.get());
+				}
+				contexts.add(mergeVariants(variantContexts));
+			}
+			processFromPredictedStates(files, contexts, state, executor);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Main pass was interrupted", e);
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof RuntimeException)
+			{
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+
+		// The names of the scopes added or changed by the merged contexts
+		HashSet<String> changed = new HashSet<String>();
+		int reanalyzed = 0;
+		for (int i = 0; i < files.size(); ++i)
+		{
+			String file = files.get(i);
+			int variants = getVariantCount(file);
+
+			// The variants of a file start from a new sentence analyzer, and
+			// so does the file after them
+			SentenceAnalyzer.State start = (variants > 1) ? SentenceAnalyzer.State.INITIAL
+					: state;
+			ParsedObjectManager context = contexts.get(i);
+			boolean conflict = context.dependsOn(changed);
+			if (conflict || !context.getStartState().equals(start))
+			{
+				Log.d("Analyzing %s again: %s", file,
+						conflict ? "the scopes it looked up changed"
+								: "the previous files left " + start);
+				context = processAgain(file, variants, start);
+				reanalyzed++;
+			}
+
+			// A context that saw the scopes of the previous files cannot be
+			// reused when they change
+			if ((cache != null) && (context != restored.get(i)))
+			{
+				cache.storeContext(file, conflict ? null : context);
+			}
+
+			changed.addAll(ParsedObjectManager.getInstance().merge(context));
+			state = (variants > 1) ? SentenceAnalyzer.State.INITIAL : context
+					.getEndState();
+		}
+
+		if (reanalyzed > 0)
+		{
+			Log.i("Analyzed " + reanalyzed
+					+ " files again after the files before them.");
+		}
+		return state;
+	}
+
+	/**
+	 * Analyzes the files that did not start from the state the files before
+	 * them leave again in parallel. The brace count a file leaves differs from
+	 * the one it started from by the same amount whatever the state it
+	 * started from, so the states are predicted from the first analyses of
+	 * the files. The predictions are checked when the contexts are merged.
+	 * 
+	 * @param files
+	 *            Files to process
+	 * @param contexts
+	 *            Contexts of the files, replaced by the new contexts
+	 * @param state
+	 *            State of the sentence analyzer left by the previous files
+	 * @param executor
+	 *            Executor of the worker threads
+	 * @throws InterruptedException
+	 *             Thrown if interrupted while waiting for the analyses
+	 * @throws ExecutionException
+	 *             Thrown if an analysis failed
+	 */
+	private void processFromPredictedStates(ArrayList<String> files,
+			ArrayList<ParsedObjectManager> contexts,
+			SentenceAnalyzer.State state, ExecutorService executor)
+			throws InterruptedException, ExecutionException
+	{
+		HashMap<Integer, Future<ParsedObjectManager>> futures = new HashMap<Integer, Future<ParsedObjectManager>>();
+		for (int i = 0; i < files.size(); ++i)
+		{
+			final String file = files.get(i);
+			if (getVariantCount(file) > 1)
+			{
+				state = SentenceAnalyzer.State.INITIAL;
+				continue;
+			}
+
+			ParsedObjectManager context = contexts.get(i);
+			SentenceAnalyzer.State start = context.getStartState();
+			SentenceAnalyzer.State end = context.getEndState();
+			if (start.equals(state))
+			{
+				state = end;
+				continue;
+			}
+
+			final SentenceAnalyzer.State predicted = state;
+			futures.put(i, executor.submit(new Callable<ParsedObjectManager>()
+			{
+				@Override
+				public ParsedObjectManager call()
+				{
+					return processInContext(file, null, null, predicted);
+				}
+			}));
+			state = new SentenceAnalyzer.State(end.braceCount
+					- start.braceCount + predicted.braceCount, end.stringOpen);
+		}
+
+		for (Integer i : futures.keySet())
+		{
+			contexts.set(i, futures.get(i).get());
+		}
+	}
+
+	/**
+	 * Runs the main pass on a file again in the calling thread, after the
+	 * contexts of the files before it have been merged
+	 * 
+	 * @param file
+	 *            File to process
+	 * @param variants
+	 *            Number of preprocessor branch variants of the file
+	 * @param start
+	 *            State of the sentence analyzer left by the previous files
+	 * @return The context of the file
+	 */
+	private ParsedObjectManager processAgain(String file, int variants,
+			SentenceAnalyzer.State start)
+	{
+		if (variants <= 1)
+		{
+			return processInContext(file, null, null, start);
+		}
+
+		ArrayList<ParsedObjectManager> contexts = new ArrayList<ParsedObjectManager>();
+		SharedSource source = new SharedSource(file);
+		for (int v = 0; v < variants; ++v)
+		{
+			contexts.add(processInContext(file, source, getSkipped(file, v),
+					start));
+		}
+		return mergeVariants(contexts);
+	}
+
+	/**
+	 * Runs the main pass on a single file or a preprocessor branch variant of
+	 * it in a new object manager context. Called by the worker threads, and by
+	 * the calling thread for the files analyzed again.
+	 * 
+	 * @param file
+	 *            File to process
+	 * @param source
+	 *            Chars of the file shared by its variants, or null to read
+	 *            the file
+	 * @param skipped
+	 *            Chars the variant skips, or null
+	 * @param start
+	 *            State of the sentence analyzer left by the previous files
+	 * @return The context holding the scopes, types and LOC metrics of the
+	 *         file
+	 */
+	private ParsedObjectManager processInContext(String file,
+			SharedSource source, BitSet skipped, SentenceAnalyzer.State start)
+	{
+		ParsedObjectManager context = ParsedObjectManager.openContext();
+		try
+		{
+			Extractor worker = new Extractor(file, outputDir);
+			worker.currentPass = Pass.MAINPASS;
+			worker.sentenceAnalyzer = new SentenceAnalyzer();
+			worker.sentenceAnalyzer.setState(start);
+			worker.processMainPassFile(file, source, skipped);
+			worker.sentenceAnalyzer.lastFileProcessed();
+			context.setStates(start, worker.sentenceAnalyzer.getState());
+		}
+		finally
+		{
+			ParsedObjectManager.closeContext();
+		}
+		return context;
+	}
+
+	/**
+	 * Retrieves the number of preprocessor branch variants a file is analyzed
+	 * in
+	 * 
+	 * @param file
+	 *            File to process
+	 * @return Number of variants, 1 if the file is analyzed as a whole
+	 */
+	private static int getVariantCount(String file)
+	{
+		CppFile cf = ParsedObjectManager.getInstance().getFileByFilename(file);
+		if ((cf == null) || (cf.getConditionals() == null))
+		{
+			return 1;
 		}
+		return Math.min(cf.getConditionals().getVariantCount(),
+				CmdLineParameterParser.getMaxVariants());
+	}
 
-		sentenceAnalyzer.lastFileProcessed();
-		Log.d("Main pass done.");
+	/**
+	 * Retrieves the chars a preprocessor branch variant of a file skips
+	 * 
+	 * @param file
+	 *            File to process
+	 * @param variant
+	 *            Index of the variant
+	 * @return The indices of the skipped chars
+	 */
+	private static BitSet getSkipped(String file, int variant)
+	{
+		return ParsedObjectManager.getInstance().getFileByFilename(file)
+				.getConditionals().getSkipped(variant);
+	}
+
+	/**
+	 * Merges the contexts of the variants of a file into the context of the
+	 * first variant
+	 * 
+	 * @param contexts
+	 *            Contexts of the variants
+	 * @return The merged context
+	 */
+	private static ParsedObjectManager mergeVariants(
+			ArrayList<ParsedObjectManager> contexts)
+	{
+		ParsedObjectManager merged = contexts.get(0);
+		if (contexts.size() > 1)
+		{
+			merged.mergeVariants(
+					new ArrayList<ParsedObjectManager>(contexts.subList(1,
+							contexts.size())),
+					CmdLineParameterParser.getVariantPolicy());
+		}
+		return merged;
 	}
 
 	/**
@@ -190,7 +700,18 @@ public class Extractor
 			CppFile cf = new CppFile(s);
 			ParsedObjectManager.getInstance().addFile(cf);
 			ParsedObjectManager.getInstance().setCurrentFile(cf);
+			if ((cache != null) && cache.restorePrePass(cf))
+			{
+				scanConditionals(cf);
+				continue;
+			}
+
+			int defines = PreprocessorPass.defineCount;
 			process(s);
+			if (cache != null)
+			{
+				cache.storePrePass(cf, PreprocessorPass.defineCount - defines);
+			}
 		}
 
 		// Expand #include paths
@@ -199,15 +720,52 @@ public class Extractor
 			cf.expandIncludes();
 		}
 
+		// Compute the #define sets of the files
+		IncludeGraph includeGraph = new IncludeGraph(ParsedObjectManager
+				.getInstance().getFiles());
+		ParsedObjectManager.getInstance().setIncludeGraph(includeGraph);
+		if (cache != null)
+		{
+			cache.setIncludeGraph(includeGraph);
+		}
+		Log.i("Found " + includeGraph.getComponentCount()
+				+ " #include components.");
+
 		ParsedObjectManager.getInstance().setCurrentFile("");
 
 		// Dump the #include tree for debuggin purposes
-		dumpIncludeTree();
+		if (CmdLineParameterParser.getDumps())
+		{
+			dumpIncludeTree();
+		}
 
 		// Calculate the pre-pass execution time
 		long prepassDuration = System.currentTimeMillis() - startTime;
-		Log.d("Found " + PreprocessorPass.defineCount + " #defines.");
-		Log.d("Prepass done. (" + prepassDuration / 1000.0 + " s.)");
+		Log.i("Found " + PreprocessorPass.defineCount + " #defines.");
+		Log.i("Prepass done. (" + prepassDuration / 1000.0 + " s.)");
+	}
+
+	/**
+	 * Records the conditional compilation regions of a file whose pre-pass
+	 * results were restored from the cache
+	 * 
+	 * @param cf
+	 *            The file
+	 */
+	private void scanConditionals(CppFile cf)
+	{
+		if (CmdLineParameterParser.getMaxVariants() > 1)
+		{
+			try
+			{
+				cf.setConditionals(ConditionalRegions.scan(new CharScanner(cf
+						.getFilename())));
+			}
+			catch (IOException e)
+			{
+				Log.e("Could not read " + cf.getFilename() + ": " + e);
+			}
+		}
 	}
 
 	/**
@@ -223,16 +781,48 @@ public class Extractor
 	 */
 	private void process(String file)
 	{
-		currentFile = file;
-		Log.d("Processing: " + file);
+		process(file, null, null);
+	}
+
+	/**
+	 * Processes a single file or a preprocessor branch variant of it. The
+	 * chars a variant skips are only counted as physical lines.
+	 * 
+	 * @param file
+	 *            File to process
+	 * @param source
+	 *            Chars of the file shared by its variants, or null to read
+	 *            the file
+	 * @param skipped
+	 *            Chars the variant skips, or null
+	 */
+	private void process(String file, SharedSource source, BitSet skipped)
+	{
+		filePosition = position.get();
+		filePosition.file = file;
+		Log.d("Processing: %s", file);
 		try
 		{
-			BufferedReader reader = new BufferedReader(new FileReader(new File(
-					file)));
+			CharScanner scanner = (source != null) ? source.open(skipped)
+					: new CharScanner(file);
 
-			char c; // Current char
-			lineno = 1;
-			String line = ""; // Sentence under construction
+			// Record the conditional regions for the variants of the main
+			// pass
+			if ((currentPass == Pass.PREPASS)
+					&& (CmdLineParameterParser.getMaxVariants() > 1))
+			{
+				CppFile cf = ParsedObjectManager.getInstance()
+						.getCurrentFile();
+				if (cf != null)
+				{
+					cf.setConditionals(ConditionalRegions.scan(scanner));
+				}
+			}
+
+			int read; // Current char, or -1 at the end of the file
+			filePosition.line = 1;
+			StringBuilder line = new StringBuilder(); // Sentence under
+														// construction
 			int rawExpandStartIndex = 0; // Index of the char in line where the
 											// last macro expansion ended
 			boolean stringOpen = false, charOpen = false; // Booleans to
@@ -242,15 +832,27 @@ public class Extractor
 			plocCounter = new PLOCCounter();
 
 			// Loop through the file char-by-char
-			while ((c = (char) reader.read()) != (char) -1)
+			while ((read = scanner.next()) != -1)
 			{
+				char c = (char) read;
+
 				if (currentPass == Pass.MAINPASS)
 				{
 					plocCounter.push(c);
 				}
 
+				// Lines of the other preprocessor branches are only counted
+				if (scanner.wasSkipped())
+				{
+					if (c == '\n')
+					{
+						filePosition.line++;
+					}
+					continue;
+				}
+
 				// Skip system macros
-				line = skipSystemMacros(line, reader);
+				skipSystemMacros(line, scanner);
 
 				// Handle spaces, carriage returns and tabs
 				if (c == '\r')
@@ -261,7 +863,7 @@ public class Extractor
 				{
 					continue;
 				}
-				if ((c == ' ') && line.endsWith(" "))
+				if ((c == ' ') && StringTools.endsWith(line, " "))
 				{
 					continue;
 				}
@@ -269,29 +871,22 @@ public class Extractor
 				{
 					if (line.length() > 0)
 					{
-						line += " ";
+						line.append(' ');
 					}
 					continue;
 				}
 
 				// Add the current char to the line
-				if (c == '\\')
-				{
-					line += "\\";
-				}
-				else
-				{
-					line += c;
-				}
+				line.append(c);
 
 				// Skip "empty" whitespaces
-				if (line.equals("\n") || line.equals("\t") || line.equals(" "))
+				if ((line.length() == 1) && ((c == '\n') || (c == ' ')))
 				{
-					if (line.equals("\n"))
+					if (c == '\n')
 					{
-						lineno++;
+						filePosition.line++;
 					}
-					line = "";
+					line.setLength(0);
 					rawExpandStartIndex = 0;
 					continue;
 				}
@@ -303,15 +898,15 @@ public class Extractor
 				if (!stringOpen && !charOpen)
 				{
 					// Count line numbers
-					if (line.endsWith("\n"))
+					if (c == '\n')
 					{
-						lineno++;
+						filePosition.line++;
 					}
 
-					if (line.endsWith("//"))
+					if (StringTools.endsWith(line, "//"))
 					{
-						processSingleLineComment(line, reader);
-						line = line.substring(0, line.indexOf("//"));
+						processSingleLineComment(scanner);
+						line.setLength(line.indexOf("//"));
 						if (rawExpandStartIndex > line.length())
 						{
 							rawExpandStartIndex = 0;
@@ -320,71 +915,69 @@ public class Extractor
 					}
 
 					// Handle multi-line comments
-					if (line.endsWith("/*"))
+					if (StringTools.endsWith(line, "/*"))
 					{
-						processMultiLineComment(
-								line.substring(line.indexOf("/*")), reader);
-						if (!line.startsWith("/*"))
+						processMultiLineComment(scanner);
+						int commentStart = line.indexOf("/*");
+						if (commentStart > 0)
 						{
-							line = line.substring(0, line.indexOf("/*"));
+							line.setLength(commentStart);
 						}
 						else
 						{
-							line = "";
+							line.setLength(0);
 							rawExpandStartIndex = 0;
 						}
 						continue;
 					}
 
 					// Handle newline
-					if (line.endsWith("\n"))
+					if (c == '\n')
 					{
 						// Handle preprocessor directives
-						if (line.startsWith("#"))
+						if (StringTools.startsWith(line, "#"))
 						{
-							line = handleEOLforPreProcessor(line);
+							handleEOLforPreProcessor(line);
 							continue;
 						}
 						else
 						{
-							line = line.substring(0, line.length() - 1);
-							line += " ";
+							line.setCharAt(line.length() - 1, ' ');
 						}
 					}
 
 					// Expand macros
 					if (currentPass == Pass.MAINPASS)
 					{
-						if (!line.startsWith("#")
-								&& MacroExpander.shouldExpandRaw(line, c))
+						if (!StringTools.startsWith(line, "#")
+								&& MacroExpander.shouldExpandRaw(c))
 						{
-							String beginLine = line.substring(0,
-									rawExpandStartIndex);
-							String expandable = line
-									.substring(rawExpandStartIndex);
-							expandable = MacroExpander.expandRaw(expandable);
-							line = beginLine + " " + expandable;
-							if (line.trim().endsWith(";"))
+							String expandable = MacroExpander.expandRaw(line
+									.substring(rawExpandStartIndex));
+							line.setLength(rawExpandStartIndex);
+							line.append(' ').append(expandable);
+							if (StringTools.trimmedEndsWith(line, ';'))
 							{
-								line = line.trim();
+								StringTools.trim(line);
 							}
 							rawExpandStartIndex = line.length() - 1;
 						}
 					}
 
 					// Handle end-of-sentence
-					if (!line.startsWith("#"))
+					if (!StringTools.startsWith(line, "#"))
 					{
-						if (line.endsWith(";") || line.endsWith("{")
-								|| line.endsWith("}")
+						if (StringTools.endsWith(line, ";")
+								|| StringTools.endsWith(line, "{")
+								|| StringTools.endsWith(line, "}")
 								|| isVisibilityStatement(c, line))
 						{
 							if (currentPass == Pass.MAINPASS)
 							{
-								sentenceAnalyzer.lexLine(line.trim());
+								sentenceAnalyzer.lexLine(line.toString().trim());
 							}
 
-							line = "";
+							line.setLength(0);
 							rawExpandStartIndex = 0;
 							continue;
 						}
@@ -412,10 +1005,11 @@ public class Extractor
 	 * @param charOpen
 	 * @return
 	 */
-	private boolean handleCharLiteral(char c, String line, boolean stringOpen,
-			boolean charOpen)
+	private boolean handleCharLiteral(char c, StringBuilder line,
+			boolean stringOpen, boolean charOpen)
 	{
-		if ((c == '\'') && !stringOpen && !line.endsWith("\\\'"))
+		if ((c == '\'') && !stringOpen
+				&& !StringTools.endsWith(line, "\\\'"))
 		{
 			charOpen = !charOpen;
 		}
@@ -429,10 +1023,10 @@ public class Extractor
 	 * @param charOpen
 	 * @return
 	 */
-	private boolean handleStringLiteral(char c, String line,
+	private boolean handleStringLiteral(char c, StringBuilder line,
 			boolean stringOpen, boolean charOpen)
 	{
-		if ((c == '"') && !charOpen && !line.endsWith("\\\""))
+		if ((c == '"') && !charOpen && !StringTools.endsWith(line, "\\\""))
 		{
 			stringOpen = !stringOpen;
 		}
@@ -440,26 +1034,29 @@ public class Extractor
 	}
 
 	/**
+	 * Handles the end of a line of a preprocessor directive. A continued
+	 * directive is kept in the line, a complete one is analyzed in the
+	 * pre-pass and cleared.
+	 * 
 	 * @param line
-	 * @return
+	 *            The directive read so far, ending with a newline
 	 */
-	private String handleEOLforPreProcessor(String line)
+	private void handleEOLforPreProcessor(StringBuilder line)
 	{
-		if (line.endsWith("\\\n"))
+		if (StringTools.endsWith(line, "\\\n"))
 		{
-			line = line.substring(0, line.length() - 2);
+			line.setLength(line.length() - 2);
 		}
 		else
 		{
 			// Log.d("Found #: " + line);
 			if (currentPass == Pass.PREPASS)
 			{
-				line = line.substring(0, line.length() - 1);
-				prepassAnalyzer.process(line.trim());
+				prepassAnalyzer.process(line.substring(0, line.length() - 1)
+						.trim());
 			}
-			line = "";
+			line.setLength(0);
 		}
-		return line;
 	}
 
 	/**
@@ -496,76 +1093,74 @@ public class Extractor
 	 * Skips system macros
 	 * 
 	 * @param line
-	 *            Line read so far
-	 * @param reader
-	 *            Input reader
-	 * @return Line without the system macros
-	 * @throws IOException
-	 *             Thrown if an error happens in reading
+	 *            Line read so far, the system macros are removed from it
+	 * @param scanner
+	 *            Input scanner
 	 */
-	private String skipSystemMacros(String line, BufferedReader reader)
-			throws IOException
+	private void skipSystemMacros(StringBuilder line, CharScanner scanner)
 	{
-		if (line.endsWith("__declspec"))
+		if (StringTools.endsWith(line, "__declspec"))
 		{
-			while ((char) reader.read() != ')')
+			int read;
+			while (((read = scanner.next()) != ')') && (read != -1))
 			{
 				;
 			}
-			line = line.substring(line.indexOf("__declspec"));
+			line.delete(0, line.indexOf("__declspec"));
 		}
-		else if (line.endsWith("STDMETHODIMP"))
+		else if (StringTools.endsWith(line, "STDMETHODIMP"))
 		{
-			line = line.substring(line.indexOf("STDMETHODIMP"));
-			line += (char) reader.read();
-			if (line.endsWith("_"))
+			line.delete(0, line.indexOf("STDMETHODIMP"));
+			int read = scanner.next();
+			if ((read != -1) && (read != '_'))
 			{
-				line = line.substring(0, line.length() - 1);
+				line.append((char) read);
 			}
 		}
-		return line;
 	}
 
 	/**
-	 * Handles a single line comment. Advances the reader to the end of the
+	 * Handles a single line comment. Advances the scanner to the end of the
 	 * comment.
 	 */
-	private void processSingleLineComment(String line, BufferedReader reader)
-			throws IOException
+	private void processSingleLineComment(CharScanner scanner)
 	{
-		char c;
-		while (((c = (char) reader.read()) != '\n') && (c != '\r')
-				&& (c != (char) -1))
+		int read;
+		while (((read = scanner.next()) != '\n') && (read != '\r')
+				&& (read != -1))
 		{
 			if (currentPass == Pass.MAINPASS)
 			{
-				plocCounter.push(c);
+				plocCounter.push((char) read);
 			}
-			line += c;
 		}
-		// lineno++;
+		// filePosition.line++;
 	}
 
 	/**
-	 * Handles a multi-line comment. Advacnes the reader to the end of the
-	 * comment.
+	 * Handles a multi-line comment. Advances the scanner to the end of the
+	 * comment, which starts right after the opening "/*".
 	 */
-	private void processMultiLineComment(String line, BufferedReader reader)
-			throws IOException
+	private void processMultiLineComment(CharScanner scanner)
 	{
-		char c;
-		while (!line.endsWith("*/"))
+		char last = '*';
+		int read;
+		while ((read = scanner.next()) != -1)
 		{
-			c = (char) reader.read();
+			char c = (char) read;
 			if (currentPass == Pass.MAINPASS)
 			{
 				plocCounter.push(c);
 			}
-			line += c;
-			if (line.endsWith("\n"))
+			if (c == '\n')
 			{
-				lineno++;
+				filePosition.line++;
 			}
+			if ((last == '*') && (c == '/'))
+			{
+				break;
+			}
+			last = c;
 		}
 	}
 
@@ -593,7 +1188,7 @@ public class Extractor
 	 * @return 'true' if the line forms either "public", "protected" or
 	 *         "private" statement, 'false' otherwise
 	 */
-	private boolean isVisibilityStatement(char c, String line)
+	private boolean isVisibilityStatement(char c, StringBuilder line)
 	{
 		if (c != ':')
 		{
@@ -601,8 +1196,9 @@ public class Extractor
 		}
 		else
 		{
-			if (line.endsWith("public:") || line.endsWith("protected:")
-					|| line.endsWith("private:"))
+			if (StringTools.endsWith(line, "public:")
+					|| StringTools.endsWith(line, "protected:")
+					|| StringTools.endsWith(line, "private:"))
 			{
 				return true;
 			}
@@ -810,82 +1406,130 @@ public class Extractor
 
 	/**
 	 * This method sums the metrics that already have been separately calculated
-	 * for each class. To get the averages from these they have to be divided
-	 * with number of functions in the scope
+	 * for each function into the classes and files of the functions. To get
+	 * the averages from these they have to be divided with number of functions
+	 * in the scope. The functions are visited once and grouped by their file,
+	 * so the operators and operands of a file are collected from its own
+	 * functions only.
 	 */
-	private void sumClassMetrics()
+	private void sumMetrics()
 	{
-		// CppFunc helper;
+		// Summed Halstead metrics and complexity of the functions by file
+		HashMap<String, CppFunc> fileMetrics = new HashMap<String, CppFunc>();
+		HashMap<String, Integer> fileComplexities = new HashMap<String, Integer>();
+
 		for (CppScope s : ParsedObjectManager.getInstance().getScopes())
 		{
-			// helper=new CppFunc("void","helper");
 			for (CppFunc func : s.getFunctions())
 			{
-				LOCMetrics locMetrics = func.getLOCMetrics();
+				sumClassMetrics(s, func);
 
-				s.sumFuncLLOC += locMetrics.logicalLOC;
-				s.sumFuncPLOC += (locMetrics.commentedCodeLines + locMetrics.codeOnlyLines);
-				s.sumFuncCommentLines += (locMetrics.commentedCodeLines + locMetrics.commentLines);
-				s.sumFuncEmptyLines += locMetrics.emptyLines;
-
-				s.sumOperators += func.getOperatorCount();
-				s.sumOperands += func.getOperandCount();
-				s.sumUniqueOperators += func.getUniqueOperatorCount();
-				s.sumUniqueOperands += func.getUniqueOperandCount();
-
-				s.sumCalculatedLength += func.getCalculatedLength();
-				s.sumDeliveredBugs += func.getDeliveredBugs();
-
-				s.sumVocabulary += func.getVocabulary();
-				s.sumLength += func.getLength();
-				s.sumVolume += func.getVolume();
-				s.sumDifficulty += func.getDifficulty();
-				s.sumEffort += func.getEffort();
-				s.sumTimeToProgram += func.getTimeToProgram();
-				s.sumDeliveredBugs += func.getDeliveredBugs();
-				s.sumLevel += func.getLevel();
-				s.sumIntContent += func.getIntContent();
-				s.sumFuncCC += func.getCyclomaticComplexity();
+				CppFunc helper = fileMetrics.get(func.fileOfFunc);
+				if (helper == null)
+				{
+					helper = new CppFunc("void", "helper");
+					fileMetrics.put(func.fileOfFunc, helper);
+					fileComplexities.put(func.fileOfFunc, 0);
+				}
+				helper.addMetrics(func);
+				fileComplexities.put(func.fileOfFunc,
+						fileComplexities.get(func.fileOfFunc)
+								+ func.getCyclomaticComplexity());
+			}
+		}
 
+		for (CppFile f : ParsedObjectManager.getInstance().getFiles())
+		{
+			CppFunc helper = fileMetrics.get(f.getFilename());
+			if (helper == null)
+			{
+				helper = new CppFunc("void", "helper");
+			}
+			else
+			{
+				helper.setCyclomaticComplexity(fileComplexities.get(f
+						.getFilename()));
 			}
+			f.setOtherMetrics(helper);
 		}
 	}
 
 	/**
-	 * This method sums the metrics that already have been separately calculated
-	 * for each file. To get the averages from these they have to be divided
-	 * with number of functions in the scope
+	 * Adds the metrics of a function to the sums of its class
+	 * 
+	 * @param s
+	 *            The scope of the function
+	 * @param func
+	 *            The function
 	 */
-	private void sumFileMetrics()
+	private void sumClassMetrics(CppScope s, CppFunc func)
 	{
-		CppFunc helper;
-		for (CppFile f : ParsedObjectManager.getInstance().getFiles())
+		LOCMetrics locMetrics = func.getLOCMetrics();
+
+		s.sumFuncLLOC += locMetrics.logicalLOC;
+		s.sumFuncPLOC += (locMetrics.commentedCodeLines + locMetrics.codeOnlyLines);
+		s.sumFuncCommentLines += (locMetrics.commentedCodeLines + locMetrics.commentLines);
+		s.sumFuncEmptyLines += locMetrics.emptyLines;
+
+		s.sumOperators += func.getOperatorCount();
+		s.sumOperands += func.getOperandCount();
+		s.sumUniqueOperators += func.getUniqueOperatorCount();
+		s.sumUniqueOperands += func.getUniqueOperandCount();
+
+		s.sumCalculatedLength += func.getCalculatedLength();
+		s.sumDeliveredBugs += func.getDeliveredBugs();
+
+		s.sumVocabulary += func.getVocabulary();
+		s.sumLength += func.getLength();
+		s.sumVolume += func.getVolume();
+		s.sumDifficulty += func.getDifficulty();
+		s.sumEffort += func.getEffort();
+		s.sumTimeToProgram += func.getTimeToProgram();
+		s.sumDeliveredBugs += func.getDeliveredBugs();
+		s.sumLevel += func.getLevel();
+		s.sumIntContent += func.getIntContent();
+		s.sumFuncCC += func.getCyclomaticComplexity();
+	}
+
+	/**
+	 * The chars of a file shared by the analyses of its preprocessor branch
+	 * variants. The file is read by the first variant that needs it.
+	 */
+	private static class SharedSource
+	{
+		private final String file;
+		private CharScanner chars = null;
+
+		SharedSource(String file)
 		{
-			String filename = f.getFilename();
-			helper = new CppFunc("void", "helper");
-			int complexity = 0;
-			for (CppScope s : ParsedObjectManager.getInstance().getScopes())
+			this.file = file;
+		}
+
+		/**
+		 * Creates a scanner over the chars of the file for a variant
+		 * 
+		 * @param skipped
+		 *            Chars the variant skips
+		 * @return The scanner
+		 * @throws IOException
+		 *             Thrown if the file cannot be read
+		 */
+		synchronized CharScanner open(BitSet skipped) throws IOException
+		{
+			if (chars == null)
 			{
-				for (CppFunc func : s.getFunctions())
-				{
-					if (func.fileOfFunc.contentEquals(filename))
-					{
-						for (String op : func.getOperands())
-						{
-							helper.addOperand(op);
-						}
-						for (String op : func.getOperators())
-						{
-							helper.addOperator(op);
-						}
-						helper.getCyclomaticComplexity();
-						complexity += func.getCyclomaticComplexity();
-					}
-				}
+				chars = new CharScanner(file);
 			}
-			helper.setCyclomaticComplexity(complexity);
-			f.setOtherMetrics(helper);
-
+			return new CharScanner(chars, skipped);
 		}
 	}
+
+	/**
+	 * File and line under processing
+	 */
+	private static class Position
+	{
+		String file = "";
+		int line = 0;
+	}
 }
@@ -59,6 +59,16 @@ public class FunctionAnalyzer extends Analyzer
 		funcFinder = new FunctionFinder(this, varFinder, func);
 	}
 
+	/**
+	 * Retrieves the operator analyzer of the function bodies
+	 * 
+	 * @return The operator analyzer
+	 */
+	OperatorAnalyzer getOperatorAnalyzer()
+	{
+		return operatorAnalyzer;
+	}
+
 	public VarFinder getVarFinder()
 	{
 		return varFinder;
@@ -227,7 +237,7 @@ public class FunctionAnalyzer extends Analyzer
 		func = ParsedObjectManager.getInstance().addFunction(func,
 				tokens[tokens.length - 1].equals("{"));
 		func.funcBraceCount = sentenceAnalyzer.braceCount;
-		func.fileOfFunc = Extractor.currentFile;
+		func.fileOfFunc = Extractor.getCurrentFile();
 		return func;
 	}
 
@@ -260,9 +270,9 @@ public class FunctionAnalyzer extends Analyzer
 		if (zeroParCount > 1)
 		{
 			Log.e("Two function declarations on the same line\n  File: "
-					+ Extractor.currentFile
+					+ Extractor.getCurrentFile()
 					+ "\n  Line: "
-					+ Extractor.lineno);
+					+ Extractor.getLineno());
 			i = lastParenthesisIndex;
 		}
 		return i;
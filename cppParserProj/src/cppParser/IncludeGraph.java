@@ -0,0 +1,305 @@
+package cppParser;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.TreeSet;
+
+import cppParser.utils.PersistentMap;
+import cppParser.utils.StringTools;
+import cppStructures.CppDefine;
+import cppStructures.CppFile;
+
+/**
+ * The graph of #includes between the files found in the pre-pass. The #define
+ * set of each file (its own #defines and those of every file it includes,
+ * directly or indirectly) is computed once for all the files.
+ * 
+ * Files that include each other form a strongly connected component and see
+ * the same #defines. The components are found with Tarjan's algorithm, which
+ * completes every component after the components it includes, so the #define
+ * set of a component is built on the sets of its includes. The sets are
+ * persistent maps that share the entries inherited from the includes.
+ * 
+ * In a #define set, a later #include overrides an earlier one and the
+ * #defines of the file itself override the included ones.
+ */
+public class IncludeGraph
+{
+	// The files, in the order they were found
+	private ArrayList<CppFile> files;
+
+	// Index of each file by filename
+	private HashMap<String, Integer> indices = new HashMap<String, Integer>();
+
+	// The files each file includes, as indices
+	private int[][] edges;
+
+	// Component of each file
+	private int[] components;
+
+	// #define set of each component
+	private ArrayList<PersistentMap<String, CppDefine>> defineSets = new ArrayList<PersistentMap<String, CppDefine>>();
+
+	/**
+	 * Builds the graph of the given files and computes their #define sets.
+	 * The #includes of the files must be expanded to absolute paths.
+	 * 
+	 * @param files
+	 *            Files found in the pre-pass
+	 */
+	public IncludeGraph(ArrayList<CppFile> files)
+	{
+		this.files = files;
+
+		for (int i = 0; i < files.size(); ++i)
+		{
+			if (!indices.containsKey(files.get(i).getFilename()))
+			{
+				indices.put(files.get(i).getFilename(), i);
+			}
+		}
+
+		edges = new int[files.size()][];
+		for (int i = 0; i < files.size(); ++i)
+		{
+			ArrayList<String> includes = files.get(i).getIncludes();
+			int[] targets = new int[includes.size()];
+			int count = 0;
+			for (String s : includes)
+			{
+				Integer target = indices.get(s);
+				if (target != null)
+				{
+					targets[count++] = target;
+				}
+			}
+			edges[i] = (count == targets.length) ? targets : Arrays.copyOf(
+					targets, count);
+		}
+
+		findComponents();
+	}
+
+	/**
+	 * Retrieves the #define set of a file
+	 * 
+	 * @param filename
+	 *            Absolute path of the file
+	 * @return The #defines visible in the file by name, empty if the file is
+	 *         not in the graph
+	 */
+	public PersistentMap<String, CppDefine> getDefines(String filename)
+	{
+		Integer index = indices.get(filename);
+		if (index == null)
+		{
+			return PersistentMap.empty();
+		}
+		return defineSets.get(components[index]);
+	}
+
+	/**
+	 * Retrieves the number of strongly connected components
+	 * 
+	 * @return Number of components
+	 */
+	public int getComponentCount()
+	{
+		return defineSets.size();
+	}
+
+	/**
+	 * Combines a digest of each file with the digests of all the files it
+	 * includes, directly or indirectly. The components are completed after
+	 * the components they include, so the digest of a component is built on
+	 * the combined digests of its includes, and a change in any included
+	 * file changes the combined digest.
+	 * 
+	 * @param digests
+	 *            Digest of the contents of each file by filename
+	 * @return The combined digest of each file by filename
+	 */
+	public HashMap<String, String> getClosureDigests(
+			HashMap<String, String> digests)
+	{
+		ArrayList<ArrayList<Integer>> members = new ArrayList<ArrayList<Integer>>();
+		for (int c = 0; c < defineSets.size(); ++c)
+		{
+			members.add(new ArrayList<Integer>());
+		}
+		for (int i = 0; i < files.size(); ++i)
+		{
+			members.get(components[i]).add(i);
+		}
+
+		MessageDigest md;
+		try
+		{
+			md = MessageDigest.getInstance("SHA-1");
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		Charset utf8 = Charset.forName("UTF-8");
+
+		String[] combined = new String[members.size()];
+		for (int c = 0; c < members.size(); ++c)
+		{
+			TreeSet<Integer> included = new TreeSet<Integer>();
+			for (int member : members.get(c))
+			{
+				String digest = digests.get(files.get(member).getFilename());
+				md.update(String.valueOf(digest).getBytes(utf8));
+				for (int target : edges[member])
+				{
+					if (components[target] != c)
+					{
+						included.add(components[target]);
+					}
+				}
+			}
+			for (int target : included)
+			{
+				md.update(combined[target].getBytes(utf8));
+			}
+			combined[c] = StringTools.toHex(md.digest());
+		}
+
+		HashMap<String, String> result = new HashMap<String, String>();
+		for (int i = 0; i < files.size(); ++i)
+		{
+			result.put(files.get(i).getFilename(), combined[components[i]]);
+		}
+		return result;
+	}
+
+	/**
+	 * Finds the strongly connected components with an iterative version of
+	 * Tarjan's algorithm, so that long #include chains do not overflow the
+	 * stack
+	 */
+	private void findComponents()
+	{
+		int n = files.size();
+		int[] order = new int[n];
+		int[] lowLink = new int[n];
+		boolean[] onStack = new boolean[n];
+		int[] stack = new int[n];
+		int stackSize = 0;
+		int[] callStack = new int[n];
+		int[] nextEdge = new int[n];
+		int counter = 0;
+
+		components = new int[n];
+		Arrays.fill(order, -1);
+
+		for (int root = 0; root < n; ++root)
+		{
+			if (order[root] >= 0)
+			{
+				continue;
+			}
+
+			int depth = 0;
+			callStack[0] = root;
+			order[root] = lowLink[root] = counter++;
+			stack[stackSize++] = root;
+			onStack[root] = true;
+
+			while (depth >= 0)
+			{
+				int v = callStack[depth];
+
+				if (nextEdge[v] < edges[v].length)
+				{
+					int w = edges[v][nextEdge[v]++];
+					if (order[w] < 0)
+					{
+						order[w] = lowLink[w] = counter++;
+						stack[stackSize++] = w;
+						onStack[w] = true;
+						callStack[++depth] = w;
+					}
+					else if (onStack[w])
+					{
+						lowLink[v] = Math.min(lowLink[v], order[w]);
+					}
+					continue;
+				}
+
+				// All the includes of v are done
+				if (lowLink[v] == order[v])
+				{
+					ArrayList<Integer> members = new ArrayList<Integer>();
+					int w;
+					do
+					{
+						w = stack[--stackSize];
+						onStack[w] = false;
+						components[w] = defineSets.size();
+						members.add(w);
+					}
+					while (w != v);
+
+					Collections.sort(members);
+					defineSets.add(buildDefineSet(members));
+				}
+
+				depth--;
+				if (depth >= 0)
+				{
+					int parent = callStack[depth];
+					lowLink[parent] = Math.min(lowLink[parent], lowLink[v]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Builds the #define set of a component whose includes are done
+	 * 
+	 * @param members
+	 *            The files of the component in the order they were found
+	 * @return The #define set of the component
+	 */
+	private PersistentMap<String, CppDefine> buildDefineSet(
+			ArrayList<Integer> members)
+	{
+		int component = components[members.get(0)];
+		PersistentMap<String, CppDefine> defines = null;
+
+		// The first included set is shared as is, the rest are added on it
+		for (int member : members)
+		{
+			for (int target : edges[member])
+			{
+				if (components[target] != component)
+				{
+					PersistentMap<String, CppDefine> included = defineSets
+							.get(components[target]);
+					defines = (defines == null) ? included : defines
+							.plusAll(included);
+				}
+			}
+		}
+		if (defines == null)
+		{
+			defines = PersistentMap.empty();
+		}
+
+		for (int member : members)
+		{
+			for (CppDefine cd : files.get(member).getDefines())
+			{
+				defines = defines.plus(cd.getName(), cd);
+			}
+		}
+		return defines;
+	}
+}
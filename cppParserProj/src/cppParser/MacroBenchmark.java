@@ -0,0 +1,178 @@
+package cppParser;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Locale;
+
+import cppParser.utils.Log;
+import cppParser.utils.MacroExpander;
+import cppStructures.CppFile;
+
+/**
+ * Measures the macro expansion of the main pass on a scaled-up source file.
+ * The #defines of the file are read by the pre-pass analyzer, and the rest of
+ * the lines are repeated 'scale' times and expanded as the main pass expands
+ * them. Each iteration expands all the lines, the result of an iteration is
+ * the mean time of expanding the file once.
+ * 
+ * <pre>
+ * usage: MacroBenchmark [-scale n] [-wi n] [-i n] [file]
+ * </pre>
+ * 
+ * The default file is TestTargets/macrotest.cpp.
+ */
+public class MacroBenchmark
+{
+
+	public static void main(String[] args) throws IOException
+	{
+		String file = "TestTargets/macrotest.cpp";
+		int scale = 1000;
+		int warmupIterations = 5;
+		int iterations = 10;
+
+		for (int i = 0; i < args.length; ++i)
+		{
+			switch (args[i])
+			{
+			case "-scale":
+				scale = Integer.parseInt(args[++i]);
+				break;
+			case "-wi":
+				warmupIterations = Integer.parseInt(args[++i]);
+				break;
+			case "-i":
+				iterations = Math.max(1, Integer.parseInt(args[++i]));
+				break;
+			default:
+				file = args[i];
+			}
+		}
+
+		Log.isSilent = true;
+		Log.dumpToFile = false;
+
+		ArrayList<String> lines = readFile(file);
+		ArrayList<String> statements = new ArrayList<String>();
+		for (int k = 0; k < scale; ++k)
+		{
+			statements.addAll(lines);
+		}
+
+		double[] times = new double[iterations];
+		for (int i = -warmupIterations; i < iterations; ++i)
+		{
+			long start = System.nanoTime();
+			int length = 0;
+			for (String s : statements)
+			{
+				length += MacroExpander.expandRaw(s).length();
+			}
+			if (i >= 0)
+			{
+				times[i] = (System.nanoTime() - start) / 1e6;
+			}
+			if (length == 0)
+			{
+				System.out.println("Nothing was expanded.");
+			}
+		}
+
+		double mean = 0;
+		for (double t : times)
+		{
+			mean += t;
+		}
+		mean /= times.length;
+
+		double deviation = 0;
+		for (double t : times)
+		{
+			deviation += (t - mean) * (t - mean);
+		}
+		deviation = (times.length > 1) ? Math.sqrt(deviation
+				/ (times.length - 1)) : 0;
+
+		System.out.println(String.format(Locale.US,
+				"%s x %d: %d lines, %.3f ms/op +- %.3f (%d iterations)", file,
+				scale, statements.size(), mean, deviation, iterations));
+	}
+
+	/**
+	 * Reads the #defines of a file as the pre-pass does and sets them as the
+	 * #defines of the expansion
+	 * 
+	 * @param file
+	 *            File to read
+	 * @return The lines of the file other than comments and preprocessor
+	 *         directives, each ending with a space as in the main pass
+	 * @throws IOException
+	 *             Thrown if the file cannot be read
+	 */
+	private static ArrayList<String> readFile(String file) throws IOException
+	{
+		CppFile cf = new CppFile(file);
+		ParsedObjectManager.getInstance().addFile(cf);
+		ParsedObjectManager.getInstance().setCurrentFile(cf);
+
+		PreprocessorPass prepass = new PreprocessorPass();
+		ArrayList<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try
+		{
+			String line;
+			String directive = null;
+			boolean comment = false;
+			while ((line = reader.readLine()) != null)
+			{
+				line = line.trim();
+
+				// Join the continued lines of a directive
+				if (directive != null)
+				{
+					directive += " " + line;
+				}
+				else if (line.startsWith("#"))
+				{
+					directive = line;
+				}
+				if (directive != null)
+				{
+					if (directive.endsWith("\\"))
+					{
+						directive = directive.substring(0,
+								directive.length() - 1).trim();
+					}
+					else
+					{
+						prepass.process(directive);
+						directive = null;
+					}
+					continue;
+				}
+
+				if (comment || line.startsWith("/*"))
+				{
+					comment = !line.endsWith("*/");
+					continue;
+				}
+				if ((line.length() > 0) && !line.startsWith("//"))
+				{
+					lines.add(line + " ");
+				}
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+
+		IncludeGraph includeGraph = new IncludeGraph(ParsedObjectManager
+				.getInstance().getFiles());
+		ParsedObjectManager.getInstance().setIncludeGraph(includeGraph);
+		MacroExpander.setCurrentDefines(cf.getDefinesRecursively());
+		return lines;
+	}
+}
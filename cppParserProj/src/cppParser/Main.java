@@ -1,7 +1,5 @@
 package cppParser;
 
-import java.io.IOException;
-
 import cppParser.utils.Log;
 
 public class Main
@@ -40,18 +38,8 @@ public class Main
 			}
 		}
 
-		if (Log.writer != null)
-		{
-			try
-			{
-				Log.writer.close();
-			}
-			catch (IOException e1)
-			{
-				// TODO Auto-generated catch block
-				e1.printStackTrace();
-			}
-		}
+		// Write out the rest of the log
+		Log.close();
 	}
 
 	private static void printInstructions()
@@ -62,7 +50,13 @@ public class Main
 						+ "-parse <input directory/file> -out <output directory>\n"
 						+ "alternatively you can just give input folder as a parameter and \n"
 						+ "results are put into same folder where the parser is\n"
-						+ "-excludeStructs parameter can be used to exclude structs in the ClassMetrics.csv \n");
+						+ "-excludeStructs parameter can be used to exclude structs in the ClassMetrics.csv \n"
+						+ "-threads <count> analyzes the files with the given number of threads \n"
+						+ "-log <debug|info|error|off> sets the level of the log messages, default info \n"
+						+ "-dump writes the debug dumps of the functions, namespaces and includes \n"
+						+ "-cache reuses the results of the files that did not change since the last run \n"
+						+ "-variants <count> analyzes files with #else branches once per branch, at most count times \n"
+						+ "-variantMerge <max|union|first> sets how the branch analyses of a function are merged \n");
 	}
 
 }
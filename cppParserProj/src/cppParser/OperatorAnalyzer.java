@@ -41,6 +41,29 @@ public class OperatorAnalyzer extends Analyzer
 		this.functionAnalyzer = fa;
 	}
 
+	/**
+	 * Checks whether a string literal was left open by the sentences analyzed
+	 * so far
+	 * 
+	 * @return True if a string literal is open
+	 */
+	boolean isStringOpen()
+	{
+		return openString;
+	}
+
+	/**
+	 * Sets whether a string literal is open, as left by the sentences of the
+	 * previous files
+	 * 
+	 * @param openString
+	 *            True if a string literal is open
+	 */
+	void setStringOpen(boolean openString)
+	{
+		this.openString = openString;
+	}
+
 	private void storeOperand(String operand)
 	{
 		if (!handledIndices.contains(new Integer(i)))
@@ -1,6 +1,12 @@
 package cppParser;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Stack;
 
 import cppParser.utils.LOCMetrics;
@@ -11,11 +17,24 @@ import cppStructures.CppFunc;
 import cppStructures.CppNamespace;
 import cppStructures.CppScope;
 import cppStructures.CppType;
+import cppStructures.MemberVariable;
 
 /**
  * A singleton object manager for keeping record of the CPP structures created
  * in the parsing process.
  * 
+ * In a parallel main pass each file is analyzed in a context of its own, which
+ * is returned by getInstance() to the thread that analyzes the file. A context
+ * holds the current function, scope and namespace and the scopes found from
+ * the file. Scopes already known by the singleton are not modified by a
+ * context, they are shadowed by scopes of the context instead. The contexts
+ * are merged into the singleton when their files are done.
+ * 
+ * A context records the names of the scopes its file looked up and the state
+ * of the sentence analyzer before and after the file, so that a context
+ * whose file would have been analyzed differently after the files merged
+ * before it can be told apart.
+ * 
  * @author Harri Pellikka
  */
 public class ParsedObjectManager
@@ -23,6 +42,24 @@ public class ParsedObjectManager
 
 	private static ParsedObjectManager instance = new ParsedObjectManager();
 
+	// Context of the file analyzed by the current thread, if any
+	private static ThreadLocal<ParsedObjectManager> context = new ThreadLocal<ParsedObjectManager>();
+
+	// The singleton, if this is a context
+	private ParsedObjectManager parent = null;
+
+	// Scopes of the parent shadowed by the scopes of this context
+	private IdentityHashMap<CppScope, CppScope> shadows = new IdentityHashMap<CppScope, CppScope>();
+
+	// Names of the scopes looked up by the analysis of the file, if this is
+	// a context
+	private HashSet<String> lookups = new HashSet<String>();
+
+	// State of the sentence analyzer before and after the file, if this is a
+	// context
+	private SentenceAnalyzer.State startState = SentenceAnalyzer.State.INITIAL;
+	private SentenceAnalyzer.State endState = SentenceAnalyzer.State.INITIAL;
+
 	// Reference to the function currently under processing
 	public CppFunc currentFunc = null;
 
@@ -37,8 +74,19 @@ public class ParsedObjectManager
 	// List of files found in the target folder
 	private ArrayList<CppFile> files = new ArrayList<CppFile>();
 
+	// Files by their filenames, and by the names after their last path
+	// separator for resolving #includes
+	private HashMap<String, CppFile> filesByFilename = new HashMap<String, CppFile>();
+	private HashMap<String, ArrayList<CppFile>> filesByLastName = new HashMap<String, ArrayList<CppFile>>();
+
+	// The #includes between the files, built after the pre-pass
+	private IncludeGraph includeGraph = null;
+
 	// List of scopes found
 	private ArrayList<CppScope> scopes = new ArrayList<CppScope>();
+
+	// Scopes by their names, in the order they were found
+	private HashMap<String, ArrayList<CppScope>> scopesByName = new HashMap<String, ArrayList<CppScope>>();
 	private Stack<CppScope> cppScopeStack = new Stack<CppScope>();
 
 	private CppScope defaultScope = new CppScope("DEFAULT");
@@ -53,13 +101,15 @@ public class ParsedObjectManager
 	ArrayList<LOCMetrics> locMetrics = new ArrayList<>();
 
 	/**
-	 * Retrieves the singleton instance
+	 * Retrieves the singleton instance, or the context of the calling thread
+	 * in a parallel main pass
 	 * 
-	 * @return The singleton instance
+	 * @return The singleton instance or the context of the thread
 	 */
 	public static ParsedObjectManager getInstance()
 	{
-		return instance;
+		ParsedObjectManager manager = context.get();
+		return manager != null ? manager : instance;
 	}
 
 	/**
@@ -70,6 +120,194 @@ public class ParsedObjectManager
 
 	}
 
+	/**
+	 * Constructs a context of the given object manager. The context shares
+	 * the files of the manager.
+	 * 
+	 * @param parent
+	 *            The singleton instance
+	 */
+	private ParsedObjectManager(ParsedObjectManager parent)
+	{
+		this.parent = parent;
+		this.files = parent.files;
+		this.filesByFilename = parent.filesByFilename;
+		this.filesByLastName = parent.filesByLastName;
+		this.includeGraph = parent.includeGraph;
+	}
+
+	/**
+	 * Opens a new context for the calling thread
+	 * 
+	 * @return The new context
+	 */
+	static ParsedObjectManager openContext()
+	{
+		ParsedObjectManager manager = new ParsedObjectManager(instance);
+		context.set(manager);
+		return manager;
+	}
+
+	/**
+	 * Rebuilds the context of a file from its stored parts
+	 * 
+	 * @param scopes
+	 *            Scopes of the context
+	 * @param shadows
+	 *            Scopes of the singleton shadowed by the scopes
+	 * @param knownTypes
+	 *            Types found from the file
+	 * @param locMetrics
+	 *            LOC metrics of the file
+	 * @param lookups
+	 *            Names of the scopes looked up by the analysis of the file
+	 * @param startState
+	 *            State of the sentence analyzer before the file
+	 * @param endState
+	 *            State of the sentence analyzer after the file
+	 * @return The context
+	 */
+	static ParsedObjectManager restoreContext(ArrayList<CppScope> scopes,
+			IdentityHashMap<CppScope, CppScope> shadows,
+			ArrayList<CppType> knownTypes, ArrayList<LOCMetrics> locMetrics,
+			HashSet<String> lookups, SentenceAnalyzer.State startState,
+			SentenceAnalyzer.State endState)
+	{
+		ParsedObjectManager manager = new ParsedObjectManager(instance);
+		for (CppScope cs : scopes)
+		{
+			manager.addScope(cs);
+		}
+		manager.shadows = shadows;
+		manager.knownTypes = knownTypes;
+		manager.locMetrics = locMetrics;
+		manager.lookups = lookups;
+		manager.startState = startState;
+		manager.endState = endState;
+
+		for (LOCMetrics loc : locMetrics)
+		{
+			CppFile cf = manager.getFileByFilename(loc.file);
+			if (cf != null)
+			{
+				cf.setLocMetrics(loc);
+			}
+		}
+		return manager;
+	}
+
+	/**
+	 * Closes the context of the calling thread
+	 */
+	static void closeContext()
+	{
+		context.remove();
+	}
+
+	/**
+	 * Records the state of the sentence analyzer before and after the file of
+	 * this context
+	 * 
+	 * @param startState
+	 *            State before the file
+	 * @param endState
+	 *            State after the file
+	 */
+	void setStates(SentenceAnalyzer.State startState,
+			SentenceAnalyzer.State endState)
+	{
+		this.startState = startState;
+		this.endState = endState;
+	}
+
+	/**
+	 * Retrieves the state of the sentence analyzer before the file of this
+	 * context
+	 * 
+	 * @return The state
+	 */
+	SentenceAnalyzer.State getStartState()
+	{
+		return startState;
+	}
+
+	/**
+	 * Retrieves the state of the sentence analyzer after the file of this
+	 * context
+	 * 
+	 * @return The state
+	 */
+	SentenceAnalyzer.State getEndState()
+	{
+		return endState;
+	}
+
+	/**
+	 * Retrieves the names of the scopes looked up by the analysis of the file
+	 * of this context
+	 * 
+	 * @return The names
+	 */
+	HashSet<String> getLookups()
+	{
+		return lookups;
+	}
+
+	/**
+	 * Checks whether the analysis of the file of this context could have
+	 * found other scopes after scopes of the given names were added to the
+	 * singleton or changed. A plain scope, such as the scope of the free
+	 * functions, looks the same to the analysis whether it was found or
+	 * created by it, so the names whose scopes are all plain do not matter.
+	 * 
+	 * @param changed
+	 *            Names of the scopes added or changed since the context was
+	 *            opened
+	 * @return True if the file has to be analyzed again
+	 */
+	boolean dependsOn(Collection<String> changed)
+	{
+		if (Collections.disjoint(lookups, changed))
+		{
+			return false;
+		}
+		for (String name : lookups)
+		{
+			if (changed.contains(name)
+					&& !(isPlain(parent.scopesByName.get(name)) && isPlain(scopesByName
+							.get(name))))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether scopes are plain scopes: not classes, namespaces or
+	 * unions, outside of any namespace and never opened by a brace
+	 * 
+	 * @param scopes
+	 *            The scopes, or null
+	 * @return True if all the scopes are plain
+	 */
+	private static boolean isPlain(ArrayList<CppScope> scopes)
+	{
+		if (scopes != null)
+		{
+			for (CppScope cs : scopes)
+			{
+				if ((cs.getClass() != CppScope.class)
+						|| (cs.type != CppScope.NAMESPACE)
+						|| (cs.braceCount != 0) || (cs.namespace != null))
+				{
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Adds a new LOC Metrics object
 	 * 
@@ -143,6 +381,94 @@ public class ParsedObjectManager
 		return scopes;
 	}
 
+	/**
+	 * Stores a new scope
+	 * 
+	 * @param scope
+	 *            Scope to store
+	 */
+	public void addScope(CppScope scope)
+	{
+		scopes.add(scope);
+
+		ArrayList<CppScope> named = scopesByName.get(scope.getName());
+		if (named == null)
+		{
+			named = new ArrayList<CppScope>(1);
+			scopesByName.put(scope.getName(), named);
+		}
+		named.add(scope);
+	}
+
+	/**
+	 * Retrieves the first scope found with the given name
+	 * 
+	 * @param name
+	 *            Name of the scope
+	 * @return The scope, or null if not found
+	 */
+	public CppScope getScope(String name)
+	{
+		if (parent != null)
+		{
+			lookups.add(name);
+		}
+		ArrayList<CppScope> named = scopesByName.get(name);
+		return named != null ? named.get(0) : null;
+	}
+
+	/**
+	 * Retrieves the first scope with the given name, kind and type
+	 * 
+	 * @param name
+	 *            Name of the scope
+	 * @param kind
+	 *            Name of the class of the scope
+	 * @param type
+	 *            Type of the scope
+	 * @return The scope, or null if not found
+	 */
+	CppScope findScope(String name, String kind, int type)
+	{
+		for (CppScope cs : getScopesByName(name))
+		{
+			if (cs.getClass().getName().equals(kind) && (cs.type == type))
+			{
+				return cs;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Retrieves the scopes of the singleton shadowed by the scopes of this
+	 * context
+	 * 
+	 * @return The shadowed scopes by the shadowing scopes
+	 */
+	IdentityHashMap<CppScope, CppScope> getShadows()
+	{
+		return shadows;
+	}
+
+	/**
+	 * Retrieves the scopes with the given name
+	 * 
+	 * @param name
+	 *            Name of the scopes
+	 * @return The scopes in the order they were found, an empty list if there
+	 *         are none
+	 */
+	private ArrayList<CppScope> getScopesByName(String name)
+	{
+		if (parent != null)
+		{
+			lookups.add(name);
+		}
+		ArrayList<CppScope> named = scopesByName.get(name);
+		return named != null ? named : new ArrayList<CppScope>(0);
+	}
+
 	/**
 	 * Adds a new file
 	 * 
@@ -152,6 +478,20 @@ public class ParsedObjectManager
 	public void addFile(CppFile file)
 	{
 		this.files.add(file);
+
+		if (!filesByFilename.containsKey(file.getFilename()))
+		{
+			filesByFilename.put(file.getFilename(), file);
+		}
+
+		String lastName = getLastName(file.getFilename());
+		ArrayList<CppFile> named = filesByLastName.get(lastName);
+		if (named == null)
+		{
+			named = new ArrayList<CppFile>(1);
+			filesByLastName.put(lastName, named);
+		}
+		named.add(file);
 	}
 
 	/**
@@ -173,16 +513,67 @@ public class ParsedObjectManager
 	 */
 	public CppFile getFileByFilename(String filename)
 	{
-		for (CppFile cf : files)
+		return filesByFilename.get(filename);
+	}
+
+	/**
+	 * Stores the include graph of the files
+	 * 
+	 * @param includeGraph
+	 *            Include graph built from the expanded #includes
+	 */
+	public void setIncludeGraph(IncludeGraph includeGraph)
+	{
+		this.includeGraph = includeGraph;
+	}
+
+	/**
+	 * Retrieves the include graph of the files
+	 * 
+	 * @return The include graph, or null before the pre-pass is done
+	 */
+	public IncludeGraph getIncludeGraph()
+	{
+		return includeGraph;
+	}
+
+	/**
+	 * Retrieves the file an #include refers to
+	 * 
+	 * @param include
+	 *            The included path
+	 * @return The first file whose path ends with the included path, or null
+	 *         if not found
+	 */
+	public CppFile getFileByInclude(String include)
+	{
+		ArrayList<CppFile> named = filesByLastName.get(getLastName(include));
+		if (named != null)
 		{
-			if (cf.getFilename().equals(filename))
+			for (CppFile cf : named)
 			{
-				return cf;
+				if (cf.getFilename().endsWith(include))
+				{
+					return cf;
+				}
 			}
 		}
 		return null;
 	}
 
+	/**
+	 * Retrieves the part of a path after its last separator
+	 * 
+	 * @param path
+	 *            Path of a file
+	 * @return Name of the file
+	 */
+	private static String getLastName(String path)
+	{
+		int separator = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+		return path.substring(separator + 1);
+	}
+
 	/**
 	 * Sets the current file to 'cf'
 	 * 
@@ -203,17 +594,11 @@ public class ParsedObjectManager
 	 */
 	public void setCurrentFile(String name)
 	{
-		for (CppFile cf : files)
+		currentFile = filesByFilename.get(name);
+		if (currentFile != null)
 		{
-			if (cf.getFilename().equals(name))
-			{
-				Log.d("File changed to " + name);
-				currentFile = cf;
-				return;
-			}
+			Log.d("File changed to %s", name);
 		}
-
-		currentFile = null;
 	}
 
 	/**
@@ -241,27 +626,34 @@ public class ParsedObjectManager
 		CppClass newClass = null;
 
 		// Search for an existing class
-		for (CppScope cs : scopes)
+		for (CppScope cs : getScopesByName(name))
 		{
 			if (cs instanceof CppClass)
 			{
 				CppClass cClass = (CppClass) cs;
-				if (cClass.getName().equals(name))
+				if ((namespace != null) && (cClass.namespace != null))
 				{
-					if ((namespace != null) && (cClass.namespace != null))
-					{
-						if (namespace.equals(cClass.namespace))
-						{
-							newClass = cClass;
-							break;
-						}
-					}
-					else
+					if (namespace.equals(cClass.namespace))
 					{
 						newClass = cClass;
 						break;
 					}
 				}
+				else
+				{
+					newClass = cClass;
+					break;
+				}
+			}
+		}
+
+		// Search the classes of the singleton if this is a context
+		if ((newClass == null) && (parent != null))
+		{
+			CppClass parentClass = parent.searchForClassOrStruct(name, namespace);
+			if (parentClass != null)
+			{
+				newClass = (CppClass) shadow(parentClass);
 			}
 		}
 		return newClass;
@@ -287,7 +679,7 @@ public class ParsedObjectManager
 		{
 			newClass = new CppClass(name);
 			newClass.namespace = namespace;
-			scopes.add(newClass);
+			addScope(newClass);
 			addKnownType(new CppType(name, CppType.CLASS));
 		}
 
@@ -310,7 +702,7 @@ public class ParsedObjectManager
 		{
 			newStruct = new CppClass(name);
 			newStruct.type = CppScope.STRUCT;
-			scopes.add(newStruct);
+			addScope(newStruct);
 			addKnownType(new CppType(name, CppType.STRUCT));
 		}
 
@@ -329,13 +721,23 @@ public class ParsedObjectManager
 		CppScope newUnion = null;
 
 		// Search for an existing union
-		for (CppScope cs : scopes)
+		for (CppScope cs : getScopesByName(name))
 		{
 			if (cs.type == CppScope.UNION)
 			{
-				if (cs.getName().equals(name))
+				newUnion = cs;
+				break;
+			}
+		}
+
+		// Search the unions of the singleton if this is a context
+		if ((newUnion == null) && (parent != null))
+		{
+			for (CppScope cs : parent.getScopesByName(name))
+			{
+				if ((cs.type == CppScope.UNION) && cs.getName().equals(name))
 				{
-					newUnion = cs;
+					newUnion = shadow(cs);
 					break;
 				}
 			}
@@ -346,7 +748,7 @@ public class ParsedObjectManager
 		{
 			newUnion = new CppScope(name);
 			newUnion.type = CppScope.UNION;
-			scopes.add(newUnion);
+			addScope(newUnion);
 			addKnownType(new CppType(name, CppType.UNION));
 		}
 
@@ -380,17 +782,12 @@ public class ParsedObjectManager
 					"Tried to add namespace which name is null.");
 		}
 
-		// Check that no namespace with the same name exists
-		boolean canAdd = true;
-		for (CppScope cs : scopes)
+		// Check that no namespace with the same name exists. The namespace
+		// opened is the new one either way, so the check is not a lookup.
+		boolean canAdd = !hasNamespace(ns.getName());
+		if ((parent != null) && parent.hasNamespace(ns.getName()))
 		{
-			if (cs instanceof CppNamespace)
-			{
-				if (cs.getName().equals(ns.getName()))
-				{
-					canAdd = false;
-				}
-			}
+			canAdd = false;
 		}
 
 		// Set the parent namespace, if there is one
@@ -402,7 +799,7 @@ public class ParsedObjectManager
 		// Store the namespace, if it's not yet stored
 		if (canAdd)
 		{
-			scopes.add(ns);
+			addScope(ns);
 		}
 
 		// Add to stack, if needed
@@ -443,6 +840,30 @@ public class ParsedObjectManager
 		return this.cppScopeStack;
 	}
 
+	/**
+	 * Checks whether a namespace of the given name is stored here, without
+	 * recording the name as looked up
+	 * 
+	 * @param name
+	 *            Name of the namespace
+	 * @return True if the namespace is stored
+	 */
+	private boolean hasNamespace(String name)
+	{
+		ArrayList<CppScope> named = scopesByName.get(name);
+		if (named != null)
+		{
+			for (CppScope scope : named)
+			{
+				if (scope instanceof CppNamespace)
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Retrieves a namespace called 'ns'
 	 * 
@@ -452,16 +873,442 @@ public class ParsedObjectManager
 	 */
 	public CppNamespace getNamespace(String ns)
 	{
-		for (CppScope scope : scopes)
+		for (CppScope scope : getScopesByName(ns))
 		{
 			if (scope instanceof CppNamespace)
 			{
-				if (scope.getName().equals(ns))
+				return (CppNamespace) scope;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Retrieves a scope called 'name' from the singleton if this is a context.
+	 * The scope is shadowed by a new scope of this context.
+	 * 
+	 * @param name
+	 *            Name of the scope
+	 * @return The shadowing scope, or null if this is not a context or the
+	 *         scope was not found
+	 */
+	public CppScope getParentScope(String name)
+	{
+		if (parent != null)
+		{
+			CppScope cs = parent.getScope(name);
+			if (cs != null)
+			{
+				return shadow(cs);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Creates a scope of this context that stands for a scope of the
+	 * singleton. The analysis of the file modifies the shadowing scope, which
+	 * is merged into the shadowed scope by merge().
+	 * 
+	 * @param scope
+	 *            Scope of the singleton
+	 * @return The shadowing scope
+	 */
+	private CppScope shadow(CppScope scope)
+	{
+		CppScope shadow;
+		if (scope instanceof CppClass)
+		{
+			shadow = new CppClass(scope.getName());
+		}
+		else if (scope instanceof CppNamespace)
+		{
+			shadow = new CppNamespace(scope.getName());
+		}
+		else
+		{
+			shadow = new CppScope(scope.getName());
+		}
+		shadow.type = scope.type;
+		shadow.braceCount = scope.braceCount;
+		shadow.nameOfFile = scope.nameOfFile;
+		shadow.namespace = scope.namespace;
+
+		addScope(shadow);
+		shadows.put(shadow, scope);
+		return shadow;
+	}
+
+	/**
+	 * Merges a context into this object manager. The scopes of the context
+	 * are merged into the scopes they shadow or into the known scopes they
+	 * would have been found as by a serial analysis, the rest are added.
+	 * Functions, members, parents, children and LOC metrics are merged, as are
+	 * the known types and the LOC metrics of the file.
+	 * 
+	 * @param context
+	 *            The context of an analyzed file
+	 * @return The names of the scopes that were added or whose kind, brace
+	 *         count or namespace changed, which the analysis of a later file
+	 *         may see
+	 */
+	HashSet<String> merge(ParsedObjectManager context)
+	{
+		HashSet<String> changed = new HashSet<String>();
+		IdentityHashMap<CppScope, CppScope> targets = new IdentityHashMap<CppScope, CppScope>();
+		ArrayList<CppScope> added = new ArrayList<CppScope>();
+		ArrayList<CppScope[]> relations = new ArrayList<CppScope[]>();
+
+		// Find the scopes the scopes of the context are merged into
+		for (CppScope cs : context.scopes)
+		{
+			for (CppScope child : cs.children)
+			{
+				relations.add(new CppScope[] { cs, child });
+			}
+			for (CppScope parentScope : cs.parents)
+			{
+				relations.add(new CppScope[] { parentScope, cs });
+			}
+
+			CppScope target = context.shadows.get(cs);
+			if (target == null)
+			{
+				target = findMergeTarget(cs, targets);
+			}
+
+			if (target != null)
+			{
+				targets.put(cs, target);
+			}
+			else
+			{
+				added.add(cs);
+			}
+		}
+
+		// The relations of the added scopes are restored below
+		for (CppScope cs : added)
+		{
+			cs.children.clear();
+			cs.parents.clear();
+			if (cs.namespace != null)
+			{
+				cs.namespace = resolveNamespace(cs.namespace, targets);
+			}
+			addScope(cs);
+			changed.add(cs.getName());
+		}
+
+		for (CppScope[] relation : relations)
+		{
+			resolve(relation[0], targets).addChild(
+					resolve(relation[1], targets));
+		}
+
+		for (CppScope cs : context.scopes)
+		{
+			CppScope target = targets.get(cs);
+			if ((target != null) && mergeScope(cs, target, targets))
+			{
+				changed.add(target.getName());
+			}
+		}
+
+		for (CppType type : context.knownTypes)
+		{
+			addKnownType(type);
+		}
+		locMetrics.addAll(context.locMetrics);
+		return changed;
+	}
+
+	/**
+	 * Searches for the known scope a scope of a context is merged into
+	 * 
+	 * @param scope
+	 *            Scope of a context
+	 * @param targets
+	 *            Scopes of the context merged so far
+	 * @return The known scope, or null if the scope is new
+	 */
+	private CppScope findMergeTarget(CppScope scope,
+			IdentityHashMap<CppScope, CppScope> targets)
+	{
+		if (scope instanceof CppNamespace)
+		{
+			return getNamespace(scope.getName());
+		}
+
+		if (scope instanceof CppClass)
+		{
+			CppNamespace namespace = scope.namespace;
+			if (namespace != null)
+			{
+				namespace = resolveNamespace(namespace, targets);
+			}
+			return searchForClassOrStruct(scope.getName(), namespace);
+		}
+
+		for (CppScope cs : getScopesByName(scope.getName()))
+		{
+			if ((scope.type != CppScope.UNION)
+					|| (cs.type == CppScope.UNION))
+			{
+				return cs;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Merges a scope of a context into a known scope
+	 * 
+	 * @param scope
+	 *            Scope of a context
+	 * @param target
+	 *            The known scope
+	 * @param targets
+	 *            Scopes of the context merged into known scopes
+	 * @return True if the brace count or the namespace of the known scope
+	 *         changed
+	 */
+	private boolean mergeScope(CppScope scope, CppScope target,
+			IdentityHashMap<CppScope, CppScope> targets)
+	{
+		LOCMetrics from = scope.getLOCMetrics();
+		LOCMetrics to = target.getLOCMetrics();
+		to.codeOnlyLines += from.codeOnlyLines;
+		to.commentLines += from.commentLines;
+		to.commentedCodeLines += from.commentedCodeLines;
+		to.emptyLines += from.emptyLines;
+		to.logicalLOC += from.logicalLOC;
+
+		target.getMembers().addAll(scope.getMembers());
+
+		for (CppFunc func : scope.getFunctions())
+		{
+			CppFunc known = target.addFunc(func);
+			if (known != func)
+			{
+				known.merge(func);
+			}
+		}
+
+		// A class found again is updated by the class analyzer: the brace
+		// count if the class was defined again, the namespace if it was
+		// defined with parents
+		boolean changed = false;
+		if (scope instanceof CppClass)
+		{
+			target.nameOfFile = scope.nameOfFile;
+			if (scope.braceCount > 0)
+			{
+				changed = (target.braceCount != scope.braceCount);
+				target.braceCount = scope.braceCount;
+				if (!scope.parents.isEmpty())
 				{
-					return (CppNamespace) scope;
+					CppNamespace namespace = scope.namespace != null ? resolveNamespace(
+							scope.namespace, targets) : null;
+					changed |= (target.namespace != namespace);
+					target.namespace = namespace;
 				}
 			}
 		}
-		return null;
+		return changed;
+	}
+
+	/**
+	 * Combines the contexts of the other preprocessor branch variants of a
+	 * file into this context, the context of the first variant. A scope of a
+	 * variant is combined with the scope of this context that shadows the
+	 * same scope of the singleton, or with a scope of the same name and kind,
+	 * and the rest are added. Functions found in several variants are
+	 * combined by the given policy.
+	 * 
+	 * @param variants
+	 *            Contexts of the other variants, in the order of the variants
+	 * @param policy
+	 *            How the analyses of a function are combined
+	 */
+	void mergeVariants(ArrayList<ParsedObjectManager> variants,
+			CppFunc.VariantPolicy policy)
+	{
+		for (ParsedObjectManager variant : variants)
+		{
+			mergeVariant(variant, policy);
+			lookups.addAll(variant.lookups);
+		}
+
+		// Every variant set the LOC metrics of the file to its own
+		for (LOCMetrics loc : locMetrics)
+		{
+			CppFile cf = getFileByFilename(loc.file);
+			if (cf != null)
+			{
+				cf.setLocMetrics(loc);
+			}
+		}
+	}
+
+	/**
+	 * Combines the context of a variant into this context
+	 * 
+	 * @param variant
+	 *            Context of a variant
+	 * @param policy
+	 *            How the analyses of a function are combined
+	 */
+	private void mergeVariant(ParsedObjectManager variant,
+			CppFunc.VariantPolicy policy)
+	{
+		IdentityHashMap<CppScope, CppScope> shadowing = new IdentityHashMap<CppScope, CppScope>();
+		for (Map.Entry<CppScope, CppScope> entry : shadows.entrySet())
+		{
+			shadowing.put(entry.getValue(), entry.getKey());
+		}
+
+		IdentityHashMap<CppScope, CppScope> targets = new IdentityHashMap<CppScope, CppScope>();
+		ArrayList<CppScope> added = new ArrayList<CppScope>();
+		ArrayList<CppScope[]> relations = new ArrayList<CppScope[]>();
+
+		// Find the scopes of this context the scopes of the variant are
+		// combined with
+		for (CppScope cs : variant.scopes)
+		{
+			for (CppScope child : cs.children)
+			{
+				relations.add(new CppScope[] { cs, child });
+			}
+			for (CppScope parentScope : cs.parents)
+			{
+				relations.add(new CppScope[] { parentScope, cs });
+			}
+
+			CppScope target = null;
+			CppScope shadowed = variant.shadows.get(cs);
+			if (shadowed != null)
+			{
+				target = shadowing.get(shadowed);
+				if (target == null)
+				{
+					shadows.put(cs, shadowed);
+					shadowing.put(shadowed, cs);
+				}
+			}
+			else
+			{
+				for (CppScope own : getScopesByName(cs.getName()))
+				{
+					if ((own.getClass() == cs.getClass())
+							&& (own.type == cs.type))
+					{
+						target = own;
+						break;
+					}
+				}
+			}
+
+			if (target != null)
+			{
+				targets.put(cs, target);
+			}
+			else
+			{
+				added.add(cs);
+			}
+		}
+
+		for (CppScope cs : added)
+		{
+			cs.children.clear();
+			cs.parents.clear();
+			if (cs.namespace != null)
+			{
+				cs.namespace = resolveNamespace(cs.namespace, targets);
+			}
+			addScope(cs);
+		}
+
+		for (CppScope[] relation : relations)
+		{
+			resolve(relation[0], targets).addChild(
+					resolve(relation[1], targets));
+		}
+
+		for (CppScope cs : variant.scopes)
+		{
+			CppScope target = targets.get(cs);
+			if (target == null)
+			{
+				continue;
+			}
+
+			if (policy != CppFunc.VariantPolicy.FIRST)
+			{
+				maxLOC(target.getLOCMetrics(), cs.getLOCMetrics());
+			}
+
+			for (MemberVariable mv : cs.getMembers())
+			{
+				if (!target.hasMember(mv))
+				{
+					target.getMembers().add(mv);
+				}
+			}
+
+			for (CppFunc func : cs.getFunctions())
+			{
+				CppFunc known = target.addFunc(func);
+				if (known != func)
+				{
+					known.mergeVariant(func, policy);
+				}
+			}
+		}
+
+		for (CppType type : variant.knownTypes)
+		{
+			addKnownType(type);
+		}
+
+		// The physical lines are the same in every variant, the logical
+		// lines are not
+		if (policy != CppFunc.VariantPolicy.FIRST)
+		{
+			for (int i = 0; i < Math.min(locMetrics.size(),
+					variant.locMetrics.size()); ++i)
+			{
+				maxLOC(locMetrics.get(i), variant.locMetrics.get(i));
+			}
+		}
+	}
+
+	private static void maxLOC(LOCMetrics to, LOCMetrics from)
+	{
+		to.codeOnlyLines = Math.max(to.codeOnlyLines, from.codeOnlyLines);
+		to.commentLines = Math.max(to.commentLines, from.commentLines);
+		to.commentedCodeLines = Math.max(to.commentedCodeLines,
+				from.commentedCodeLines);
+		to.emptyLines = Math.max(to.emptyLines, from.emptyLines);
+		to.logicalLOC = Math.max(to.logicalLOC, from.logicalLOC);
+	}
+
+	private static CppScope resolve(CppScope scope,
+			IdentityHashMap<CppScope, CppScope> targets)
+	{
+		CppScope target = targets.get(scope);
+		return target != null ? target : scope;
+	}
+
+	private static CppNamespace resolveNamespace(CppNamespace namespace,
+			IdentityHashMap<CppScope, CppScope> targets)
+	{
+		CppScope target = targets.get(namespace);
+		if (target instanceof CppNamespace)
+		{
+			return (CppNamespace) target;
+		}
+		return namespace;
 	}
 }
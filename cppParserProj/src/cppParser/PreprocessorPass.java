@@ -3,9 +3,9 @@ package cppParser;
 import java.util.ArrayList;
 
 import cppParser.utils.Log;
-import cppParser.utils.MacroExpander;
 import cppParser.utils.StringTools;
 import cppStructures.CppDefine;
+import cppStructures.CppFile;
 
 /**
  * Pass for analyzing the preprocessor directives. This pass is done for all the
@@ -26,6 +26,9 @@ public class PreprocessorPass
 	// Current index of tokens
 	private int i = 0;
 
+	// Line under analysis
+	private String line = null;
+
 	// List of current tokens
 	private String[] tokens = null;
 
@@ -72,6 +75,7 @@ public class PreprocessorPass
 		if (line.startsWith("#def") || line.startsWith("#inc"))
 		{
 			functionLike = isFunctionLike(line);
+			this.line = line;
 
 			String[] tokens = StringTools.split(line, delims, true);
 			analyze(tokens);
@@ -93,7 +97,8 @@ public class PreprocessorPass
 			switch (tokens[i])
 			{
 			case "include":
-				// handleInclude();
+				handleInclude();
+				i = tokens.length;
 				break;
 			case "define":
 				handleDefine();
@@ -109,7 +114,68 @@ public class PreprocessorPass
 
 	private void handleIf()
 	{
-		Log.d("Found " + tokens[i]);
+		Log.d("Found %s", tokens[i]);
+	}
+
+	/**
+	 * Handles #include statements and stores the included path to the current
+	 * file. The path is expanded to an absolute path after the pre-pass.
+	 */
+	private void handleInclude()
+	{
+		String path = line.substring(line.indexOf("include") + 7).trim();
+		if (path.length() < 2)
+		{
+			return;
+		}
+
+		// Includes of a macro ("#include HEADER") are not followed
+		int end;
+		if (path.charAt(0) == '"')
+		{
+			end = path.indexOf('"', 1);
+		}
+		else if (path.charAt(0) == '<')
+		{
+			end = path.indexOf('>', 1);
+		}
+		else
+		{
+			return;
+		}
+		if (end < 0)
+		{
+			return;
+		}
+		path = path.substring(1, end).replace('\\', '/');
+
+		// Relative paths are matched by their ends against the found files
+		while (path.startsWith("./") || path.startsWith("../"))
+		{
+			path = path.substring(path.indexOf('/') + 1);
+		}
+
+		CppFile cf = ParsedObjectManager.getInstance().getCurrentFile();
+		if ((cf != null) && (path.length() > 0))
+		{
+			cf.addInclude(path);
+			Log.d("#include: %s", path);
+		}
+	}
+
+	/**
+	 * Stores a #define to the current file
+	 * 
+	 * @param cd
+	 *            The #define
+	 */
+	private void addDefine(CppDefine cd)
+	{
+		CppFile cf = ParsedObjectManager.getInstance().getCurrentFile();
+		if (cf != null)
+		{
+			cf.addDefine(cd);
+		}
 	}
 
 	/**
@@ -127,8 +193,8 @@ public class PreprocessorPass
 				def += (def.length() > 0 ? " " : "") + tokens[i];
 			}
 
-			MacroExpander.addDefine(tokens[2], new CppDefine(def));
-			Log.d("#define: " + tokens[2] + " " + def);
+			addDefine(new CppDefine(tokens[2], def));
+			Log.d("#define: %s %s", tokens[2], def);
 		}
 		else
 		{
@@ -164,8 +230,8 @@ public class PreprocessorPass
 
 			if (def.length() > 0)
 			{
-				MacroExpander.addDefine(tokens[2], new CppDefine(params, def));
-				Log.d("#define: " + tokens[2] + " " + params + " " + def);
+				addDefine(new CppDefine(tokens[2], params, def));
+				Log.d("#define: %s %s %s", tokens[2], params, def);
 			}
 			else
 			{
@@ -176,8 +242,8 @@ public class PreprocessorPass
 					par += (par.length() > 0 ? " " : "") + params.get(k);
 				}
 
-				MacroExpander.addDefine(tokens[2], new CppDefine(par));
-				Log.d("#define: " + tokens[2] + " " + par);
+				addDefine(new CppDefine(tokens[2], par));
+				Log.d("#define: %s %s", tokens[2], par);
 			}
 		}
 	}
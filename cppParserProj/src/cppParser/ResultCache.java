@@ -0,0 +1,496 @@
+package cppParser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+
+import cppParser.utils.LOCMetrics;
+import cppParser.utils.Log;
+import cppParser.utils.StringTools;
+import cppStructures.CppDefine;
+import cppStructures.CppFile;
+import cppStructures.CppScope;
+import cppStructures.CppType;
+
+/**
+ * A cache of the analysis results, kept in the output directory between
+ * runs. For each file the cache holds a digest of its contents, the #includes
+ * and #defines found from it in the pre-pass and the object manager context
+ * of its main pass analysis.
+ * 
+ * The pre-pass of a file is reused if the contents of the file did not
+ * change. The main pass of a file is reused if neither the file nor any file
+ * it includes, directly or indirectly, changed. The reused contexts are
+ * merged into the object manager like the contexts of the analyzed files, so
+ * the exported results combine both. A context is not kept if the analysis of
+ * its file depended on the scopes found from the other files of its group.
+ * 
+ * The cache is discarded if it was written with other settings.
+ */
+public class ResultCache
+{
+
+	private static final String FILENAME = "parser.cache";
+
+	// Version of the cache format, increased when the format or the
+	// analyzed structures change
+	private static final int VERSION = 2;
+
+	// The cache file
+	private File file;
+
+	// Settings that affect the results, the cache is only used with the
+	// same settings
+	private String settings;
+
+	// Entries read from the cache file by filename
+	private HashMap<String, Entry> cached = new HashMap<String, Entry>();
+
+	// Entries of this run by filename
+	private HashMap<String, Entry> current = new HashMap<String, Entry>();
+
+	// Digests of the files and the files they include, computed once the
+	// include graph is known
+	private HashMap<String, String> closureDigests = new HashMap<String, String>();
+
+	// Number of files whose pre-pass and main pass were reused
+	private int reusedPrePasses = 0;
+	private int reusedMainPasses = 0;
+
+	/**
+	 * Opens the cache of a directory. The cache is read if it exists and was
+	 * written with the same settings.
+	 * 
+	 * @param dir
+	 *            Directory of the cache file
+	 * @param settings
+	 *            Settings that affect the results
+	 */
+	public ResultCache(String dir, String settings)
+	{
+		this.file = new File(dir, FILENAME);
+		this.settings = settings;
+
+		if (file.exists())
+		{
+			try
+			{
+				load();
+			}
+			catch (Exception e)
+			{
+				Log.e("Could not read the cache " + file + ": " + e);
+				cached.clear();
+			}
+		}
+	}
+
+	/**
+	 * Reads the cache file
+	 */
+	@SuppressWarnings("unchecked")
+	private void load() throws IOException, ClassNotFoundException
+	{
+		ObjectInputStream in = new CacheInputStream(new BufferedInputStream(
+				new FileInputStream(file)));
+		try
+		{
+			if ((in.readInt() != VERSION) || !settings.equals(in.readUTF()))
+			{
+				Log.i("Cache was written by another version or with other settings.");
+				return;
+			}
+			cached = (HashMap<String, Entry>) in.readObject();
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes the entries of this run into the cache file
+	 */
+	public void save()
+	{
+		try
+		{
+			ObjectOutputStream out = new ObjectOutputStream(
+					new BufferedOutputStream(new FileOutputStream(file)));
+			try
+			{
+				out.writeInt(VERSION);
+				out.writeUTF(settings);
+				out.writeObject(current);
+			}
+			finally
+			{
+				out.close();
+			}
+		}
+		catch (IOException e)
+		{
+			Log.e("Could not write the cache " + file + ": " + e);
+		}
+
+		Log.i("Reused the pre-pass of " + reusedPrePasses
+				+ " files and the main pass of " + reusedMainPasses
+				+ " files.");
+	}
+
+	/**
+	 * Restores the pre-pass results of a file if its contents did not change
+	 * 
+	 * @param cf
+	 *            The file, without #includes or #defines
+	 * @return True if the #includes and #defines were restored, false if the
+	 *         pre-pass has to be run
+	 */
+	public boolean restorePrePass(CppFile cf)
+	{
+		Entry entry = new Entry();
+		entry.digest = digest(cf.getFilename());
+		current.put(cf.getFilename(), entry);
+
+		Entry old = cached.get(cf.getFilename());
+		if ((old == null) || (entry.digest == null)
+				|| !entry.digest.equals(old.digest))
+		{
+			return false;
+		}
+
+		entry.includes = old.includes;
+		entry.defines = old.defines;
+		entry.defineCount = old.defineCount;
+		entry.closureDigest = old.closureDigest;
+		entry.context = old.context;
+
+		for (String include : old.includes)
+		{
+			cf.addInclude(include);
+		}
+		for (CppDefine cd : old.defines)
+		{
+			cf.addDefine(cd);
+		}
+		PreprocessorPass.defineCount += old.defineCount;
+		reusedPrePasses++;
+		return true;
+	}
+
+	/**
+	 * Stores the pre-pass results of a file. Called before the #includes are
+	 * expanded.
+	 * 
+	 * @param cf
+	 *            The file
+	 * @param defineCount
+	 *            Number of #define directives in the file
+	 */
+	public void storePrePass(CppFile cf, int defineCount)
+	{
+		Entry entry = current.get(cf.getFilename());
+		entry.includes = new ArrayList<String>(cf.getIncludes());
+		entry.defines = new ArrayList<CppDefine>(cf.getDefines());
+		entry.defineCount = defineCount;
+	}
+
+	/**
+	 * Computes the digests of the files and the files they include
+	 * 
+	 * @param includeGraph
+	 *            The include graph of the files
+	 */
+	public void setIncludeGraph(IncludeGraph includeGraph)
+	{
+		HashMap<String, String> digests = new HashMap<String, String>();
+		for (String filename : current.keySet())
+		{
+			digests.put(filename, current.get(filename).digest);
+		}
+		closureDigests = includeGraph.getClosureDigests(digests);
+	}
+
+	/**
+	 * Restores the main pass context of a file if neither the file nor its
+	 * includes changed. Called when the contexts of the previous files are
+	 * merged, so that the scopes the context refers to can be found.
+	 * 
+	 * @param filename
+	 *            The file
+	 * @return The context, or null if the file has to be analyzed
+	 */
+	public ParsedObjectManager restoreContext(String filename)
+	{
+		Entry entry = current.get(filename);
+		if ((entry == null) || (entry.context == null)
+				|| (entry.digest == null)
+				|| !closureDigests.get(filename).equals(entry.closureDigest))
+		{
+			return null;
+		}
+
+		try
+		{
+			ContextInputStream in = new ContextInputStream(
+					new ByteArrayInputStream(entry.context));
+			try
+			{
+				ParsedObjectManager context = in.readContext();
+				reusedMainPasses++;
+				return context;
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+		catch (Exception e)
+		{
+			Log.d("Could not restore %s: %s", filename, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the main pass context of a file. Called before the context is
+	 * merged into the object manager.
+	 * 
+	 * @param filename
+	 *            The file
+	 * @param context
+	 *            The context of the analyzed file, or null if it cannot be
+	 *            reused
+	 */
+	public void storeContext(String filename, ParsedObjectManager context)
+	{
+		Entry entry = current.get(filename);
+		if (entry == null)
+		{
+			return;
+		}
+		if (context == null)
+		{
+			entry.context = null;
+			return;
+		}
+
+		try
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ContextOutputStream out = new ContextOutputStream(bytes, context);
+			out.writeContext(context);
+			out.close();
+			entry.context = bytes.toByteArray();
+			entry.closureDigest = closureDigests.get(filename);
+		}
+		catch (IOException e)
+		{
+			Log.e("Could not cache " + filename + ": " + e);
+			entry.context = null;
+		}
+	}
+
+	/**
+	 * Computes the digest of the contents of a file
+	 * 
+	 * @param filename
+	 *            The file
+	 * @return The digest, or null if the file cannot be read
+	 */
+	private static String digest(String filename)
+	{
+		try
+		{
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			return StringTools.toHex(md.digest(Files.readAllBytes(Paths
+					.get(filename))));
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * The cached results of a file
+	 */
+	private static class Entry implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		// Digest of the contents of the file
+		String digest = null;
+
+		// The #includes as written in the file, and the #defines of the file
+		ArrayList<String> includes = new ArrayList<String>();
+		ArrayList<CppDefine> defines = new ArrayList<CppDefine>();
+		int defineCount = 0;
+
+		// Digest of the file and its includes when the context was stored
+		String closureDigest = null;
+
+		// The serialized main pass context, null if the file was not analyzed
+		byte[] context = null;
+	}
+
+	/**
+	 * A scope of the object manager referred to by a stored context, written
+	 * as its name and kind
+	 */
+	private static class ScopeRef implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		String name;
+		String kind;
+		int type;
+
+		ScopeRef(CppScope scope)
+		{
+			name = scope.getName();
+			kind = scope.getClass().getName();
+			type = scope.type;
+		}
+	}
+
+	/**
+	 * Reads only the classes of the analysis results, so that a modified
+	 * cache file cannot instantiate arbitrary classes
+	 */
+	private static class CacheInputStream extends ObjectInputStream
+	{
+		CacheInputStream(InputStream in) throws IOException
+		{
+			super(in);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc)
+				throws IOException, ClassNotFoundException
+		{
+			String name = desc.getName();
+			if (!name.startsWith("java.lang.") && !name.startsWith("java.util.")
+					&& !name.startsWith("cppStructures.")
+					&& !name.startsWith("cppParser.") && !name.startsWith("[")
+					&& !name.equals("java.io.Serializable"))
+			{
+				throw new InvalidClassException(name, "Not a cached class");
+			}
+			return super.resolveClass(desc);
+		}
+	}
+
+	/**
+	 * Writes a context, replacing the scopes of the object manager it refers
+	 * to with references
+	 */
+	private static class ContextOutputStream extends ObjectOutputStream
+	{
+		// The scopes of the context
+		private IdentityHashMap<CppScope, Boolean> own = new IdentityHashMap<CppScope, Boolean>();
+
+		ContextOutputStream(OutputStream out, ParsedObjectManager context)
+				throws IOException
+		{
+			super(out);
+			for (CppScope cs : context.getScopes())
+			{
+				own.put(cs, Boolean.TRUE);
+			}
+			enableReplaceObject(true);
+		}
+
+		void writeContext(ParsedObjectManager context) throws IOException
+		{
+			writeObject(context.getScopes());
+			writeObject(context.getShadows());
+			writeObject(context.getKnownTypes());
+			writeObject(context.getLocMetrics());
+			writeObject(context.getLookups());
+			writeObject(context.getStartState());
+			writeObject(context.getEndState());
+		}
+
+		@Override
+		protected Object replaceObject(Object obj) throws IOException
+		{
+			if ((obj instanceof CppScope) && !own.containsKey(obj))
+			{
+				return new ScopeRef((CppScope) obj);
+			}
+			return obj;
+		}
+	}
+
+	/**
+	 * Reads a context, resolving the references to the scopes of the object
+	 * manager
+	 */
+	private static class ContextInputStream extends CacheInputStream
+	{
+		ContextInputStream(InputStream in) throws IOException
+		{
+			super(in);
+			enableResolveObject(true);
+		}
+
+		@SuppressWarnings("unchecked")
+		ParsedObjectManager readContext() throws IOException,
+				ClassNotFoundException
+		{
+			ArrayList<CppScope> scopes = (ArrayList<CppScope>) readObject();
+			IdentityHashMap<CppScope, CppScope> shadows = (IdentityHashMap<CppScope, CppScope>) readObject();
+			ArrayList<CppType> knownTypes = (ArrayList<CppType>) readObject();
+			ArrayList<LOCMetrics> locMetrics = (ArrayList<LOCMetrics>) readObject();
+			HashSet<String> lookups = (HashSet<String>) readObject();
+			SentenceAnalyzer.State startState = (SentenceAnalyzer.State) readObject();
+			SentenceAnalyzer.State endState = (SentenceAnalyzer.State) readObject();
+			return ParsedObjectManager.restoreContext(scopes, shadows,
+					knownTypes, locMetrics, lookups, startState, endState);
+		}
+
+		@Override
+		protected Object resolveObject(Object obj) throws IOException
+		{
+			if (obj instanceof ScopeRef)
+			{
+				ScopeRef ref = (ScopeRef) obj;
+				CppScope scope = ParsedObjectManager.getInstance().findScope(
+						ref.name, ref.kind, ref.type);
+				if (scope == null)
+				{
+					throw new InvalidObjectException("Unknown scope "
+							+ ref.name);
+				}
+				return scope;
+			}
+			return obj;
+		}
+	}
+}
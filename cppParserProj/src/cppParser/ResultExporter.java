@@ -4,6 +4,12 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -12,7 +18,6 @@ import cppParser.utils.Log;
 import cppStructures.CppClass;
 import cppStructures.CppFile;
 import cppStructures.CppFunc;
-import cppStructures.CppFuncParam;
 import cppStructures.CppNamespace;
 import cppStructures.CppScope;
 
@@ -21,13 +26,21 @@ import cppStructures.CppScope;
  * ParsedObjectManager and exporting them to a file.
  * http://tools.ietf.org/html/rfc4180
  * 
+ * The four files are written concurrently, each by a thread of its own. The
+ * object graph is only read during the export. The rows of a file are
+ * formatted into a single reused buffer and written through a large
+ * buffered writer.
+ * 
  * @author Tomi
  */
 public class ResultExporter
 {
 	private static final String separator = ",";
+
+	// Size of the write buffer of each file
+	private static final int BUFFER_SIZE = 1 << 16;
+
 	private String outputDir;
-	private BufferedWriter writer;
 	private boolean includeStructs = false;
 
 	public ResultExporter(String outputDir, boolean includeStructs)
@@ -35,11 +48,11 @@ public class ResultExporter
 		this.includeStructs = includeStructs;
 		if (includeStructs)
 		{
-			Log.d("Including structs");
+			Log.i("Including structs");
 		}
 		else
 		{
-			Log.d("Excluding structs");
+			Log.i("Excluding structs");
 		}
 		this.outputDir = outputDir;
 
@@ -59,27 +72,104 @@ public class ResultExporter
 
 	public void exportAll()
 	{
-		Log.d("Exporting to " + outputDir);
+		Log.i("Exporting to " + outputDir);
+
+		ArrayList<Callable<Void>> exports = new ArrayList<Callable<Void>>();
+		exports.add(new Callable<Void>()
+		{
+			@Override
+			public Void call() throws IOException
+			{
+				exportFileMetrics();
+				return null;
+			}
+		});
+		exports.add(new Callable<Void>()
+		{
+			@Override
+			public Void call() throws IOException
+			{
+				exportFunctionMetrics();
+				return null;
+			}
+		});
+		exports.add(new Callable<Void>()
+		{
+			@Override
+			public Void call() throws IOException
+			{
+				exportNamespaces();
+				return null;
+			}
+		});
+		exports.add(new Callable<Void>()
+		{
+			@Override
+			public Void call() throws IOException
+			{
+				exportClassMetrics();
+				return null;
+			}
+		});
+
+		ExecutorService executor = Executors.newFixedThreadPool(exports
+				.size());
 		try
 		{
-			exportFileMetrics();
-			exportFunctionMetrics();
-			exportNamespaces();
-			exportClassMetrics();
+			for (Future<Void> future : executor.invokeAll(exports))
+			{
+				try
+				{
+					future.get();
+				}
+				catch (ExecutionException ex)
+				{
+					if (ex.getCause() instanceof IOException)
+					{
+						Log.e("Error: " + ex.getCause().getMessage());
+					}
+					else if (ex.getCause() instanceof RuntimeException)
+					{
+						throw (RuntimeException) ex.getCause();
+					}
+					else
+					{
+						throw new RuntimeException(ex.getCause());
+					}
+				}
+			}
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Export was interrupted", ex);
 		}
-		catch (IOException ex)
+		finally
 		{
-			Log.d("Error: " + ex.getMessage());
+			executor.shutdown();
 		}
 	}
 
+	/**
+	 * Opens an output file for writing
+	 * 
+	 * @param name
+	 *            Name of the file in the output directory
+	 * @return The writer
+	 * @throws IOException
+	 *             Thrown if the file cannot be opened
+	 */
+	private BufferedWriter open(String name) throws IOException
+	{
+		return new BufferedWriter(new FileWriter(outputDir + name), BUFFER_SIZE);
+	}
+
 	// Includes LOC metrics for each file,
 	public void exportFileMetrics() throws IOException
 	{
 		try
 		{
-			writer = new BufferedWriter(new FileWriter(outputDir
-					+ "FileMetrics.csv"));
+			BufferedWriter writer = open("FileMetrics.csv");
 			writeFileMetrics(writer);
 			writer.close();
 
@@ -94,8 +184,7 @@ public class ResultExporter
 	// Includes functions/methods and their Halstead and complexity metrics
 	public void exportFunctionMetrics() throws IOException
 	{
-		writer = new BufferedWriter(new FileWriter(outputDir
-				+ "FunctionMetrics.csv"));
+		BufferedWriter writer = open("FunctionMetrics.csv");
 		writeFunctionMetrics(writer);
 		writer.close();
 	}
@@ -103,8 +192,7 @@ public class ResultExporter
 	// Known namespaces
 	public void exportNamespaces() throws IOException
 	{
-		writer = new BufferedWriter(
-				new FileWriter(outputDir + "Namespaces.csv"));
+		BufferedWriter writer = open("Namespaces.csv");
 		writeNamespaces(writer);
 		writer.close();
 	}
@@ -112,8 +200,7 @@ public class ResultExporter
 	// Classes and OO Metrics
 	public void exportClassMetrics() throws IOException
 	{
-		writer = new BufferedWriter(new FileWriter(outputDir
-				+ "ClassMetrics.csv"));
+		BufferedWriter writer = open("ClassMetrics.csv");
 		writeClassMetrics(writer);
 		writer.close();
 
@@ -146,42 +233,37 @@ public class ResultExporter
 				"Level" + separator + "Intelligent content" + separator
 				+ "Cyclomatic complexity");
 
+		StringBuilder row = new StringBuilder(256);
 		for (CppFile file : ParsedObjectManager.getInstance().getFiles())
 		{
 			LOCMetrics l = file.getLOCMetrics();
 			CppFunc otherMetrics = file.getOtherMetrics();
-			writer.write("\n");
-			writer.write("\""
-					+ l.file
-					+ "\""
-					+ separator
-					+ (l.codeOnlyLines + l.commentedCodeLines)
-					+ ","
-					+ l.logicalLOC
-					+ separator
-					+ l.emptyLines
-					+ separator
-					+
-					// +l.commentLines + separator
-					// +l.commentedCodeLines + separator
-					(l.commentLines + l.commentedCodeLines)
-					+ otherMetrics.getOperatorCount() + separator
-					+ otherMetrics.getOperandCount() + separator
-					+ otherMetrics.getUniqueOperatorCount() + separator
-					+ otherMetrics.getUniqueOperandCount() + separator +
-
-					otherMetrics.getLength() + separator
-					+ otherMetrics.getDeliveredBugs() + separator
-					+ otherMetrics.getVocabulary() + separator +
-
-					otherMetrics.getVolume() + separator
-					+ otherMetrics.getDifficulty() + separator
-					+ otherMetrics.getEffort() + separator
-					+ otherMetrics.getTimeToProgram() + separator +
-
-					otherMetrics.getLevel() + separator
-					+ otherMetrics.getIntContent() + separator
-					+ otherMetrics.getCyclomaticComplexity());
+			row.setLength(0);
+			row.append('\n');
+			row.append('"').append(l.file).append('"').append(separator);
+			row.append(l.codeOnlyLines + l.commentedCodeLines).append(',');
+			row.append(l.logicalLOC).append(separator);
+			row.append(l.emptyLines).append(separator);
+			// The comment lines and the operators are not separated
+			row.append(l.commentLines + l.commentedCodeLines);
+			row.append(otherMetrics.getOperatorCount()).append(separator);
+			row.append(otherMetrics.getOperandCount()).append(separator);
+			row.append(otherMetrics.getUniqueOperatorCount()).append(separator);
+			row.append(otherMetrics.getUniqueOperandCount()).append(separator);
+
+			row.append(otherMetrics.getLength()).append(separator);
+			row.append(otherMetrics.getDeliveredBugs()).append(separator);
+			row.append(otherMetrics.getVocabulary()).append(separator);
+
+			row.append(otherMetrics.getVolume()).append(separator);
+			row.append(otherMetrics.getDifficulty()).append(separator);
+			row.append(otherMetrics.getEffort()).append(separator);
+			row.append(otherMetrics.getTimeToProgram()).append(separator);
+
+			row.append(otherMetrics.getLevel()).append(separator);
+			row.append(otherMetrics.getIntContent()).append(separator);
+			row.append(otherMetrics.getCyclomaticComplexity());
+			writer.append(row);
 		}
 		writer.write("\n");
 
@@ -246,7 +328,8 @@ public class ResultExporter
 			writer.write(separator + "Type");
 		}
 
-		String parents, children, type = "";
+		String type = "";
+		StringBuilder row = new StringBuilder(1024);
 
 		for (CppScope cc : ParsedObjectManager.getInstance().getScopes())
 		{
@@ -269,99 +352,84 @@ public class ResultExporter
 				}
 
 				CppClass c = (CppClass) cc;
-				String namespace = getNamespace(c);
-				parents = getParents(c);
-				children = getChildren(c);
+				LOCMetrics l = c.getLOCMetrics();
 				int funcs = c.getFunctions().size();
-				writer.write("\n");
-				writer.write(c.nameOfFile
-						+ separator
-						+ namespace
-						+ separator
-						+ "\""
-						+ c.getName()
-						+ "\""
-						+ separator
-						+ parents
-						+ separator
-						+ children
-						+ separator
-						+ c.children.size()
-						+ separator
-						+ c.getDepthOfInheritance()
-						+ separator
-						+ funcs
-						+ separator
-						+ (c.getLOCMetrics().codeOnlyLines + c.getLOCMetrics().commentedCodeLines)
-						+ separator
-						+ c.getLOCMetrics().logicalLOC
-						+ separator
-						+ (c.getLOCMetrics().commentLines + c.getLOCMetrics().commentedCodeLines)
-						+ separator + c.getLOCMetrics().emptyLines + separator +
-
-						c.sumFuncPLOC + separator + c.sumFuncLLOC + separator
-						+ c.sumFuncCommentLines + separator
-						+ c.sumFuncEmptyLines + separator +
-
-						c.sumOperators + separator + c.sumOperands + separator
-						+ c.sumUniqueOperators + separator
-						+ c.sumUniqueOperands + separator +
-
-						c.sumCalculatedLength + separator + c.sumDeliveredBugs
-						+ separator
-						+
-
-						c.sumVocabulary
-						+ separator
-						+ c.sumLength
-						+ separator
-						+ c.sumVolume
-						+ separator
-						+ c.sumDifficulty
-						+ separator
-						+ c.sumEffort
-						+ separator
-						+ c.sumTimeToProgram
-						+ separator
-						+ c.sumDeliveredBugs
-						+ separator
-						+ c.sumLevel
-						+ separator
-						+ c.sumIntContent
-						+ separator
-						+ c.sumFuncCC
-						+ separator
-						+
-						// /Averages
-						((double) c.sumFuncPLOC / (funcs > 0 ? funcs : 1)) + separator
-						+ ((double) c.sumFuncLLOC / (funcs > 0 ? funcs : 1)) + separator
-						+ ((double) c.sumFuncCommentLines / (funcs > 0 ? funcs : 1)) + separator
-						+ ((double) c.sumFuncEmptyLines / (funcs > 0 ? funcs : 1)) + separator +
-
-						((double) c.sumOperators / (funcs > 0 ? funcs : 1)) + separator
-						+ ((double) c.sumOperands / (funcs > 0 ? funcs : 1)) + separator
-						+ ((double) c.sumUniqueOperators / (funcs > 0 ? funcs : 1)) + separator
-						+ ((double) c.sumUniqueOperands / (funcs > 0 ? funcs : 1)) + separator +
-
-						(c.sumCalculatedLength / (funcs > 0 ? funcs : 1)) + separator
-						+ (c.sumDeliveredBugs / (funcs > 0 ? funcs : 1)) + separator +
-
-						(c.sumVocabulary / (funcs > 0 ? funcs : 1)) + separator
-						+ (c.sumLength / (funcs > 0 ? funcs : 1)) + separator
-						+ (c.sumVolume / (funcs > 0 ? funcs : 1)) + separator
-						+ (c.sumDifficulty / (funcs > 0 ? funcs : 1)) + separator
-						+ (c.sumEffort / (funcs > 0 ? funcs : 1)) + separator
-						+ (c.sumTimeToProgram / (funcs > 0 ? funcs : 1)) + separator
-						+ (c.sumDeliveredBugs / (funcs > 0 ? funcs : 1)) + separator
-						+ (c.sumLevel / (funcs > 0 ? funcs : 1)) + separator
-						+ (c.sumIntContent / (funcs > 0 ? funcs : 1)) + separator
-						+ ((double) c.sumFuncCC / (funcs > 0 ? funcs : 1))
-
-				);
+				int d = (funcs > 0 ? funcs : 1);
+				row.setLength(0);
+				row.append('\n');
+				row.append(c.nameOfFile).append(separator);
+				appendNamespace(row, c);
+				row.append(separator);
+				row.append('"').append(c.getName()).append('"')
+						.append(separator);
+				appendNames(row, c.parents);
+				row.append(separator);
+				appendNames(row, c.children);
+				row.append(separator);
+				row.append(c.children.size()).append(separator);
+				row.append(c.getDepthOfInheritance()).append(separator);
+				row.append(funcs).append(separator);
+				row.append(l.codeOnlyLines + l.commentedCodeLines).append(
+						separator);
+				row.append(l.logicalLOC).append(separator);
+				row.append(l.commentLines + l.commentedCodeLines).append(
+						separator);
+				row.append(l.emptyLines).append(separator);
+
+				row.append(c.sumFuncPLOC).append(separator);
+				row.append(c.sumFuncLLOC).append(separator);
+				row.append(c.sumFuncCommentLines).append(separator);
+				row.append(c.sumFuncEmptyLines).append(separator);
+
+				row.append(c.sumOperators).append(separator);
+				row.append(c.sumOperands).append(separator);
+				row.append(c.sumUniqueOperators).append(separator);
+				row.append(c.sumUniqueOperands).append(separator);
+
+				row.append(c.sumCalculatedLength).append(separator);
+				row.append(c.sumDeliveredBugs).append(separator);
+
+				row.append(c.sumVocabulary).append(separator);
+				row.append(c.sumLength).append(separator);
+				row.append(c.sumVolume).append(separator);
+				row.append(c.sumDifficulty).append(separator);
+				row.append(c.sumEffort).append(separator);
+				row.append(c.sumTimeToProgram).append(separator);
+				row.append(c.sumDeliveredBugs).append(separator);
+				row.append(c.sumLevel).append(separator);
+				row.append(c.sumIntContent).append(separator);
+				row.append(c.sumFuncCC).append(separator);
+
+				// Averages
+				row.append((double) c.sumFuncPLOC / d).append(separator);
+				row.append((double) c.sumFuncLLOC / d).append(separator);
+				row.append((double) c.sumFuncCommentLines / d).append(separator);
+				row.append((double) c.sumFuncEmptyLines / d).append(separator);
+
+				row.append((double) c.sumOperators / d).append(separator);
+				row.append((double) c.sumOperands / d).append(separator);
+				row.append((double) c.sumUniqueOperators / d).append(separator);
+				row.append((double) c.sumUniqueOperands / d).append(separator);
+
+				row.append(c.sumCalculatedLength / d).append(separator);
+				row.append(c.sumDeliveredBugs / d).append(separator);
+
+				row.append(c.sumVocabulary / d).append(separator);
+				row.append(c.sumLength / d).append(separator);
+				row.append(c.sumVolume / d).append(separator);
+				row.append(c.sumDifficulty / d).append(separator);
+				row.append(c.sumEffort / d).append(separator);
+				row.append(c.sumTimeToProgram / d).append(separator);
+				row.append(c.sumDeliveredBugs / d).append(separator);
+				row.append(c.sumLevel / d).append(separator);
+				row.append(c.sumIntContent / d).append(separator);
+				row.append((double) c.sumFuncCC / d);
+
 				if (includeStructs)
 				{
-					writer.write(separator + type);
+					row.append(separator).append(type);
 				}
+				writer.append(row);
 			}
 		}
 
@@ -396,24 +464,26 @@ public class ResultExporter
 				+ "Number of Functions");
 		writer.write("\n");
 
+		StringBuilder row = new StringBuilder(128);
 		for (CppScope scope : ParsedObjectManager.getInstance().getScopes())
 		{
 			if (scope.type == CppScope.NAMESPACE)
 			{
-				String name;
+				row.setLength(0);
+				// row.append(scope.nameOfFile).append(separator);
 				if (scope.name.contains(","))
 				{
-					name = "\"" + scope.name + "\"";
+					row.append('"').append(scope.name).append('"');
 				}
 				else
 				{
-					name = scope.name;
+					row.append(scope.name);
 				}
-				writer.write(
-				// scope.nameOfFile+separator+
-				name + separator + scope.getMembers().size() + separator
-						+ scope.getFunctions().size());
-				writer.write("\n");
+				row.append(separator);
+				row.append(scope.getMembers().size()).append(separator);
+				row.append(scope.getFunctions().size());
+				row.append('\n');
+				writer.append(row);
 				/*
 				 * writer.write("variablesType"+separator+"variableName");
 				 * writer.write("\n"); for(MemberVariable
@@ -441,7 +511,6 @@ public class ResultExporter
 
 	private void writeFunctionMetrics(BufferedWriter writer) throws IOException
 	{
-		String parameters;
 		writer.write("File" + separator + "Return type" + separator
 				+ "Function name" + separator + "Operator count" + separator
 				+ "Operand count" + separator + "Unique Operator Count"
@@ -457,176 +526,137 @@ public class ResultExporter
 				// "Commented code lines" + separator +
 				"Empty lines" + "\n");
 
+		StringBuilder row = new StringBuilder(512);
 		for (CppScope scope : ParsedObjectManager.getInstance().getScopes())
 		{
 			for (CppFunc func : scope.getFunctions())
 			{
-				int i = 0;
-				parameters = "\"";
-				for (CppFuncParam param : func.parameters)
-				{
-					parameters += param.type;
-					if (i < (func.parameters.size() - 1))
-					{
-						parameters += ",";
-					}
-					i++;
-				}
-				parameters += "\"";
-				if (parameters.contentEquals("\"void\"")
-						|| parameters.contentEquals("\"\""))
-				{
-					parameters = "";
-				}
-				writer.write(func.fileOfFunc
-						+ separator
-						+ func.getType()
-						+ separator
-						+ func.getName()
-						+ parameters
-						+ separator
-						+ func.getOperatorCount()
-						+ separator
-						+ func.getOperandCount()
-						+ separator
-						+ func.getUniqueOperatorCount()
-						+ separator
-						+ func.getUniqueOperandCount()
-						+ separator
-						+ func.getVocabulary()
-						+ separator
-						+ func.getLength()
-						+ separator
-						+ func.getVolume()
-						+ separator
-						+ func.getDifficulty()
-						+ separator
-						+ func.getEffort()
-						+ separator
-						+ func.getTimeToProgram()
-						+ separator
-						+ func.getDeliveredBugs()
-						+ separator
-						+ func.getLevel()
-						+ separator
-						+ func.getIntContent()
-						+ separator
-						+ func.getCyclomaticComplexity()
-						+ separator
-						+ (func.getLOCMetrics().commentedCodeLines + func
-								.getLOCMetrics().codeOnlyLines) + separator
-						+ func.getLOCMetrics().logicalLOC
-						+ separator
-						+
-						// func.getLOCMetrics().codeOnlyLines + separator +
-						(func.getLOCMetrics().commentedCodeLines + func
-								.getLOCMetrics().commentLines) + separator +
-						// func.getLOCMetrics().commentedCodeLines + separator +
-						func.getLOCMetrics().emptyLines);
-				writer.write("\n");
+				LOCMetrics l = func.getLOCMetrics();
+				row.setLength(0);
+				row.append(func.fileOfFunc).append(separator);
+				row.append(func.getType()).append(separator);
+				row.append(func.getName());
+				appendParameters(row, func);
+				row.append(separator);
+				row.append(func.getOperatorCount()).append(separator);
+				row.append(func.getOperandCount()).append(separator);
+				row.append(func.getUniqueOperatorCount()).append(separator);
+				row.append(func.getUniqueOperandCount()).append(separator);
+				row.append(func.getVocabulary()).append(separator);
+				row.append(func.getLength()).append(separator);
+				row.append(func.getVolume()).append(separator);
+				row.append(func.getDifficulty()).append(separator);
+				row.append(func.getEffort()).append(separator);
+				row.append(func.getTimeToProgram()).append(separator);
+				row.append(func.getDeliveredBugs()).append(separator);
+				row.append(func.getLevel()).append(separator);
+				row.append(func.getIntContent()).append(separator);
+				row.append(func.getCyclomaticComplexity()).append(separator);
+				row.append(l.commentedCodeLines + l.codeOnlyLines).append(
+						separator);
+				row.append(l.logicalLOC).append(separator);
+				// row.append(l.codeOnlyLines).append(separator);
+				row.append(l.commentedCodeLines + l.commentLines).append(
+						separator);
+				// row.append(l.commentedCodeLines).append(separator);
+				row.append(l.emptyLines);
+				row.append('\n');
+				writer.append(row);
 			}
 		}
 	}
 
 	/**
-	 * Method extracts all parents from given class and returns them as String
-	 * which contains eg "parent1, parent2". Quotes are included unless class
-	 * has no parents then empty String is returned
+	 * Appends the parameter types of a function as "type1,type2". Nothing is
+	 * appended if the function has no parameters or only "void".
 	 * 
-	 * @param c
-	 * @return
+	 * @param row
+	 *            Row the types are appended to
+	 * @param func
+	 *            The function
 	 */
-	private String getParents(CppClass c)
+	private static void appendParameters(StringBuilder row, CppFunc func)
 	{
-		String parents = "";
-		if (c.parents.isEmpty())
-		{
-			parents = "";
-		}
-		else
+		int start = row.length();
+		row.append('"');
+		for (int i = 0; i < func.parameters.size(); ++i)
 		{
-			int x = 0;
-			parents = "\"";
-
-			for (CppScope p : c.parents)
+			if (i > 0)
 			{
-				parents += p.getName();
-				if (x < (c.parents.size() - 1))
-				{
-					parents += ",";
-				}
-				x++;
+				row.append(',');
 			}
-			parents += "\"";
+			row.append(func.parameters.get(i).type);
+		}
+		row.append('"');
+
+		int length = row.length() - start;
+		if ((length == 2)
+				|| ((length == 6) && (row.indexOf("\"void\"", start) == start)))
+		{
+			row.setLength(start);
 		}
-		return parents;
 	}
 
 	/**
-	 * Gives the namespace as string of given class
+	 * Appends the names of the given scopes, eg "parent1,parent2". Quotes are
+	 * included unless there are no scopes, then nothing is appended.
 	 * 
-	 * @param c
-	 * @return
+	 * @param row
+	 *            Row the names are appended to
+	 * @param scopes
+	 *            Parents or children of a class
 	 */
-	private String getNamespace(CppClass c)
+	private static void appendNames(StringBuilder row,
+			ArrayList<? extends CppScope> scopes)
 	{
-		String namespace = "";
-		CppNamespace ns = c.namespace;
+		if (scopes.isEmpty())
+		{
+			return;
+		}
 
-		while (true)
+		row.append('"');
+		for (int i = 0; i < scopes.size(); ++i)
 		{
-			if (ns != null)
-			{
-				if (ns.name.contentEquals("__MAIN__") || ns.name.isEmpty())
-				{
-					break;
-				}
-				else
-				{
-					namespace = ns.name + "::" + namespace;
-				}
-				ns = ns.namespace;
-			}
-			else
+			if (i > 0)
 			{
-				break;
+				row.append(',');
 			}
+			row.append(scopes.get(i).getName());
 		}
-		if (!namespace.isEmpty())
-		{
-			namespace = "\"" + namespace + "\"";
-		}
-		return namespace;
+		row.append('"');
 	}
 
 	/**
-	 * Returns children of parameter c as comma separated string
+	 * Appends the namespace of the given class, eg "outer::inner::". Quotes
+	 * are included unless the class is in the global namespace, then nothing
+	 * is appended.
 	 * 
+	 * @param row
+	 *            Row the namespace is appended to
 	 * @param c
-	 * @return
+	 *            The class
 	 */
-	private String getChildren(CppClass c)
+	private static void appendNamespace(StringBuilder row, CppClass c)
 	{
-		String children;
-		if (c.children.isEmpty())
-		{
-			children = "";
-		}
-		else
+		ArrayList<String> names = new ArrayList<String>();
+		for (CppNamespace ns = c.namespace; ns != null; ns = ns.namespace)
 		{
-			int x = 0;
-			children = "\"";
-			for (CppScope p : c.children)
+			if (ns.name.contentEquals("__MAIN__") || ns.name.isEmpty())
 			{
-				children += p.getName();
-				if (x < (c.children.size() - 1))
-				{
-					children += ",";
-				}
-				x++;
+				break;
 			}
-			children += "\"";
+			names.add(ns.name);
+		}
+		if (names.isEmpty())
+		{
+			return;
+		}
+
+		row.append('"');
+		for (int i = names.size() - 1; i >= 0; --i)
+		{
+			row.append(names.get(i)).append("::");
 		}
-		return children;
+		row.append('"');
 	}
-}
\ No newline at end of file
+}
@@ -40,7 +40,7 @@ public class ScopeAnalyzer extends Analyzer
 					// Namespace found
 					CppNamespace ns = new CppNamespace(tokens[i + 1]);
 					ns.braceCount = sentenceAnalyzer.braceCount;
-					ns.nameOfFile = Extractor.currentFile;
+					ns.nameOfFile = Extractor.getCurrentFile();
 					ParsedObjectManager.getInstance().addNamespace(ns, true);
 					return true;
 				}
@@ -1,5 +1,6 @@
 package cppParser;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 
 import cppParser.utils.LLOCCounter;
@@ -39,6 +40,31 @@ public class SentenceAnalyzer
 		analyzers.add(scopeAnalyzer);
 	}
 
+	/**
+	 * Retrieves the state the sentences analyzed so far leave for the next
+	 * file: a file with unbalanced braces or quotes changes how the files
+	 * after it are analyzed
+	 * 
+	 * @return The state
+	 */
+	public State getState()
+	{
+		return new State(braceCount, functionAnalyzer.getOperatorAnalyzer()
+				.isStringOpen());
+	}
+
+	/**
+	 * Continues the analysis from the state left by the previous files
+	 * 
+	 * @param state
+	 *            The state
+	 */
+	public void setState(State state)
+	{
+		braceCount = state.braceCount;
+		functionAnalyzer.getOperatorAnalyzer().setStringOpen(state.stringOpen);
+	}
+
 	/**
 	 * Sets the current scope to "scopeName". If the scope is already known, the
 	 * existing scope will be used. Otherwise, a new scope is created. If
@@ -56,9 +82,24 @@ public class SentenceAnalyzer
 
 		// Search for an existing scope with the given name
 		boolean found = false;
-		for (CppScope cc : ParsedObjectManager.getInstance().getScopes())
+		CppScope known = ParsedObjectManager.getInstance().getScope(scopeName);
+		if (known != null)
+		{
+			if (addToStack)
+			{
+				ParsedObjectManager.getInstance().getCppScopeStack()
+						.push(known);
+			}
+			ParsedObjectManager.getInstance().currentScope = known;
+			found = true;
+		}
+
+		// In a parallel main pass, search the scopes of the other files
+		if (!found)
 		{
-			if (cc.getName().equals(scopeName))
+			CppScope cc = ParsedObjectManager.getInstance().getParentScope(
+					scopeName);
+			if (cc != null)
 			{
 				if (addToStack)
 				{
@@ -67,15 +108,14 @@ public class SentenceAnalyzer
 				}
 				ParsedObjectManager.getInstance().currentScope = cc;
 				found = true;
-				break;
 			}
 		}
 
 		if (!found)
 		{
 			CppScope cc = new CppScope(scopeName);
-			cc.nameOfFile = Extractor.currentFile;
-			ParsedObjectManager.getInstance().getScopes().add(cc);
+			cc.nameOfFile = Extractor.getCurrentFile();
+			ParsedObjectManager.getInstance().addScope(cc);
 			ParsedObjectManager.getInstance().currentScope = cc;
 			if (addToStack)
 			{
@@ -171,8 +211,8 @@ public class SentenceAnalyzer
 
 		if (!handled)
 		{
-			// Log.d("Couldn't handle: " + Extractor.currentFile + ": " +
-			// Extractor.lineno);
+			// Log.d("Couldn't handle: " + Extractor.getCurrentFile() + ": " +
+			// Extractor.getLineno());
 		}
 	}
 
@@ -200,4 +240,51 @@ public class SentenceAnalyzer
 	{
 		this.loc.logicalLOC += llocCounter.getLloc();
 	}
+
+	/**
+	 * The state a sentence analyzer carries from one file to the next
+	 */
+	public static final class State implements Serializable
+	{
+		private static final long serialVersionUID = 1L;
+
+		// The state of a new sentence analyzer
+		public static final State INITIAL = new State(0, false);
+
+		// Open brace count
+		final int braceCount;
+
+		// True if a string literal is open
+		final boolean stringOpen;
+
+		State(int braceCount, boolean stringOpen)
+		{
+			this.braceCount = braceCount;
+			this.stringOpen = stringOpen;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof State))
+			{
+				return false;
+			}
+			State other = (State) obj;
+			return (braceCount == other.braceCount)
+					&& (stringOpen == other.stringOpen);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return (braceCount * 2) + (stringOpen ? 1 : 0);
+		}
+
+		@Override
+		public String toString()
+		{
+			return "braces " + braceCount + (stringOpen ? ", string open" : "");
+		}
+	}
 }
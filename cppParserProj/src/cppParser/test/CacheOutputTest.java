@@ -0,0 +1,82 @@
+package cppParser.test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.TreeMap;
+
+/**
+ * Checks that the parser writes the same results with -cache as without it:
+ * on the first run that fills the cache, on the next run that reuses it, and
+ * on a run after a header has changed. The runs are made with one and with
+ * several threads on the input of ParallelOutputTest.
+ */
+public class CacheOutputTest
+{
+	private static final String[] THREADS = { "1", "4" };
+
+	/**
+	 * Runs the test
+	 *
+	 * @param args
+	 *            The directory of the input files, TestTargets by default
+	 * @throws Exception
+	 *             If a run fails or the results differ
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		File targets = new File(args.length > 0 ? args[0] : "TestTargets");
+		if (!targets.isDirectory())
+		{
+			throw new IllegalArgumentException("No such directory: " + targets);
+		}
+
+		File root = Files.createTempDirectory("CacheOutputTest").toFile();
+		try
+		{
+			for (String threads : THREADS)
+			{
+				File input = new File(root, "input" + threads);
+				ParallelOutputTest.copy(targets, input);
+				ParallelOutputTest.addUnbalancedFiles(input);
+
+				TreeMap<String, String> expected = ParallelOutputTest.run(
+						input, new File(root, "expected" + threads));
+				File output = new File(root, "cached" + threads);
+				ParallelOutputTest.compare(expected, ParallelOutputTest.run(
+						input, output, "-threads", threads, "-cache"),
+						"cold cache, " + threads + " threads");
+				if (!new File(output, "parser.cache").isFile())
+				{
+					throw new AssertionError("No cache was written with "
+							+ threads + " threads");
+				}
+				ParallelOutputTest.compare(expected, ParallelOutputTest.run(
+						input, output, "-threads", threads, "-cache"),
+						"warm cache, " + threads + " threads");
+
+				// A class found from the header gets a new method, so the
+				// files that use the class cannot reuse their results
+				File header = new File(input,
+						"ParallelOutputTest/x1_testclass1.h");
+				ParallelOutputTest.write(header, "class testClass", "{",
+						"\tprivate:", "\t\tint a1;", "\t\tFoo* a4;",
+						"\t\tvoid doSomething();",
+						"\t\tint more(int x) { if (x) { return 1; } return 0; }",
+						"\tpublic:", "\t\ttestClass();", "\t\t~testClass();",
+						"}");
+				header.setLastModified(header.lastModified() + 2000);
+				expected = ParallelOutputTest.run(input, new File(root,
+						"changed" + threads));
+				ParallelOutputTest.compare(expected, ParallelOutputTest.run(
+						input, output, "-threads", threads, "-cache"),
+						"changed header, " + threads + " threads");
+			}
+		}
+		finally
+		{
+			ParallelOutputTest.delete(root);
+		}
+
+		System.out.println("CacheOutputTest passed");
+	}
+}
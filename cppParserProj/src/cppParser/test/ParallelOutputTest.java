@@ -0,0 +1,276 @@
+package cppParser.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Checks that the parser writes the same results with one and with several
+ * threads. Every run is a new JVM, as the parser keeps its results in
+ * singletons. The input is a copy of TestTargets, or of the directory given
+ * as the first argument, with files added whose function bodies leave a
+ * brace open and whose class is found again in a later file. The runs are
+ * compared without -variants and with -variants in each -variantMerge mode.
+ */
+public class ParallelOutputTest
+{
+	private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+
+	private static final String[] THREADS = { "2", "4" };
+
+	private static final String[] VARIANT_MERGES = { "max", "union", "first" };
+
+	/**
+	 * Runs the test
+	 *
+	 * @param args
+	 *            The directory of the input files, TestTargets by default
+	 * @throws Exception
+	 *             If a run fails or the results differ
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		File targets = new File(args.length > 0 ? args[0] : "TestTargets");
+		if (!targets.isDirectory())
+		{
+			throw new IllegalArgumentException("No such directory: " + targets);
+		}
+
+		File root = Files.createTempDirectory("ParallelOutputTest").toFile();
+		try
+		{
+			File input = new File(root, "input");
+			copy(targets, input);
+			addUnbalancedFiles(input);
+
+			TreeMap<String, String> serial = run(input, new File(root,
+					"serial"));
+			for (String threads : THREADS)
+			{
+				compare(serial,
+						run(input, new File(root, "threads" + threads),
+								"-threads", threads), threads + " threads");
+			}
+
+			for (String merge : VARIANT_MERGES)
+			{
+				serial = run(input, new File(root, "variants_" + merge),
+						"-variants", "4", "-variantMerge", merge);
+				for (String threads : THREADS)
+				{
+					compare(serial,
+							run(input, new File(root, "variants_" + merge
+									+ threads), "-variants", "4",
+									"-variantMerge", merge, "-threads",
+									threads), "-variants with " + merge
+									+ ", " + threads + " threads");
+				}
+			}
+		}
+		finally
+		{
+			delete(root);
+		}
+
+		System.out.println("ParallelOutputTest passed");
+	}
+
+	/**
+	 * Adds files to the input whose results depend on the files analyzed
+	 * before them: functions that leave a brace open in a file with an #else
+	 * branch and in a file without one, and a class declared in a header and
+	 * defined in a source file.
+	 *
+	 * @param dir
+	 *            Input directory
+	 * @throws IOException
+	 *             If a file cannot be written
+	 */
+	static void addUnbalancedFiles(File dir) throws IOException
+	{
+		File added = new File(dir, "ParallelOutputTest");
+		added.mkdirs();
+		write(new File(added, "a.cpp"), "#ifdef FOO",
+				"int g(int a) { if (a) { return 1; }", "#else",
+				"int g(int a) { while (a--) { return 2; }", "#endif",
+				"  return 0; }");
+		write(new File(added, "b.cpp"), "#ifdef FOO",
+				"int h(int a) { if (a) { return 1; }", "#endif",
+				"int k(int a) { while (a--) { return 2; }", "  return 0; }");
+		write(new File(added, "x1_testclass1.h"), "class testClass", "{",
+				"\tprivate:", "\t\tint a1;", "\t\tFoo* a4;",
+				"\t\tvoid doSomething();", "\tpublic:", "\t\ttestClass();",
+				"\t\t~testClass();", "}");
+		write(new File(added, "x1_testclass1.cpp"),
+				"testClass::testClass()", "{", "\tint b1 = a1;",
+				"\ta4->bar();", "\tdoSomething();", "}", "",
+				"testClass::~testClass()", "{", "\ta1 = 0;", "}", "",
+				"void testClass::doSomething()", "{",
+				"\tstd::cout << \"this does something.\" << std::endl;", "}");
+	}
+
+	/**
+	 * Runs the parser in a new JVM
+	 *
+	 * @param input
+	 *            Input directory
+	 * @param output
+	 *            Output directory
+	 * @param options
+	 *            Options added to the command line
+	 * @return The contents of the result files by their names
+	 * @throws Exception
+	 *             If the parser fails
+	 */
+	static TreeMap<String, String> run(File input, File output,
+			String... options) throws Exception
+	{
+		output.mkdirs();
+		List<String> command = new ArrayList<String>();
+		command.add(new File(new File(System.getProperty("java.home"), "bin"),
+				"java").getPath());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add("cppParser.Main");
+		command.add("-parse");
+		command.add(input.getAbsolutePath());
+		command.add("-out");
+		command.add(output.getAbsolutePath() + File.separator);
+		command.add("-log");
+		command.add("off");
+		command.add("-dump");
+		command.addAll(Arrays.asList(options));
+
+		// The dumps are written to the working directory
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.directory(output);
+		builder.redirectErrorStream(true);
+		builder.redirectOutput(new File(output.getParentFile(), output
+				.getName() + ".log"));
+		int status = builder.start().waitFor();
+		if (status != 0)
+		{
+			throw new AssertionError("The parser exited with " + status + ": "
+					+ command);
+		}
+
+		TreeMap<String, String> results = new TreeMap<String, String>();
+		for (File file : output.listFiles())
+		{
+			String name = file.getName();
+			if (name.endsWith(".csv") || name.startsWith("dump_"))
+			{
+				results.put(name,
+						new String(Files.readAllBytes(file.toPath()), CHARSET));
+			}
+		}
+		if (!results.containsKey("FunctionMetrics.csv")
+				|| !results.containsKey("dump_functions.txt"))
+		{
+			throw new AssertionError("No results were written: " + command);
+		}
+		return results;
+	}
+
+	/**
+	 * Compares the results of two runs
+	 *
+	 * @param expected
+	 *            The results of the reference run
+	 * @param actual
+	 *            The results of the compared run
+	 * @param what
+	 *            Description of the compared run
+	 */
+	static void compare(TreeMap<String, String> expected,
+			TreeMap<String, String> actual, String what)
+	{
+		if (!expected.keySet().equals(actual.keySet()))
+		{
+			throw new AssertionError(what + ": wrote " + actual.keySet()
+					+ " instead of " + expected.keySet());
+		}
+		for (String name : expected.keySet())
+		{
+			String[] want = expected.get(name).split("\r?\n", -1);
+			String[] got = actual.get(name).split("\r?\n", -1);
+			for (int i = 0; i < Math.max(want.length, got.length); ++i)
+			{
+				String line = i < want.length ? want[i] : "<end>";
+				String other = i < got.length ? got[i] : "<end>";
+				if (!line.equals(other))
+				{
+					throw new AssertionError(what + ": " + name + " line "
+							+ (i + 1) + " is <" + other + "> instead of <"
+							+ line + ">");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the lines of a text file
+	 *
+	 * @param file
+	 *            The file
+	 * @param lines
+	 *            Lines of the file
+	 * @throws IOException
+	 *             If the file cannot be written
+	 */
+	static void write(File file, String... lines) throws IOException
+	{
+		Files.write(file.toPath(), Arrays.asList(lines), CHARSET);
+	}
+
+	/**
+	 * Copies a directory with its subdirectories
+	 *
+	 * @param from
+	 *            The directory copied
+	 * @param to
+	 *            The new directory
+	 * @throws IOException
+	 *             If a file cannot be copied
+	 */
+	static void copy(File from, File to) throws IOException
+	{
+		to.mkdirs();
+		for (File file : from.listFiles())
+		{
+			File target = new File(to, file.getName());
+			if (file.isDirectory())
+			{
+				copy(file, target);
+			}
+			else if (!file.getName().equals("log.txt"))
+			{
+				Files.copy(file.toPath(), target.toPath());
+			}
+		}
+	}
+
+	/**
+	 * Deletes a file, or a directory with its contents
+	 *
+	 * @param file
+	 *            The file or directory
+	 */
+	static void delete(File file)
+	{
+		File[] files = file.listFiles();
+		if (files != null)
+		{
+			for (File child : files)
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,134 @@
+package cppParser.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.BitSet;
+
+/**
+ * Reads a whole source file into a char array in blocks and hands out its
+ * chars one by one. Replaces char-by-char reading from a reader, so that the
+ * passes do not pay a synchronized read call per char.
+ */
+public class CharScanner
+{
+
+	private static final int BLOCK_SIZE = 8192;
+
+	// The chars of the file
+	private char[] chars;
+
+	// Number of chars in the file
+	private int length = 0;
+
+	// Index of the next char
+	private int position = 0;
+
+	// Chars handed out but marked as skipped, null if none are skipped
+	private BitSet skipped = null;
+
+	// True if the last char handed out was skipped
+	private boolean lastSkipped = false;
+
+	/**
+	 * Reads the given file with the default charset
+	 * 
+	 * @param file
+	 *            File to read
+	 * @throws IOException
+	 *             Thrown if the file cannot be read
+	 */
+	public CharScanner(String file) throws IOException
+	{
+		Reader reader = new InputStreamReader(new FileInputStream(file));
+		try
+		{
+			// Most charsets take at least a byte per char
+			long size = new File(file).length();
+			chars = new char[(int) Math.min(Math.max(size + 1, BLOCK_SIZE),
+					Integer.MAX_VALUE - 8)];
+
+			int count;
+			while ((count = reader.read(chars, length, Math.min(BLOCK_SIZE,
+					chars.length - length))) != -1)
+			{
+				length += count;
+				if (length == chars.length)
+				{
+					char[] grown = new char[chars.length * 2];
+					System.arraycopy(chars, 0, grown, 0, length);
+					chars = grown;
+				}
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	/**
+	 * Creates a scanner over the chars already read by another scanner. The
+	 * chars are shared, not copied.
+	 * 
+	 * @param source
+	 *            Scanner whose chars are scanned
+	 * @param skipped
+	 *            Indices of the chars that are reported as skipped, or null
+	 */
+	public CharScanner(CharScanner source, BitSet skipped)
+	{
+		this.chars = source.chars;
+		this.length = source.length;
+		this.skipped = skipped;
+	}
+
+	/**
+	 * Retrieves the next char
+	 * 
+	 * @return The next char, or -1 at the end of the file
+	 */
+	public int next()
+	{
+		if (position < length)
+		{
+			lastSkipped = (skipped != null) && skipped.get(position);
+			return chars[position++];
+		}
+		return -1;
+	}
+
+	/**
+	 * Checks whether the last char returned by next() is marked as skipped
+	 * 
+	 * @return True if the char is skipped
+	 */
+	public boolean wasSkipped()
+	{
+		return lastSkipped;
+	}
+
+	/**
+	 * Retrieves a char by its index
+	 * 
+	 * @param index
+	 *            Index of the char
+	 * @return The char
+	 */
+	public char charAt(int index)
+	{
+		return chars[index];
+	}
+
+	/**
+	 * Retrieves the number of chars in the file
+	 * 
+	 * @return Number of chars
+	 */
+	public int length()
+	{
+		return length;
+	}
+}
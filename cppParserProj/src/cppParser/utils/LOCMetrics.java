@@ -1,9 +1,13 @@
 package cppParser.utils;
+
+import java.io.Serializable;
+
 /**
  * This class is responsible for storing collected LOC metrics.
  * @author Tomi
  */
-public class LOCMetrics{
+public class LOCMetrics implements Serializable{
+	private static final long serialVersionUID = 1L;
     public String file;
 	public int commentLines=0,  commentedCodeLines=0, codeOnlyLines=0, emptyLines=0, logicalLOC=0;
 
@@ -4,6 +4,9 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import cppParser.FileLoader;
 
@@ -11,16 +14,71 @@ import cppParser.FileLoader;
  * Static logger class for writing verbose information during the processing and
  * for "easy silencing".
  * 
+ * Messages below the current level are dropped before they are built: the
+ * hot call sites either pass a constant string or use the formatting
+ * overloads, which format the message only if its level is enabled. The
+ * enabled messages are handed to a background thread through a bounded
+ * queue, and the thread writes them to the console and to log.txt in
+ * batches. A caller blocks only when the queue is full.
+ * 
  * @author Harri Pellikka
  */
 public class Log
 {
 
+	/**
+	 * Levels of the messages, from the most verbose
+	 */
+	public enum Level
+	{
+		DEBUG, INFO, ERROR, OFF
+	}
+
+	// Maximum number of messages waiting to be written
+	private static final int QUEUE_CAPACITY = 8192;
+
+	// Marks the end of the messages for the writer thread
+	private static final Entry END = new Entry(Level.OFF, "");
+
+	// Messages below this level are dropped
+	public static volatile Level level = Level.INFO;
+
 	// If 'true', no output is done
 	public static boolean isSilent = false;
 	public static boolean printErrors = true;
 	public static boolean dumpToFile = true;
-	public static BufferedWriter writer = null;
+
+	private static final BlockingQueue<Entry> queue = new ArrayBlockingQueue<Entry>(
+			QUEUE_CAPACITY);
+	private static volatile Thread writerThread = null;
+
+	// True once the shutdown hook that writes out the queue has been added
+	private static boolean hookAdded = false;
+
+	// Number of writer threads that have opened log.txt
+	private static int logFiles = 0;
+
+	/**
+	 * Checks whether the messages of a level are written
+	 * 
+	 * @param l
+	 *            Level of the message
+	 * @return True if the level is enabled
+	 */
+	public static boolean isEnabled(Level l)
+	{
+		return l.compareTo(level) >= 0 && l != Level.OFF;
+	}
+
+	/**
+	 * Checks whether the debug messages are written
+	 * 
+	 * @return True if the debug level is enabled
+	 */
+	public static boolean isDebug()
+	{
+		return isEnabled(Level.DEBUG);
+	}
 
 	/**
 	 * An empty override of 'd'
@@ -31,44 +89,30 @@ public class Log
 	}
 
 	/**
-	 * Prints out the given string
+	 * Prints out the given debug string
 	 * 
 	 * @param s
 	 *            The string to print
 	 */
 	public static void d(String s)
 	{
-		if (!isSilent)
-		{
-			System.out.println(s);
-		}
+		log(Level.DEBUG, s);
+	}
 
-		// Dump to log.txt if needed
-		if (dumpToFile)
+	/**
+	 * Prints out a debug message that is formatted only if the debug level is
+	 * enabled
+	 * 
+	 * @param format
+	 *            Format string of the message
+	 * @param args
+	 *            Arguments of the format string
+	 */
+	public static void d(String format, Object... args)
+	{
+		if (isEnabled(Level.DEBUG))
 		{
-			if (writer == null)
-			{
-				try
-				{
-					System.out.println("PATH: " + FileLoader.getTargetPath());
-					writer = new BufferedWriter(new FileWriter(
-							FileLoader.getTargetPath() + File.separator
-									+ "log.txt"));
-				}
-				catch (IOException e)
-				{
-					e.printStackTrace();
-				}
-			}
-
-			try
-			{
-				writer.write(s + "\n");
-			}
-			catch (IOException e)
-			{
-				e.printStackTrace();
-			}
+			log(Level.DEBUG, String.format(format, args));
 		}
 	}
 
@@ -80,17 +124,33 @@ public class Log
 	 */
 	public static void d(String[] a)
 	{
-		String s = "[";
+		if (!isEnabled(Level.DEBUG))
+		{
+			return;
+		}
+
+		StringBuilder s = new StringBuilder("[");
 		for (int i = 0; i < a.length; ++i)
 		{
-			s += a[i];
+			s.append(a[i]);
 			if (i < (a.length - 1))
 			{
-				s += " ";
+				s.append(' ');
 			}
 		}
-		s += "]";
-		d(s);
+		s.append(']');
+		d(s.toString());
+	}
+
+	/**
+	 * Prints out the given progress information
+	 * 
+	 * @param s
+	 *            The string to print
+	 */
+	public static void i(String s)
+	{
+		log(Level.INFO, s);
 	}
 
 	/**
@@ -109,37 +169,293 @@ public class Log
 	 */
 	public static void e(String s)
 	{
-		if (printErrors)
+		log(Level.ERROR, s);
+	}
+
+	/**
+	 * Writes out the waiting messages and stops the writer thread. Messages
+	 * logged after this start a new writer thread.
+	 */
+	public static synchronized void close()
+	{
+		Thread thread = writerThread;
+		if (thread == null)
+		{
+			return;
+		}
+
+		boolean interrupted = false;
+		while (true)
+		{
+			try
+			{
+				queue.put(END);
+				thread.join();
+				break;
+			}
+			catch (InterruptedException e)
+			{
+				interrupted = true;
+			}
+		}
+		writerThread = null;
+
+		if (interrupted)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Queues a message for the writer thread if its level is enabled
+	 * 
+	 * @param l
+	 *            Level of the message
+	 * @param s
+	 *            The message
+	 */
+	private static void log(Level l, String s)
+	{
+		if (!isEnabled(l))
+		{
+			return;
+		}
+		boolean toConsole = (l == Level.ERROR) ? printErrors : !isSilent;
+		if (!toConsole && !dumpToFile)
+		{
+			return;
+		}
+
+		if (writerThread == null)
+		{
+			startWriter();
+		}
+
+		try
+		{
+			queue.put(new Entry(l, s));
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Starts the writer thread unless it is already running
+	 */
+	private static synchronized void startWriter()
+	{
+		if (writerThread != null)
+		{
+			return;
+		}
+
+		Thread thread = new Thread(new Writer(), "Log writer");
+		thread.setDaemon(true);
+		thread.start();
+		writerThread = thread;
+
+		if (!hookAdded)
 		{
-			System.err.println(s);
+			hookAdded = true;
+			Runtime.getRuntime().addShutdownHook(new Thread()
+			{
+				@Override
+				public void run()
+				{
+					close();
+				}
+			});
 		}
+	}
+
+	/**
+	 * A queued message
+	 */
+	private static class Entry
+	{
+		final Level level;
+		final String text;
 
-		// Dump to log.txt if needed
-		if (dumpToFile)
+		Entry(Level level, String text)
 		{
-			if (writer == null)
+			this.level = level;
+			this.text = text;
+		}
+	}
+
+	/**
+	 * Takes the messages from the queue and writes them out in batches until
+	 * the end mark
+	 */
+	private static class Writer implements Runnable
+	{
+		private BufferedWriter file = null;
+		private boolean fileFailed = false;
+		private StringBuilder out = new StringBuilder();
+		private StringBuilder err = new StringBuilder();
+
+		@Override
+		public void run()
+		{
+			ArrayList<Entry> batch = new ArrayList<Entry>();
+			boolean done = false;
+			try
+			{
+				while (!done)
+				{
+					batch.add(queue.take());
+					queue.drainTo(batch);
+					for (Entry entry : batch)
+					{
+						if (entry == END)
+						{
+							done = true;
+						}
+						else
+						{
+							write(entry);
+						}
+					}
+					batch.clear();
+					flush();
+				}
+			}
+			catch (InterruptedException e)
+			{
+				flush();
+			}
+			finally
+			{
+				closeFile();
+			}
+		}
+
+		private void write(Entry entry)
+		{
+			if (entry.level == Level.ERROR)
+			{
+				if (printErrors)
+				{
+					if (out.length() > 0)
+					{
+						flushConsole();
+					}
+					err.append(entry.text).append('\n');
+				}
+			}
+			else if (!isSilent)
+			{
+				if (err.length() > 0)
+				{
+					flushConsole();
+				}
+				out.append(entry.text).append('\n');
+			}
+
+			// Dump to log.txt if needed
+			if (dumpToFile && openFile())
 			{
 				try
 				{
-					Log.d("PATH: " + FileLoader.getTargetPath());
-					writer = new BufferedWriter(new FileWriter(
-							FileLoader.getTargetPath() + File.pathSeparator
-									+ "log.txt"));
+					file.write(entry.text);
+					file.write('\n');
 				}
 				catch (IOException e)
 				{
 					e.printStackTrace();
 				}
 			}
+		}
+
+		private boolean openFile()
+		{
+			if (file != null)
+			{
+				return true;
+			}
+			if (fileFailed)
+			{
+				return false;
+			}
 
 			try
 			{
-				writer.write(s + "\n");
+				if (!isSilent)
+				{
+					out.append("PATH: " + FileLoader.getTargetPath() + "\n");
+				}
+				file = new BufferedWriter(new FileWriter(
+						FileLoader.getTargetPath() + File.separator + "log.txt",
+						logFileExists()));
+				return true;
 			}
 			catch (IOException e)
 			{
 				e.printStackTrace();
+				fileFailed = true;
+				return false;
+			}
+		}
+
+		private void flush()
+		{
+			flushConsole();
+			if (file != null)
+			{
+				try
+				{
+					file.flush();
+				}
+				catch (IOException e)
+				{
+					e.printStackTrace();
+				}
 			}
 		}
+
+		private void flushConsole()
+		{
+			if (out.length() > 0)
+			{
+				System.out.print(out);
+				System.out.flush();
+				out.setLength(0);
+			}
+			if (err.length() > 0)
+			{
+				System.err.print(err);
+				System.err.flush();
+				err.setLength(0);
+			}
+		}
+
+		private void closeFile()
+		{
+			if (file != null)
+			{
+				try
+				{
+					file.close();
+				}
+				catch (IOException e)
+				{
+					e.printStackTrace();
+				}
+				file = null;
+			}
+		}
+	}
+
+	/**
+	 * Checks whether an earlier writer thread has already created log.txt,
+	 * so that the file is appended instead of overwritten
+	 * 
+	 * @return True if log.txt has been created by this run
+	 */
+	private static synchronized boolean logFileExists()
+	{
+		return logFiles++ > 0;
 	}
 }
@@ -1,6 +1,7 @@
 package cppParser.utils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 
@@ -20,20 +21,28 @@ public class MacroExpander
 			"!=", "!" };
 	private static HashSet<String> rawExpandSet = new HashSet<String>();
 
-	private static HashMap<String, CppDefine> currentDefines = new HashMap<String, CppDefine>();
+	static
+	{
+		for (String s : rawExpandDelims)
+		{
+			rawExpandSet.add(s);
+		}
+	}
+
+	// The expansion state of the file each thread is processing
+	private static ThreadLocal<Context> context = new ThreadLocal<Context>()
+	{
+		@Override
+		protected Context initialValue()
+		{
+			return new Context();
+		}
+	};
 
 	private int callEnd = -1;
-	private String[] tokens = null;
 
 	public MacroExpander()
 	{
-		if (rawExpandSet.isEmpty())
-		{
-			for (String s : rawExpandDelims)
-			{
-				rawExpandSet.add(s);
-			}
-		}
 	}
 
 	public static String expandRaw(String line)
@@ -48,13 +57,13 @@ public class MacroExpander
 		String[] pieces = StringTools.split(line, null, true);
 		pieces = me.expand(pieces);
 
-		String result = "";
-		for (String s : pieces)
+		StringBuilder result = new StringBuilder(line.length() + 16);
+		join(Arrays.asList(pieces), result);
+		if (line.endsWith(" "))
 		{
-			result += (result.length() > 0 ? " " : "") + s;
+			result.append(' ');
 		}
-		return result + (line.endsWith(" ") ? " " : "");
-		// return line;
+		return result.toString();
 	}
 
 	/**
@@ -68,30 +77,54 @@ public class MacroExpander
 	 */
 	public String[] expand(String[] t)
 	{
-		this.tokens = t;
-		ArrayList<String> newTokens = new ArrayList<String>();
+		ArrayList<String> newTokens = new ArrayList<String>(t.length);
+		expand(t, context.get(), newTokens);
+		return StringTools.listToArray(newTokens);
+	}
 
+	/**
+	 * Expands the macros of a list of tokens into another list. A macro is
+	 * not expanded again inside its own expansion.
+	 * 
+	 * @param tokens
+	 *            Tokens to expand
+	 * @param ctx
+	 *            Expansion state of the thread
+	 * @param newTokens
+	 *            List the expanded tokens are added to
+	 */
+	private void expand(String[] tokens, Context ctx,
+			ArrayList<String> newTokens)
+	{
 		for (int i = 0; i < tokens.length; ++i)
 		{
 			boolean matched = false;
 
-			if (currentDefines.containsKey(tokens[i]))
+			CppDefine cd = ctx.defines.get(tokens[i]);
+			if ((cd != null) && ctx.active.contains(cd))
+			{
+				// A recursive macro call is left as is
+				ctx.guardHits++;
+				cd = null;
+			}
+
+			if (cd != null)
 			{
-				CppDefine cd = currentDefines.get(tokens[i]);
 				if ((cd.getParameters() != null)
 						&& (cd.getParameters().size() > 0))
 				{
 					ArrayList<String> params = isolateMacroCall(tokens, i);
 					if (params.size() == cd.getParameters().size())
 					{
-						newTokens.addAll(handleExpansion(params, cd));
-						i = callEnd;
+						int end = callEnd;
+						handleExpansion(params, cd, ctx, newTokens);
+						i = end;
 						matched = true;
 					}
 				}
 				else
 				{
-					newTokens.addAll(replace(cd));
+					replace(cd, ctx, newTokens);
 					matched = true;
 				}
 			}
@@ -101,42 +134,50 @@ public class MacroExpander
 				newTokens.add(tokens[i]);
 			}
 		}
-
-		return StringTools.listToArray(newTokens);
 	}
 
 	/**
-	 * Replaces a simple constant-like macro call with the expanded macro
+	 * Replaces a simple constant-like macro call with the expanded macro. The
+	 * expansion is memoized for the #define set of the file, unless it was
+	 * cut short by a recursive macro call.
 	 * 
-	 * @param tokens
-	 *            Tokens of the original line
-	 * @param i
-	 *            Index of the macro call token
 	 * @param cd
 	 *            CppDefine containing the macro expansion
-	 * @return Token array with the given macro call expanded
+	 * @param ctx
+	 *            Expansion state of the thread
+	 * @param newTokens
+	 *            List the expanded tokens are added to
 	 */
-	private ArrayList<String> replace(CppDefine cd)
+	private void replace(CppDefine cd, Context ctx, ArrayList<String> newTokens)
 	{
-		String[] spaceDelim = new String[] { " " };
-		String[] definitionTokens = StringTools.split(cd.getDefinition(),
-				spaceDelim, true);
-		String[] expandedDefinition = (new MacroExpander())
-				.expand(definitionTokens);
-
-		ArrayList<String> newTokens = new ArrayList<String>();
-		for (String s : expandedDefinition)
+		String[] expansion = ctx.expansions.get(cd);
+		if (expansion != null)
+		{
+			for (String s : expansion)
+			{
+				newTokens.add(s);
+			}
+			return;
+		}
+
+		int start = newTokens.size();
+		int guardHits = ctx.guardHits;
+
+		ctx.active.add(cd);
+		expand(cd.getDefinitionTokens(), ctx, newTokens);
+		ctx.active.remove(cd);
+
+		if (ctx.guardHits == guardHits)
 		{
-			newTokens.add(s);
+			ctx.expansions.put(cd, newTokens.subList(start, newTokens.size())
+					.toArray(new String[newTokens.size() - start]));
 		}
-		return newTokens;
 	}
 
 	/**
 	 * Isolates a macro call from the list of tokens. After this method is
-	 * executed, the private static variables "callStart" and "callEnd" will be
-	 * populated by the index of the macro name and the index of the closing
-	 * parenthesis, respectively.
+	 * executed, "callEnd" will be populated by the index of the closing
+	 * parenthesis.
 	 * 
 	 * @param tokens
 	 *            Original list of tokens
@@ -146,17 +187,14 @@ public class MacroExpander
 	 */
 	private ArrayList<String> isolateMacroCall(String[] tokens, int i)
 	{
-		String repString = "";
 		ArrayList<String> params = new ArrayList<String>();
-		String param = "";
+		StringBuilder param = new StringBuilder();
 		int pCount = 0;
 		int j = i;
 
 		// Build the parameter list
 		for (; j < tokens.length; ++j)
 		{
-			repString += (repString.length() > 0 ? " " : "") + tokens[j];
-
 			if (tokens[j].equals("("))
 			{
 				pCount++;
@@ -166,21 +204,25 @@ public class MacroExpander
 				pCount--;
 				if (pCount == 0)
 				{
-					params.add(param);
+					params.add(param.toString());
 					break;
 				}
 			}
 			else if ((j > (i + 1)) && (pCount == 1) && tokens[j].equals(","))
 			{
-				params.add(param);
-				param = "";
+				params.add(param.toString());
+				param.setLength(0);
 			}
 
 			if (!tokens[j].equals(","))
 			{
 				if (j > (i + 1))
 				{
-					param += (param.length() > 0 ? " " : "") + tokens[j];
+					if (param.length() > 0)
+					{
+						param.append(' ');
+					}
+					param.append(tokens[j]);
 				}
 			}
 		}
@@ -193,113 +235,111 @@ public class MacroExpander
 	/**
 	 * Replaces a function-like macro call with the expanded macro
 	 * 
-	 * @param tokens
-	 *            Tokens of the original line
-	 * @param i
-	 *            Index of the macro call (the name of the macro)
+	 * @param params
+	 *            Parameters of the macro call
 	 * @param cd
 	 *            CppDefine containing the macro expansion
-	 * @return Token array with the given macro call expanded
+	 * @param ctx
+	 *            Expansion state of the thread
+	 * @param newTokens
+	 *            List the expanded tokens are added to
 	 */
-	private static ArrayList<String> handleExpansion(ArrayList<String> params,
-			CppDefine cd)
+	private void handleExpansion(ArrayList<String> params, CppDefine cd,
+			Context ctx, ArrayList<String> newTokens)
 	{
 		// Expand all the parameters in case they are macro calls
-		ArrayList<String> tmpParams = new ArrayList<String>(params);
+		String[] args = new String[params.size()];
+		ArrayList<String> expandedParam = new ArrayList<String>();
+		StringBuilder arg = new StringBuilder();
 		for (int k = 0; k < params.size(); ++k)
 		{
-			String[] tmpParamsArray = (new MacroExpander())
-					.expand(new String[] { params.get(k) });
-			String tmpParamString = "";
-			for (String s : tmpParamsArray)
-			{
-				tmpParamString += (tmpParamString.length() > 0 ? " " : "") + s;
-			}
-			tmpParams.remove(k);
-			tmpParams.add(k, tmpParamString);
+			expandedParam.clear();
+			expand(new String[] { params.get(k) }, ctx, expandedParam);
+			arg.setLength(0);
+			join(expandedParam, arg);
+			args[k] = arg.toString();
 		}
-		params = tmpParams;
 
-		// Retrieve the macro expansion and split it into tokens
-		String[] defLine = StringTools.split(cd.getDefinition(), null, true);
-		for (int k = 0; k < params.size(); ++k)
+		// Substitute the parameters in the pre-tokenized expansion
+		String[] defLine = cd.getExpansionTokens().clone();
+		for (int k = 0; k < args.length; ++k)
 		{
 			for (int l = 0; l < defLine.length; ++l)
 			{
 				if (defLine[l].equals(cd.getParameters().get(k)))
 				{
-					defLine[l] = params.get(k);
+					defLine[l] = args[k];
 				}
 			}
 		}
 
-		// Form the new array of tokens
-		ArrayList<String> newTokensList = new ArrayList<String>();
-
-		/*
-		 * // First, add all the tokens before the macro call for(int k = 0; k <
-		 * callStart; ++k) { if(newTokens[k].length() > 0)
-		 * newTokensList.add(newTokens[k]); }
-		 */
-
-		// Second, add all the tokens expanded from the macro
+		// Drop the empty tokens
+		int count = 0;
 		for (int k = 0; k < defLine.length; ++k)
 		{
 			if (defLine[k].length() > 0)
 			{
-				newTokensList.add(defLine[k]);
+				defLine[count++] = defLine[k];
 			}
 		}
+		String[] expansion = new String[count];
+		System.arraycopy(defLine, 0, expansion, 0, count);
 
-		// Third, add the rest of the tokens from the original list of tokens
-		/*
-		 * for(int k = callEnd + 1; k < newTokens.length; ++k) {
-		 * if(newTokens[k].length() > 0) newTokensList.add(newTokens[k]); }
-		 */
-
-		// Finally, expand the newly-created list of tokens in case of macro
-		// calls inside the macro expansion
-
-		// return (new
-		// MacroExpander()).expand(StringTools.listToArray(newTokensList));
-		// String[] newTokensListArray = (new
-		// MacroExpander()).expand(StringTools.listToArray(newTokensList));
+		// Finally, expand the macro calls inside the macro expansion
+		ctx.active.add(cd);
+		expand(expansion, ctx, newTokens);
+		ctx.active.remove(cd);
+	}
 
-		String[] recArray = (new MacroExpander()).expand(newTokensList
-				.toArray(new String[] {}));
-		ArrayList<String> recList = new ArrayList<String>();
-		for (String s : recArray)
+	/**
+	 * Joins tokens with single spaces, skipping the space before a token
+	 * while the result is still empty
+	 * 
+	 * @param tokens
+	 *            Tokens to join
+	 * @param result
+	 *            Builder the tokens are appended to
+	 */
+	private static void join(Iterable<String> tokens, StringBuilder result)
+	{
+		for (String s : tokens)
 		{
-			recList.add(s);
+			if (result.length() > 0)
+			{
+				result.append(' ');
+			}
+			result.append(s);
 		}
-		// return newTokensList;
-		return recList;
 	}
 
 	/**
-	 * Stores a given define with the name as the key
+	 * Sets the defines used by the calling thread, the #defines visible in
+	 * the file it is processing
 	 * 
-	 * @param name
-	 *            Name of the define
-	 * @param define
-	 *            The definition
+	 * @param defines
+	 *            The #defines by name
 	 */
-	public static void addDefine(String name, CppDefine define)
+	public static void setCurrentDefines(PersistentMap<String, CppDefine> defines)
 	{
-		currentDefines.put(name, define);
+		Context ctx = context.get();
+		if (ctx.defines != defines)
+		{
+			ctx.defines = defines;
+			ctx.expansions.clear();
+		}
 	}
 
 	public static boolean containsDefinition(String s)
 	{
-		return currentDefines.containsKey(s);
+		return context.get().defines.containsKey(s);
 	}
 
 	public static CppDefine getDefinition(String s)
 	{
-		return currentDefines.get(s);
+		return context.get().defines.get(s);
 	}
 
-	public static boolean shouldExpandRaw(String line, char c)
+	public static boolean shouldExpandRaw(char c)
 	{
 		if ((c == ' ') || (c == ';'))
 		{
@@ -308,4 +348,21 @@ public class MacroExpander
 		return false;
 	}
 
+	/**
+	 * The expansion state of a thread
+	 */
+	private static class Context
+	{
+		// The #defines visible in the file being processed
+		PersistentMap<String, CppDefine> defines = PersistentMap.empty();
+
+		// Memoized expansions of the constant-like macros of the #defines
+		HashMap<CppDefine, String[]> expansions = new HashMap<CppDefine, String[]>();
+
+		// The macros being expanded
+		HashSet<CppDefine> active = new HashSet<CppDefine>();
+
+		// Number of recursive macro calls left unexpanded
+		int guardHits = 0;
+	}
 }
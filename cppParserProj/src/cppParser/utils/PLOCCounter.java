@@ -19,7 +19,9 @@ public class PLOCCounter
 	public int preProcessorDirectives = 0;
 
 	public char last = ' ';
-	private String line = "";
+	// First char of the current line, if the line has chars
+	private char firstChar;
+	private boolean lineStarted = false;
 	private boolean inCommentBlock = false;
 	private boolean codeFound = false, commentFound = false;
 	private boolean foundSlash = false;
@@ -39,9 +41,10 @@ public class PLOCCounter
 			last = c;
 			return;
 		}
-		if ((c != '\n') && (c != '\r'))
+		if ((c != '\n') && (c != '\r') && !lineStarted)
 		{
-			line += c;
+			firstChar = c;
+			lineStarted = true;
 		}
 		boolean justFoundComment = false;
 		switch (c)
@@ -153,9 +156,9 @@ public class PLOCCounter
 
 	private void countLine()
 	{
-		if (!line.isEmpty())
+		if (lineStarted)
 		{
-			if (line.charAt(0) == '#')
+			if (firstChar == '#')
 			{
 				preProcessorDirectives++;
 			}
@@ -226,7 +229,7 @@ public class PLOCCounter
 		commentFound = false;
 		codeFound = false;
 		foundSlash = false;
-		line = "";
+		lineStarted = false;
 	}
 
 }
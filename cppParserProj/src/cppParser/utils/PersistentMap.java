@@ -0,0 +1,424 @@
+package cppParser.utils;
+
+import java.util.ArrayList;
+
+/**
+ * An immutable hash map. Adding entries returns a new map that shares all the
+ * unchanged nodes with the original map, so that maps derived from each other
+ * (like the #define sets of files that #include each other) take little
+ * memory. The map is a hash array mapped trie of 32-way branches.
+ * 
+ * Null keys and values are not supported.
+ */
+public final class PersistentMap<K, V>
+{
+	private static final int BITS = 5;
+	private static final int MASK = (1 << BITS) - 1;
+
+	private static final PersistentMap<Object, Object> EMPTY = new PersistentMap<Object, Object>(
+			null, 0);
+
+	// Root node, null if the map is empty
+	private final Node<K, V> root;
+
+	// Number of entries
+	private final int size;
+
+	private PersistentMap(Node<K, V> root, int size)
+	{
+		this.root = root;
+		this.size = size;
+	}
+
+	/**
+	 * Retrieves the empty map
+	 * 
+	 * @return The empty map
+	 */
+	@SuppressWarnings("unchecked")
+	public static <K, V> PersistentMap<K, V> empty()
+	{
+		// the empty map holds no keys or values, so it is a map of any types
+		return (PersistentMap<K, V>) (PersistentMap<?, ?>) EMPTY;
+	}
+
+	/**
+	 * Retrieves the value of a key
+	 * 
+	 * @param key
+	 *            Key to look up
+	 * @return The value, or null if the key is not in the map
+	 */
+	public V get(K key)
+	{
+		if (root == null)
+		{
+			return null;
+		}
+		return root.get(key.hashCode(), 0, key);
+	}
+
+	/**
+	 * Checks whether the map contains a key
+	 * 
+	 * @param key
+	 *            Key to look up
+	 * @return True if the key is in the map
+	 */
+	public boolean containsKey(K key)
+	{
+		return get(key) != null;
+	}
+
+	/**
+	 * Retrieves the number of entries
+	 * 
+	 * @return Number of entries
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns a map with the given entry added. An existing value of the key
+	 * is replaced.
+	 * 
+	 * @param key
+	 *            Key of the entry
+	 * @param value
+	 *            Value of the entry
+	 * @return The new map, or this map if the key already had the value
+	 */
+	public PersistentMap<K, V> plus(K key, V value)
+	{
+		Leaf<K, V> leaf = new Leaf<K, V>(key.hashCode(), key, value);
+		if (root == null)
+		{
+			return new PersistentMap<K, V>(leaf, 1);
+		}
+
+		boolean[] grown = new boolean[1];
+		Node<K, V> newRoot = root.plus(0, leaf, grown);
+		if (newRoot == root)
+		{
+			return this;
+		}
+		return new PersistentMap<K, V>(newRoot, grown[0] ? size + 1 : size);
+	}
+
+	/**
+	 * Returns a map with all the entries of another map added. The values of
+	 * the other map replace the values of this map.
+	 * 
+	 * @param other
+	 *            Map to add
+	 * @return The new map
+	 */
+	public PersistentMap<K, V> plusAll(PersistentMap<K, V> other)
+	{
+		if ((other == this) || (other.root == null))
+		{
+			return this;
+		}
+		if (root == null)
+		{
+			return other;
+		}
+
+		ArrayList<Leaf<K, V>> leaves = new ArrayList<Leaf<K, V>>(other.size);
+		other.root.collect(leaves);
+
+		PersistentMap<K, V> result = this;
+		for (Leaf<K, V> leaf : leaves)
+		{
+			result = result.plus(leaf.key, leaf.value);
+		}
+		return result;
+	}
+
+	/**
+	 * Creates an array of leaves
+	 * 
+	 * @param length
+	 *            Length of the array
+	 * @return The array of nulls
+	 */
+	@SuppressWarnings("unchecked")
+	private static <K, V> Leaf<K, V>[] newLeaves(int length)
+	{
+		// arrays of a generic type cannot be created, the cast is safe as the
+		// array is empty
+		return (Leaf<K, V>[]) new Leaf<?, ?>[length];
+	}
+
+	/**
+	 * Creates an array of nodes
+	 * 
+	 * @param length
+	 *            Length of the array
+	 * @return The array of nulls
+	 */
+	@SuppressWarnings("unchecked")
+	private static <K, V> Node<K, V>[] newNodes(int length)
+	{
+		// arrays of a generic type cannot be created, the cast is safe as the
+		// array is empty
+		return (Node<K, V>[]) new Node<?, ?>[length];
+	}
+
+	/**
+	 * Node of the trie
+	 */
+	private static abstract class Node<K, V>
+	{
+		/**
+		 * Retrieves the value of a key in this node
+		 * 
+		 * @param hash
+		 *            Hash of the key
+		 * @param shift
+		 *            Depth of this node in bits of the hash
+		 * @param key
+		 *            Key to look up
+		 * @return The value, or null if not found
+		 */
+		abstract V get(int hash, int shift, K key);
+
+		/**
+		 * Adds an entry under this node
+		 * 
+		 * @param shift
+		 *            Depth of this node in bits of the hash
+		 * @param leaf
+		 *            Entry to add
+		 * @param grown
+		 *            Set to true if the entry was not replacing another
+		 * @return The new node, or this node if nothing changed
+		 */
+		abstract Node<K, V> plus(int shift, Leaf<K, V> leaf, boolean[] grown);
+
+		/**
+		 * Collects the entries under this node
+		 * 
+		 * @param leaves
+		 *            List to add the entries to
+		 */
+		abstract void collect(ArrayList<Leaf<K, V>> leaves);
+
+		/**
+		 * Retrieves the hash of a node that is a leaf or a collision
+		 * 
+		 * @return The hash of the keys of the node
+		 */
+		abstract int hash();
+	}
+
+	/**
+	 * A single entry
+	 */
+	private static final class Leaf<K, V> extends Node<K, V>
+	{
+		final int hash;
+		final K key;
+		final V value;
+
+		Leaf(int hash, K key, V value)
+		{
+			this.hash = hash;
+			this.key = key;
+			this.value = value;
+		}
+
+		V get(int hash, int shift, K key)
+		{
+			if ((this.hash == hash) && this.key.equals(key))
+			{
+				return value;
+			}
+			return null;
+		}
+
+		Node<K, V> plus(int shift, Leaf<K, V> leaf, boolean[] grown)
+		{
+			if ((hash == leaf.hash) && key.equals(leaf.key))
+			{
+				return (value == leaf.value) ? this : leaf;
+			}
+
+			grown[0] = true;
+			if (hash == leaf.hash)
+			{
+				Leaf<K, V>[] leaves = newLeaves(2);
+				leaves[0] = this;
+				leaves[1] = leaf;
+				return new Collision<K, V>(hash, leaves);
+			}
+			return Branch.of(shift, this, leaf);
+		}
+
+		void collect(ArrayList<Leaf<K, V>> leaves)
+		{
+			leaves.add(this);
+		}
+
+		int hash()
+		{
+			return hash;
+		}
+	}
+
+	/**
+	 * Entries whose keys have the same hash
+	 */
+	private static final class Collision<K, V> extends Node<K, V>
+	{
+		final int hash;
+		final Leaf<K, V>[] leaves;
+
+		Collision(int hash, Leaf<K, V>[] leaves)
+		{
+			this.hash = hash;
+			this.leaves = leaves;
+		}
+
+		V get(int hash, int shift, K key)
+		{
+			for (Leaf<K, V> leaf : leaves)
+			{
+				if (leaf.key.equals(key))
+				{
+					return leaf.value;
+				}
+			}
+			return null;
+		}
+
+		Node<K, V> plus(int shift, Leaf<K, V> leaf, boolean[] grown)
+		{
+			if (leaf.hash != hash)
+			{
+				grown[0] = true;
+				return Branch.of(shift, this, leaf);
+			}
+
+			for (int i = 0; i < leaves.length; ++i)
+			{
+				if (leaves[i].key.equals(leaf.key))
+				{
+					if (leaves[i].value == leaf.value)
+					{
+						return this;
+					}
+					Leaf<K, V>[] newLeaves = leaves.clone();
+					newLeaves[i] = leaf;
+					return new Collision<K, V>(hash, newLeaves);
+				}
+			}
+
+			grown[0] = true;
+			Leaf<K, V>[] newLeaves = newLeaves(leaves.length + 1);
+			System.arraycopy(leaves, 0, newLeaves, 0, leaves.length);
+			newLeaves[leaves.length] = leaf;
+			return new Collision<K, V>(hash, newLeaves);
+		}
+
+		void collect(ArrayList<Leaf<K, V>> leaves)
+		{
+			for (Leaf<K, V> leaf : this.leaves)
+			{
+				leaves.add(leaf);
+			}
+		}
+
+		int hash()
+		{
+			return hash;
+		}
+	}
+
+	/**
+	 * Node with up to 32 children selected by 5 bits of the hash
+	 */
+	private static final class Branch<K, V> extends Node<K, V>
+	{
+		final int bitmap;
+		final Node<K, V>[] children;
+
+		Branch(int bitmap, Node<K, V>[] children)
+		{
+			this.bitmap = bitmap;
+			this.children = children;
+		}
+
+		/**
+		 * Creates a branch holding two leaves or collisions of different
+		 * hashes
+		 */
+		static <K, V> Node<K, V> of(int shift, Node<K, V> a, Node<K, V> b)
+		{
+			int indexA = (a.hash() >>> shift) & MASK;
+			int indexB = (b.hash() >>> shift) & MASK;
+			if (indexA == indexB)
+			{
+				Node<K, V>[] children = newNodes(1);
+				children[0] = of(shift + BITS, a, b);
+				return new Branch<K, V>(1 << indexA, children);
+			}
+			Node<K, V>[] children = newNodes(2);
+			children[indexA < indexB ? 0 : 1] = a;
+			children[indexA < indexB ? 1 : 0] = b;
+			return new Branch<K, V>((1 << indexA) | (1 << indexB), children);
+		}
+
+		V get(int hash, int shift, K key)
+		{
+			int bit = 1 << ((hash >>> shift) & MASK);
+			if ((bitmap & bit) == 0)
+			{
+				return null;
+			}
+			return children[Integer.bitCount(bitmap & (bit - 1))].get(hash,
+					shift + BITS, key);
+		}
+
+		Node<K, V> plus(int shift, Leaf<K, V> leaf, boolean[] grown)
+		{
+			int bit = 1 << ((leaf.hash >>> shift) & MASK);
+			int pos = Integer.bitCount(bitmap & (bit - 1));
+
+			if ((bitmap & bit) == 0)
+			{
+				grown[0] = true;
+				Node<K, V>[] newChildren = newNodes(children.length + 1);
+				System.arraycopy(children, 0, newChildren, 0, pos);
+				newChildren[pos] = leaf;
+				System.arraycopy(children, pos, newChildren, pos + 1,
+						children.length - pos);
+				return new Branch<K, V>(bitmap | bit, newChildren);
+			}
+
+			Node<K, V> child = children[pos].plus(shift + BITS, leaf, grown);
+			if (child == children[pos])
+			{
+				return this;
+			}
+			Node<K, V>[] newChildren = children.clone();
+			newChildren[pos] = child;
+			return new Branch<K, V>(bitmap, newChildren);
+		}
+
+		void collect(ArrayList<Leaf<K, V>> leaves)
+		{
+			for (Node<K, V> child : children)
+			{
+				child.collect(leaves);
+			}
+		}
+
+		int hash()
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -103,47 +103,23 @@ public class StringTools
 		// Init the list of parts
 		ArrayList<String> parts = new ArrayList<String>();
 
-		// Loop through the input string
-		String s = "";
-		for (int i = 0; i < src.length(); ++i)
+		// Loop through the input string. The current token is the slice of
+		// the input from 'start' to the current index.
+		int length = src.length();
+		int start = 0;
+		for (int i = 0; i < length; ++i)
 		{
-			src.charAt(i);
+			char c = src.charAt(i);
 			boolean shouldSplit = false;
 			String includedDelim = null;
 
-			// Check for string literal
-			if (src.charAt(i) == '"')
+			// Check for string and char literals
+			if ((c == '"') || (c == '\''))
 			{
-				/*
-				 * if(s.length() > 0) { shouldSplit = true; i--; }
-				 */
-
-				s += src.charAt(i);
-				i++;
-				while (i < src.length())
-				{
-					s += src.charAt(i);
-					if (src.charAt(i) == '"')
-					{
-						if ((src.charAt(i - 1) != '\\')
-								|| ((src.charAt(i - 1) == '\\') && (src
-										.charAt(i - 2) == '\\')))
-						{
-							break;
-						}
-					}
-					i++;
-				}
-				shouldSplit = true;
-			}
-			else if (src.charAt(i) == '\'')
-			{
-				s += src.charAt(i);
 				i++;
-				while (i < src.length())
+				while (i < length)
 				{
-					s += src.charAt(i);
-					if (src.charAt(i) == '\'')
+					if (src.charAt(i) == c)
 					{
 						if ((src.charAt(i - 1) != '\\')
 								|| ((src.charAt(i - 1) == '\\') && (src
@@ -154,67 +130,43 @@ public class StringTools
 					}
 					i++;
 				}
-				shouldSplit = true;
+
+				// The literal ends the token
+				parts.add(src.substring(start, Math.min(i + 1, length)));
+				start = i + 1;
+				continue;
 			}
-			else
+
+			// Check for deliminator
+			for (int j = 0; j < delims.length; ++j)
 			{
-				// Check for deliminator
-				for (int j = 0; j < delims.length; ++j)
+				if (src.startsWith(delims[j], i))
 				{
-					int matched = 0;
-					for (int k = 0; k < delims[j].length(); ++k)
-					{
-						if ((i + k) < src.length())
-						{
-							if (src.charAt(i + k) == delims[j].charAt(k))
-							{
-								matched++;
-								if (matched == delims[j].length())
-								{
-									shouldSplit = true;
-									includedDelim = delims[j];
-									break;
-								}
-							}
-						}
-					}
-					if (shouldSplit)
-					{
-						break;
-					}
+					shouldSplit = true;
+					includedDelim = delims[j];
+					break;
 				}
-
 			}
 
 			// If a delim was found, split the string
 			if (shouldSplit)
 			{
-				if (s.length() > 0)
+				if (i > start)
 				{
-					parts.add(s);
+					parts.add(src.substring(start, i));
 				}
-				if (includeDelims && (includedDelim != null))
+				if (includeDelims && (c != ' '))
 				{
-					if (src.charAt(i) != ' ')
-					{
-						parts.add(includedDelim);
-						i += includedDelim.length() - 1;
-						includedDelim = null;
-					}
+					parts.add(includedDelim);
+					i += includedDelim.length() - 1;
 				}
-				s = "";
-			}
-			else
-			{
-				// No delim was found yet, add the current char to the current
-				// string
-				s += src.charAt(i);
+				start = i + 1;
 			}
 		}
 
-		if (!s.equals(""))
+		if (start < length)
 		{
-			parts.add(s);
+			parts.add(src.substring(start));
 		}
 
 		// Finally, convert the ArrayList to a simple array and return it
@@ -272,6 +224,120 @@ public class StringTools
 		return retParts;
 	}
 
+	/**
+	 * Checks whether a sentence under construction ends with the given string
+	 * 
+	 * @param line
+	 *            The sentence
+	 * @param suffix
+	 *            The string to look for
+	 * @return 'true' if the sentence ends with the string
+	 */
+	public static boolean endsWith(CharSequence line, String suffix)
+	{
+		int offset = line.length() - suffix.length();
+		if (offset < 0)
+		{
+			return false;
+		}
+		for (int i = suffix.length() - 1; i >= 0; --i)
+		{
+			if (line.charAt(offset + i) != suffix.charAt(i))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether a sentence under construction starts with the given
+	 * string
+	 * 
+	 * @param line
+	 *            The sentence
+	 * @param prefix
+	 *            The string to look for
+	 * @return 'true' if the sentence starts with the string
+	 */
+	public static boolean startsWith(CharSequence line, String prefix)
+	{
+		if (line.length() < prefix.length())
+		{
+			return false;
+		}
+		for (int i = 0; i < prefix.length(); ++i)
+		{
+			if (line.charAt(i) != prefix.charAt(i))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether the last char of a sentence that is not whitespace is
+	 * the given char, as trim().endsWith() would
+	 * 
+	 * @param line
+	 *            The sentence
+	 * @param c
+	 *            The char to look for
+	 * @return 'true' if the trimmed sentence ends with the char
+	 */
+	public static boolean trimmedEndsWith(CharSequence line, char c)
+	{
+		int end = line.length();
+		while ((end > 0) && (line.charAt(end - 1) <= ' '))
+		{
+			end--;
+		}
+		return (end > 0) && (line.charAt(end - 1) == c);
+	}
+
+	/**
+	 * Removes the leading and trailing whitespace of a sentence in place, as
+	 * String.trim() does
+	 * 
+	 * @param line
+	 *            The sentence
+	 */
+	public static void trim(StringBuilder line)
+	{
+		int end = line.length();
+		while ((end > 0) && (line.charAt(end - 1) <= ' '))
+		{
+			end--;
+		}
+		line.setLength(end);
+
+		int start = 0;
+		while ((start < end) && (line.charAt(start) <= ' '))
+		{
+			start++;
+		}
+		line.delete(0, start);
+	}
+
+	/**
+	 * Formats bytes, like a digest, as a hexadecimal string
+	 * 
+	 * @param bytes
+	 *            The bytes to format
+	 * @return The bytes as two lowercase hexadecimal digits each
+	 */
+	public static String toHex(byte[] bytes)
+	{
+		StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes)
+		{
+			hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+			hex.append(Character.forDigit(b & 0xf, 16));
+		}
+		return hex.toString();
+	}
+
 	/**
 	 * Counts the amount of quotes (") in a given string
 	 * 
@@ -7,6 +7,8 @@ package cppStructures;
  */
 public class CppClass extends CppScope
 {
+	private static final long serialVersionUID = 1L;
+
 	// Depth of inheritance (0 is the 'root' class)
 	private int depthOfInheritance = -1;
 
@@ -1,16 +1,19 @@
 package cppStructures;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 
 import cppParser.Extractor;
+import cppParser.utils.StringTools;
 
 /**
  * Represents a #define statement
  * 
  * @author Harri Pellikka
  */
-public class CppDefine
+public class CppDefine implements Serializable
 {
+	private static final long serialVersionUID = 1L;
 
 	// Origin file of the #define statement
 	private String file = null;
@@ -20,13 +23,18 @@ public class CppDefine
 	private ArrayList<String> users = null;
 
 	// Name of the define
-	// private String name = null;
+	private String name = null;
 
 	private ArrayList<String> params = null;
 
 	// The definition in #define statement
 	private String definition = null;
 
+	// The definition split into tokens, by spaces and by the default
+	// delimiters. Split on first use, shared by the threads of the main pass.
+	private transient volatile String[] definitionTokens = null;
+	private transient volatile String[] expansionTokens = null;
+
 	/**
 	 * Constructs a new CppDefine object without parameters
 	 * 
@@ -35,11 +43,11 @@ public class CppDefine
 	 * @param definition
 	 *            The raw definition string
 	 */
-	// public CppDefine(String name, String definition)
-	public CppDefine(String definition)
+	public CppDefine(String name, String definition)
 	{
+		this.name = name;
 		this.definition = definition;
-		file = Extractor.currentFile;
+		file = Extractor.getCurrentFile();
 		users = new ArrayList<String>();
 		users.add(file);
 	}
@@ -54,13 +62,12 @@ public class CppDefine
 	 * @param definition
 	 *            The raw definition string
 	 */
-	// public CppDefine(String name, ArrayList<String> params, String
-	// definition)
-	public CppDefine(ArrayList<String> params, String definition)
+	public CppDefine(String name, ArrayList<String> params, String definition)
 	{
+		this.name = name;
 		this.params = params;
 		this.definition = definition;
-		file = Extractor.currentFile;
+		file = Extractor.getCurrentFile();
 		users = new ArrayList<String>();
 		users.add(file);
 	}
@@ -99,6 +106,16 @@ public class CppDefine
 		return file;
 	}
 
+	/**
+	 * Retrieves the name of the definition
+	 * 
+	 * @return Name of the definition
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
 	/**
 	 * Retrieves the parameters of the definition
 	 * 
@@ -118,4 +135,51 @@ public class CppDefine
 	{
 		return definition;
 	}
+
+	/**
+	 * Retrieves the definition split by spaces, as a constant-like macro is
+	 * expanded. The array must not be modified.
+	 * 
+	 * @return Interned tokens of the definition
+	 */
+	public String[] getDefinitionTokens()
+	{
+		String[] tokens = definitionTokens;
+		if (tokens == null)
+		{
+			tokens = intern(StringTools.split(definition,
+					new String[] { " " }, true));
+			definitionTokens = tokens;
+		}
+		return tokens;
+	}
+
+	/**
+	 * Retrieves the definition split by the default delimiters, as a
+	 * function-like macro is expanded. The array must not be modified.
+	 * 
+	 * @return Interned tokens of the definition
+	 */
+	public String[] getExpansionTokens()
+	{
+		String[] tokens = expansionTokens;
+		if (tokens == null)
+		{
+			tokens = intern(StringTools.split(definition, null, true));
+			expansionTokens = tokens;
+		}
+		return tokens;
+	}
+
+	private static String[] intern(String[] tokens)
+	{
+		for (int i = 0; i < tokens.length; ++i)
+		{
+			if (tokens[i] != null)
+			{
+				tokens[i] = tokens[i].intern();
+			}
+		}
+		return tokens;
+	}
 }
@@ -5,8 +5,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 
+import cppParser.ConditionalRegions;
 import cppParser.ParsedObjectManager;
 import cppParser.utils.LOCMetrics;
+import cppParser.utils.PersistentMap;
 
 /**
  * Represents a CPP file
@@ -25,6 +27,10 @@ public class CppFile
 	// List of #defines in the file
 	private ArrayList<CppDefine> defines = null;
 
+	// Conditional compilation regions, recorded if the file is analyzed per
+	// preprocessor branch
+	private ConditionalRegions conditionals = null;
+
 	private LOCMetrics locMetrics = new LOCMetrics();
 	private CppFunc otherMetrics = null;// This variable will contain complexity
 										// and halstead metrics
@@ -104,6 +110,27 @@ public class CppFile
 		return defines;
 	}
 
+	/**
+	 * Sets the conditional compilation regions found in the pre-pass
+	 * 
+	 * @param conditionals
+	 *            Regions of this file
+	 */
+	public void setConditionals(ConditionalRegions conditionals)
+	{
+		this.conditionals = conditionals;
+	}
+
+	/**
+	 * Retrieves the conditional compilation regions
+	 * 
+	 * @return Regions of this file, or null if they were not recorded
+	 */
+	public ConditionalRegions getConditionals()
+	{
+		return conditionals;
+	}
+
 	/**
 	 * Retrieves the absolute file path of this file
 	 * 
@@ -123,13 +150,10 @@ public class CppFile
 
 		for (String s : includes)
 		{
-			for (CppFile cf : ParsedObjectManager.getInstance().getFiles())
+			CppFile cf = ParsedObjectManager.getInstance().getFileByInclude(s);
+			if (cf != null)
 			{
-				if (cf.getFilename().endsWith(s))
-				{
-					expandedIncludes.add(cf.getFilename());
-					break;
-				}
+				expandedIncludes.add(cf.getFilename());
 			}
 		}
 
@@ -137,43 +161,15 @@ public class CppFile
 	}
 
 	/**
-	 * Retrieves #defines recursively from this file and all #included files.
+	 * Retrieves the #defines of this file and all #included files. The
+	 * #define sets are computed once for all the files by the include graph.
 	 * 
-	 * @param incs
-	 *            #include files from previous recursive stages
-	 * @return List of #defines in this file and all #included files
+	 * @return The #defines visible in this file by name
 	 */
-	public ArrayList<CppDefine> getDefinesRecursively(ArrayList<String> incs)
+	public PersistentMap<String, CppDefine> getDefinesRecursively()
 	{
-
-		if (incs == null)
-		{
-			incs = new ArrayList<String>();
-		}
-		ArrayList<CppDefine> defs = new ArrayList<CppDefine>();
-		incs.add(filename);
-
-		// Add the current file's #defines
-		for (CppDefine cd : defines)
-		{
-			defs.add(cd);
-		}
-
-		// Recurse through #includes
-		for (String s : includes)
-		{
-			if (incs.contains(s))
-			{
-				continue;
-			}
-
-			CppFile cf = ParsedObjectManager.getInstance().getFileByFilename(s);
-			defs.addAll(cf.getDefinesRecursively(incs));
-
-			incs.add(s);
-		}
-
-		return defs;
+		return ParsedObjectManager.getInstance().getIncludeGraph()
+				.getDefines(filename);
 	}
 
 	/**
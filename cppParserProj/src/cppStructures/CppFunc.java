@@ -1,5 +1,6 @@
 package cppStructures;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -15,8 +16,23 @@ import cppParser.utils.LOCMetrics;
  * 
  * @author Harri Pellikka
  */
-public class CppFunc
+public class CppFunc implements Serializable
 {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Policies for combining the analyses of a function from the preprocessor
+	 * branch variants of a file
+	 */
+	public enum VariantPolicy
+	{
+		// The analysis with the highest complexity, then the longest one
+		MAX,
+		// Every operator and operand as many times as in any of the analyses
+		UNION,
+		// The analysis of the first variant the function was found in
+		FIRST
+	}
 
 	private String type = "void";
 	private String name = "";
@@ -504,6 +520,151 @@ public class CppFunc
 		return this.statements;
 	}
 
+	/**
+	 * Merges another analysis of this function into this function. Used by
+	 * the parallel main pass, where a function found from several files is
+	 * analyzed separately for each file.
+	 * 
+	 * @param func
+	 *            The same function analyzed from a later file
+	 */
+	public void merge(CppFunc func)
+	{
+		operators.addAll(func.operators);
+		operands.addAll(func.operands);
+		uniqueOperators.addAll(func.uniqueOperators);
+		uniqueOperands.addAll(func.uniqueOperands);
+		statements.addAll(func.statements);
+		recognizedLines.addAll(func.recognizedLines);
+		dependencies.putAll(func.dependencies);
+
+		// Both analyses start from the complexity of 1
+		cyclomaticComplexity += func.cyclomaticComplexity - 1;
+
+		locMetrics.codeOnlyLines += func.locMetrics.codeOnlyLines;
+		locMetrics.commentLines += func.locMetrics.commentLines;
+		locMetrics.commentedCodeLines += func.locMetrics.commentedCodeLines;
+		locMetrics.emptyLines += func.locMetrics.emptyLines;
+		locMetrics.logicalLOC += func.locMetrics.logicalLOC;
+
+		// A function with a body belongs to the file of the body
+		if (func.funcBraceCount > 0)
+		{
+			fileOfFunc = func.fileOfFunc;
+			funcBraceCount = func.funcBraceCount;
+		}
+	}
+
+	/**
+	 * Adds the operators and operands of another function to this function.
+	 * Used to sum the Halstead metrics of the functions of a file.
+	 * 
+	 * @param func
+	 *            The function whose operators and operands are added
+	 */
+	public void addMetrics(CppFunc func)
+	{
+		operators.addAll(func.operators);
+		operands.addAll(func.operands);
+		uniqueOperators.addAll(func.uniqueOperators);
+		uniqueOperands.addAll(func.uniqueOperands);
+	}
+
+	/**
+	 * Combines another analysis of this function from a different
+	 * preprocessor branch variant of the same file into this function
+	 * 
+	 * @param func
+	 *            The function analyzed from a later variant
+	 * @param policy
+	 *            How the analyses are combined
+	 */
+	public void mergeVariant(CppFunc func, VariantPolicy policy)
+	{
+		switch (policy)
+		{
+		case MAX:
+			int ownLength = operators.size() + operands.size();
+			int otherLength = func.operators.size() + func.operands.size();
+			if ((func.cyclomaticComplexity > cyclomaticComplexity)
+					|| ((func.cyclomaticComplexity == cyclomaticComplexity) && (otherLength > ownLength)))
+			{
+				operators = func.operators;
+				operands = func.operands;
+				uniqueOperators = func.uniqueOperators;
+				uniqueOperands = func.uniqueOperands;
+				statements = func.statements;
+				recognizedLines = func.recognizedLines;
+				dependencies = func.dependencies;
+				cyclomaticComplexity = func.cyclomaticComplexity;
+				locMetrics = func.locMetrics;
+			}
+			break;
+		case UNION:
+			unionInto(operators, func.operators);
+			unionInto(operands, func.operands);
+			unionInto(statements, func.statements);
+			unionInto(recognizedLines, func.recognizedLines);
+			uniqueOperators.addAll(func.uniqueOperators);
+			uniqueOperands.addAll(func.uniqueOperands);
+			dependencies.putAll(func.dependencies);
+			cyclomaticComplexity = Math.max(cyclomaticComplexity,
+					func.cyclomaticComplexity);
+			locMetrics.codeOnlyLines = Math.max(locMetrics.codeOnlyLines,
+					func.locMetrics.codeOnlyLines);
+			locMetrics.commentLines = Math.max(locMetrics.commentLines,
+					func.locMetrics.commentLines);
+			locMetrics.commentedCodeLines = Math.max(
+					locMetrics.commentedCodeLines,
+					func.locMetrics.commentedCodeLines);
+			locMetrics.emptyLines = Math.max(locMetrics.emptyLines,
+					func.locMetrics.emptyLines);
+			locMetrics.logicalLOC = Math.max(locMetrics.logicalLOC,
+					func.locMetrics.logicalLOC);
+			break;
+		case FIRST:
+			break;
+		}
+
+		// A declaration found first is completed by a body
+		if ((funcBraceCount == 0) && (func.funcBraceCount > 0))
+		{
+			fileOfFunc = func.fileOfFunc;
+			funcBraceCount = func.funcBraceCount;
+		}
+	}
+
+	/**
+	 * Adds the strings of a list into another list so that each string is
+	 * found as many times as in the list that has more of it
+	 * 
+	 * @param to
+	 *            List to add to
+	 * @param from
+	 *            List to add
+	 */
+	private static void unionInto(ArrayList<String> to, ArrayList<String> from)
+	{
+		HashMap<String, Integer> counts = new HashMap<String, Integer>();
+		for (String s : to)
+		{
+			Integer count = counts.get(s);
+			counts.put(s, (count == null) ? 1 : count + 1);
+		}
+		for (String s : from)
+		{
+			Integer count = counts.get(s);
+			if ((count == null) || (count == 0))
+			{
+				to.add(s);
+			}
+			else
+			{
+				counts.put(s, count - 1);
+			}
+		}
+	}
+
 	/**
 	 * This method is used to add known dependencies in the function eg
 	 * std::string myString; has dependencies to std and string. if given
@@ -1,7 +1,10 @@
 package cppStructures;
 
-public class CppFuncParam
+import java.io.Serializable;
+
+public class CppFuncParam implements Serializable
 {
+	private static final long serialVersionUID = 1L;
 
 	public String type = "NOTYPE";
 	public String name = "NONAME";
@@ -8,6 +8,8 @@ package cppStructures;
  */
 public class CppNamespace extends CppScope
 {
+	private static final long serialVersionUID = 1L;
+
 	/**
 	 * Constructs a new namespace
 	 * 
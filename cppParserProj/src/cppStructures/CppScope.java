@@ -1,5 +1,6 @@
 package cppStructures;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 
 import cppParser.utils.LOCMetrics;
@@ -16,8 +17,10 @@ import cppParser.utils.Log;
  * @author Harri Pellikka
  * 
  */
-public class CppScope
+public class CppScope implements Serializable
 {
+	private static final long serialVersionUID = 1L;
+
 	public static final int NAMESPACE = 0, CLASS = 1, STRUCT = 2, UNION = 3;
 	public int type = NAMESPACE;
 	public String name = "_MAIN_";
@@ -259,7 +262,7 @@ public class CppScope
 	{
 		if (cc == this)
 		{
-			Log.d("Tried to add self as child: " + this.getName());
+			Log.d("Tried to add self as child: %s", this.getName());
 		}
 
 		boolean canAdd = true;
@@ -289,7 +292,7 @@ public class CppScope
 	{
 		if (cc == this)
 		{
-			Log.d("Tried to add self as parent: " + this.getName());
+			Log.d("Tried to add self as parent: %s", this.getName());
 		}
 		else
 		{
@@ -1,11 +1,15 @@
 package cppStructures;
 
+import java.io.Serializable;
+
 /**
  * 
  * @author Tomi
  */
-public class CppType
+public class CppType implements Serializable
 {
+	private static final long serialVersionUID = 1L;
+
 	public static final int NOTDEFINED = 0, CLASS = 1, STRUCT = 2, UNION = 3,
 			NAMESPACE = 4;
 	public String parent;// this should store the owner of this type eg std is
@@ -1,12 +1,15 @@
 package cppStructures;
 
+import java.io.Serializable;
+
 /**
  * Represents a member variable
  * 
  * @author Harri Pellikka
  */
-public class MemberVariable
+public class MemberVariable implements Serializable
 {
+	private static final long serialVersionUID = 1L;
 
 	private String type = "";
 	private String template = "";
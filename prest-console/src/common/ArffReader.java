@@ -0,0 +1,1066 @@
+package common;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+
+/**
+ * Streaming reader of arff and csv files.
+ *
+ * <p>The attribute declarations (or the header line of a csv file) are read when the
+ * reader is created. Afterwards the data rows are read one at a time with next(); the
+ * fields of the current row are kept as offsets into a reused character buffer, so
+ * numeric values are parsed directly from the characters and no String is created
+ * unless stringValue is called. Quoted values with escapes, missing values ("?") and
+ * sparse rows ("{index value, ...}") are supported. In a quoted csv value, a doubled
+ * quote stands for the quote.
+ *
+ * <p>A csv file has no declarations, so openCsv reads it before returning the reader:
+ * the first pass decides whether each column is numeric or nominal and a second pass
+ * collects the values of the nominal columns.
+ */
+public class ArffReader {
+
+	/**
+	 * charset of the files opened by the reader, ArffWriter writes files in it too
+	 */
+	public static final String CHARSET = "UTF-8";
+
+	public static final int NUMERIC = 0;
+
+	public static final int NOMINAL = 1;
+
+	public static final int STRING = 2;
+
+	public static final int DATE = 3;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * powers of ten that are exactly representable as doubles
+	 */
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	private Reader reader;
+
+	private char[] buffer = new char[BUFFER_SIZE];
+
+	private int bufferPosition;
+
+	private int bufferLength;
+
+	/**
+	 * characters of the current line
+	 */
+	private char[] line = new char[256];
+
+	private int lineLength;
+
+	private int lineNumber;
+
+	private boolean csv;
+
+	private String relation;
+
+	private String[] names;
+
+	private int[] types;
+
+	private String[][] nominalValues;
+
+	/**
+	 * hash tables of the nominal values, holding value index + 1
+	 */
+	private int[][] nominalTables;
+
+	/**
+	 * start and end offsets of the fields of the current row in line
+	 */
+	private int[] fieldStarts;
+
+	private int[] fieldEnds;
+
+	private boolean[] missing;
+
+	private boolean[] escaped;
+
+	/**
+	 * true if the field is not given in the current sparse row
+	 */
+	private boolean[] sparseZero;
+
+	/**
+	 * @param reader
+	 * @param csv true if the reader is a csv file whose first line holds the attribute names
+	 * @throws IOException if the header cannot be read
+	 */
+	public ArffReader(Reader reader, boolean csv) throws IOException
+	{
+		this.reader = reader;
+		this.csv = csv;
+
+		if(csv)
+			readCsvHeader();
+		else
+			readArffHeader();
+
+		fieldStarts = new int[names.length];
+		fieldEnds = new int[names.length];
+		missing = new boolean[names.length];
+		escaped = new boolean[names.length];
+		sparseZero = new boolean[names.length];
+	}
+
+	/**
+	 * @param file
+	 * @return a reader of the arff file
+	 * @throws IOException
+	 */
+	public static ArffReader openArff(File file) throws IOException
+	{
+		return new ArffReader(open(file), false);
+	}
+
+	/**
+	 * Opens a csv file. Columns whose values are all numbers or missing are numeric,
+	 * the others are nominal with their values in the order of appearance.
+	 *
+	 * @param file
+	 * @return a reader of the csv file
+	 * @throws IOException
+	 */
+	public static ArffReader openCsv(File file) throws IOException
+	{
+		ArffReader typeReader = new ArffReader(open(file), true);
+		int numAttributes = typeReader.numAttributes();
+
+		boolean[] numeric = new boolean[numAttributes];
+		for(int i=0; i<numAttributes; i++)
+			numeric[i] = true;
+
+		boolean anyNominal = false;
+
+		try{
+			while(typeReader.next())
+			{
+				for(int i=0; i<numAttributes; i++)
+				{
+					if(numeric[i] && !typeReader.isMissing(i) && Double.isNaN(typeReader.parseNumber(i)))
+					{
+						numeric[i] = false;
+						anyNominal = true;
+					}
+				}
+			}
+		}
+		finally{
+			typeReader.close();
+		}
+
+		// the values of the nominal columns are collected in a second pass,
+		// so the values of numeric columns are never kept
+		ArrayList<LinkedHashSet<String>> values = new ArrayList<LinkedHashSet<String>>();
+		for(int i=0; i<numAttributes; i++)
+			values.add(numeric[i] ? null : new LinkedHashSet<String>());
+
+		if(anyNominal)
+		{
+			ArffReader valueReader = new ArffReader(open(file), true);
+			try{
+				while(valueReader.next())
+				{
+					for(int i=0; i<numAttributes; i++)
+					{
+						if(!numeric[i] && !valueReader.isMissing(i))
+							values.get(i).add(valueReader.stringValue(i));
+					}
+				}
+			}
+			finally{
+				valueReader.close();
+			}
+		}
+
+		ArffReader csvReader = new ArffReader(open(file), true);
+
+		for(int i=0; i<numAttributes; i++)
+		{
+			if(numeric[i])
+				csvReader.types[i] = NUMERIC;
+			else
+				csvReader.setNominal(i, values.get(i).toArray(new String[values.get(i).size()]));
+		}
+
+		return csvReader;
+	}
+
+	private static Reader open(File file) throws IOException
+	{
+		return new InputStreamReader(new FileInputStream(file), CHARSET);
+	}
+
+
+	/**
+	 * @return the name of the relation, null for csv files
+	 */
+	public String getRelation()
+	{
+		return relation;
+	}
+
+	public int numAttributes()
+	{
+		return names.length;
+	}
+
+	public String attributeName(int attribute)
+	{
+		return names[attribute];
+	}
+
+	/**
+	 * @param attribute
+	 * @return NUMERIC, NOMINAL, STRING or DATE
+	 */
+	public int attributeType(int attribute)
+	{
+		return types[attribute];
+	}
+
+	/**
+	 * @param attribute
+	 * @return true for a numeric attribute that is a metric, not one of the ids and line
+	 *         numbers written next to the metrics, whose names end in Id or Line
+	 */
+	public boolean isMetric(int attribute)
+	{
+		String name = names[attribute].trim();
+		return types[attribute] == NUMERIC && !name.endsWith("Id") && !name.endsWith("Line");
+	}
+
+	/**
+	 * @param attribute
+	 * @return the declared values of a nominal attribute
+	 */
+	public String[] nominalValues(int attribute)
+	{
+		return nominalValues[attribute];
+	}
+
+	/**
+	 * @return number of the last line read
+	 */
+	public int getLineNumber()
+	{
+		return lineNumber;
+	}
+
+
+	/**
+	 * Reads the next data row, skipping empty and comment lines
+	 *
+	 * @return false at the end of the input
+	 * @throws IOException if the row cannot be parsed
+	 */
+	public boolean next() throws IOException
+	{
+		while(readLine())
+		{
+			int start = skipSpaces(0);
+
+			if(start == lineLength || line[start] == '%')
+				continue;
+
+			if(!csv && line[start] == '{')
+				parseSparseRow(start + 1);
+			else
+				parseRow(start);
+
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * @param attribute
+	 * @return true if the value of the attribute is missing in the current row
+	 */
+	public boolean isMissing(int attribute)
+	{
+		return missing[attribute];
+	}
+
+	/**
+	 * @param attribute
+	 * @return the numeric value of the attribute in the current row, NaN if it is missing
+	 * or not a number. The value of a nominal attribute is the index of the value.
+	 */
+	public double value(int attribute)
+	{
+		if(missing[attribute])
+			return Double.NaN;
+
+		if(sparseZero[attribute])
+			return 0;
+
+		if(types[attribute] == NOMINAL)
+		{
+			int index = nominalIndex(attribute);
+			return index == -1 ? Double.NaN : index;
+		}
+
+		return parseNumber(attribute);
+	}
+
+	/**
+	 * @param attribute
+	 * @return the index of the nominal value of the attribute in the current row,
+	 * -1 if it is missing or not one of the declared values
+	 */
+	public int nominalIndex(int attribute)
+	{
+		if(missing[attribute])
+			return -1;
+
+		if(sparseZero[attribute])
+			return 0;
+
+		if(escaped[attribute])
+			return indexOf(nominalValues[attribute], unescapeField(attribute));
+
+		if(nominalTables[attribute] == null)
+			return indexOf(nominalValues[attribute], new String(line, fieldStarts[attribute], fieldEnds[attribute] - fieldStarts[attribute]));
+
+		int[] table = nominalTables[attribute];
+		int start = fieldStarts[attribute];
+		int length = fieldEnds[attribute] - start;
+		int mask = table.length - 1;
+
+		for(int p=hash(line, start, length) & mask; table[p] != 0; p=(p + 1) & mask)
+		{
+			String value = nominalValues[attribute][table[p] - 1];
+
+			if(equals(value, line, start, length))
+				return table[p] - 1;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * @param attribute
+	 * @return the value of the attribute in the current row, "?" if it is missing.
+	 * The declared value is returned for nominal attributes, so no String is created.
+	 */
+	public String stringValue(int attribute)
+	{
+		if(missing[attribute])
+			return "?";
+
+		if(sparseZero[attribute])
+			return types[attribute] == NOMINAL ? nominalValues[attribute][0] : "0";
+
+		if(types[attribute] == NOMINAL)
+		{
+			int index = nominalIndex(attribute);
+			if(index != -1)
+				return nominalValues[attribute][index];
+		}
+
+		if(escaped[attribute])
+			return unescapeField(attribute);
+
+		return new String(line, fieldStarts[attribute], fieldEnds[attribute] - fieldStarts[attribute]);
+	}
+
+	/**
+	 * Reads the remaining rows into columns. Nominal values are kept as the index
+	 * of the value, missing and string values as NaN.
+	 *
+	 * @param attributes indexes of the attributes to be read
+	 * @return the values of each attribute
+	 * @throws IOException
+	 */
+	public double[][] readColumns(int[] attributes) throws IOException
+	{
+		double[][] columns = new double[attributes.length][1024];
+		int numRows = 0;
+
+		while(next())
+		{
+			if(numRows == columns[0].length)
+			{
+				for(int a=0; a<attributes.length; a++)
+				{
+					double[] column = new double[numRows * 2];
+					System.arraycopy(columns[a], 0, column, 0, numRows);
+					columns[a] = column;
+				}
+			}
+
+			for(int a=0; a<attributes.length; a++)
+			{
+				int attribute = attributes[a];
+				columns[a][numRows] = types[attribute] == STRING || types[attribute] == DATE ? Double.NaN : value(attribute);
+			}
+
+			numRows++;
+		}
+
+		for(int a=0; a<attributes.length; a++)
+		{
+			double[] column = new double[numRows];
+			System.arraycopy(columns[a], 0, column, 0, numRows);
+			columns[a] = column;
+		}
+
+		return columns;
+	}
+
+	public void close() throws IOException
+	{
+		reader.close();
+	}
+
+
+	/**
+	 * Makes an attribute nominal with the given values
+	 *
+	 * @param attribute
+	 * @param values
+	 */
+	private void setNominal(int attribute, String[] values)
+	{
+		types[attribute] = NOMINAL;
+		nominalValues[attribute] = values;
+		nominalTables[attribute] = createTable(values);
+	}
+
+	/**
+	 * @param attribute
+	 * @return the number in the field of the attribute, NaN if it is not a number
+	 */
+	private double parseNumber(int attribute)
+	{
+		int start = fieldStarts[attribute];
+		int end = fieldEnds[attribute];
+
+		if(escaped[attribute] || start == end)
+			return Double.NaN;
+
+		int p = start;
+		boolean negative = false;
+
+		if(line[p] == '-' || line[p] == '+')
+		{
+			negative = line[p] == '-';
+			p++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean anyDigit = false;
+
+		for(; p<end && line[p] >= '0' && line[p] <= '9'; p++)
+		{
+			anyDigit = true;
+			if(digits < 18)
+			{
+				mantissa = mantissa * 10 + (line[p] - '0');
+				if(mantissa != 0)
+					digits++;
+			}
+			else
+				exponent++;
+		}
+
+		if(p < end && line[p] == '.')
+		{
+			for(p++; p<end && line[p] >= '0' && line[p] <= '9'; p++)
+			{
+				anyDigit = true;
+				if(digits < 18)
+				{
+					mantissa = mantissa * 10 + (line[p] - '0');
+					if(mantissa != 0)
+						digits++;
+					exponent--;
+				}
+			}
+		}
+
+		if(!anyDigit)
+			return parseSlowly(start, end);
+
+		if(p < end && (line[p] == 'e' || line[p] == 'E'))
+		{
+			p++;
+			boolean negativeExponent = false;
+			if(p < end && (line[p] == '-' || line[p] == '+'))
+			{
+				negativeExponent = line[p] == '-';
+				p++;
+			}
+
+			if(p == end)
+				return parseSlowly(start, end);
+
+			int explicitExponent = 0;
+			for(; p<end && line[p] >= '0' && line[p] <= '9'; p++)
+			{
+				if(explicitExponent < 10000)
+					explicitExponent = explicitExponent * 10 + (line[p] - '0');
+			}
+			exponent += negativeExponent ? -explicitExponent : explicitExponent;
+		}
+
+		// a suffix such as "d" or "f", or something that is not a number
+		if(p != end)
+			return parseSlowly(start, end);
+
+		// exact when the mantissa and the power of ten are both exactly representable
+		if(digits <= 15 && exponent >= -22 && exponent <= 22)
+		{
+			double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+			return negative ? -value : value;
+		}
+
+		return parseSlowly(start, end);
+	}
+
+	/**
+	 * @param start
+	 * @param end
+	 * @return the number between start and end parsed by Double.parseDouble, NaN if it is not a number
+	 */
+	private double parseSlowly(int start, int end)
+	{
+		try{
+			return Double.parseDouble(new String(line, start, end - start));
+		}catch(NumberFormatException e){
+			return Double.NaN;
+		}
+	}
+
+
+	/**
+	 * Splits a dense row into fields
+	 *
+	 * @param p
+	 * @throws IOException
+	 */
+	private void parseRow(int p) throws IOException
+	{
+		for(int attribute=0; attribute<names.length; attribute++)
+		{
+			if(p > lineLength)
+				throw error("expected " + names.length + " values");
+
+			sparseZero[attribute] = false;
+			p = parseField(attribute, skipSpaces(p));
+			p = skipSpaces(p);
+
+			if(p < lineLength && line[p] != ',')
+				throw error("',' expected");
+
+			p++;
+		}
+
+		if(p <= lineLength)
+			throw error("more than " + names.length + " values");
+	}
+
+	/**
+	 * Splits a sparse row into fields, the attributes that are not given are zero
+	 *
+	 * @param p position after '{'
+	 * @throws IOException
+	 */
+	private void parseSparseRow(int p) throws IOException
+	{
+		for(int attribute=0; attribute<names.length; attribute++)
+		{
+			sparseZero[attribute] = true;
+			missing[attribute] = false;
+		}
+
+		p = skipSpaces(p);
+
+		while(p < lineLength && line[p] != '}')
+		{
+			int attribute = 0;
+			int digitsStart = p;
+			for(; p<lineLength && line[p] >= '0' && line[p] <= '9'; p++)
+				attribute = attribute * 10 + (line[p] - '0');
+
+			if(p == digitsStart || attribute >= names.length)
+				throw error("attribute index expected");
+
+			sparseZero[attribute] = false;
+			p = parseField(attribute, skipSpaces(p));
+			p = skipSpaces(p);
+
+			if(p < lineLength && line[p] == ',')
+				p = skipSpaces(p + 1);
+		}
+
+		if(p == lineLength)
+			throw error("'}' expected");
+	}
+
+	/**
+	 * Finds the bounds of the field starting at p
+	 *
+	 * @param attribute
+	 * @param p
+	 * @return the position after the field
+	 * @throws IOException
+	 */
+	private int parseField(int attribute, int p) throws IOException
+	{
+		escaped[attribute] = false;
+
+		if(p < lineLength && (line[p] == '\'' || line[p] == '"'))
+		{
+			char quote = line[p];
+			int start = ++p;
+
+			for(; p<lineLength; p++)
+			{
+				if(line[p] == quote)
+				{
+					if(!csv || p + 1 == lineLength || line[p + 1] != quote)
+						break;
+					escaped[attribute] = true;
+					p++;
+				}
+				else if(line[p] == '\\')
+				{
+					escaped[attribute] = true;
+					p++;
+				}
+			}
+
+			if(p >= lineLength)
+				throw error("unterminated quote");
+
+			fieldStarts[attribute] = start;
+			fieldEnds[attribute] = p;
+			missing[attribute] = false;
+
+			return p + 1;
+		}
+
+		int start = p;
+		int end = p;
+
+		for(; p<lineLength && line[p] != ','; p++)
+		{
+			if(line[p] == '}' && !csv)
+				break;
+			if(line[p] != ' ' && line[p] != '\t')
+				end = p + 1;
+		}
+
+		fieldStarts[attribute] = start;
+		fieldEnds[attribute] = end;
+		missing[attribute] = end - start == 1 && line[start] == '?' || csv && end == start;
+
+		return end;
+	}
+
+	private int skipSpaces(int p)
+	{
+		while(p < lineLength && (line[p] == ' ' || line[p] == '\t'))
+			p++;
+
+		return p;
+	}
+
+
+	/**
+	 * Reads the declarations up to and including the "@data" line
+	 *
+	 * @throws IOException
+	 */
+	private void readArffHeader() throws IOException
+	{
+		ArrayList<String> nameList = new ArrayList<String>();
+		ArrayList<Integer> typeList = new ArrayList<Integer>();
+		ArrayList<String[]> valueList = new ArrayList<String[]>();
+
+		while(true)
+		{
+			if(!readLine())
+				throw error("@data expected");
+
+			String declaration = new String(line, 0, lineLength).trim();
+
+			if(declaration.length() == 0 || declaration.startsWith("%"))
+				continue;
+
+			String lower = declaration.toLowerCase();
+
+			if(lower.startsWith("@relation"))
+			{
+				relation = unquote(declaration.substring("@relation".length()).trim());
+			}
+			else if(lower.startsWith("@attribute"))
+			{
+				String rest = declaration.substring("@attribute".length()).trim();
+				int nameEnd = endOfToken(rest, 0);
+				String type = rest.substring(nameEnd).trim();
+				String lowerType = type.toLowerCase();
+
+				nameList.add(unquote(rest.substring(0, nameEnd)));
+
+				if(type.startsWith("{"))
+				{
+					typeList.add(Integer.valueOf(NOMINAL));
+					valueList.add(splitNominalValues(type));
+				}
+				else
+				{
+					if(lowerType.startsWith("numeric") || lowerType.startsWith("real") || lowerType.startsWith("integer"))
+						typeList.add(Integer.valueOf(NUMERIC));
+					else if(lowerType.startsWith("string"))
+						typeList.add(Integer.valueOf(STRING));
+					else if(lowerType.startsWith("date"))
+						typeList.add(Integer.valueOf(DATE));
+					else
+						throw error("unsupported attribute type " + type);
+
+					valueList.add(null);
+				}
+			}
+			else if(lower.startsWith("@data"))
+				break;
+			else
+				throw error("unexpected declaration");
+		}
+
+		names = nameList.toArray(new String[nameList.size()]);
+		types = new int[names.length];
+		nominalValues = new String[names.length][];
+		nominalTables = new int[names.length][];
+
+		for(int i=0; i<names.length; i++)
+		{
+			types[i] = typeList.get(i).intValue();
+			if(types[i] == NOMINAL)
+				setNominal(i, valueList.get(i));
+		}
+	}
+
+	/**
+	 * Reads the names of the attributes from the first line of a csv file,
+	 * all of the attributes are strings until their types are set
+	 *
+	 * @throws IOException
+	 */
+	private void readCsvHeader() throws IOException
+	{
+		if(!readLine())
+			throw error("header line expected");
+
+		ArrayList<String> nameList = new ArrayList<String>();
+		int p = 0;
+
+		while(p <= lineLength)
+		{
+			p = skipSpaces(p);
+			int end = p < lineLength && (line[p] == '\'' || line[p] == '"') ? endOfQuoted(p) : indexOf(',', p);
+			nameList.add(unquote(new String(line, p, end - p).trim(), true));
+			p = indexOf(',', end) + 1;
+		}
+
+		names = nameList.toArray(new String[nameList.size()]);
+		types = new int[names.length];
+		nominalValues = new String[names.length][];
+		nominalTables = new int[names.length][];
+
+		for(int i=0; i<names.length; i++)
+			types[i] = STRING;
+	}
+
+	/**
+	 * Reads the next line into line
+	 *
+	 * @return false at the end of the input
+	 * @throws IOException
+	 */
+	private boolean readLine() throws IOException
+	{
+		lineLength = 0;
+
+		while(true)
+		{
+			if(bufferPosition == bufferLength)
+			{
+				bufferLength = reader.read(buffer, 0, buffer.length);
+				bufferPosition = 0;
+
+				if(bufferLength <= 0)
+				{
+					bufferLength = 0;
+					if(lineLength == 0)
+						return false;
+					break;
+				}
+			}
+
+			int start = bufferPosition;
+			int end = start;
+			while(end < bufferLength && buffer[end] != '\n')
+				end++;
+
+			int length = end - start;
+			if(lineLength + length > line.length)
+			{
+				char[] newLine = new char[Math.max(line.length * 2, lineLength + length)];
+				System.arraycopy(line, 0, newLine, 0, lineLength);
+				line = newLine;
+			}
+			System.arraycopy(buffer, start, line, lineLength, length);
+			lineLength += length;
+
+			if(end < bufferLength)
+			{
+				bufferPosition = end + 1;
+				break;
+			}
+			bufferPosition = bufferLength;
+		}
+
+		if(lineLength > 0 && line[lineLength - 1] == '\r')
+			lineLength--;
+
+		lineNumber++;
+		return true;
+	}
+
+	private IOException error(String message)
+	{
+		return new IOException(message + " in line " + lineNumber);
+	}
+
+
+	private int indexOf(char c, int p)
+	{
+		while(p < lineLength && line[p] != c)
+			p++;
+
+		return p;
+	}
+
+	/**
+	 * @param p position of the opening quote of a csv value in line
+	 * @return the position after the closing quote
+	 */
+	private int endOfQuoted(int p)
+	{
+		char quote = line[p];
+
+		for(p++; p<lineLength; p++)
+		{
+			if(line[p] == quote)
+			{
+				if(p + 1 == lineLength || line[p + 1] != quote)
+					break;
+				p++;
+			}
+			else if(line[p] == '\\')
+				p++;
+		}
+
+		return Math.min(p + 1, lineLength);
+	}
+
+	/**
+	 * @param text
+	 * @param p
+	 * @return the end of the (possibly quoted) token starting at p
+	 */
+	private static int endOfToken(String text, int p)
+	{
+		if(p < text.length() && (text.charAt(p) == '\'' || text.charAt(p) == '"'))
+		{
+			char quote = text.charAt(p);
+			for(p++; p<text.length() && text.charAt(p) != quote; p++)
+				if(text.charAt(p) == '\\')
+					p++;
+
+			return Math.min(p + 1, text.length());
+		}
+
+		while(p < text.length() && !Character.isWhitespace(text.charAt(p)) && text.charAt(p) != '{')
+			p++;
+
+		return p;
+	}
+
+	/**
+	 * @param type a nominal type as {value1, value2, ...}
+	 * @return the values
+	 */
+	private static String[] splitNominalValues(String type)
+	{
+		ArrayList<String> values = new ArrayList<String>();
+		int end = type.lastIndexOf('}');
+		if(end == -1)
+			end = type.length();
+
+		int p = 1;
+		while(p < end)
+		{
+			while(p < end && (Character.isWhitespace(type.charAt(p)) || type.charAt(p) == ','))
+				p++;
+			if(p == end)
+				break;
+
+			int valueEnd;
+			if(type.charAt(p) == '\'' || type.charAt(p) == '"')
+				valueEnd = endOfToken(type, p);
+			else
+			{
+				valueEnd = type.indexOf(',', p);
+				if(valueEnd == -1 || valueEnd > end)
+					valueEnd = end;
+			}
+
+			values.add(unquote(type.substring(p, valueEnd).trim()));
+			p = valueEnd + 1;
+		}
+
+		return values.toArray(new String[values.size()]);
+	}
+
+	private static String unquote(String text)
+	{
+		return unquote(text, false);
+	}
+
+	/**
+	 * @param text
+	 * @param csv true if a doubled quote stands for the quote
+	 * @return the text without its quotes and escapes
+	 */
+	private static String unquote(String text, boolean csv)
+	{
+		if(text.length() >= 2 && (text.charAt(0) == '\'' || text.charAt(0) == '"') && text.charAt(text.length() - 1) == text.charAt(0))
+		{
+			char[] chars = text.toCharArray();
+			return unescape(chars, 1, chars.length - 1, csv ? chars[0] : 0);
+		}
+
+		return text;
+	}
+
+	/**
+	 * @param attribute
+	 * @return the quoted value of the attribute without its escapes
+	 */
+	private String unescapeField(int attribute)
+	{
+		int start = fieldStarts[attribute];
+		return unescape(line, start, fieldEnds[attribute], csv ? line[start - 1] : 0);
+	}
+
+	/**
+	 * @param chars
+	 * @param start
+	 * @param end
+	 * @param quote the quote that stands for itself when doubled, 0 for none
+	 * @return the characters with their escapes replaced
+	 */
+	private static String unescape(char[] chars, int start, int end, char quote)
+	{
+		StringBuffer buffer = new StringBuffer(end - start);
+
+		for(int p=start; p<end; p++)
+		{
+			char c = chars[p];
+			if(c == quote && p + 1 < end && chars[p + 1] == quote)
+				p++;
+			else if(c == '\\' && p + 1 < end)
+			{
+				c = chars[++p];
+				if(c == 'n')
+					c = '\n';
+				else if(c == 't')
+					c = '\t';
+				else if(c == 'r')
+					c = '\r';
+			}
+			buffer.append(c);
+		}
+
+		return buffer.toString();
+	}
+
+	private static int indexOf(String[] values, String value)
+	{
+		for(int i=0; i<values.length; i++)
+			if(values[i].equals(value))
+				return i;
+
+		return -1;
+	}
+
+	/**
+	 * @param values
+	 * @return an open addressing hash table of the values holding value index + 1
+	 */
+	private static int[] createTable(String[] values)
+	{
+		int size = 4;
+		while(size < values.length * 2)
+			size *= 2;
+
+		int[] table = new int[size];
+		int mask = size - 1;
+
+		for(int v=0; v<values.length; v++)
+		{
+			int p = values[v].hashCode() & mask;
+			while(table[p] != 0)
+				p = (p + 1) & mask;
+			table[p] = v + 1;
+		}
+
+		return table;
+	}
+
+	/**
+	 * @return the same hash code as String.hashCode of the characters
+	 */
+	private static int hash(char[] chars, int start, int length)
+	{
+		int h = 0;
+		for(int i=0; i<length; i++)
+			h = 31 * h + chars[start + i];
+
+		return h;
+	}
+
+	private static boolean equals(String value, char[] chars, int start, int length)
+	{
+		if(value.length() != length)
+			return false;
+
+		for(int i=0; i<length; i++)
+			if(value.charAt(i) != chars[start + i])
+				return false;
+
+		return true;
+	}
+}
@@ -0,0 +1,282 @@
+package common;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Transforms the values of the numeric columns of an arff file row by row.
+ *
+ * <p>The columns are selected by their names in the arff header. By default all numeric
+ * columns are transformed except the identifiers (columns whose names end with "Id") and
+ * the class column, which is the last one. The rows are read with ArffReader and written
+ * as soon as they are transformed, so only one row is kept in memory. The z-score and
+ * min-max transforms need the statistics of the columns, which are collected in a first
+ * pass over the file.
+ *
+ * <p>The result is written with ArffWriter, missing values and values the transform is
+ * undefined for (NaN) are written as "?".
+ */
+public class ArffTransform {
+
+	public enum Function {
+
+		/**
+		 * natural logarithm, zero is replaced by 0.0001
+		 */
+		LOG("_LF"),
+
+		/**
+		 * distance from the mean in standard deviations
+		 */
+		ZSCORE("_ZS"),
+
+		/**
+		 * position between the minimum and the maximum, scaled to [0, 1]
+		 */
+		MINMAX("_MM");
+
+		private final String suffix;
+
+		Function(String suffix)
+		{
+			this.suffix = suffix;
+		}
+
+		/**
+		 * @return the suffix added to the name of the transformed file
+		 */
+		public String suffix()
+		{
+			return suffix;
+		}
+
+		/**
+		 * @return true if the statistics of the columns are needed
+		 */
+		public boolean needsStatistics()
+		{
+			return this != LOG;
+		}
+	}
+
+	private Function function;
+
+	/**
+	 * names of the columns to transform, null for the default columns
+	 */
+	private String[] columnNames;
+
+	public ArffTransform(Function function)
+	{
+		this.function = function;
+	}
+
+	/**
+	 * @param columnNames names of the columns to transform, null for the default columns
+	 */
+	public void setColumnNames(String[] columnNames)
+	{
+		this.columnNames = columnNames;
+	}
+
+	/**
+	 * Transforms the arff file into the file with the same name and the suffix of the
+	 * function, i.e. x.arff into x_LF.arff for the log transform
+	 *
+	 * @param arffFile
+	 * @return the transformed file
+	 * @throws IOException
+	 */
+	public File transform(File arffFile) throws IOException
+	{
+		String path = arffFile.getPath();
+		int dot = path.lastIndexOf('.');
+		File outFile = new File((dot == -1 ? path : path.substring(0, dot)) + function.suffix() + ".arff");
+
+		transform(arffFile, outFile);
+
+		return outFile;
+	}
+
+	/**
+	 * Transforms the arff file into outFile
+	 *
+	 * @param arffFile
+	 * @param outFile
+	 * @throws IOException
+	 * @throws IllegalArgumentException if a selected column does not exist or is not numeric
+	 */
+	public void transform(File arffFile, File outFile) throws IOException
+	{
+		ArffReader reader = ArffReader.openArff(arffFile);
+		boolean[] selected;
+		double[] offsets;
+		double[] scales;
+
+		try {
+			selected = selectColumns(reader);
+		} finally {
+			reader.close();
+		}
+
+		offsets = new double[selected.length];
+		scales = new double[selected.length];
+
+		if(function.needsStatistics())
+			computeStatistics(arffFile, selected, offsets, scales);
+
+		reader = ArffReader.openArff(arffFile);
+		ArffWriter writer = new ArffWriter(outFile);
+
+		try {
+			int numAttributes = reader.numAttributes();
+
+			writer.writeRelation(reader.getRelation());
+			for(int i=0; i<numAttributes; i++)
+				writer.writeAttribute(reader.attributeName(i), reader, i);
+			writer.writeData();
+
+			while(reader.next())
+			{
+				writer.startRow();
+
+				for(int i=0; i<numAttributes; i++)
+				{
+					if(selected[i] && !reader.isMissing(i))
+						writer.writeNumber(apply(reader.value(i), offsets[i], scales[i]));
+					else
+						writer.writeValue(reader, i);
+				}
+			}
+			writer.flush();
+		} finally {
+			writer.close();
+			reader.close();
+		}
+	}
+
+	/**
+	 * @param value
+	 * @param offset the mean or the minimum of the column
+	 * @param scale the standard deviation or the range of the column
+	 * @return the transformed value
+	 */
+	private double apply(double value, double offset, double scale)
+	{
+		switch(function)
+		{
+		case LOG:
+			return Math.log(value == 0 ? 0.0001 : value);
+		case ZSCORE:
+		case MINMAX:
+			return scale == 0 ? 0 : (value - offset) / scale;
+		}
+		throw new IllegalStateException(function.name());
+	}
+
+	/**
+	 * @param reader
+	 * @return true for each column to transform
+	 */
+	private boolean[] selectColumns(ArffReader reader)
+	{
+		int numAttributes = reader.numAttributes();
+		boolean[] selected = new boolean[numAttributes];
+
+		if(columnNames == null)
+		{
+			for(int i=0; i<numAttributes-1; i++)
+				selected[i] = reader.isMetric(i);
+			return selected;
+		}
+
+		for(int k=0; k<columnNames.length; k++)
+		{
+			int column = -1;
+			for(int i=0; i<numAttributes && column == -1; i++)
+				if(reader.attributeName(i).trim().equalsIgnoreCase(columnNames[k].trim()))
+					column = i;
+
+			if(column == -1)
+				throw new IllegalArgumentException("Unknown column " + columnNames[k]);
+			if(reader.attributeType(column) != ArffReader.NUMERIC)
+				throw new IllegalArgumentException(columnNames[k] + " is not numeric");
+
+			selected[column] = true;
+		}
+
+		return selected;
+	}
+
+	/**
+	 * Computes the mean and standard deviation (z-score) or the minimum and range
+	 * (min-max) of the selected columns in one pass
+	 *
+	 * @param arffFile
+	 * @param selected
+	 * @param offsets receives the mean or the minimum of each selected column
+	 * @param scales receives the standard deviation or the range of each selected column
+	 * @throws IOException
+	 */
+	private void computeStatistics(File arffFile, boolean[] selected, double[] offsets, double[] scales) throws IOException
+	{
+		int numAttributes = selected.length;
+		long[] counts = new long[numAttributes];
+		double[] means = new double[numAttributes];
+		double[] squares = new double[numAttributes];
+		double[] mins = new double[numAttributes];
+		double[] maxs = new double[numAttributes];
+
+		for(int i=0; i<numAttributes; i++)
+		{
+			mins[i] = Double.POSITIVE_INFINITY;
+			maxs[i] = Double.NEGATIVE_INFINITY;
+		}
+
+		ArffReader reader = ArffReader.openArff(arffFile);
+		try {
+			while(reader.next())
+			{
+				for(int i=0; i<numAttributes; i++)
+				{
+					if(!selected[i] || reader.isMissing(i))
+						continue;
+
+					double value = reader.value(i);
+					if(Double.isNaN(value))
+						continue;
+
+					// running mean and sum of squared deviations, stable for large files
+					counts[i]++;
+					double delta = value - means[i];
+					means[i] += delta / counts[i];
+					squares[i] += delta * (value - means[i]);
+
+					if(value < mins[i])
+						mins[i] = value;
+					if(value > maxs[i])
+						maxs[i] = value;
+				}
+			}
+		} finally {
+			reader.close();
+		}
+
+		for(int i=0; i<numAttributes; i++)
+		{
+			if(counts[i] == 0)
+				continue;
+
+			if(function == Function.ZSCORE)
+			{
+				offsets[i] = means[i];
+				scales[i] = counts[i] > 1 ? Math.sqrt(squares[i] / (counts[i] - 1)) : 0;
+			}
+			else
+			{
+				offsets[i] = mins[i];
+				scales[i] = maxs[i] - mins[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,180 @@
+package common;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collection;
+
+import weka.core.Utils;
+
+/**
+ * Streaming writer of arff files, the counterpart of ArffReader.
+ *
+ * <p>The relation and the attribute declarations are written first, then the rows one value
+ * at a time. The output has the format weka writes Instances in: names and nominal values
+ * are quoted with weka.core.Utils.quote, numbers are written with 6 decimal digits, missing
+ * values as "?" and the rows are separated by line breaks without one after the last row.
+ */
+public class ArffWriter {
+
+	private Writer writer;
+
+	private boolean firstRow = true;
+
+	private boolean firstValue;
+
+	public ArffWriter(Writer writer)
+	{
+		this.writer = writer;
+	}
+
+	/**
+	 * Writes a file in the charset ArffReader reads
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	public ArffWriter(File file) throws IOException
+	{
+		this(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), ArffReader.CHARSET)));
+	}
+
+	public void writeRelation(String relation) throws IOException
+	{
+		writer.write("@relation " + Utils.quote(relation == null ? "" : relation) + "\n\n");
+	}
+
+	/**
+	 * Writes the declaration of an attribute with the type of an attribute of the reader
+	 *
+	 * @param name
+	 * @param reader
+	 * @param attribute
+	 * @throws IOException
+	 */
+	public void writeAttribute(String name, ArffReader reader, int attribute) throws IOException
+	{
+		switch(reader.attributeType(attribute))
+		{
+		case ArffReader.NUMERIC:
+			writeNumericAttribute(name);
+			break;
+		case ArffReader.NOMINAL:
+			writeNominalAttribute(name, reader.nominalValues(attribute));
+			break;
+		case ArffReader.STRING:
+			writer.write("@attribute " + Utils.quote(name) + " string\n");
+			break;
+		default:
+			writer.write("@attribute " + Utils.quote(name) + " date\n");
+		}
+	}
+
+	public void writeNumericAttribute(String name) throws IOException
+	{
+		writer.write("@attribute " + Utils.quote(name) + " numeric\n");
+	}
+
+	public void writeNominalAttribute(String name, String[] values) throws IOException
+	{
+		writer.write("@attribute " + Utils.quote(name) + " {");
+		for(int k=0; k<values.length; k++)
+		{
+			if(k > 0)
+				writer.write(',');
+			writer.write(Utils.quote(values[k]));
+		}
+		writer.write("}\n");
+	}
+
+	public void writeNominalAttribute(String name, Collection<String> values) throws IOException
+	{
+		writeNominalAttribute(name, values.toArray(new String[values.size()]));
+	}
+
+	/**
+	 * Ends the declarations, the rows follow
+	 *
+	 * @throws IOException
+	 */
+	public void writeData() throws IOException
+	{
+		writer.write("\n@data\n");
+	}
+
+	/**
+	 * Starts a new row
+	 *
+	 * @throws IOException
+	 */
+	public void startRow() throws IOException
+	{
+		if(!firstRow)
+			writer.write('\n');
+		firstRow = false;
+		firstValue = true;
+	}
+
+	/**
+	 * Writes the value of an attribute of the current row of the reader
+	 *
+	 * @param reader
+	 * @param attribute
+	 * @throws IOException
+	 */
+	public void writeValue(ArffReader reader, int attribute) throws IOException
+	{
+		if(reader.isMissing(attribute))
+			writeString(null);
+		else if(reader.attributeType(attribute) == ArffReader.NUMERIC)
+			writeNumber(reader.value(attribute));
+		else
+			writeString(reader.stringValue(attribute));
+	}
+
+	/**
+	 * @param value the number, NaN if it is missing
+	 * @throws IOException
+	 */
+	public void writeNumber(double value) throws IOException
+	{
+		separate();
+		if(Double.isNaN(value))
+			writer.write('?');
+		else
+			writer.write(Utils.doubleToString(value, 6));
+	}
+
+	/**
+	 * @param value the nominal or string value, null if it is missing
+	 * @throws IOException
+	 */
+	public void writeString(String value) throws IOException
+	{
+		separate();
+		if(value == null)
+			writer.write('?');
+		else
+			writer.write(Utils.quote(value));
+	}
+
+	public void flush() throws IOException
+	{
+		writer.flush();
+	}
+
+	public void close() throws IOException
+	{
+		writer.close();
+	}
+
+	private void separate() throws IOException
+	{
+		if(!firstValue)
+			writer.write(',');
+		firstValue = false;
+	}
+}
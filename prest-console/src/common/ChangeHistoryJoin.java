@@ -0,0 +1,320 @@
+package common;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.HashMap;
+
+import org.apache.log4j.Logger;
+
+import console.PrestConsoleApp;
+
+/**
+ * Joins the change history of the source files to the rows of an arff file.
+ *
+ * <p>Each line of the changes file is "path,freeze" or "path,freeze,churn", where freeze is
+ * the label of the freeze the file was changed in and churn the number of changed lines.
+ * The changes file is read line by line into an index from the canonical path of each file
+ * to its change statistics; only the changes before the reference freeze are counted. The
+ * arff file is then read row by row and each row is written with the change features of
+ * its file, inserted before the class attribute, which is the last one.
+ *
+ * <p>Both sides are reduced to the same canonical path: the source root is removed, the
+ * separators become "/" and repeated separators are collapsed. The path of a nominal file
+ * name is resolved once for each nominal value.
+ */
+public class ChangeHistoryJoin {
+
+	static Logger logger = Logger.getLogger(PrestConsoleApp.class.getName());
+
+	public enum Feature {
+
+		/**
+		 * reference freeze minus the last freeze the file was changed in, NO_CHANGE_FREEZE_COUNT
+		 * if the file was not changed before the reference freeze
+		 */
+		FREEZE_COUNT_BETWEEN_CHANGES("FreezeCountBetweenChanges"),
+
+		/**
+		 * number of changes of the file before the reference freeze
+		 */
+		CHANGE_COUNT("ChangeCount"),
+
+		/**
+		 * total number of changed lines of the file before the reference freeze
+		 */
+		CHURN("Churn"),
+
+		/**
+		 * last freeze before the reference freeze the file was changed in
+		 */
+		LAST_CHANGED_FREEZE("LastChangedFreeze");
+
+		private final String label;
+
+		Feature(String label)
+		{
+			this.label = label;
+		}
+
+		/**
+		 * @return the name of the attribute of the feature
+		 */
+		public String label()
+		{
+			return label;
+		}
+	}
+
+	/**
+	 * value of FREEZE_COUNT_BETWEEN_CHANGES for files without changes
+	 */
+	public static final int NO_CHANGE_FREEZE_COUNT = 100;
+
+	private String sourceRoot;
+
+	private int referenceFreeze;
+
+	private Feature[] features = { Feature.FREEZE_COUNT_BETWEEN_CHANGES };
+
+	/**
+	 * change statistics of each canonical path
+	 */
+	private HashMap<String, Changes> index = new HashMap<String, Changes>();
+
+	/**
+	 * number of lines of the changes files which could not be read
+	 */
+	private int skippedLines;
+
+	/**
+	 * @param sourceRoot root of the paths in the arff file
+	 * @param referenceFreeze number of the freeze the arff file belongs to, see parseFreeze
+	 */
+	public ChangeHistoryJoin(String sourceRoot, int referenceFreeze)
+	{
+		this.sourceRoot = sourceRoot;
+		this.referenceFreeze = referenceFreeze;
+	}
+
+	/**
+	 * @param features the features added to each row, in the order of the attributes
+	 */
+	public void setFeatures(Feature[] features)
+	{
+		this.features = features;
+	}
+
+	/**
+	 * The number of a freeze label consists of its digits, i.e. 123 for "freeze_1_23"
+	 *
+	 * @param label
+	 * @return the number of the freeze, -1 if the label has no digits
+	 */
+	public static int parseFreeze(String label)
+	{
+		int number = -1;
+
+		for(int i=0; i<label.length(); i++)
+		{
+			char c = label.charAt(i);
+			if(c >= '0' && c <= '9')
+				number = (number == -1 ? 0 : number * 10) + (c - '0');
+		}
+
+		return number;
+	}
+
+	/**
+	 * @param path
+	 * @param root removed from the start of the path, may be null
+	 * @return the path relative to the root with "/" separators and no repeated separators
+	 */
+	public static String canonicalPath(String path, String root)
+	{
+		int start = 0;
+		if(root != null && root.length() > 0 && path.startsWith(root))
+			start = root.length();
+
+		StringBuffer buffer = new StringBuffer(path.length() - start);
+		char last = 0;
+
+		for(int i=start; i<path.length(); i++)
+		{
+			char c = path.charAt(i);
+			if(c == '\\' || c == File.separatorChar)
+				c = '/';
+
+			if(c != '/' || last != '/')
+				buffer.append(c);
+			last = c;
+		}
+
+		return buffer.toString();
+	}
+
+	/**
+	 * Adds the changes of a changes file to the index
+	 *
+	 * @param changesFile
+	 * @throws IOException
+	 */
+	public void readChanges(File changesFile) throws IOException
+	{
+		BufferedReader reader = new BufferedReader(new FileReader(changesFile));
+
+		try {
+			String line;
+			while((line = reader.readLine()) != null)
+			{
+				int comma = line.indexOf(',');
+				if(comma == -1)
+				{
+					if(line.trim().length() > 0)
+						skippedLines++;
+					continue;
+				}
+
+				int nextComma = line.indexOf(',', comma + 1);
+				int freeze = parseFreeze(nextComma == -1 ? line.substring(comma + 1) : line.substring(comma + 1, nextComma));
+				if(freeze == -1)
+				{
+					skippedLines++;
+					continue;
+				}
+				if(freeze >= referenceFreeze)
+					continue;
+
+				String path = canonicalPath(line.substring(0, comma), null);
+				Changes changes = index.get(path);
+				if(changes == null)
+				{
+					changes = new Changes();
+					index.put(path, changes);
+				}
+
+				changes.count++;
+				if(freeze > changes.lastFreeze)
+					changes.lastFreeze = freeze;
+
+				if(nextComma != -1)
+				{
+					String churn = line.substring(nextComma + 1).trim();
+					try {
+						changes.churn += Long.parseLong(churn);
+					} catch (NumberFormatException e) {
+						skippedLines++;
+					}
+				}
+			}
+		} finally {
+			reader.close();
+		}
+
+		if(skippedLines > 0)
+			logger.warn(skippedLines + " lines of the changes could not be read");
+	}
+
+	/**
+	 * Writes the rows of the arff file with the change features of their files to resultFile.
+	 * The path of the file of a row is its first attribute.
+	 *
+	 * @param arffFile
+	 * @param resultFile
+	 * @throws IOException
+	 */
+	public void join(File arffFile, File resultFile) throws IOException
+	{
+		ArffReader reader = ArffReader.openArff(arffFile);
+		ArffWriter writer = new ArffWriter(resultFile);
+
+		try {
+			int numAttributes = reader.numAttributes();
+			int classColumn = numAttributes - 1;
+
+			writer.writeRelation(reader.getRelation());
+			for(int i=0; i<numAttributes; i++)
+			{
+				if(i == classColumn)
+					for(int k=0; k<features.length; k++)
+						writer.writeNumericAttribute(features[k].label());
+				writer.writeAttribute(reader.attributeName(i), reader, i);
+			}
+			writer.writeData();
+
+			// changes of each nominal value of the path attribute, resolved when first seen
+			Changes[] nominalChanges = null;
+			boolean[] resolved = null;
+			if(reader.attributeType(0) == ArffReader.NOMINAL)
+			{
+				nominalChanges = new Changes[reader.nominalValues(0).length];
+				resolved = new boolean[nominalChanges.length];
+			}
+
+			while(reader.next())
+			{
+				int nominal = nominalChanges == null ? -1 : reader.nominalIndex(0);
+				Changes changes;
+
+				if(nominal != -1)
+				{
+					if(!resolved[nominal])
+					{
+						nominalChanges[nominal] = index.get(canonicalPath(reader.stringValue(0), sourceRoot));
+						resolved[nominal] = true;
+					}
+					changes = nominalChanges[nominal];
+				}
+				else
+					changes = reader.isMissing(0) ? null : index.get(canonicalPath(reader.stringValue(0), sourceRoot));
+
+				writer.startRow();
+				for(int i=0; i<numAttributes; i++)
+				{
+					if(i == classColumn)
+						for(int k=0; k<features.length; k++)
+							writer.writeNumber(feature(features[k], changes));
+					writer.writeValue(reader, i);
+				}
+			}
+			writer.flush();
+		} finally {
+			writer.close();
+			reader.close();
+		}
+	}
+
+	/**
+	 * @param feature
+	 * @param changes changes of the file, null if it was not changed
+	 * @return the value of the feature, NaN if it is missing
+	 */
+	private double feature(Feature feature, Changes changes)
+	{
+		switch(feature)
+		{
+		case FREEZE_COUNT_BETWEEN_CHANGES:
+			return changes == null ? NO_CHANGE_FREEZE_COUNT : referenceFreeze - changes.lastFreeze;
+		case CHANGE_COUNT:
+			return changes == null ? 0 : changes.count;
+		case CHURN:
+			return changes == null ? 0 : changes.churn;
+		case LAST_CHANGED_FREEZE:
+			return changes == null ? Double.NaN : changes.lastFreeze;
+		}
+		throw new IllegalStateException(feature.name());
+	}
+
+	/**
+	 * Change statistics of a file
+	 */
+	private static class Changes {
+
+		int count;
+
+		long churn;
+
+		int lastFreeze = -1;
+	}
+}
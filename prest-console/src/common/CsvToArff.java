@@ -1,85 +1,565 @@
 package common;
 
-import weka.core.Instances;
-import weka.core.converters.CSVLoader;
+import weka.core.Utils;
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StreamTokenizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.log4j.Logger;
 
 import console.PrestConsoleApp;
 
 public class CsvToArff {
 
+    /**
+     * number of the values of a column remembered to skip their repeats
+     * before they are spooled
+     */
+    private static final int KNOWN_VALUES = 1024;
+
 	static Logger logger = Logger.getLogger(PrestConsoleApp.class.getName());
 
+    private long memoryBudget = ParsePipeline.getMemoryBudget();
+
     public CsvToArff() {
     }
 
+    /**
+     * @param memoryBudget bytes of nominal values a conversion keeps in memory
+     */
+    public void setMemoryBudget(long memoryBudget) {
+	this.memoryBudget = memoryBudget;
+    }
+
     public void convertProject(File projectPath) throws Exception {
 	File csvSources = new File(projectPath.getPath() + File.separator +"parse_results" + File.separator);
 	String[] projectFiles = csvSources.list();
+	if (projectFiles == null)
+	    throw new IOException(csvSources.getPath() + " cannot be read");
+
+	List<File> csvFiles = new ArrayList<File>();
+	List<File> arffFiles = new ArrayList<File>();
 
 	for (int i = 0; i < projectFiles.length; i++) {
 	    if (projectFiles[i].endsWith("csv")
 		    && !projectFiles[i].startsWith("callGraph_Java")) {
-		this.csvToArff(projectPath.getPath() + File.separator +  "parse_results" + File.separator
-			+ projectFiles[i], projectFiles[i], projectPath
-			.getPath());
+		csvFiles.add(new File(csvSources, projectFiles[i]));
+		arffFiles.add(new File(projectPath.getPath() + File.separator
+			+ "arff_files" + File.separator
+			+ arffFileName(projectFiles[i])));
 	    }
 
 	}
 
+	convertAll(csvFiles, arffFiles, Runtime.getRuntime().availableProcessors());
     }
 
+    /**
+     * Converts a csv file, or all csv files of a directory in parallel. The
+     * arff file of a csv file is written to the arff_files directory next to
+     * the directory of the csv file, unless outputPath is given. For a
+     * directory, outputPath is the directory the arff files are written to.
+     */
     public int csvToArffCommand(String csvFilePath, String outputPath) {
-    	try {
-    	    CSVLoader loader = new CSVLoader();
-    	    loader.setSource(new File(csvFilePath));
-    	    Instances data = loader.getDataSet();
-    	    String path = csvFilePath.substring(0, csvFilePath
-    				    .lastIndexOf(File.separator));
-    	    String fileName = csvFilePath.substring(csvFilePath.lastIndexOf(File.separator)+1);
-    	    String outputFile = "";
-    	    
-    	    if(outputPath == null)
-    	    	outputFile = path.substring(0,path.lastIndexOf(File.separator))
-				    + File.separator +"arff_files" + File.separator
-				    + fileName.substring(0, fileName
-					    .lastIndexOf('.')) + ".arff";
-			else
-				outputFile = outputPath;
-    	    
-    	    BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile));
-    	    
-    	    writer.write(data.toString());
-    	    writer.flush();
-    	    writer.close();
-    	    logger.info(csvFilePath + " converted successfully.");
-    	} catch (Exception e) {
-    		
-    	    logger.error(e.getMessage());
-    	}
-    	return 1;
-        }
-    private int csvToArff(String csvFilePath, String csvFileName,
-	    String projectPath) {
-	try {
-	    CSVLoader loader = new CSVLoader();
-	    loader.setSource(new File(csvFilePath));
-	    Instances data = loader.getDataSet();
-	    BufferedWriter writer = new BufferedWriter(new FileWriter(
-		    projectPath
-			    + File.separator +"arff_files" + File.separator
-			    + csvFileName.substring(0, csvFileName
-				    .lastIndexOf('.')) + ".arff"));
-	    writer.write(data.toString());
-	    writer.flush();
-	    writer.close();
+	File csvFile = new File(csvFilePath);
+
+	if (csvFile.isDirectory()) {
+	    String[] names = csvFile.list();
+	    if (names == null) {
+		logger.error(csvFilePath + " cannot be read");
+		return 1;
+	    }
+	    List<File> csvFiles = new ArrayList<File>();
+	    List<File> arffFiles = new ArrayList<File>();
+
+	    for (int i = 0; i < names.length; i++) {
+		if (names[i].toLowerCase().endsWith(".csv")) {
+		    csvFiles.add(new File(csvFile, names[i]));
+		    if (outputPath == null)
+			arffFiles.add(defaultArffFile(new File(csvFile, names[i])));
+		    else
+			arffFiles.add(new File(outputPath, arffFileName(names[i])));
+		}
+	    }
+
+	    convertAll(csvFiles, arffFiles, Runtime.getRuntime().availableProcessors());
+	    return 1;
+	}
 
+	try {
+	    RunReport.Timer conversion = RunReport.time(RunReport.Stage.ARFF_CONVERSION);
+	    convert(csvFile, outputPath == null ? defaultArffFile(csvFile) : new File(outputPath));
+	    conversion.stopFile(csvFile.getPath(), csvFile.length());
+	    logger.info(csvFilePath + " converted successfully.");
 	} catch (Exception e) {
-	    System.out.println(e.getMessage());
+
+	    logger.error(e.getMessage());
 	}
 	return 1;
     }
-}
\ No newline at end of file
+
+    /**
+     * Converts the csv files to the arff files, numThreads files at a time.
+     * A file which cannot be converted is logged and the others are still
+     * converted.
+     *
+     * @param csvFiles
+     * @param arffFiles the arff file of each csv file
+     * @param numThreads
+     */
+    public void convertAll(final List<File> csvFiles, final List<File> arffFiles, int numThreads) {
+	if (csvFiles.size() == 0)
+	    return;
+
+	int threads = Math.max(1, Math.min(numThreads, csvFiles.size()));
+	ExecutorService executor = Executors.newFixedThreadPool(threads);
+	final CsvToArff converter = new CsvToArff();
+	converter.setMemoryBudget(memoryBudget / threads);
+	List<Future<Object>> futures = new ArrayList<Future<Object>>();
+	RunReport.Timer conversion = RunReport.time(RunReport.Stage.ARFF_CONVERSION);
+	long bytes = 0;
+
+	try {
+	    for (int i = 0; i < csvFiles.size(); i++) {
+		final File csvFile = csvFiles.get(i);
+		final File arffFile = arffFiles.get(i);
+
+		futures.add(executor.submit(new Callable<Object>() {
+		    public Object call() throws Exception {
+			RunReport.Timer fileTimer = RunReport.timeFile(RunReport.Stage.ARFF_CONVERSION);
+			converter.convert(csvFile, arffFile);
+			fileTimer.stopFile(csvFile.getPath(), csvFile.length());
+			return null;
+		    }
+		}));
+		bytes += csvFile.length();
+	    }
+
+	    for (int i = 0; i < futures.size(); i++) {
+		try {
+		    futures.get(i).get();
+		    logger.info(csvFiles.get(i).getPath() + " converted successfully.");
+		} catch (ExecutionException e) {
+		    logger.error(csvFiles.get(i).getPath() + ": " + e.getCause().getMessage());
+		} catch (InterruptedException e) {
+		    Thread.currentThread().interrupt();
+		    return;
+		}
+	    }
+	} finally {
+	    executor.shutdown();
+	    conversion.stop(csvFiles.size(), bytes, 0);
+	}
+    }
+
+    /**
+     * Converts a csv file to the arff file weka's CSVLoader and
+     * Instances.toString write, which the conversion used before, without
+     * loading the rows into memory. The rows are split as the loader splits
+     * them, see CsvRows. A value is a number if Double.valueOf parses it, and
+     * a column is nominal if it has a value that is not a number. A nominal
+     * column lists its values in the order they first appear, with the
+     * spaces of its strings replaced by underscores and its numbers written
+     * by Double.toString, as the loader does.
+     *
+     * The file is read once for the types and the nominal values and once
+     * more to write the rows, and in between only if a column had numbers
+     * before its first string. The distinct nominal values are found by
+     * sorting their occurrences in RecordSpools, which keep at most the
+     * memory budget of them in memory.
+     *
+     * @param csvFile
+     * @param arffFile
+     * @throws IOException
+     */
+    public void convert(File csvFile, File arffFile) throws IOException {
+	RecordSpool occurrences = new RecordSpool(memoryBudget / 2);
+	RecordSpool distinct = new RecordSpool(memoryBudget / 2);
+	try {
+	    CsvRows rows = new CsvRows(csvFile);
+	    String[] names = rows.getNames();
+	    int numAttributes = names.length;
+
+	    // the row of the first string of each column, -1 while there is none
+	    long[] firstString = new long[numAttributes];
+	    boolean[] numberBefore = new boolean[numAttributes];
+	    boolean anyNumberBefore = false;
+	    List<Set<String>> known = newKnownValues(numAttributes);
+	    try {
+		for (int i = 0; i < numAttributes; i++)
+		    firstString[i] = -1;
+
+		for (long row = 0; rows.next(); row++)
+		    for (int i = 0; i < numAttributes; i++) {
+			if (rows.isMissing(i))
+			    continue;
+			if (firstString[i] == -1) {
+			    if (rows.isNumber(i)) {
+				numberBefore[i] = true;
+				continue;
+			    }
+			    firstString[i] = row;
+			    anyNumberBefore |= numberBefore[i];
+			}
+			addOccurrence(occurrences, known.get(i), i, row, rows.nominalValue(i));
+		    }
+	    } finally {
+		rows.close();
+	    }
+
+	    if (anyNumberBefore) {
+		// the numbers before the first string of a column are values too
+		known = newKnownValues(numAttributes);
+		rows = new CsvRows(csvFile);
+		try {
+		    for (long row = 0; rows.next(); row++)
+			for (int i = 0; i < numAttributes; i++)
+			    if (numberBefore[i] && row < firstString[i] && !rows.isMissing(i))
+				addOccurrence(occurrences, known.get(i), i, row, rows.nominalValue(i));
+		} finally {
+		    rows.close();
+		}
+	    }
+
+	    findDistinct(occurrences, distinct);
+
+	    rows = new CsvRows(csvFile);
+	    BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(arffFile), ArffReader.CHARSET));
+	    try {
+		writer.write("@relation " + Utils.quote(csvFile.getName()) + "\n\n");
+
+		RecordSpool.Cursor values = distinct.cursor();
+		boolean hasValue = values.next();
+		for (int i = 0; i < numAttributes; i++) {
+		    writer.write("@attribute " + Utils.quote(names[i]) + " ");
+		    if (firstString[i] == -1)
+			writer.write("numeric");
+		    else {
+			writer.write('{');
+			for (int k = 0; hasValue && (values.key() >>> ROW_BITS) == i; k++) {
+			    if (k > 0)
+				writer.write(',');
+			    writer.write(Utils.quote(new String(values.record(), "UTF-8")));
+			    hasValue = values.next();
+			}
+			writer.write('}');
+		    }
+		    writer.write('\n');
+		}
+		writer.write("\n@data\n");
+
+		boolean first = true;
+		while (rows.next()) {
+		    if (!first)
+			writer.write('\n');
+		    first = false;
+
+		    for (int i = 0; i < numAttributes; i++) {
+			if (i > 0)
+			    writer.write(',');
+			if (rows.isMissing(i) || (firstString[i] == -1 && Double.isNaN(rows.number(i))))
+			    writer.write('?');
+			else if (firstString[i] == -1)
+			    writer.write(Utils.doubleToString(rows.number(i), 6));
+			else
+			    writer.write(Utils.quote(rows.nominalValue(i)));
+		    }
+		}
+		writer.flush();
+	    } finally {
+		writer.close();
+		rows.close();
+	    }
+	} finally {
+	    occurrences.close();
+	    distinct.close();
+	}
+    }
+
+    /**
+     * bits of the key of a distinct value that hold its row, the others hold
+     * its column
+     */
+    private static final int ROW_BITS = 40;
+
+    private static List<Set<String>> newKnownValues(int numAttributes) {
+	List<Set<String>> known = new ArrayList<Set<String>>();
+	for (int i = 0; i < numAttributes; i++)
+	    known.add(new HashSet<String>());
+	return known;
+    }
+
+    /**
+     * Spools an occurrence of a nominal value keyed by a hash of its column
+     * and value, unless the value is known to have been spooled from an
+     * earlier row of the same pass
+     */
+    private static void addOccurrence(RecordSpool occurrences, Set<String> known, int column, long row, String value)
+	    throws IOException {
+	if (known.contains(value))
+	    return;
+	if (known.size() < KNOWN_VALUES)
+	    known.add(value);
+
+	long hash = column;
+	for (int c = 0; c < value.length(); c++)
+	    hash = (hash ^ value.charAt(c)) * 0x100000001b3L;
+
+	ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + value.length());
+	DataOutputStream out = new DataOutputStream(bytes);
+	out.writeInt(column);
+	out.writeLong(row);
+	out.write(value.getBytes("UTF-8"));
+	out.close();
+	occurrences.add(hash, bytes.toByteArray());
+    }
+
+    /**
+     * Spools the first occurrence of each value of each column keyed by its
+     * column and its row, so that the cursor of the distinct values returns
+     * the values of a column in the order they first appear. The occurrences
+     * of a value have the same hash, so they are next to each other in the
+     * cursor of the occurrences.
+     */
+    private static void findDistinct(RecordSpool occurrences, RecordSpool distinct) throws IOException {
+	RecordSpool.Cursor cursor = occurrences.cursor();
+	Map<String, long[]> firstRows = new HashMap<String, long[]>();
+	long hash = 0;
+	while (true) {
+	    boolean more = cursor.next();
+	    if (!more || cursor.key() != hash) {
+		for (Iterator<Map.Entry<String, long[]>> it = firstRows.entrySet().iterator(); it.hasNext();) {
+		    Map.Entry<String, long[]> entry = it.next();
+		    long[] columnAndRow = entry.getValue();
+		    distinct.add((columnAndRow[0] << ROW_BITS) | columnAndRow[1], entry.getKey().substring(entry.getKey().indexOf(':') + 1).getBytes("UTF-8"));
+		}
+		firstRows.clear();
+		if (!more)
+		    return;
+		hash = cursor.key();
+	    }
+
+	    byte[] record = cursor.record();
+	    DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+	    int column = in.readInt();
+	    long row = in.readLong();
+	    String key = column + ":" + new String(record, 12, record.length - 12, "UTF-8");
+	    long[] columnAndRow = firstRows.get(key);
+	    if (columnAndRow == null)
+		firstRows.put(key, new long[] { column, row });
+	    else if (row < columnAndRow[1])
+		columnAndRow[1] = row;
+	}
+    }
+
+    /**
+     * Splits the rows of a csv file as weka's CSVLoader does: with a
+     * StreamTokenizer of the same syntax, where a value is ended by a comma,
+     * a tab or the end of the line, the characters below the space are
+     * skipped, ' and " quote values and % starts a comment. The first line
+     * holds the names of the columns, an empty value or ? is missing.
+     */
+    private static class CsvRows {
+
+	private BufferedReader reader;
+
+	private StreamTokenizer tokenizer;
+
+	private String[] names;
+
+	private String[] values;
+
+	private double[] numbers;
+
+	private int lineNumber;
+
+	CsvRows(File csvFile) throws IOException {
+	    reader = new BufferedReader(new InputStreamReader(new FileInputStream(csvFile), ArffReader.CHARSET));
+	    tokenizer = new StreamTokenizer(reader);
+	    tokenizer.resetSyntax();
+	    tokenizer.whitespaceChars(0, ' ' - 1);
+	    tokenizer.wordChars(' ', 255);
+	    tokenizer.whitespaceChars(',', ',');
+	    tokenizer.whitespaceChars('\t', '\t');
+	    tokenizer.commentChar('%');
+	    tokenizer.quoteChar('"');
+	    tokenizer.quoteChar('\'');
+	    tokenizer.eolIsSignificant(true);
+
+	    try {
+		// the commas and tabs between the names are skipped
+		List<String> header = new ArrayList<String>();
+		nextFirstToken();
+		if (tokenizer.ttype == StreamTokenizer.TT_EOF)
+		    throw new IOException("premature end of file, " + tokenizer);
+		while (tokenizer.ttype != StreamTokenizer.TT_EOL && tokenizer.ttype != StreamTokenizer.TT_EOF) {
+		    header.add(tokenizer.sval);
+		    nextToken();
+		}
+		names = header.toArray(new String[header.size()]);
+	    } catch (IOException e) {
+		reader.close();
+		throw e;
+	    }
+
+	    tokenizer.ordinaryChar(',');
+	    tokenizer.ordinaryChar('\t');
+	    values = new String[names.length];
+	    numbers = new double[names.length];
+	}
+
+	String[] getNames() {
+	    return names;
+	}
+
+	/**
+	 * Reads the next row
+	 *
+	 * @return false at the end of the file
+	 * @throws IOException if the row does not have a value for each column
+	 */
+	boolean next() throws IOException {
+	    nextFirstToken();
+	    if (tokenizer.ttype == StreamTokenizer.TT_EOF)
+		return false;
+
+	    int count = 0;
+	    boolean first = true;
+	    while (tokenizer.ttype != StreamTokenizer.TT_EOL && tokenizer.ttype != StreamTokenizer.TT_EOF) {
+		if (!first)
+		    nextToken();
+		boolean separator = tokenizer.ttype == ',' || tokenizer.ttype == '\t'
+			|| tokenizer.ttype == StreamTokenizer.TT_EOL || tokenizer.ttype == StreamTokenizer.TT_EOF;
+		if (count < values.length) {
+		    values[count] = separator ? null : tokenizer.sval;
+		    numbers[count] = separator ? Double.NaN : parseNumber(tokenizer.sval);
+		}
+		count++;
+		if (!separator)
+		    nextToken();
+		first = false;
+	    }
+	    lineNumber++;
+
+	    if (count != values.length)
+		throw new IOException("wrong number of values. Read " + count + ", expected " + values.length
+			+ ", read " + tokenizer);
+	    return true;
+	}
+
+	/**
+	 * @return true if the value is empty or ?
+	 */
+	boolean isMissing(int column) {
+	    return values[column] == null || (!isNumber(column) && values[column].equals("?"));
+	}
+
+	boolean isNumber(int column) {
+	    return !Double.isNaN(numbers[column]) || isNaN(values[column]);
+	}
+
+	double number(int column) {
+	    return numbers[column];
+	}
+
+	/**
+	 * @return the value as the loader names it in a nominal column
+	 */
+	String nominalValue(int column) {
+	    return isNumber(column) ? Double.toString(numbers[column]) : values[column].replace(' ', '_');
+	}
+
+	void close() throws IOException {
+	    reader.close();
+	}
+
+	/**
+	 * @return the value Double.valueOf parses from the text, NaN if it is
+	 *         not a number
+	 */
+	private static double parseNumber(String text) {
+	    // only these characters can start a number after the white space,
+	    // so most strings are not parsed
+	    int start = 0;
+	    while (start < text.length() && text.charAt(start) <= ' ')
+		start++;
+	    if (start == text.length() || "+-.0123456789NI".indexOf(text.charAt(start)) == -1)
+		return Double.NaN;
+	    try {
+		return Double.valueOf(text).doubleValue();
+	    } catch (NumberFormatException e) {
+		return Double.NaN;
+	    }
+	}
+
+	private static boolean isNaN(String text) {
+	    if (text == null)
+		return false;
+	    try {
+		return Double.isNaN(Double.valueOf(text).doubleValue());
+	    } catch (NumberFormatException e) {
+		return false;
+	    }
+	}
+
+	/**
+	 * Reads the first token of a line, skipping empty lines. A quoted value
+	 * is a word and ? is a token of its own, as in weka's ConverterUtils.
+	 */
+	private void nextFirstToken() throws IOException {
+	    while (tokenizer.nextToken() == StreamTokenizer.TT_EOL)
+		;
+	    classifyToken();
+	}
+
+	private void nextToken() throws IOException {
+	    tokenizer.nextToken();
+	    if (tokenizer.ttype != StreamTokenizer.TT_EOL)
+		classifyToken();
+	}
+
+	private void classifyToken() {
+	    if (tokenizer.ttype == '\'' || tokenizer.ttype == '"')
+		tokenizer.ttype = StreamTokenizer.TT_WORD;
+	    else if (tokenizer.ttype == StreamTokenizer.TT_WORD && tokenizer.sval.equals("?"))
+		tokenizer.ttype = '?';
+	}
+    }
+
+    /**
+     * @return the arff file in the arff_files directory next to the
+     *         directory of the csv file
+     */
+    private static File defaultArffFile(File csvFile) {
+	String path = csvFile.getAbsolutePath();
+	path = path.substring(0, path.lastIndexOf(File.separator));
+	return new File(path.substring(0, path.lastIndexOf(File.separator))
+		+ File.separator + "arff_files" + File.separator
+		+ arffFileName(csvFile.getName()));
+    }
+
+    private static String arffFileName(String csvFileName) {
+	return csvFileName.substring(0, csvFileName.lastIndexOf('.')) + ".arff";
+    }
+}
@@ -0,0 +1,563 @@
+package common;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Aggregates the metrics of the methods in an arff file up to their files.
+ *
+ * <p>The rows are read once with ArffReader and grouped by the "File Name" column, so
+ * the methods of a file do not need to be next to each other. For each file and metric
+ * the count, minimum, maximum, total and the running mean and sum of squared deviations
+ * are kept in primitive arrays; the values themselves are kept only if the median is
+ * asked for. The rows are read in chunks which are aggregated by separate threads into
+ * partial results, and the partial results are merged as they are completed.
+ *
+ * <p>The metrics are the numeric columns except the identifiers (names ending with "Id"),
+ * the line numbers (names ending with "Line") and the class column, which is the last
+ * one. The result has one row per file, in the order the files first appear, with the
+ * file name, the file id and the class value of the first method of the file, and the
+ * chosen statistics of each metric in between.
+ */
+public class MethodAggregator {
+
+	public enum Statistic {
+
+		MIN("Min"), MAX("Max"), TOTAL("Total"), AVG("Avg"), MEDIAN("Median"), STDDEV("StdDev");
+
+		private final String label;
+
+		Statistic(String label)
+		{
+			this.label = label;
+		}
+
+		/**
+		 * @return the suffix of the names of the attributes of the statistic
+		 */
+		public String label()
+		{
+			return label;
+		}
+	}
+
+	/**
+	 * statistics computed if none are given
+	 */
+	public static final Statistic[] DEFAULT_STATISTICS = { Statistic.MIN, Statistic.MAX, Statistic.TOTAL, Statistic.AVG };
+
+	/**
+	 * number of rows aggregated by a thread at a time
+	 */
+	private static final int CHUNK_SIZE = 8192;
+
+	private Statistic[] statistics = DEFAULT_STATISTICS;
+
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * @param statistics the statistics computed for each metric, in the order of the attributes
+	 */
+	public void setStatistics(Statistic[] statistics)
+	{
+		this.statistics = statistics;
+	}
+
+	/**
+	 * @param numThreads number of threads aggregating the chunks, 1 to aggregate in the reading thread
+	 */
+	public void setNumThreads(int numThreads)
+	{
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Aggregates the method level arff file into the file with the same name and
+	 * the suffix _AG, i.e. m.arff into m_AG.arff
+	 *
+	 * @param arffFile
+	 * @return the aggregated file
+	 * @throws IOException
+	 */
+	public File aggregate(File arffFile) throws IOException
+	{
+		String path = arffFile.getPath();
+		int dot = path.lastIndexOf('.');
+		File outFile = new File((dot == -1 ? path : path.substring(0, dot)) + "_AG.arff");
+
+		aggregate(arffFile, outFile);
+
+		return outFile;
+	}
+
+	/**
+	 * Aggregates the method level arff file into outFile
+	 *
+	 * @param arffFile
+	 * @param outFile
+	 * @throws IOException
+	 */
+	public void aggregate(File arffFile, File outFile) throws IOException
+	{
+		ArffReader reader = ArffReader.openArff(arffFile);
+
+		int numAttributes = reader.numAttributes();
+		int classColumn = numAttributes - 1;
+		int nameColumn = 0;
+		int idColumn = -1;
+		List<Integer> metricList = new ArrayList<Integer>();
+
+		for(int i=0; i<numAttributes; i++)
+		{
+			String name = reader.attributeName(i).trim();
+
+			if(name.equalsIgnoreCase("File Name"))
+				nameColumn = i;
+			else if(name.equalsIgnoreCase("File Id") && reader.attributeType(i) == ArffReader.NUMERIC)
+				idColumn = i;
+		}
+
+		for(int i=0; i<classColumn; i++)
+		{
+			if(i != nameColumn && reader.isMetric(i))
+				metricList.add(Integer.valueOf(i));
+		}
+
+		int[] metrics = new int[metricList.size()];
+		for(int k=0; k<metrics.length; k++)
+			metrics[k] = metricList.get(k).intValue();
+
+		boolean keepValues = Arrays.asList(statistics).contains(Statistic.MEDIAN);
+
+		// the groups are assigned while reading, in the order the files first appear
+		List<String> groupNames = new ArrayList<String>();
+		List<Double> groupIds = new ArrayList<Double>();
+		List<String> groupClasses = new ArrayList<String>();
+		HashMap<String, Integer> groups = new HashMap<String, Integer>();
+		boolean nominalNames = reader.attributeType(nameColumn) == ArffReader.NOMINAL;
+		int[] nominalGroups = nominalNames ? new int[reader.nominalValues(nameColumn).length] : null;
+		if(nominalGroups != null)
+			Arrays.fill(nominalGroups, -1);
+
+		Partial total = new Partial(metrics.length, keepValues, null);
+
+		ExecutorService executor = numThreads > 1 ? Executors.newFixedThreadPool(numThreads) : null;
+		List<Future<Partial>> pending = new ArrayList<Future<Partial>>();
+
+		try {
+			// the rows of a chunk refer to the groups of the chunk, so the partial
+			// result of a chunk is as large as the number of files in the chunk
+			int[] chunkGroups = new int[CHUNK_SIZE];
+			double[] chunkValues = new double[CHUNK_SIZE * metrics.length];
+			int chunkSize = 0;
+			int[] chunkGlobals = new int[CHUNK_SIZE];
+			int chunkNumGroups = 0;
+			int[] localGroups = new int[64];
+
+			while(true)
+			{
+				boolean more = reader.next();
+
+				if(more)
+				{
+					int nominal = nominalNames ? reader.nominalIndex(nameColumn) : -1;
+					int group;
+					if(nominal != -1)
+						group = nominalGroups[nominal];
+					else
+					{
+						Integer value = groups.get(reader.stringValue(nameColumn));
+						group = value == null ? -1 : value.intValue();
+					}
+
+					if(group == -1)
+					{
+						String name = reader.stringValue(nameColumn);
+						group = groupNames.size();
+						groupNames.add(name);
+						groupIds.add(Double.valueOf(idColumn == -1 ? Double.NaN : reader.value(idColumn)));
+						groupClasses.add(reader.isMissing(classColumn) ? null : reader.stringValue(classColumn));
+
+						if(nominal != -1)
+							nominalGroups[nominal] = group;
+						else
+							groups.put(name, Integer.valueOf(group));
+					}
+
+					if(group >= localGroups.length)
+					{
+						int[] newLocalGroups = new int[Math.max(group + 1, localGroups.length * 2)];
+						System.arraycopy(localGroups, 0, newLocalGroups, 0, localGroups.length);
+						localGroups = newLocalGroups;
+					}
+					if(localGroups[group] == 0)
+					{
+						chunkGlobals[chunkNumGroups++] = group;
+						localGroups[group] = chunkNumGroups;
+					}
+
+					chunkGroups[chunkSize] = localGroups[group] - 1;
+					for(int k=0; k<metrics.length; k++)
+						chunkValues[chunkSize * metrics.length + k] = reader.isMissing(metrics[k]) ? Double.NaN : reader.value(metrics[k]);
+					chunkSize++;
+				}
+
+				if(chunkSize == CHUNK_SIZE || (!more && chunkSize > 0))
+				{
+					int[] globals = new int[chunkNumGroups];
+					System.arraycopy(chunkGlobals, 0, globals, 0, chunkNumGroups);
+					for(int g=0; g<chunkNumGroups; g++)
+						localGroups[chunkGlobals[g]] = 0;
+
+					if(executor == null)
+					{
+						Partial partial = new Partial(metrics.length, keepValues, globals);
+						partial.add(chunkGroups, chunkValues, chunkSize);
+						total.merge(partial);
+					}
+					else
+					{
+						final Partial partial = new Partial(metrics.length, keepValues, globals);
+						final int[] blockGroups = chunkGroups;
+						final double[] blockValues = chunkValues;
+						final int blockSize = chunkSize;
+
+						pending.add(executor.submit(new Callable<Partial>() {
+							public Partial call() throws Exception {
+								partial.add(blockGroups, blockValues, blockSize);
+								return partial;
+							}
+						}));
+
+						chunkGroups = new int[CHUNK_SIZE];
+						chunkValues = new double[CHUNK_SIZE * metrics.length];
+
+						// keeps the number of chunks in memory bounded
+						while(pending.size() > 2 * numThreads)
+							total.merge(get(pending.remove(0)));
+					}
+					chunkSize = 0;
+					chunkNumGroups = 0;
+				}
+
+				if(!more)
+					break;
+			}
+
+			while(!pending.isEmpty())
+				total.merge(get(pending.remove(0)));
+		} finally {
+			if(executor != null)
+				executor.shutdown();
+		}
+
+		ArffWriter writer = new ArffWriter(outFile);
+		try {
+			writer.writeRelation(reader.getRelation());
+			writer.writeNominalAttribute(reader.attributeName(nameColumn), groupNames);
+			if(idColumn != -1)
+				writer.writeNumericAttribute(reader.attributeName(idColumn));
+			for(int k=0; k<metrics.length; k++)
+				for(int s=0; s<statistics.length; s++)
+					writer.writeNumericAttribute(reader.attributeName(metrics[k]).trim() + " " + statistics[s].label());
+			writer.writeAttribute(reader.attributeName(classColumn), reader, classColumn);
+			writer.writeData();
+
+			for(int g=0; g<groupNames.size(); g++)
+			{
+				writer.startRow();
+
+				writer.writeString(groupNames.get(g));
+				if(idColumn != -1)
+					writer.writeNumber(groupIds.get(g).doubleValue());
+
+				for(int k=0; k<metrics.length; k++)
+					for(int s=0; s<statistics.length; s++)
+						writer.writeNumber(total.statistic(g, k, statistics[s]));
+
+				writer.writeString(groupClasses.get(g));
+			}
+			writer.flush();
+		} finally {
+			writer.close();
+			reader.close();
+		}
+	}
+
+	private static Partial get(Future<Partial> future) throws IOException
+	{
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException)
+				throw (RuntimeException)e.getCause();
+			throw new RuntimeException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Statistics of the metrics of the groups seen in a part of the rows. The statistics
+	 * of group g and metric k are at index g * numMetrics + k of the arrays.
+	 */
+	private static class Partial {
+
+		private int numMetrics;
+
+		/**
+		 * group of the whole file of each group, null if the groups are those of the whole file
+		 */
+		private int[] globals;
+
+		private int numGroups;
+
+		private long[] counts;
+
+		private double[] mins;
+
+		private double[] maxs;
+
+		private double[] sums;
+
+		private double[] means;
+
+		/**
+		 * sums of the squared deviations from the mean
+		 */
+		private double[] squares;
+
+		/**
+		 * values of each group and metric, null if the median is not needed
+		 */
+		private DoubleList[] values;
+
+		Partial(int numMetrics, boolean keepValues, int[] globals)
+		{
+			this.numMetrics = numMetrics;
+			this.globals = globals;
+			counts = new long[0];
+			mins = new double[0];
+			maxs = new double[0];
+			sums = new double[0];
+			means = new double[0];
+			squares = new double[0];
+			if(keepValues)
+				values = new DoubleList[0];
+		}
+
+		/**
+		 * Adds rows to the statistics
+		 *
+		 * @param groups group of each row
+		 * @param rowValues metric values of the rows, numMetrics per row
+		 * @param numRows
+		 */
+		void add(int[] groups, double[] rowValues, int numRows)
+		{
+			for(int r=0; r<numRows; r++)
+			{
+				ensureGroups(groups[r] + 1);
+				int cell = groups[r] * numMetrics;
+
+				for(int k=0; k<numMetrics; k++, cell++)
+				{
+					double value = rowValues[r * numMetrics + k];
+					if(Double.isNaN(value))
+						continue;
+
+					long count = ++counts[cell];
+					if(count == 1 || value < mins[cell])
+						mins[cell] = value;
+					if(count == 1 || value > maxs[cell])
+						maxs[cell] = value;
+					sums[cell] += value;
+
+					double delta = value - means[cell];
+					means[cell] += delta / count;
+					squares[cell] += delta * (value - means[cell]);
+
+					if(values != null)
+					{
+						if(values[cell] == null)
+							values[cell] = new DoubleList();
+						values[cell].add(value);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Adds the statistics of a chunk of the rows to the statistics of the whole file
+		 *
+		 * @param other
+		 */
+		void merge(Partial other)
+		{
+			for(int g=0; g<other.numGroups; g++)
+			{
+				int group = other.globals[g];
+				ensureGroups(group + 1);
+
+				for(int k=0; k<numMetrics; k++)
+					merge(group * numMetrics + k, other, g * numMetrics + k);
+			}
+		}
+
+		/**
+		 * Adds the statistics of a cell of another part of the rows to a cell
+		 *
+		 * @param cell
+		 * @param other
+		 * @param otherCell
+		 */
+		private void merge(int cell, Partial other, int otherCell)
+		{
+			long otherCount = other.counts[otherCell];
+			if(otherCount == 0)
+				return;
+
+			long count = counts[cell];
+			if(count == 0)
+			{
+				mins[cell] = other.mins[otherCell];
+				maxs[cell] = other.maxs[otherCell];
+			}
+			else
+			{
+				mins[cell] = Math.min(mins[cell], other.mins[otherCell]);
+				maxs[cell] = Math.max(maxs[cell], other.maxs[otherCell]);
+			}
+			sums[cell] += other.sums[otherCell];
+
+			long n = count + otherCount;
+			double delta = other.means[otherCell] - means[cell];
+			means[cell] += delta * otherCount / n;
+			squares[cell] += other.squares[otherCell] + delta * delta * count * otherCount / n;
+			counts[cell] = n;
+
+			if(values != null)
+			{
+				if(values[cell] == null)
+					values[cell] = other.values[otherCell];
+				else
+					values[cell].addAll(other.values[otherCell]);
+			}
+		}
+
+		/**
+		 * @param group
+		 * @param metric
+		 * @param statistic
+		 * @return the statistic of the metric of the group, NaN if the metric has no values
+		 */
+		double statistic(int group, int metric, Statistic statistic)
+		{
+			int cell = group * numMetrics + metric;
+
+			if(group >= numGroups || counts[cell] == 0)
+				return Double.NaN;
+
+			switch(statistic)
+			{
+			case MIN:
+				return mins[cell];
+			case MAX:
+				return maxs[cell];
+			case TOTAL:
+				return sums[cell];
+			case AVG:
+				return sums[cell] / counts[cell];
+			case MEDIAN:
+				return values[cell].median();
+			case STDDEV:
+				return counts[cell] > 1 ? Math.sqrt(squares[cell] / (counts[cell] - 1)) : 0;
+			}
+			throw new IllegalStateException(statistic.name());
+		}
+
+		private void ensureGroups(int n)
+		{
+			if(n <= numGroups)
+				return;
+
+			int capacity = counts.length / Math.max(numMetrics, 1);
+			if(n > capacity)
+			{
+				int size = Math.max(n, capacity * 2) * numMetrics;
+				counts = copyOf(counts, size);
+				mins = copyOf(mins, size);
+				maxs = copyOf(maxs, size);
+				sums = copyOf(sums, size);
+				means = copyOf(means, size);
+				squares = copyOf(squares, size);
+				if(values != null)
+				{
+					DoubleList[] newValues = new DoubleList[size];
+					System.arraycopy(values, 0, newValues, 0, values.length);
+					values = newValues;
+				}
+			}
+			numGroups = n;
+		}
+
+		private static long[] copyOf(long[] array, int size)
+		{
+			long[] copy = new long[size];
+			System.arraycopy(array, 0, copy, 0, array.length);
+			return copy;
+		}
+
+		private static double[] copyOf(double[] array, int size)
+		{
+			double[] copy = new double[size];
+			System.arraycopy(array, 0, copy, 0, array.length);
+			return copy;
+		}
+	}
+
+	/**
+	 * Growable array of doubles
+	 */
+	private static class DoubleList {
+
+		private double[] elements = new double[8];
+
+		private int size;
+
+		void add(double value)
+		{
+			if(size == elements.length)
+			{
+				double[] newElements = new double[size * 2];
+				System.arraycopy(elements, 0, newElements, 0, size);
+				elements = newElements;
+			}
+			elements[size++] = value;
+		}
+
+		void addAll(DoubleList other)
+		{
+			for(int i=0; i<other.size; i++)
+				add(other.elements[i]);
+		}
+
+		double median()
+		{
+			Arrays.sort(elements, 0, size);
+			if(size % 2 == 1)
+				return elements[size / 2];
+			return (elements[size / 2 - 1] + elements[size / 2]) / 2;
+		}
+	}
+}
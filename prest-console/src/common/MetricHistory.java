@@ -0,0 +1,630 @@
+package common;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Append-only store of the metric values of a project over its freezes.
+ *
+ * <p>The store is a directory of plain files:
+ * <ul>
+ * <li>freezes.txt, entities.txt and metrics.txt list the names of the freezes, the entities
+ * and the metrics, the line number of a name is its id</li>
+ * <li>values.dat holds a block of (metric id, value) pairs for each recorded entity of a freeze</li>
+ * <li>index.dat holds an (entity id, freeze id, offset, count) record for each block</li>
+ * </ul>
+ * Nothing is ever rewritten: recording a freeze appends its blocks, its index records and
+ * the new names. If a freeze is recorded again, the blocks recorded last are used.
+ *
+ * <p>When the store is opened the index is loaded into memory per entity, so the values of an
+ * entity over all freezes are read with one seek per freeze. Index records left incomplete
+ * by an interrupted recording are dropped.
+ *
+ * <p>An entity is named by its level and the names of the columns of its row which end with
+ * "Name" or "Path", i.e. "method:a.java/.A/run". The metrics are the numeric columns which are
+ * not identifiers (names ending with "Id") or line numbers (names ending with "Line").
+ */
+public class MetricHistory {
+
+	/**
+	 * name of the directory of the store in the directory of a project
+	 */
+	public static final String DIRECTORY_NAME = "metric_history";
+
+	/**
+	 * suffix of the names of the attributes of the deltas
+	 */
+	public static final String DELTA_SUFFIX = " Delta";
+
+	/**
+	 * size of a (metric id, value) pair in values.dat
+	 */
+	private static final int VALUE_SIZE = 12;
+
+	/**
+	 * size of a record in index.dat
+	 */
+	private static final int INDEX_RECORD_SIZE = 20;
+
+	private File directory;
+
+	private Dictionary freezes;
+
+	private Dictionary entities;
+
+	private Dictionary metrics;
+
+	/**
+	 * blocks of each entity, in the order they were recorded
+	 */
+	private List<EntityIndex> entityIndexes = new ArrayList<EntityIndex>();
+
+	/**
+	 * length of values.dat
+	 */
+	private long valuesLength;
+
+	private RandomAccessFile valuesFile;
+
+	/**
+	 * Opens the store in the directory, creating it if it does not exist
+	 *
+	 * @param directory
+	 * @throws IOException
+	 */
+	public MetricHistory(File directory) throws IOException
+	{
+		this.directory = directory;
+
+		if(!directory.exists() && !directory.mkdirs())
+			throw new IOException("Cannot create " + directory.getPath());
+
+		freezes = new Dictionary(new File(directory, "freezes.txt"));
+		entities = new Dictionary(new File(directory, "entities.txt"));
+		metrics = new Dictionary(new File(directory, "metrics.txt"));
+
+		valuesLength = new File(directory, "values.dat").length();
+
+		loadIndex();
+	}
+
+	/**
+	 * @param projectName
+	 * @return the store of the project in the repository
+	 * @throws IOException
+	 */
+	public static MetricHistory openProject(String projectName) throws IOException
+	{
+		return new MetricHistory(new File(ApplicationProperties.get("repositorylocation") + File.separator + projectName
+				+ File.separator + DIRECTORY_NAME));
+	}
+
+	/**
+	 * @return the names of the recorded freezes, in the order they were first recorded
+	 */
+	public List<String> getFreezes()
+	{
+		return freezes.getNames();
+	}
+
+	/**
+	 * @return the names of the recorded metrics
+	 */
+	public List<String> getMetrics()
+	{
+		return metrics.getNames();
+	}
+
+	/**
+	 * @return the names of the recorded entities
+	 */
+	public List<String> getEntities()
+	{
+		return entities.getNames();
+	}
+
+	/**
+	 * Records the rows of the csv files of a parse as the metrics of the freeze
+	 *
+	 * @param freeze
+	 * @param csvFiles the files which do not exist are skipped
+	 * @throws IOException
+	 */
+	public void record(String freeze, File[] csvFiles) throws IOException
+	{
+		int freezeId = freezes.add(freeze);
+
+		DataOutputStream values = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(directory, "values.dat"), true)));
+		List<long[]> indexRecords = new ArrayList<long[]>();
+		long offset = valuesLength;
+
+		try {
+			for(int f=0; f<csvFiles.length; f++)
+			{
+				if(csvFiles[f] == null || !csvFiles[f].isFile())
+					continue;
+
+				ArffReader reader = new ArffReader(new InputStreamReader(new FileInputStream(csvFiles[f]), ArffReader.CHARSET), true);
+				try {
+					Columns columns = new Columns(reader);
+					int[] metricIds = new int[columns.metrics.length];
+					for(int k=0; k<metricIds.length; k++)
+						metricIds[k] = metrics.add(reader.attributeName(columns.metrics[k]).trim());
+
+					while(reader.next())
+					{
+						int entityId = entities.add(columns.entity(reader));
+						int count = 0;
+
+						for(int k=0; k<columns.metrics.length; k++)
+						{
+							double value = reader.value(columns.metrics[k]);
+							if(Double.isNaN(value))
+								continue;
+
+							values.writeInt(metricIds[k]);
+							values.writeDouble(value);
+							count++;
+						}
+
+						indexRecords.add(new long[] { entityId, freezeId, offset, count });
+						offset += count * VALUE_SIZE;
+					}
+				} finally {
+					reader.close();
+				}
+			}
+		} finally {
+			values.close();
+		}
+
+		// the names and the values are written before the index records which refer to them
+		freezes.flush();
+		entities.flush();
+		metrics.flush();
+
+		DataOutputStream index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(directory, "index.dat"), true)));
+		try {
+			for(long[] record : indexRecords)
+			{
+				index.writeInt((int)record[0]);
+				index.writeInt((int)record[1]);
+				index.writeLong(record[2]);
+				index.writeInt((int)record[3]);
+				addBlock((int)record[0], (int)record[1], record[2], (int)record[3]);
+			}
+		} finally {
+			index.close();
+		}
+
+		valuesLength = offset;
+	}
+
+	/**
+	 * @param entity
+	 * @param metric
+	 * @return the value of the metric of the entity in each freeze, in the order of
+	 * getFreezes(), NaN for the freezes in which it has no value
+	 * @throws IOException
+	 */
+	public double[] timeSeries(String entity, String metric) throws IOException
+	{
+		double[] series = new double[freezes.size()];
+		Arrays.fill(series, Double.NaN);
+
+		int entityId = entities.id(entity);
+		int metricId = metrics.id(metric);
+		if(entityId == -1 || entityId >= entityIndexes.size() || metricId == -1)
+			return series;
+
+		EntityIndex entityIndex = entityIndexes.get(entityId);
+		for(int b=0; b<entityIndex.size; b++)
+		{
+			double[] values = readBlock(entityIndex.offsets[b], entityIndex.counts[b]);
+			series[entityIndex.freezes[b]] = values[metricId];
+		}
+
+		return series;
+	}
+
+	/**
+	 * @param entity
+	 * @param freeze
+	 * @return the values of the entity in the freeze indexed by the ids of the metrics in
+	 * getMetrics(), NaN for the metrics without value, null if the entity has no values in the freeze
+	 * @throws IOException
+	 */
+	public double[] values(String entity, String freeze) throws IOException
+	{
+		int entityId = entities.id(entity);
+		int freezeId = freezes.id(freeze);
+		if(entityId == -1 || entityId >= entityIndexes.size() || freezeId == -1)
+			return null;
+
+		EntityIndex entityIndex = entityIndexes.get(entityId);
+		for(int b=entityIndex.size-1; b>=0; b--)
+			if(entityIndex.freezes[b] == freezeId)
+				return readBlock(entityIndex.offsets[b], entityIndex.counts[b]);
+
+		return null;
+	}
+
+	/**
+	 * @param entity
+	 * @param metric
+	 * @param fromFreeze
+	 * @param toFreeze
+	 * @return the change of the metric of the entity between the freezes, NaN if it has no
+	 * value in one of them
+	 * @throws IOException
+	 */
+	public double delta(String entity, String metric, String fromFreeze, String toFreeze) throws IOException
+	{
+		int metricId = metrics.id(metric);
+		double[] from = values(entity, fromFreeze);
+		double[] to = values(entity, toFreeze);
+
+		if(metricId == -1 || from == null || to == null)
+			return Double.NaN;
+
+		return to[metricId] - from[metricId];
+	}
+
+	/**
+	 * Writes the rows of the arff file with the changes of their metrics between the
+	 * freezes as new attributes "&lt;metric&gt; Delta", before the class attribute, which
+	 * is the last one. The entity of a row is named like the entities of the csv files.
+	 *
+	 * @param fromFreeze
+	 * @param toFreeze
+	 * @param arffFile
+	 * @param outFile
+	 * @throws IOException
+	 */
+	public void exportDeltas(String fromFreeze, String toFreeze, File arffFile, File outFile) throws IOException
+	{
+		ArffReader reader = ArffReader.openArff(arffFile);
+		ArffWriter writer = new ArffWriter(outFile);
+
+		try {
+			Columns columns = new Columns(reader);
+			int numAttributes = reader.numAttributes();
+			int classColumn = numAttributes - 1;
+
+			List<Integer> deltaList = new ArrayList<Integer>();
+			for(int k=0; k<columns.metrics.length; k++)
+			{
+				int metricId = metrics.id(reader.attributeName(columns.metrics[k]).trim());
+				if(columns.metrics[k] != classColumn && metricId != -1)
+					deltaList.add(Integer.valueOf(metricId));
+			}
+
+			writer.writeRelation(reader.getRelation());
+			for(int i=0; i<numAttributes; i++)
+			{
+				if(i == classColumn)
+					for(Integer metricId : deltaList)
+						writer.writeNumericAttribute(metrics.name(metricId.intValue()) + DELTA_SUFFIX);
+				writer.writeAttribute(reader.attributeName(i), reader, i);
+			}
+			writer.writeData();
+
+			while(reader.next())
+			{
+				String entity = columns.entity(reader);
+				double[] from = values(entity, fromFreeze);
+				double[] to = values(entity, toFreeze);
+
+				writer.startRow();
+				for(int i=0; i<numAttributes; i++)
+				{
+					if(i == classColumn)
+						for(Integer metricId : deltaList)
+							writer.writeNumber(from == null || to == null ? Double.NaN
+									: to[metricId.intValue()] - from[metricId.intValue()]);
+					writer.writeValue(reader, i);
+				}
+			}
+			writer.flush();
+		} finally {
+			writer.close();
+			reader.close();
+		}
+	}
+
+	public void close() throws IOException
+	{
+		if(valuesFile != null)
+			valuesFile.close();
+		valuesFile = null;
+	}
+
+	/**
+	 * @param offset
+	 * @param count
+	 * @return the values of a block indexed by metric id, NaN for the metrics without value
+	 * @throws IOException
+	 */
+	private double[] readBlock(long offset, int count) throws IOException
+	{
+		double[] values = new double[metrics.size()];
+		Arrays.fill(values, Double.NaN);
+
+		if(count == 0)
+			return values;
+
+		if(valuesFile == null)
+			valuesFile = new RandomAccessFile(new File(directory, "values.dat"), "r");
+
+		byte[] bytes = new byte[count * VALUE_SIZE];
+		valuesFile.seek(offset);
+		valuesFile.readFully(bytes);
+
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+		for(int i=0; i<count; i++)
+		{
+			int metricId = input.readInt();
+			double value = input.readDouble();
+			if(metricId >= 0 && metricId < values.length)
+				values[metricId] = value;
+		}
+
+		return values;
+	}
+
+	/**
+	 * Reads index.dat, dropping the records after the first one which refers to names or
+	 * values that were not written
+	 *
+	 * @throws IOException
+	 */
+	private void loadIndex() throws IOException
+	{
+		File indexFile = new File(directory, "index.dat");
+		if(!indexFile.exists())
+			return;
+
+		long validLength = 0;
+		DataInputStream index = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+		try {
+			long length = indexFile.length();
+			while(validLength + INDEX_RECORD_SIZE <= length)
+			{
+				int entityId = index.readInt();
+				int freezeId = index.readInt();
+				long offset = index.readLong();
+				int count = index.readInt();
+
+				if(entityId < 0 || entityId >= entities.size() || freezeId < 0 || freezeId >= freezes.size()
+						|| offset < 0 || count < 0 || offset + (long)count * VALUE_SIZE > valuesLength)
+					break;
+
+				addBlock(entityId, freezeId, offset, count);
+				validLength += INDEX_RECORD_SIZE;
+			}
+		} finally {
+			index.close();
+		}
+
+		if(validLength < indexFile.length())
+		{
+			RandomAccessFile file = new RandomAccessFile(indexFile, "rw");
+			try {
+				file.setLength(validLength);
+			} finally {
+				file.close();
+			}
+		}
+	}
+
+	private void addBlock(int entityId, int freezeId, long offset, int count)
+	{
+		while(entityIndexes.size() <= entityId)
+			entityIndexes.add(new EntityIndex());
+
+		entityIndexes.get(entityId).add(freezeId, offset, count);
+	}
+
+	/**
+	 * The columns of a csv or arff file naming the entities and holding the metrics
+	 */
+	private static class Columns {
+
+		private String level;
+
+		private int[] names;
+
+		private int[] metrics;
+
+		Columns(ArffReader reader)
+		{
+			List<Integer> nameList = new ArrayList<Integer>();
+			List<Integer> metricList = new ArrayList<Integer>();
+			level = "package";
+
+			for(int i=0; i<reader.numAttributes(); i++)
+			{
+				String name = reader.attributeName(i).trim();
+
+				if(name.endsWith("Name") || name.endsWith("Path"))
+				{
+					nameList.add(Integer.valueOf(i));
+					if(name.startsWith("Method"))
+						level = "method";
+					else if(name.startsWith("Class") && !level.equals("method"))
+						level = "class";
+					else if(name.startsWith("File") && level.equals("package"))
+						level = "file";
+				}
+				else if(reader.attributeType(i) != ArffReader.NOMINAL && !name.endsWith("Id") && !name.endsWith("Line"))
+					metricList.add(Integer.valueOf(i));
+			}
+
+			names = toArray(nameList);
+			metrics = toArray(metricList);
+		}
+
+		String entity(ArffReader reader)
+		{
+			StringBuffer entity = new StringBuffer(level).append(':');
+			for(int k=0; k<names.length; k++)
+			{
+				if(k > 0)
+					entity.append('/');
+				entity.append(reader.stringValue(names[k]));
+			}
+			return entity.toString();
+		}
+
+		private static int[] toArray(List<Integer> list)
+		{
+			int[] array = new int[list.size()];
+			for(int i=0; i<array.length; i++)
+				array[i] = list.get(i).intValue();
+			return array;
+		}
+	}
+
+	/**
+	 * Blocks of an entity
+	 */
+	private static class EntityIndex {
+
+		private int size;
+
+		private int[] freezes = new int[4];
+
+		private long[] offsets = new long[4];
+
+		private int[] counts = new int[4];
+
+		void add(int freeze, long offset, int count)
+		{
+			if(size == freezes.length)
+			{
+				int[] newFreezes = new int[size * 2];
+				long[] newOffsets = new long[size * 2];
+				int[] newCounts = new int[size * 2];
+				System.arraycopy(freezes, 0, newFreezes, 0, size);
+				System.arraycopy(offsets, 0, newOffsets, 0, size);
+				System.arraycopy(counts, 0, newCounts, 0, size);
+				freezes = newFreezes;
+				offsets = newOffsets;
+				counts = newCounts;
+			}
+			freezes[size] = freeze;
+			offsets[size] = offset;
+			counts[size] = count;
+			size++;
+		}
+	}
+
+	/**
+	 * Names and their ids, new names are appended to the file when the dictionary is flushed
+	 */
+	private static class Dictionary {
+
+		private File file;
+
+		private List<String> names = new ArrayList<String>();
+
+		private HashMap<String, Integer> ids = new HashMap<String, Integer>();
+
+		/**
+		 * number of names written to the file
+		 */
+		private int written;
+
+		Dictionary(File file) throws IOException
+		{
+			this.file = file;
+
+			if(file.exists())
+			{
+				BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+				try {
+					String line;
+					while((line = reader.readLine()) != null)
+						add(line);
+				} finally {
+					reader.close();
+				}
+			}
+			written = names.size();
+		}
+
+		/**
+		 * @param name
+		 * @return the id of the name, -1 if it is not in the dictionary
+		 */
+		int id(String name)
+		{
+			Integer id = ids.get(name);
+			return id == null ? -1 : id.intValue();
+		}
+
+		/**
+		 * @param name
+		 * @return the id of the name, added if it is not in the dictionary
+		 */
+		int add(String name)
+		{
+			Integer id = ids.get(name);
+			if(id != null)
+				return id.intValue();
+
+			ids.put(name, Integer.valueOf(names.size()));
+			names.add(name);
+			return names.size() - 1;
+		}
+
+		String name(int id)
+		{
+			return names.get(id);
+		}
+
+		int size()
+		{
+			return names.size();
+		}
+
+		List<String> getNames()
+		{
+			return names;
+		}
+
+		void flush() throws IOException
+		{
+			if(written == names.size())
+				return;
+
+			Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), "UTF-8"));
+			try {
+				for(; written<names.size(); written++)
+				{
+					writer.write(names.get(written));
+					writer.write('\n');
+				}
+			} finally {
+				writer.close();
+			}
+		}
+	}
+}
@@ -6,11 +6,10 @@
 package common;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
-import common.data.DataField;
-import common.data.DataHeader;
-import common.data.DataItem;
+import common.data.DataContext;
 import common.data.DataSet;
 
 import definitions.metrics.MetricTypeNames;
@@ -23,7 +22,7 @@ public class ParseDataSets {
 	private DataSet methodDataSet;
 
 	private static int methodMetricDivideAndConquerNumber = 0;
-	private int divideSize = 4000;
+	private static final int divideSize = 4000;
 
 	public ParseDataSets() {
 	}
@@ -37,286 +36,187 @@ public class ParseDataSets {
 	}
 
 	public ParseDataSets(ParseMetricGroups parseMetricGroups) {
-		this.packageDataSet = new DataSet();
-		this.packageDataSet.setTitle("Package DataSet");
-		List<DataHeader> dataHeaderList = new ArrayList<DataHeader>();
-
-		if (parseMetricGroups.getPackageMetrics().size() > 0) {
-			List<NodePair> packageMetricList = parseMetricGroups
-					.getPackageMetrics().get(0).getNodePairList();
-			for (NodePair aPair : packageMetricList) {
-				if (!aPair.getName().equals("name")
-						&& !aPair.getName().equals("id")) {
-					DataHeader dataHeader = new DataHeader();
-					dataHeader.setLabel(aPair.getName());
-					dataHeader.setNominal(false);
-					dataHeaderList.add(dataHeader);
-				}
-			}
-			DataHeader riskLevelDataHeader = new DataHeader();
-			riskLevelDataHeader.setLabel("Risk Level");
-			riskLevelDataHeader.setNominal(true);
-			String[] riskLevels = { "False", "True" };
-			riskLevelDataHeader.setAvailableValue(riskLevels);
-			dataHeaderList.add(riskLevelDataHeader);
-			this.packageDataSet.setDataHeaders(dataHeaderList
-					.toArray(new DataHeader[0]));
-			this.packageDataSet.setClassIndex(dataHeaderList.size() - 1);
-
-			List<DataItem> dataItemList = new ArrayList<DataItem>();
-
-			for (MetricGroup metricGroup : parseMetricGroups
-					.getPackageMetrics()) {
-				List<DataField> dataFieldList = new ArrayList<DataField>();
-				packageMetricList = metricGroup.getNodePairList();
-				int i = 0;
-				for (NodePair nodePair : packageMetricList) {
-					if (!nodePair.getName().equals("name")
-							&& !nodePair.getName().equals("id")) {
-						DataField dataField = new DataField();
-						dataField.setDataHeader(dataHeaderList.get(i));
-						dataField.load(nodePair.getValue());
-						dataFieldList.add(dataField);
-						i++;
-					}
-				}
-				DataField dataField = new DataField();
-				dataField.setDataHeader(riskLevelDataHeader);
-				dataField.load("False");
-				dataFieldList.add(dataField);
-
-				DataItem dataItem = new DataItem();
-				dataItem.setItemName(metricGroup.getGroupName());
-				dataItem.setDataFields(dataFieldList.toArray(new DataField[0]));
-				dataItem.setDataHeaders(dataHeaderList
-						.toArray(new DataHeader[0]));
-				dataItemList.add(dataItem);
-			}
-			this.packageDataSet.setDataItems(dataItemList
-					.toArray(new DataItem[0]));
-		}
+		this.packageDataSet = createDataSet("Package DataSet",
+				parseMetricGroups.getPackageMetrics());
 		parseMetricGroups.setPackageMetrics(null);
 
-		this.fileDataSet = new DataSet();
-		this.fileDataSet.setTitle("File DataSet");
-		dataHeaderList = new ArrayList<DataHeader>();
-		if (parseMetricGroups.getFileMetrics().size() > 0) {
-			List<NodePair> fileMetricList = parseMetricGroups.getFileMetrics()
-					.get(0).getNodePairList();
-			for (NodePair aPair : fileMetricList) {
-				if (!aPair.getName().equals("name")
-						&& !aPair.getName().equals("id")) {
-					DataHeader dataHeader = new DataHeader();
-					dataHeader.setLabel(aPair.getName());
-					dataHeader.setNominal(false);
-					dataHeaderList.add(dataHeader);
-				}
-			}
-			DataHeader riskLevelDataHeader = new DataHeader();
-			riskLevelDataHeader.setLabel("Risk Level");
-			riskLevelDataHeader.setNominal(true);
-			String[] riskLevels = { "False", "True" };
-			riskLevelDataHeader.setAvailableValue(riskLevels);
-			dataHeaderList.add(riskLevelDataHeader);
-			this.fileDataSet.setDataHeaders(dataHeaderList
-					.toArray(new DataHeader[0]));
-			this.fileDataSet.setClassIndex(dataHeaderList.size() - 1);
-
-			List<DataItem> dataItemList = new ArrayList<DataItem>();
-
-			for (MetricGroup metricGroup : parseMetricGroups.getFileMetrics()) {
-				List<DataField> dataFieldList = new ArrayList<DataField>();
-				fileMetricList = metricGroup.getNodePairList();
-				int i = 0;
-				for (NodePair nodePair : fileMetricList) {
-					// for (int i = 0; i < fileMetricList.size(); i++) {
-					if (!nodePair.getName().equals("name")
-							&& !nodePair.getName().equals("id")) {
-						DataField dataField = new DataField();
-						dataField.setDataHeader(dataHeaderList.get(i));
-						dataField.load(nodePair.getValue());
-						dataFieldList.add(dataField);
-						i++;
-					}
-				}
+		this.fileDataSet = createDataSet("File DataSet", parseMetricGroups
+				.getFileMetrics());
+		parseMetricGroups.setFileMetrics(null);
 
-				DataField dataField = new DataField();
-				dataField.setDataHeader(riskLevelDataHeader);
-				dataField.load("False");
-				dataFieldList.add(dataField);
-
-				DataItem dataItem = new DataItem();
-				dataItem.setItemName(metricGroup.getGroupName());
-				dataItem.setDataFields(dataFieldList.toArray(new DataField[0]));
-				dataItem.setDataHeaders(dataHeaderList
-						.toArray(new DataHeader[0]));
-				dataItemList.add(dataItem);
-			}
-			this.fileDataSet
-					.setDataItems(dataItemList.toArray(new DataItem[0]));
+		this.classDataSet = createDataSet("Class DataSet", parseMetricGroups
+				.getClassMetrics());
+		parseMetricGroups.setClassMetrics(null);
+
+		// methods
+		List<MetricGroup> metricGroupList = parseMetricGroups
+				.getMethodMetrics();
+		MetricDataSetBuilder methodBuilder = createMethodDataSetBuilder(metricGroupList
+				.size());
+		for (int mgIndex = 0; mgIndex < metricGroupList.size(); mgIndex++) {
+			MetricGroup metricGroup = metricGroupList.get(mgIndex);
+			methodBuilder.add(metricGroup.getGroupName(), metricGroup
+					.getNodePairList());
+			metricGroupList.set(mgIndex, null);
 		}
-		parseMetricGroups.setFileMetrics(null);
+		this.methodDataSet = methodBuilder.getDataSet();
+		parseMetricGroups.setMethodMetrics(null);
 
-		this.classDataSet = new DataSet();
-		this.classDataSet.setTitle("Class DataSet");
-		dataHeaderList = new ArrayList<DataHeader>();
-		if (parseMetricGroups.getClassMetrics().size() > 0) {
-			List<NodePair> classMetricList = parseMetricGroups
-					.getClassMetrics().get(0).getNodePairList();
-			for (NodePair aPair : classMetricList) {
-				if (!aPair.getName().equals("name")
-						&& !aPair.getName().equals("id")) {
-					DataHeader dataHeader = new DataHeader();
-					dataHeader.setLabel(aPair.getName());
-					dataHeader.setNominal(false);
-					dataHeaderList.add(dataHeader);
+	}
+
+	/**
+	 * Creates the DataSets directly from the tree of collected metrics, without
+	 * building the MetricGroups of the levels first. The leaf values of each
+	 * package, file and class node are the metrics of the node, the nodes
+	 * below the class nodes are the methods.
+	 * 
+	 * @param metrics
+	 * @param swapPackageAndFileMetrics
+	 *            puts the package metrics into the file DataSet and the file
+	 *            metrics into the package DataSet
+	 */
+	public ParseDataSets(DataContext metrics, boolean swapPackageAndFileMetrics) {
+		MetricDataSetBuilder packageBuilder = new MetricDataSetBuilder(
+				"Package DataSet");
+		MetricDataSetBuilder fileBuilder = new MetricDataSetBuilder(
+				"File DataSet");
+		MetricDataSetBuilder classBuilder = new MetricDataSetBuilder(
+				"Class DataSet");
+
+		if (swapPackageAndFileMetrics) {
+			MetricDataSetBuilder temp = packageBuilder;
+			packageBuilder = fileBuilder;
+			fileBuilder = temp;
+		}
+
+		// methods are added once their number is known
+		List<String> methodNames = new ArrayList<String>();
+		List<DataContext> methodNodes = new ArrayList<DataContext>();
+
+		Iterator<String> packageIterator = metrics.iterator();
+		while (packageIterator.hasNext()) {
+			String packageKey = packageIterator.next();
+			DataContext packageCandidate = metrics.getNode(packageKey);
+			if (packageCandidate == null)
+				continue;
+
+			List<NodePair> packageMetricList = new ArrayList<NodePair>();
+			Iterator<String> fileIterator = packageCandidate.iterator();
+			while (fileIterator.hasNext()) {
+				String fileKey = fileIterator.next();
+				DataContext fileCandidate = packageCandidate.getNode(fileKey);
+				if (fileCandidate == null) {
+					Object fileObject = packageCandidate
+							.getFirstNodeValue(fileKey);
+					if (fileObject != null)
+						packageMetricList.add(new NodePair(fileKey, fileObject));
+					continue;
 				}
-			}
-			DataHeader riskLevelDataHeader = new DataHeader();
-			riskLevelDataHeader.setLabel("Risk Level");
-			riskLevelDataHeader.setNominal(true);
-			String[] riskLevels = { "False", "True" };
-			riskLevelDataHeader.setAvailableValue(riskLevels);
-			dataHeaderList.add(riskLevelDataHeader);
-			this.classDataSet.setDataHeaders(dataHeaderList
-					.toArray(new DataHeader[0]));
-			this.classDataSet.setClassIndex(dataHeaderList.size() - 1);
-
-			List<DataItem> dataItemList = new ArrayList<DataItem>();
-
-			for (MetricGroup metricGroup : parseMetricGroups.getClassMetrics()) {
-				List<DataField> dataFieldList = new ArrayList<DataField>();
-				classMetricList = metricGroup.getNodePairList();
-				int i = 0;
-				for (NodePair nodePair : classMetricList) {
-					if (!nodePair.getName().equals("name")
-							&& !nodePair.getName().equals("id")) {
-						DataField dataField = new DataField();
-						dataField.setDataHeader(dataHeaderList.get(i));
-						dataField.load(nodePair.getValue());
-						dataFieldList.add(dataField);
+
+				List<NodePair> fileMetricList = new ArrayList<NodePair>();
+				Iterator<String> classIterator = fileCandidate.iterator();
+				while (classIterator.hasNext()) {
+					String classKey = classIterator.next();
+					DataContext classCandidate = fileCandidate
+							.getNode(classKey);
+					if (classCandidate == null) {
+						Object classObject = fileCandidate
+								.getFirstNodeValue(classKey);
+						if (classObject != null)
+							fileMetricList.add(new NodePair(classKey,
+									classObject));
+						continue;
+					}
+
+					List<NodePair> classMetricList = new ArrayList<NodePair>();
+					Iterator<String> methodIterator = classCandidate
+							.iterator();
+					while (methodIterator.hasNext()) {
+						String methodKey = methodIterator.next();
+						DataContext methodCandidate = classCandidate
+								.getNode(methodKey);
+						if (methodCandidate == null) {
+							Object methodObject = classCandidate
+									.getFirstNodeValue(methodKey);
+							if (methodObject != null)
+								classMetricList.add(new NodePair(methodKey,
+										methodObject));
+						} else if (methodCandidate.iterator().hasNext()) {
+							methodNames.add(methodKey);
+							methodNodes.add(methodCandidate);
+						}
 					}
+					if (classMetricList.size() > 0)
+						classBuilder.add(classKey, classMetricList);
 				}
-				DataField dataField = new DataField();
-				dataField.setDataHeader(riskLevelDataHeader);
-				dataField.load("False");
-				dataFieldList.add(dataField);
-
-				DataItem dataItem = new DataItem();
-				dataItem.setItemName(metricGroup.getGroupName());
-				dataItem.setDataFields(dataFieldList.toArray(new DataField[0]));
-				dataItem.setDataHeaders(dataHeaderList
-						.toArray(new DataHeader[0]));
-				dataItemList.add(dataItem);
+				if (fileMetricList.size() > 0)
+					fileBuilder.add(fileKey, fileMetricList);
 			}
-			this.classDataSet.setDataItems(dataItemList
-					.toArray(new DataItem[0]));
+			if (packageMetricList.size() > 0)
+				packageBuilder.add(packageKey, packageMetricList);
 		}
-		parseMetricGroups.setClassMetrics(null);
 
-		// methods
-		this.methodDataSet = new DataSet();
-		this.methodDataSet.setTitle("Method DataSet");
-		dataHeaderList = new ArrayList<DataHeader>();
-		if (parseMetricGroups.getMethodMetrics().size() > 0) {
-			List<NodePair> methodMetricList = parseMetricGroups
-					.getMethodMetrics().get(0).getNodePairList();
-			for (NodePair aPair : methodMetricList) {
-				if (!aPair.getName().equals("name")
-						&& !aPair.getName().equals("id")) {
-					DataHeader dataHeader = new DataHeader();
-					dataHeader.setLabel(aPair.getName());
-					dataHeader.setNominal(false);
-					dataHeaderList.add(dataHeader);
-				}
+		MetricDataSetBuilder methodBuilder = createMethodDataSetBuilder(methodNodes
+				.size());
+		for (int i = 0; i < methodNodes.size(); i++) {
+			DataContext methodCandidate = methodNodes.get(i);
+			List<NodePair> methodMetricList = new ArrayList<NodePair>();
+			Iterator<String> insideMethodIterator = methodCandidate.iterator();
+			while (insideMethodIterator.hasNext()) {
+				String methodMetric = insideMethodIterator.next();
+				methodMetricList.add(new NodePair(methodMetric, methodCandidate
+						.getFirstNodeValue(methodMetric)));
 			}
-			DataHeader riskLevelDataHeader = new DataHeader();
-			riskLevelDataHeader.setLabel("Risk Level");
-			riskLevelDataHeader.setNominal(true);
-			String[] riskLevels = { "False", "True" };
-			riskLevelDataHeader.setAvailableValue(riskLevels);
-			dataHeaderList.add(riskLevelDataHeader);
-			this.methodDataSet.setDataHeaders(dataHeaderList
-					.toArray(new DataHeader[0]));
-			this.methodDataSet.setClassIndex(dataHeaderList.size() - 1);
-
-			List<DataItem> dataItemList = new ArrayList<DataItem>();
-
-			List<MetricGroup> metricGroupList = parseMetricGroups
-					.getMethodMetrics();
-
-			int listSize = metricGroupList.size();
-			int totalGroupCount = 1 + (int) ((listSize - 1) / divideSize);
+			methodBuilder.add(methodNames.get(i), methodMetricList);
+			methodNodes.set(i, null);
+		}
+
+		if (swapPackageAndFileMetrics) {
+			this.packageDataSet = fileBuilder.getDataSet();
+			this.fileDataSet = packageBuilder.getDataSet();
+		} else {
+			this.packageDataSet = packageBuilder.getDataSet();
+			this.fileDataSet = fileBuilder.getDataSet();
+		}
+		this.classDataSet = classBuilder.getDataSet();
+		this.methodDataSet = methodBuilder.getDataSet();
+	}
+
+	/**
+	 * Creates the builder of the method DataSet. Large projects are
+	 * transferred in pages of divideSize methods, each call keeps the page
+	 * after the one kept by the previous call.
+	 * 
+	 * @param numMethods
+	 *            number of methods that will be added to the builder
+	 * @return the builder of the method DataSet
+	 */
+	public static MetricDataSetBuilder createMethodDataSetBuilder(
+			int numMethods) {
+		MetricDataSetBuilder methodBuilder = new MetricDataSetBuilder(
+				"Method DataSet");
+
+		if (numMethods > 0) {
+			int totalGroupCount = 1 + (int) ((numMethods - 1) / divideSize);
 			methodMetricDivideAndConquerNumber++;
 			if (methodMetricDivideAndConquerNumber > totalGroupCount) {
 				methodMetricDivideAndConquerNumber = 1;
 			}
 			System.out.println(methodMetricDivideAndConquerNumber);
 			int start = ((methodMetricDivideAndConquerNumber - 1) * divideSize);
-			int end = start + divideSize;
-
-			for (int mgIndex = start; mgIndex < listSize && mgIndex < end; mgIndex++) {
-				MetricGroup metricGroup = metricGroupList.get(mgIndex);
-				List<DataField> dataFieldList = new ArrayList<DataField>();
-				methodMetricList = metricGroup.getNodePairList();
-				int i = 0;
-				for (NodePair nodePair : methodMetricList) {
-					if (!nodePair.getName().equals("name")
-							&& !nodePair.getName().equals("id")) {
-						DataField dataField = new DataField();
-						dataField.setDataHeader(dataHeaderList.get(i));
-						dataField.load(nodePair.getValue());
-						dataFieldList.add(dataField);
-					}
-				}
-				DataField dataField = new DataField();
-				dataField.setDataHeader(riskLevelDataHeader);
-				dataField.load("False");
-				dataFieldList.add(dataField);
-
-				DataItem dataItem = new DataItem();
-				dataItem.setItemName(metricGroup.getGroupName());
-				dataItem.setDataFields(dataFieldList.toArray(new DataField[0]));
-				dataItem.setDataHeaders(dataHeaderList
-						.toArray(new DataHeader[0]));
-				dataItemList.add(dataItem);
-
-				if (mgIndex == listSize - 1) {// real end
-					DataField[] dummy = new DataField[dataFieldList
-							.toArray(new DataField[0]).length];
-					for (int k = 0; k < dummy.length; k++) {
-						dummy[k] = new DataField();
-						dummy[k].setValue("");
-					}
-//					DataItem realEnd = new DataItem();
-//					realEnd.setItemName("--END OF METHODS--");
-//					realEnd.setDataFields(dummy);
-//					realEnd.setDataHeaders(dataHeaderList
-//							.toArray(new DataHeader[0]));
-//					dataItemList.add(realEnd);
-				} else if (mgIndex == end - 1) {// group end
-					DataField[] dummy = new DataField[dataFieldList
-							.toArray(new DataField[0]).length];
-					for (int k = 0; k < dummy.length; k++) {
-						dummy[k] = new DataField();
-						dummy[k].setValue("");
-					}
-					DataItem groupend = new DataItem();
-					groupend
-							.setItemName("--END OF PAGE, TRANSFER AGAIN FOR NEXT PAGE--");
-					groupend.setDataFields(dummy);
-					groupend.setDataHeaders(dataHeaderList
-							.toArray(new DataHeader[0]));
-					dataItemList.add(groupend);
-				}
-
-				metricGroupList.set(mgIndex, null);
-			}
-			this.methodDataSet.setDataItems(dataItemList
-					.toArray(new DataItem[0]));
+			methodBuilder.setPage(start, start + divideSize, numMethods);
 		}
-		parseMetricGroups.setMethodMetrics(null);
 
+		return methodBuilder;
+	}
+
+	private static DataSet createDataSet(String title,
+			List<MetricGroup> metricGroups) {
+		MetricDataSetBuilder builder = new MetricDataSetBuilder(title);
+		for (MetricGroup metricGroup : metricGroups)
+			builder.add(metricGroup.getGroupName(), metricGroup
+					.getNodePairList());
+		return builder.getDataSet();
 	}
 
 	public DataSet getClassDataSet() {
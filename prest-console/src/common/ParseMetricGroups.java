@@ -10,6 +10,9 @@ import java.util.Iterator;
 import java.util.List;
 
 import common.data.DataContext;
+import common.data.DataField;
+import common.data.DataItem;
+import common.data.DataSet;
 
 /**
  * 
@@ -147,6 +150,44 @@ public class ParseMetricGroups {
 		}
 	}
 
+	/**
+	 * Creates the MetricGroups of the levels from the DataSets of a parse
+	 * result. The class attribute of the DataSets is not a metric, so it is
+	 * left out, as are the items marking the end of a page of methods.
+	 * 
+	 * @param parseDataSets
+	 */
+	public ParseMetricGroups(ParseDataSets parseDataSets) {
+		this.packageMetrics = createMetricGroups(parseDataSets
+				.getPackageDataSet());
+		this.fileMetrics = createMetricGroups(parseDataSets.getFileDataSet());
+		this.classMetrics = createMetricGroups(parseDataSets.getClassDataSet());
+		this.methodMetrics = createMetricGroups(parseDataSets
+				.getMethodDataSet());
+	}
+
+	private static List<MetricGroup> createMetricGroups(DataSet dataSet) {
+		List<MetricGroup> metricGroups = new ArrayList<MetricGroup>();
+		if (dataSet == null || dataSet.getDataItems() == null)
+			return metricGroups;
+
+		for (DataItem dataItem : dataSet.getDataItems()) {
+			DataField[] dataFields = dataItem.getDataFields();
+			MetricGroup metricGroup = new MetricGroup();
+			metricGroup.setGroupName(dataItem.getItemName());
+			for (int i = 0; i < dataFields.length; i++) {
+				if (i != dataSet.getClassIndex()
+						&& dataFields[i].getDataHeader() != null)
+					metricGroup.addToMetricList(new NodePair(dataFields[i]
+							.getDataHeader().getLabel(), dataFields[i]
+							.getValue()));
+			}
+			if (metricGroup.getNodePairList().size() > 0)
+				metricGroups.add(metricGroup);
+		}
+		return metricGroups;
+	}
+
 	public List<MetricGroup> getClassMetrics() {
 		return this.classMetrics;
 	}
@@ -0,0 +1,138 @@
+package common;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Parses files in a pool of threads and hands the record of each file to a sink.
+ *
+ * <p>The files are submitted to the pool in their order and the records are handed to the
+ * sink in the same order by the calling thread. At most a fixed number of files are parsed
+ * or waiting for the sink at a time: when the sink is slower than the parsers, no more
+ * files are submitted until it has taken the oldest record. The memory used by the
+ * pipeline is therefore bounded by the records in flight and whatever the sink keeps; a
+ * sink which needs all the records before it can write its results keeps them in a
+ * RecordSpool.
+ *
+ * <p>If a file cannot be parsed, the files not yet parsed are cancelled and the exception
+ * of the parser is thrown by run.
+ */
+public class ParsePipeline<R> {
+
+	/**
+	 * Parses a file into its record, called by the threads of the pool
+	 */
+	public interface FileParser<R> {
+
+		R parse(File file) throws Exception;
+	}
+
+	/**
+	 * Takes the records of the files, called by the thread which runs the pipeline
+	 */
+	public interface RecordSink<R> {
+
+		/**
+		 * @param index index of the file in the files of the run
+		 * @param record
+		 * @throws IOException
+		 */
+		void add(int index, R record) throws IOException;
+	}
+
+	/**
+	 * default memory budget of the records of a parse, in megabytes
+	 */
+	public static final int DEFAULT_MEMORY_BUDGET = 64;
+
+	private FileParser<R> parser;
+
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+
+	public ParsePipeline(FileParser<R> parser)
+	{
+		this.parser = parser;
+	}
+
+	public void setNumThreads(int numThreads)
+	{
+		this.numThreads = Math.max(1, numThreads);
+	}
+
+	/**
+	 * The memory budget of the records of a parse is the "parsememorybudget" application
+	 * property, in megabytes
+	 *
+	 * @return the budget in bytes
+	 */
+	public static long getMemoryBudget()
+	{
+		int megabytes = DEFAULT_MEMORY_BUDGET;
+		try {
+			String value = ApplicationProperties.get("parsememorybudget");
+			if(value != null)
+				megabytes = Integer.parseInt(value.trim());
+		} catch (RuntimeException e) {
+			// not set or not a number, the default is used
+		}
+		return megabytes * 1024L * 1024L;
+	}
+
+	/**
+	 * Parses the files and hands their records to the sink in the order of the files
+	 *
+	 * @param files
+	 * @param sink
+	 * @throws Exception the exception of the parser or the sink
+	 */
+	public void run(String[] files, RecordSink<R> sink) throws Exception
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		LinkedList<Future<R>> pending = new LinkedList<Future<R>>();
+		int next = 0;
+
+		try {
+			for(int i=0; i<files.length; i++)
+			{
+				final File file = new File(files[i]);
+				pending.add(executor.submit(new Callable<R>() {
+					public R call() throws Exception {
+						return parser.parse(file);
+					}
+				}));
+
+				// keeps the number of records in flight bounded
+				while(pending.size() > 2 * numThreads)
+					sink.add(next++, get(pending.removeFirst()));
+			}
+
+			while(!pending.isEmpty())
+				sink.add(next++, get(pending.removeFirst()));
+		} finally {
+			// cancels the files not parsed yet if the run failed
+			executor.shutdownNow();
+		}
+	}
+
+	private static <R> R get(Future<R> future) throws Exception
+	{
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof Exception)
+				throw (Exception)e.getCause();
+			if(e.getCause() instanceof Error)
+				throw (Error)e.getCause();
+			throw new RuntimeException(e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+}
@@ -0,0 +1,350 @@
+package common;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Collects keyed records and gives them back sorted by their keys, keeping at most a
+ * given number of bytes of records in memory.
+ *
+ * <p>The records are kept in memory until their size exceeds the budget. Then they are
+ * sorted and written to a temporary run file, and the memory is free for the following
+ * records. The cursor merges the runs and the records still in memory. Records with the
+ * same key are returned in the order they were added. The run files are deleted by close.
+ *
+ * <p>At most MAX_FAN_IN run files are open at a time. If there are more runs, the cursor
+ * first merges each MAX_FAN_IN consecutive runs into one, as often as needed.
+ */
+public class RecordSpool {
+
+	/**
+	 * estimated size of a record in memory besides its bytes
+	 */
+	private static final int RECORD_OVERHEAD = 48;
+
+	/**
+	 * number of run files merged at once
+	 */
+	public static final int MAX_FAN_IN = 64;
+
+	private long memoryBudget;
+
+	private List<Record> records = new ArrayList<Record>();
+
+	private long recordBytes;
+
+	private List<File> runs = new ArrayList<File>();
+
+	private List<DataInputStream> openRuns = new ArrayList<DataInputStream>();
+
+	/**
+	 * @param memoryBudget the number of bytes of records kept in memory
+	 */
+	public RecordSpool(long memoryBudget)
+	{
+		this.memoryBudget = memoryBudget;
+	}
+
+	/**
+	 * Adds a record, a run file is written if the budget is exceeded
+	 *
+	 * @param key
+	 * @param record
+	 * @throws IOException
+	 */
+	public void add(long key, byte[] record) throws IOException
+	{
+		records.add(new Record(key, record, 0));
+		recordBytes += record.length + RECORD_OVERHEAD;
+
+		if(recordBytes > memoryBudget)
+			spill();
+	}
+
+	/**
+	 * @return the number of run files, at most MAX_FAN_IN once the cursor is made
+	 */
+	public int getNumRuns()
+	{
+		return runs.size();
+	}
+
+	/**
+	 * Returns the records sorted by their keys. No records may be added after this.
+	 *
+	 * @return the cursor of the records
+	 * @throws IOException
+	 */
+	public Cursor cursor() throws IOException
+	{
+		Collections.sort(records, KEY_ORDER);
+
+		while(runs.size() > MAX_FAN_IN)
+			mergePass();
+
+		PriorityQueue<Record> heads = new PriorityQueue<Record>(runs.size() + 1, KEY_ORDER);
+		for(int r=0; r<runs.size(); r++)
+		{
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(runs.get(r))));
+			openRuns.add(in);
+
+			Record head = readRecord(in, r);
+			if(head != null)
+				heads.add(head);
+		}
+
+		// the records in memory were added after the runs
+		for(int k=0; k<records.size(); k++)
+			records.get(k).source = runs.size();
+		if(!records.isEmpty())
+			heads.add(records.get(0));
+
+		return new Cursor(heads);
+	}
+
+	/**
+	 * Closes and deletes the run files
+	 */
+	public void close()
+	{
+		for(int r=0; r<openRuns.size(); r++)
+		{
+			try {
+				openRuns.get(r).close();
+			} catch (IOException e) {
+			}
+		}
+		openRuns.clear();
+
+		for(int r=0; r<runs.size(); r++)
+			runs.get(r).delete();
+		runs.clear();
+		records.clear();
+		recordBytes = 0;
+	}
+
+	/**
+	 * Writes the records in memory sorted to a new run file
+	 *
+	 * @throws IOException
+	 */
+	private void spill() throws IOException
+	{
+		Collections.sort(records, KEY_ORDER);
+
+		File run = File.createTempFile("prest", ".run");
+		run.deleteOnExit();
+		runs.add(run);
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run)));
+		try {
+			for(int k=0; k<records.size(); k++)
+				writeRecord(out, records.get(k));
+		} finally {
+			out.close();
+		}
+
+		records.clear();
+		recordBytes = 0;
+	}
+
+	/**
+	 * Merges each MAX_FAN_IN consecutive runs into a new run. The merged runs keep the
+	 * order of the runs, so records with the same key stay in the order they were added.
+	 *
+	 * @throws IOException
+	 */
+	private void mergePass() throws IOException
+	{
+		List<File> merged = new ArrayList<File>();
+		try {
+			for(int first=0; first<runs.size(); first+=MAX_FAN_IN)
+				merged.add(merge(runs.subList(first, Math.min(first + MAX_FAN_IN, runs.size()))));
+		} catch (IOException e) {
+			// close deletes the runs merged so far with the others
+			runs.addAll(merged);
+			throw e;
+		}
+
+		for(int r=0; r<runs.size(); r++)
+			runs.get(r).delete();
+		runs = merged;
+	}
+
+	/**
+	 * @param group the runs merged
+	 * @return a new run file with the records of the runs
+	 * @throws IOException
+	 */
+	private static File merge(List<File> group) throws IOException
+	{
+		File run = File.createTempFile("prest", ".run");
+		run.deleteOnExit();
+
+		List<DataInputStream> ins = new ArrayList<DataInputStream>();
+		DataOutputStream out = null;
+		boolean done = false;
+		try {
+			PriorityQueue<Record> heads = new PriorityQueue<Record>(group.size(), KEY_ORDER);
+			for(int r=0; r<group.size(); r++)
+			{
+				DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(group.get(r))));
+				ins.add(in);
+
+				Record head = readRecord(in, r);
+				if(head != null)
+					heads.add(head);
+			}
+
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run)));
+			Record current;
+			while((current = heads.poll()) != null)
+			{
+				writeRecord(out, current);
+
+				Record head = readRecord(ins.get(current.source), current.source);
+				if(head != null)
+					heads.add(head);
+			}
+			out.close();
+			done = true;
+		} finally {
+			for(int r=0; r<ins.size(); r++)
+				ins.get(r).close();
+			if(!done)
+			{
+				if(out != null)
+					out.close();
+				run.delete();
+			}
+		}
+		return run;
+	}
+
+	private static void writeRecord(DataOutputStream out, Record record) throws IOException
+	{
+		out.writeLong(record.key);
+		out.writeInt(record.bytes.length);
+		out.write(record.bytes);
+	}
+
+	/**
+	 * @param in
+	 * @param source
+	 * @return the next record of the run, null at the end of the run
+	 * @throws IOException
+	 */
+	private static Record readRecord(DataInputStream in, int source) throws IOException
+	{
+		long key;
+		try {
+			key = in.readLong();
+		} catch (EOFException e) {
+			return null;
+		}
+
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+
+		return new Record(key, bytes, source);
+	}
+
+	/**
+	 * orders the records by their keys and the records of the same key by their sources,
+	 * the sort of the records of a source is stable
+	 */
+	private static final Comparator<Record> KEY_ORDER = new Comparator<Record>() {
+		public int compare(Record a, Record b)
+		{
+			if(a.key != b.key)
+				return a.key < b.key ? -1 : 1;
+			return a.source - b.source;
+		}
+	};
+
+	/**
+	 * Iterates over the merged records
+	 */
+	public class Cursor {
+
+		private PriorityQueue<Record> heads;
+
+		private int memoryPosition;
+
+		private Record current;
+
+		Cursor(PriorityQueue<Record> heads)
+		{
+			this.heads = heads;
+		}
+
+		/**
+		 * Moves to the next record
+		 *
+		 * @return false if there are no more records
+		 * @throws IOException
+		 */
+		public boolean next() throws IOException
+		{
+			current = heads.poll();
+			if(current == null)
+				return false;
+
+			Record head;
+			if(current.source == runs.size())
+			{
+				memoryPosition++;
+				head = memoryPosition < records.size() ? records.get(memoryPosition) : null;
+			}
+			else
+				head = readRecord(openRuns.get(current.source), current.source);
+
+			if(head != null)
+				heads.add(head);
+
+			return true;
+		}
+
+		public long key()
+		{
+			return current.key;
+		}
+
+		public byte[] record()
+		{
+			return current.bytes;
+		}
+	}
+
+	private static class Record {
+
+		long key;
+
+		byte[] bytes;
+
+		/**
+		 * number of the run the record was read from, the number of runs for the
+		 * records in memory
+		 */
+		int source;
+
+		Record(long key, byte[] bytes, int source)
+		{
+			this.key = key;
+			this.bytes = bytes;
+			this.source = source;
+		}
+	}
+}
@@ -0,0 +1,619 @@
+package common;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+import console.PrestConsoleApp;
+
+/**
+ * Timing and throughput of the stages of a command, written as a json and a csv report.
+ *
+ * <p>A report is started for a command and the code of each stage times itself with
+ * time(stage); without a running report the timers record nothing. A stage timer records
+ * the wall time, the cpu time and the bytes allocated by its thread and the number of
+ * files, bytes and tokens the stage processed. A file timer records the time of one file
+ * for the list of the slowest files of the stage. A file timer running in another thread
+ * than the stage timer, i.e. in a thread of a pool, also adds the cpu time and the
+ * allocation of its thread to the stage, so the cpu time of a parallel stage is the sum
+ * over its threads.
+ *
+ * <p>The running report belongs to the thread which started it and to the threads that
+ * thread starts, so the commands run at the same time by the daemon have their own reports.
+ *
+ * <p>The allocation is only measured by virtual machines with the
+ * com.sun.management.ThreadMXBean, otherwise it is reported as 0. If the "runreportjmx"
+ * application property is true, the running report is registered as the MBean
+ * "prest:type=RunReport".
+ */
+public class RunReport implements RunReportMBean {
+
+	static Logger logger = Logger.getLogger(PrestConsoleApp.class.getName());
+
+	public enum Stage {
+
+		DISCOVERY("discovery"), PARSING("parsing"), AGGREGATION("aggregation"), XML_WRITE("xmlWrite"),
+		CSV_WRITE("csvWrite"), ARFF_CONVERSION("arffConversion"), TRAINING("training"), SCORING("scoring");
+
+		private final String label;
+
+		Stage(String label)
+		{
+			this.label = label;
+		}
+
+		public String label()
+		{
+			return label;
+		}
+	}
+
+	/**
+	 * number of the slowest files listed for each stage
+	 */
+	public static final int SLOWEST_FILES = 10;
+
+	public static final String JMX_NAME = "prest:type=RunReport";
+
+	/**
+	 * number of the last report started in this virtual machine
+	 */
+	private static AtomicInteger lastNumber = new AtomicInteger();
+
+	private static InheritableThreadLocal<RunReport> current = new InheritableThreadLocal<RunReport>();
+
+	private static ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	/**
+	 * com.sun.management.ThreadMXBean.getThreadAllocatedBytes(long), null if the
+	 * virtual machine does not have it
+	 */
+	private static Method allocatedBytes;
+
+	static {
+		try {
+			Class<?> sunThreads = Class.forName("com.sun.management.ThreadMXBean");
+			if(sunThreads.isInstance(threads))
+				allocatedBytes = sunThreads.getMethod("getThreadAllocatedBytes", new Class<?>[] { long.class });
+		} catch (Exception e) {
+			allocatedBytes = null;
+		}
+	}
+
+	/**
+	 * stages timed by a stage timer in each thread
+	 */
+	private static ThreadLocal<EnumSet<Stage>> runningStages = new ThreadLocal<EnumSet<Stage>>() {
+		protected EnumSet<Stage> initialValue() {
+			return EnumSet.noneOf(Stage.class);
+		}
+	};
+
+	private String command;
+
+	private long startTime = System.currentTimeMillis();
+
+	private int number = lastNumber.incrementAndGet();
+
+	private EnumMap<Stage, StageTotals> stages = new EnumMap<Stage, StageTotals>(Stage.class);
+
+	private RunReport(String command)
+	{
+		this.command = command;
+	}
+
+	/**
+	 * Starts the report of a command, it is the running report until finish is called
+	 *
+	 * @param command
+	 * @return the report
+	 */
+	public static RunReport start(String command)
+	{
+		RunReport report = new RunReport(command);
+		current.set(report);
+
+		if("true".equalsIgnoreCase(getProperty("runreportjmx")))
+		{
+			try {
+				MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+				ObjectName name = new ObjectName(JMX_NAME);
+				if(server.isRegistered(name))
+					server.unregisterMBean(name);
+				server.registerMBean(report, name);
+			} catch (Exception e) {
+				logger.warn("Run report could not be registered: " + e.getMessage());
+			}
+		}
+
+		return report;
+	}
+
+	/**
+	 * Ends the running report. The MBean stays registered until the next report is
+	 * started, so the last report can be read.
+	 *
+	 * @return the report, null if no report was running
+	 */
+	public static RunReport finish()
+	{
+		RunReport report = current.get();
+		current.remove();
+		return report;
+	}
+
+	/**
+	 * @return the running report, null if there is none
+	 */
+	public static RunReport getCurrent()
+	{
+		return current.get();
+	}
+
+	/**
+	 * Starts a stage timer of the running report
+	 *
+	 * @param stage
+	 * @return the timer, which records nothing if no report is running
+	 */
+	public static Timer time(Stage stage)
+	{
+		return new Timer(current.get(), stage, true);
+	}
+
+	/**
+	 * Starts a file timer of the running report
+	 *
+	 * @param stage
+	 * @return the timer, which records nothing if no report is running
+	 */
+	public static Timer timeFile(Stage stage)
+	{
+		return new Timer(current.get(), stage, false);
+	}
+
+	/**
+	 * @param fileNames
+	 * @return the total length of the files in bytes
+	 */
+	public static long totalLength(String[] fileNames)
+	{
+		long bytes = 0;
+		for(int i=0; i<fileNames.length; i++)
+			bytes += new File(fileNames[i]).length();
+		return bytes;
+	}
+
+	/**
+	 * Ends the running report and writes it to the directory. If a report with the
+	 * same name was already written, i.e. by another process, "_2", "_3"... is added to
+	 * the name. A report which cannot be written is logged.
+	 *
+	 * @param directory
+	 */
+	public static void finish(File directory)
+	{
+		RunReport report = finish();
+		if(report == null)
+			return;
+
+		try {
+			String name = report.getDefaultName();
+			// the json file is created to reserve the name
+			for(int n=2; !new File(directory, name + ".json").createNewFile(); n++)
+				name = report.getDefaultName() + "_" + n;
+
+			report.write(directory, name);
+		} catch (IOException e) {
+			logger.error("Run report could not be written: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @return "runReport_", the start time of the report as it is written in the names
+	 *         of the parse results, its milliseconds and the number of the report, so the
+	 *         reports of the commands started in the same second have their own names
+	 */
+	public String getDefaultName()
+	{
+		String time = DateFormat.getDateTimeInstance().format(new Date(startTime));
+		return "runReport_" + time.replaceAll(" ", "-").replaceAll(":", ".")
+				+ String.format("-%03d-%d", new Object[] { Long.valueOf(startTime % 1000), Integer.valueOf(number) });
+	}
+
+	public String getCommand()
+	{
+		return command;
+	}
+
+	/**
+	 * Writes the report to name.json and name.csv in the directory
+	 *
+	 * @param directory
+	 * @param name
+	 * @throws IOException
+	 */
+	public void write(File directory, String name) throws IOException
+	{
+		Writer json = new BufferedWriter(new FileWriter(new File(directory, name + ".json")));
+		try {
+			json.write(getJson());
+		} finally {
+			json.close();
+		}
+
+		Writer csv = new BufferedWriter(new FileWriter(new File(directory, name + ".csv")));
+		try {
+			csv.write(getCsv());
+		} finally {
+			csv.close();
+		}
+	}
+
+	public synchronized String getJson()
+	{
+		StringBuffer json = new StringBuffer();
+		json.append("{\n  \"command\": ").append(quote(command));
+		json.append(",\n  \"startTime\": ").append(startTime);
+		json.append(",\n  \"elapsedMillis\": ").append(System.currentTimeMillis() - startTime);
+		json.append(",\n  \"stages\": [");
+
+		boolean firstStage = true;
+		for(Stage stage : stages.keySet())
+		{
+			StageTotals totals = stages.get(stage);
+
+			json.append(firstStage ? "\n" : ",\n");
+			firstStage = false;
+
+			json.append("    {\"stage\": ").append(quote(stage.label()));
+			json.append(", \"wallMillis\": ").append(totals.wallNanos / 1000000);
+			json.append(", \"cpuMillis\": ").append(totals.cpuNanos / 1000000);
+			json.append(", \"files\": ").append(totals.files);
+			json.append(", \"bytes\": ").append(totals.bytes);
+			json.append(", \"tokens\": ").append(totals.tokens);
+			json.append(", \"allocatedBytes\": ").append(totals.allocatedBytes);
+			json.append(", \"filesPerSecond\": ").append(totals.rate(totals.files));
+			json.append(", \"bytesPerSecond\": ").append(totals.rate(totals.bytes));
+			json.append(", \"tokensPerSecond\": ").append(totals.rate(totals.tokens));
+			json.append(",\n      \"slowestFiles\": [");
+
+			List<FileTime> slowest = totals.slowestFiles();
+			for(int k=0; k<slowest.size(); k++)
+			{
+				FileTime fileTime = slowest.get(k);
+				json.append(k == 0 ? "\n" : ",\n");
+				json.append("        {\"file\": ").append(quote(fileTime.file));
+				json.append(", \"millis\": ").append(fileTime.nanos / 1000000);
+				json.append(", \"bytes\": ").append(fileTime.bytes).append('}');
+			}
+			json.append(slowest.isEmpty() ? "]}" : "\n      ]}");
+		}
+		json.append(firstStage ? "]\n}\n" : "\n  ]\n}\n");
+
+		return json.toString();
+	}
+
+	/**
+	 * The csv report has a row for each stage, whose file is "*", followed by the rows
+	 * of its slowest files
+	 */
+	public synchronized String getCsv()
+	{
+		StringBuffer csv = new StringBuffer();
+		csv.append("stage,file,wallMillis,cpuMillis,files,bytes,tokens,allocatedBytes,filesPerSecond,bytesPerSecond,tokensPerSecond\n");
+
+		for(Stage stage : stages.keySet())
+		{
+			StageTotals totals = stages.get(stage);
+
+			csv.append(stage.label()).append(",*,");
+			csv.append(totals.wallNanos / 1000000).append(',');
+			csv.append(totals.cpuNanos / 1000000).append(',');
+			csv.append(totals.files).append(',');
+			csv.append(totals.bytes).append(',');
+			csv.append(totals.tokens).append(',');
+			csv.append(totals.allocatedBytes).append(',');
+			csv.append(totals.rate(totals.files)).append(',');
+			csv.append(totals.rate(totals.bytes)).append(',');
+			csv.append(totals.rate(totals.tokens)).append('\n');
+
+			List<FileTime> slowest = totals.slowestFiles();
+			for(int k=0; k<slowest.size(); k++)
+			{
+				FileTime fileTime = slowest.get(k);
+				String file = fileTime.file;
+				if(file.indexOf(',') != -1 || file.indexOf('"') != -1)
+					file = "\"" + file.replace("\"", "\"\"") + "\"";
+
+				csv.append(stage.label()).append(',').append(file).append(',');
+				csv.append(fileTime.nanos / 1000000).append(",,,");
+				csv.append(fileTime.bytes).append(",,,,,\n");
+			}
+		}
+
+		return csv.toString();
+	}
+
+	private synchronized void add(Stage stage, boolean stageTimer, long wallNanos, long cpuNanos, long allocated,
+			String file, long fileBytes, long files, long bytes, long tokens)
+	{
+		StageTotals totals = stages.get(stage);
+		if(totals == null)
+		{
+			totals = new StageTotals();
+			stages.put(stage, totals);
+		}
+
+		if(stageTimer)
+			totals.wallNanos += wallNanos;
+		totals.cpuNanos += cpuNanos;
+		totals.allocatedBytes += allocated;
+		totals.files += files;
+		totals.bytes += bytes;
+		totals.tokens += tokens;
+
+		if(file != null)
+			totals.addFileTime(file, wallNanos, fileBytes);
+	}
+
+	private static String getProperty(String key)
+	{
+		try {
+			return ApplicationProperties.get(key);
+		} catch (RuntimeException e) {
+			// the properties are not loaded
+			return null;
+		}
+	}
+
+	private static long currentThreadCpuTime()
+	{
+		return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : 0;
+	}
+
+	private static long currentThreadAllocatedBytes()
+	{
+		if(allocatedBytes == null)
+			return 0;
+
+		try {
+			return ((Long)allocatedBytes.invoke(threads, new Object[] { Long.valueOf(Thread.currentThread().getId()) })).longValue();
+		} catch (Exception e) {
+			return 0;
+		}
+	}
+
+	private static String quote(String s)
+	{
+		StringBuffer quoted = new StringBuffer(s.length() + 2);
+		quoted.append('"');
+		for(int i=0; i<s.length(); i++)
+		{
+			char c = s.charAt(i);
+			if(c == '"' || c == '\\')
+				quoted.append('\\').append(c);
+			else if(c == '\n')
+				quoted.append("\\n");
+			else if(c == '\r')
+				quoted.append("\\r");
+			else if(c == '\t')
+				quoted.append("\\t");
+			else if(c < ' ')
+				quoted.append(String.format("\\u%04x", new Object[] { Integer.valueOf(c) }));
+			else
+				quoted.append(c);
+		}
+		return quoted.append('"').toString();
+	}
+
+	/**
+	 * Times a stage or a file of a stage from its creation until stop is called
+	 */
+	public static class Timer {
+
+		private RunReport report;
+
+		private Stage stage;
+
+		private boolean stageTimer;
+
+		/**
+		 * true if the cpu time and the allocation are added to the stage
+		 */
+		private boolean measuresThread;
+
+		private long startWall;
+
+		private long startCpu;
+
+		private long startAllocated;
+
+		Timer(RunReport report, Stage stage, boolean stageTimer)
+		{
+			this.report = report;
+			this.stage = stage;
+			this.stageTimer = stageTimer;
+
+			if(report == null)
+				return;
+
+			EnumSet<Stage> running = runningStages.get();
+			measuresThread = stageTimer || !running.contains(stage);
+			if(stageTimer)
+				running.add(stage);
+
+			startWall = System.nanoTime();
+			if(measuresThread)
+			{
+				startCpu = currentThreadCpuTime();
+				startAllocated = currentThreadAllocatedBytes();
+			}
+		}
+
+		/**
+		 * Stops a stage timer which processed no files
+		 */
+		public void stop()
+		{
+			stop(0, 0, 0);
+		}
+
+		/**
+		 * Stops a stage timer
+		 *
+		 * @param files number of files processed in the stage
+		 * @param bytes number of bytes processed in the stage
+		 * @param tokens number of tokens processed in the stage, 0 if unknown
+		 */
+		public void stop(long files, long bytes, long tokens)
+		{
+			record(null, 0, files, bytes, tokens);
+		}
+
+		/**
+		 * Stops a timer of a file. A stage timer which timed a single file counts the file
+		 * and its bytes, the files timed by file timers are counted by their stage timer.
+		 *
+		 * @param file
+		 * @param bytes length of the file
+		 */
+		public void stopFile(String file, long bytes)
+		{
+			if(stageTimer)
+				record(file, bytes, 1, bytes, 0);
+			else
+				record(file, bytes, 0, 0, 0);
+		}
+
+		private void record(String file, long fileBytes, long files, long bytes, long tokens)
+		{
+			if(report == null)
+				return;
+
+			long wall = System.nanoTime() - startWall;
+			long cpu = 0;
+			long allocated = 0;
+			if(measuresThread)
+			{
+				cpu = currentThreadCpuTime() - startCpu;
+				allocated = currentThreadAllocatedBytes() - startAllocated;
+				if(stageTimer)
+					runningStages.get().remove(stage);
+			}
+
+			report.add(stage, stageTimer, wall, cpu, allocated, file, fileBytes, files, bytes, tokens);
+			report = null;
+		}
+	}
+
+	private static class StageTotals {
+
+		long wallNanos;
+
+		long cpuNanos;
+
+		long allocatedBytes;
+
+		long files;
+
+		long bytes;
+
+		long tokens;
+
+		/**
+		 * the SLOWEST_FILES slowest files, the fastest first. The times of a file parsed
+		 * in more passes are added while the file is kept, a file that was dropped comes
+		 * back with the times of its later passes only.
+		 */
+		PriorityQueue<FileTime> slowest = new PriorityQueue<FileTime>(SLOWEST_FILES + 1, FASTEST_FIRST);
+
+		/**
+		 * @param count
+		 * @return count per second of wall time, 0 if no wall time was recorded
+		 */
+		long rate(long count)
+		{
+			return wallNanos == 0 ? 0 : (long)(count * 1000000000.0 / wallNanos);
+		}
+
+		void addFileTime(String file, long nanos, long bytes)
+		{
+			FileTime fileTime = null;
+			for(FileTime kept : slowest)
+			{
+				if(kept.file.equals(file))
+				{
+					fileTime = kept;
+					break;
+				}
+			}
+
+			if(fileTime == null)
+				fileTime = new FileTime(file);
+			else
+				slowest.remove(fileTime);
+
+			fileTime.nanos += nanos;
+			fileTime.bytes = bytes;
+			slowest.add(fileTime);
+			if(slowest.size() > SLOWEST_FILES)
+				slowest.poll();
+		}
+
+		/**
+		 * @return the slowest files, the slowest first
+		 */
+		List<FileTime> slowestFiles()
+		{
+			List<FileTime> files = new ArrayList<FileTime>(slowest);
+			Collections.sort(files, Collections.reverseOrder(FASTEST_FIRST));
+			return files;
+		}
+	}
+
+	/**
+	 * orders the files by their times, the files of the same time by their names backwards,
+	 * so that the slowest files come last and the reverse order lists them by name
+	 */
+	private static final Comparator<FileTime> FASTEST_FIRST = new Comparator<FileTime>() {
+		public int compare(FileTime a, FileTime b)
+		{
+			return a.nanos == b.nanos ? b.file.compareTo(a.file) : (a.nanos < b.nanos ? -1 : 1);
+		}
+	};
+
+	private static class FileTime {
+
+		String file;
+
+		long nanos;
+
+		long bytes;
+
+		FileTime(String file)
+		{
+			this.file = file;
+		}
+	}
+}
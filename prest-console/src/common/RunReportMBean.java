@@ -0,0 +1,19 @@
+package common;
+
+/**
+ * Management interface of the running RunReport
+ */
+public interface RunReportMBean {
+
+	public String getCommand();
+
+	/**
+	 * @return the report in json format
+	 */
+	public String getJson();
+
+	/**
+	 * @return the report in csv format
+	 */
+	public String getCsv();
+}
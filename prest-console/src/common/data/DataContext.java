@@ -534,20 +534,52 @@ public class DataContext implements Serializable {
 
 	private static void writeXMLNodes(DataContext dc, Writer out,
 			String nodeName, String offset) throws IOException {
+		writeXMLStartTag(out, nodeName, offset);
+		writeXMLChildren(dc, out, new StringBuffer(8).append(offset).append(
+				kOffset).toString());
+		writeXMLEndTag(out, nodeName, offset);
+	}
+
+	/**
+	 * Writes the xml declaration which starts the xml of a DataContext. With
+	 * the following methods a large DataContext can be written part by part,
+	 * without keeping it in memory, and with the same result as writeToFile.
+	 */
+	public static void writeXMLDeclaration(Writer out) throws IOException {
+		out.write(kBaseXML);
+	}
+
+	public static void writeXMLStartTag(Writer out, String nodeName,
+			String offset) throws IOException {
+		out.write(new StringBuffer(32).append(offset).append(bgn_mark).append(
+				replaceProblemCharacters(nodeName)).append(cls).append(nl)
+				.toString());
+	}
+
+	public static void writeXMLEndTag(Writer out, String nodeName,
+			String offset) throws IOException {
+		out.write(new StringBuffer(40).append(offset).append(end_mark).append(
+				replaceProblemCharacters(nodeName)).append(cls).append(nl)
+				.toString());
+	}
+
+	/**
+	 * Writes the elements and the nodes of the DataContext, without a node
+	 * around them
+	 * 
+	 * @param dc
+	 * @param out
+	 * @param offset
+	 *            the offset of the children, one more than the offset of
+	 *            their parent
+	 */
+	public static void writeXMLChildren(DataContext dc, Writer out,
+			String offset) throws IOException {
 		Iterator i = dc.iterator();
 		String next;
 		Vector v;
 		StringBuffer sb;
 
-		sb = new StringBuffer(20).append(replaceProblemCharacters(nodeName))
-				.append(cls).append(nl);
-		String node_end = sb.toString();
-		sb = new StringBuffer(32).append(offset).append(bgn_mark).append(
-				node_end);
-		out.write(sb.toString());
-		sb = new StringBuffer(8).append(offset).append(kOffset);
-		String new_offset = sb.toString();
-
 		while (i.hasNext()) {
 			next = (String) i.next();
 			// Write Elements
@@ -556,7 +588,7 @@ public class DataContext implements Serializable {
 				Iterator e = v.iterator();
 				while (e.hasNext()) {
 					Object nextelement = e.next();
-					sb = new StringBuffer(60).append(new_offset).append(
+					sb = new StringBuffer(60).append(offset).append(
 							bgn_mark).append(next)
 							.append(type_s)
 							// .append(
@@ -574,13 +606,10 @@ public class DataContext implements Serializable {
 				while (n.hasNext()) {
 					Object nextnode = n.next();
 					writeXMLNodes(((DataContext) nextnode), out, next,
-							new_offset);
+							offset);
 				}
 			}
 		}
-		sb = new StringBuffer(40).append(offset).append(end_mark).append(
-				node_end);
-		out.write(sb.toString());
 	}
 
 	public static String replaceProblemCharacters(String s) {
@@ -617,4 +646,4 @@ public class DataContext implements Serializable {
 		}
 		return MetricNamesMap.get((String) s);
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,222 @@
+package common.test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Random;
+
+import common.ArffReader;
+import common.ArffTransform;
+
+/**
+ * a test class to check the LOG, ZSCORE and MINMAX transforms of common.ArffTransform
+ * against the values computed from the rows of the input file
+ */
+public class ArffTransformTest {
+
+	private static final int NUM_ROWS = 200;
+
+	public static void main(String[] args) throws Exception {
+
+		File arffFile = File.createTempFile("ArffTransformTest", ".arff");
+		arffFile.deleteOnExit();
+
+		double[][] rows = createRows(new Random(1));
+		writeArff(arffFile, rows);
+
+		checkLog(arffFile, rows);
+		checkStatistics(arffFile, rows, ArffTransform.Function.ZSCORE);
+		checkStatistics(arffFile, rows, ArffTransform.Function.MINMAX);
+		checkSelectedColumns(arffFile, rows);
+
+		arffFile.delete();
+		System.out.println("ArffTransformTest passed");
+	}
+
+	/**
+	 * columns: fileId, loc, cc (with zeros and missing values) and the class;
+	 * every tenth cc is missing, every seventh is zero
+	 */
+	private static double[][] createRows(Random random) {
+
+		double[][] rows = new double[NUM_ROWS][];
+		for(int r=0; r<NUM_ROWS; r++)
+		{
+			double cc = r % 10 == 3 ? Double.NaN : r % 7 == 0 ? 0 : 1 + random.nextInt(40);
+			rows[r] = new double[] { r + 1, 10 + random.nextInt(5000) / 4.0, cc, random.nextInt(2) };
+		}
+		return rows;
+	}
+
+	private static void writeArff(File file, double[][] rows) throws Exception {
+
+		FileWriter writer = new FileWriter(file);
+		writer.write("@relation metrics\n");
+		writer.write("@attribute fileId numeric\n");
+		writer.write("@attribute loc numeric\n");
+		writer.write("@attribute cc numeric\n");
+		writer.write("@attribute name string\n");
+		writer.write("@attribute defect {false, true}\n");
+		writer.write("@data\n");
+
+		for(int r=0; r<rows.length; r++)
+		{
+			writer.write((int)rows[r][0] + "," + rows[r][1] + "," + (Double.isNaN(rows[r][2]) ? "?" : "" + rows[r][2])
+					+ ",'file " + r + ".c'," + (rows[r][3] == 0 ? "false" : "true") + "\n");
+		}
+		writer.close();
+	}
+
+	private static void checkLog(File arffFile, double[][] rows) throws Exception {
+
+		File outFile = new ArffTransform(ArffTransform.Function.LOG).transform(arffFile);
+		outFile.deleteOnExit();
+		Check.isTrue(outFile.getName().endsWith("_LF.arff"), "name of the log file " + outFile.getName());
+
+		double[][] expected = new double[rows.length][];
+		for(int r=0; r<rows.length; r++)
+		{
+			expected[r] = rows[r].clone();
+			expected[r][1] = Math.log(rows[r][1]);
+			expected[r][2] = Math.log(rows[r][2] == 0 ? 0.0001 : rows[r][2]);
+		}
+
+		checkOutput(outFile, expected, "LOG");
+		outFile.delete();
+	}
+
+	private static void checkStatistics(File arffFile, double[][] rows, ArffTransform.Function function) throws Exception {
+
+		File outFile = new ArffTransform(function).transform(arffFile);
+		outFile.deleteOnExit();
+		Check.isTrue(outFile.getName().endsWith(function.suffix() + ".arff"), "name of the " + function + " file " + outFile.getName());
+
+		double[][] expected = new double[rows.length][];
+		for(int r=0; r<rows.length; r++)
+			expected[r] = rows[r].clone();
+
+		for(int c=1; c<=2; c++)
+		{
+			double offset;
+			double scale;
+
+			if(function == ArffTransform.Function.ZSCORE)
+			{
+				double sum = 0;
+				int count = 0;
+				for(int r=0; r<rows.length; r++)
+				{
+					if(!Double.isNaN(rows[r][c]))
+					{
+						sum += rows[r][c];
+						count++;
+					}
+				}
+				offset = sum / count;
+
+				double squares = 0;
+				for(int r=0; r<rows.length; r++)
+				{
+					if(!Double.isNaN(rows[r][c]))
+						squares += (rows[r][c] - offset) * (rows[r][c] - offset);
+				}
+				scale = Math.sqrt(squares / (count - 1));
+			}
+			else
+			{
+				double min = Double.POSITIVE_INFINITY;
+				double max = Double.NEGATIVE_INFINITY;
+				for(int r=0; r<rows.length; r++)
+				{
+					if(!Double.isNaN(rows[r][c]))
+					{
+						min = Math.min(min, rows[r][c]);
+						max = Math.max(max, rows[r][c]);
+					}
+				}
+				offset = min;
+				scale = max - min;
+			}
+
+			for(int r=0; r<rows.length; r++)
+				expected[r][c] = (rows[r][c] - offset) / scale;
+		}
+
+		double[][] values = checkOutput(outFile, expected, function.name());
+
+		if(function == ArffTransform.Function.MINMAX)
+		{
+			for(int r=0; r<rows.length; r++)
+				Check.isTrue(Double.isNaN(values[2][r]) || values[2][r] >= 0 && values[2][r] <= 1, "MINMAX in [0, 1] row " + r);
+		}
+		outFile.delete();
+	}
+
+	private static void checkSelectedColumns(File arffFile, double[][] rows) throws Exception {
+
+		File outFile = File.createTempFile("ArffTransformTest", "_selected.arff");
+		outFile.deleteOnExit();
+
+		ArffTransform transform = new ArffTransform(ArffTransform.Function.MINMAX);
+		transform.setColumnNames(new String[] { " FILEID " });
+		transform.transform(arffFile, outFile);
+
+		double[][] expected = new double[rows.length][];
+		for(int r=0; r<rows.length; r++)
+		{
+			expected[r] = rows[r].clone();
+			expected[r][0] = (rows[r][0] - 1) / (NUM_ROWS - 1);
+		}
+
+		checkOutput(outFile, expected, "selected column");
+		outFile.delete();
+
+		String[][] illegal = new String[][] { { "size" }, { "name" } };
+		for(int i=0; i<illegal.length; i++)
+		{
+			transform.setColumnNames(illegal[i]);
+			try{
+				transform.transform(arffFile, outFile);
+				throw new AssertionError("IllegalArgumentException expected for " + illegal[i][0]);
+			}catch(IllegalArgumentException e){
+			}
+		}
+		outFile.delete();
+	}
+
+	/**
+	 * compares the numeric columns of the file with the expected rows and checks
+	 * that the header and the other columns are kept
+	 *
+	 * @return the values of the fileId, loc and cc columns
+	 */
+	private static double[][] checkOutput(File outFile, double[][] expected, String message) throws Exception {
+
+		ArffReader reader = ArffReader.openArff(outFile);
+
+		Check.equal("metrics", reader.getRelation(), message + " relation");
+		Check.equal(Integer.valueOf(5), Integer.valueOf(reader.numAttributes()), message + " attributes");
+		Check.equal(Integer.valueOf(ArffReader.STRING), Integer.valueOf(reader.attributeType(3)), message + " string attribute");
+		Check.equal(Integer.valueOf(ArffReader.NOMINAL), Integer.valueOf(reader.attributeType(4)), message + " class attribute");
+
+		double[][] values = new double[3][expected.length];
+		int r = 0;
+		while(reader.next())
+		{
+			Check.isTrue(r < expected.length, message + " too many rows");
+
+			for(int c=0; c<3; c++)
+			{
+				Check.equal(Boolean.valueOf(Double.isNaN(expected[r][c])), Boolean.valueOf(reader.isMissing(c)), message + " missing row " + r + " column " + c);
+				values[c][r] = reader.value(c);
+				Check.near(expected[r][c], values[c][r], 1e-6, message + " row " + r + " column " + c);
+			}
+			Check.equal("file " + r + ".c", reader.stringValue(3), message + " name row " + r);
+			Check.near(expected[r][3], reader.value(4), 0, message + " class row " + r);
+			r++;
+		}
+		reader.close();
+
+		Check.equal(Integer.valueOf(expected.length), Integer.valueOf(r), message + " rows");
+		return values;
+	}
+}
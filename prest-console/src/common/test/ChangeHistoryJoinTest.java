@@ -0,0 +1,168 @@
+package common.test;
+
+import java.io.File;
+import java.io.FileWriter;
+
+import common.ArffReader;
+import common.ChangeHistoryJoin;
+
+/**
+ * a test class to check the change features common.ChangeHistoryJoin adds to the rows
+ * of an arff file, with the file paths as string and as nominal attributes
+ */
+public class ChangeHistoryJoinTest {
+
+	private static final String ROOT = "/home/build/src/";
+
+	private static final int REFERENCE_FREEZE = 130;
+
+	/**
+	 * paths of the arff rows and their expected FreezeCountBetweenChanges, ChangeCount,
+	 * Churn and LastChangedFreeze; a null path is missing
+	 */
+	private static final Object[][] ROWS = {
+		{ ROOT + "core/a.c", new double[] { 10, 3, 27, 120 } },
+		{ ROOT + "core//b.c", new double[] { 30, 1, 5, 100 } },
+		{ ROOT + "core/c.c", new double[] { 100, 0, 0, Double.NaN } },
+		{ ROOT + "util/d.c", new double[] { 1, 2, 0, 129 } },
+		{ "other/e.c", new double[] { 30, 1, 1, 100 } },
+		{ null, new double[] { 100, 0, 0, Double.NaN } },
+		{ ROOT + "core/a.c", new double[] { 10, 3, 27, 120 } }
+	};
+
+	public static void main(String[] args) throws Exception {
+
+		checkStatics();
+
+		File changesFile = File.createTempFile("ChangeHistoryJoinTest", ".csv");
+		changesFile.deleteOnExit();
+		FileWriter writer = new FileWriter(changesFile);
+		writer.write("core/a.c,freeze_1_00,20\n");
+		writer.write("core\\a.c,freeze_1_10,7\n");
+		writer.write("core//a.c,freeze_1_20\n");
+		// changes in and after the reference freeze are not counted
+		writer.write("core/a.c,freeze_1_30,1000\n");
+		writer.write("core/a.c,freeze_1_45,1000\n");
+		writer.write("core/b.c,freeze_1_00,5\n");
+		// changed only after the reference freeze
+		writer.write("core/c.c,freeze_1_31,3\n");
+		// unreadable churn, the change is counted without its churn
+		writer.write("util/d.c,freeze_1_29,many\n");
+		writer.write("util/d.c,freeze_1_05\n");
+		// lines which are skipped
+		writer.write("no comma\n");
+		writer.write("util/d.c,no freeze\n");
+		writer.write("\n");
+		writer.close();
+
+		// a second changes file adds to the same index; the path of its file is outside the source root
+		File moreChangesFile = File.createTempFile("ChangeHistoryJoinTest", ".csv");
+		moreChangesFile.deleteOnExit();
+		writer = new FileWriter(moreChangesFile);
+		writer.write("other/e.c,freeze_1_00,1\n");
+		writer.close();
+
+		for(int nominal=0; nominal<2; nominal++)
+		{
+			File arffFile = File.createTempFile("ChangeHistoryJoinTest", ".arff");
+			arffFile.deleteOnExit();
+			writeArff(arffFile, nominal == 1);
+
+			ChangeHistoryJoin join = new ChangeHistoryJoin(ROOT, REFERENCE_FREEZE);
+			join.setFeatures(ChangeHistoryJoin.Feature.values());
+			join.readChanges(changesFile);
+			join.readChanges(moreChangesFile);
+
+			File resultFile = File.createTempFile("ChangeHistoryJoinTest", "_joined.arff");
+			resultFile.deleteOnExit();
+			join.join(arffFile, resultFile);
+			checkOutput(resultFile, ChangeHistoryJoin.Feature.values(), nominal == 1 ? "nominal paths" : "string paths");
+
+			join = new ChangeHistoryJoin(ROOT, REFERENCE_FREEZE);
+			join.readChanges(changesFile);
+			join.readChanges(moreChangesFile);
+			join.join(arffFile, resultFile);
+			checkOutput(resultFile, new ChangeHistoryJoin.Feature[] { ChangeHistoryJoin.Feature.FREEZE_COUNT_BETWEEN_CHANGES }, "default features");
+
+			resultFile.delete();
+			arffFile.delete();
+		}
+
+		changesFile.delete();
+		moreChangesFile.delete();
+		System.out.println("ChangeHistoryJoinTest passed");
+	}
+
+	private static void checkStatics() {
+
+		Check.equal(Integer.valueOf(123), Integer.valueOf(ChangeHistoryJoin.parseFreeze("freeze_1_23")), "freeze number");
+		Check.equal(Integer.valueOf(7), Integer.valueOf(ChangeHistoryJoin.parseFreeze("f007")), "leading zeros");
+		Check.equal(Integer.valueOf(-1), Integer.valueOf(ChangeHistoryJoin.parseFreeze("freeze")), "label without digits");
+
+		Check.equal("core/a.c", ChangeHistoryJoin.canonicalPath("/root/core/a.c", "/root/"), "root removed");
+		Check.equal("core/a.c", ChangeHistoryJoin.canonicalPath("core\\\\a.c", null), "backslashes collapsed");
+		Check.equal("/x/core/a.c", ChangeHistoryJoin.canonicalPath("/x//core/a.c", "/root/"), "other root kept");
+		Check.equal("a.c", ChangeHistoryJoin.canonicalPath("a.c", ""), "empty root");
+	}
+
+	private static void writeArff(File file, boolean nominal) throws Exception {
+
+		FileWriter writer = new FileWriter(file);
+		writer.write("@relation files\n");
+		if(nominal)
+		{
+			writer.write("@attribute path {");
+			for(int r=0; r<ROWS.length - 1; r++)
+				if(ROWS[r][0] != null)
+					writer.write((r > 0 ? "," : "") + "'" + ROWS[r][0] + "'");
+			writer.write("}\n");
+		}
+		else
+			writer.write("@attribute path string\n");
+		writer.write("@attribute loc numeric\n");
+		writer.write("@attribute defect {false, true}\n");
+		writer.write("@data\n");
+
+		for(int r=0; r<ROWS.length; r++)
+			writer.write((ROWS[r][0] == null ? "?" : "'" + ROWS[r][0] + "'") + "," + (r * 10) + "," + (r % 2 == 0 ? "true" : "false") + "\n");
+		writer.close();
+	}
+
+	private static void checkOutput(File resultFile, ChangeHistoryJoin.Feature[] features, String message) throws Exception {
+
+		ArffReader reader = ArffReader.openArff(resultFile);
+
+		Check.equal("files", reader.getRelation(), message + " relation");
+		Check.equal(Integer.valueOf(3 + features.length), Integer.valueOf(reader.numAttributes()), message + " attributes");
+		Check.equal("path", reader.attributeName(0), message + " path attribute");
+		Check.equal("loc", reader.attributeName(1), message + " loc attribute");
+		for(int k=0; k<features.length; k++)
+		{
+			Check.equal(features[k].label(), reader.attributeName(2 + k), message + " feature attribute " + k);
+			Check.equal(Integer.valueOf(ArffReader.NUMERIC), Integer.valueOf(reader.attributeType(2 + k)), message + " feature type " + k);
+		}
+		Check.equal("defect", reader.attributeName(2 + features.length), message + " class attribute");
+
+		int r = 0;
+		while(reader.next())
+		{
+			Check.isTrue(r < ROWS.length, message + " too many rows");
+
+			if(ROWS[r][0] == null)
+				Check.isTrue(reader.isMissing(0), message + " missing path row " + r);
+			else
+				Check.equal(ROWS[r][0], reader.stringValue(0), message + " path row " + r);
+			Check.near(r * 10, reader.value(1), 0, message + " loc row " + r);
+
+			double[] expected = (double[])ROWS[r][1];
+			for(int k=0; k<features.length; k++)
+				Check.near(expected[features[k].ordinal()], reader.value(2 + k), 0, message + " row " + r + " " + features[k]);
+
+			Check.equal(r % 2 == 0 ? "true" : "false", reader.stringValue(2 + features.length), message + " class row " + r);
+			r++;
+		}
+		reader.close();
+
+		Check.equal(Integer.valueOf(ROWS.length), Integer.valueOf(r), message + " rows");
+	}
+}
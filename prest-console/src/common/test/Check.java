@@ -0,0 +1,23 @@
+package common.test;
+
+/**
+ * assertions of the test classes; a failed check throws an AssertionError, so the
+ * main() of a test ends with a stack trace and a non-zero exit status
+ */
+public class Check {
+
+	public static void isTrue(boolean condition, String message) {
+		if(!condition)
+			throw new AssertionError(message);
+	}
+
+	public static void equal(Object expected, Object actual, String message) {
+		if(expected == null ? actual != null : !expected.equals(actual))
+			throw new AssertionError(message + ": expected <" + expected + "> but was <" + actual + ">");
+	}
+
+	public static void near(double expected, double actual, double tolerance, String message) {
+		if(Double.isNaN(expected) ? !Double.isNaN(actual) : !(Math.abs(expected - actual) <= tolerance))
+			throw new AssertionError(message + ": expected <" + expected + "> but was <" + actual + ">");
+	}
+}
@@ -0,0 +1,132 @@
+package common.test;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.util.Random;
+
+import weka.core.converters.CSVLoader;
+
+import common.CsvToArff;
+
+/**
+ * a test class to check that common.CsvToArff writes the arff file weka's CSVLoader
+ * writes, on csv files with quoted values, spaces, missing values, comments and
+ * numbers in nominal columns, and on a large file converted with a memory budget
+ * small enough that the nominal values are spooled to disk
+ */
+public class CsvToArffTest {
+
+	private static final int NUM_ROWS = 3000;
+
+	public static void main(String[] args) throws Exception {
+
+		check("quoted",
+				"File Name,LOC,Path\n"
+				+ "\"c d.java\",12,'bar, baz'\n"
+				+ "e.java,7,\"it's\"\n"
+				+ "\"c d.java\",3,'bar, baz'\n");
+
+		check("mixed",
+				"a,b,c\n"
+				+ "1,2,3\n"
+				+ "2.5,x,4\n"
+				+ "1,3,y\n"
+				+ "x,2,3\n"
+				+ "1,2,1.0\n");
+
+		check("missing",
+				"a,b,c\n"
+				+ "?,,1\n"
+				+ "'?',x,\n"
+				+ "1,?,?\n"
+				+ ",y,2\n");
+
+		check("layout",
+				"% a comment\n"
+				+ "\n"
+				+ " a ,\tb\t, c \n"
+				+ "1\t2\t3\n"
+				+ "\n"
+				+ "4,5,6 % trailing comment\n"
+				+ "7 , 8 ,9\n");
+
+		check("escapes",
+				"a,b\n"
+				+ "\"x\\\"y\",1\n"
+				+ "'x\\ty',2\n"
+				+ "\"x\\\\y\",3\n");
+
+		check("numbers",
+				"a,b,c\n"
+				+ "NaN,1e3,-0\n"
+				+ "Infinity,\" 7 \",0x10\n"
+				+ "-Infinity,.5,+2\n");
+
+		check("header only", "a,b,c\n");
+
+		Random random = new Random(1);
+		StringBuilder csv = new StringBuilder("Name,Number,Late String,Value\n");
+		for(int row=0; row<NUM_ROWS; row++)
+		{
+			// the names repeat, but most of them are distinct
+			csv.append("\"file ").append(random.nextInt(NUM_ROWS * 2)).append(".java\",");
+			csv.append(random.nextInt(50)).append(',');
+			// numbers come before the first string of the third column
+			if(row < NUM_ROWS / 2)
+				csv.append(random.nextInt(40));
+			else if(random.nextInt(10) == 0)
+				csv.append('?');
+			else
+				csv.append(random.nextBoolean() ? "s" + random.nextInt(40) : String.valueOf(random.nextInt(80)));
+			csv.append(',').append(random.nextInt(1000) / 8.0).append('\n');
+		}
+		check("large", csv.toString());
+
+		System.out.println("CsvToArffTest passed");
+	}
+
+	/**
+	 * converts the csv text with CsvToArff, with the default memory budget and with
+	 * one of a few bytes, and compares the arff files with the one of CSVLoader
+	 */
+	private static void check(String name, String csv) throws Exception {
+
+		File csvFile = File.createTempFile("CsvToArffTest", ".csv");
+		csvFile.deleteOnExit();
+		FileWriter writer = new FileWriter(csvFile);
+		writer.write(csv);
+		writer.close();
+
+		CSVLoader loader = new CSVLoader();
+		loader.setSource(csvFile);
+		String expected = loader.getDataSet().toString();
+
+		for(int small=0; small<2; small++)
+		{
+			File arffFile = File.createTempFile("CsvToArffTest", ".arff");
+			arffFile.deleteOnExit();
+
+			CsvToArff converter = new CsvToArff();
+			if(small == 1)
+				converter.setMemoryBudget(64);
+			converter.convert(csvFile, arffFile);
+
+			Check.equal(expected, read(arffFile), name + (small == 1 ? ", small memory budget" : ""));
+			arffFile.delete();
+		}
+
+		csvFile.delete();
+	}
+
+	private static String read(File file) throws Exception {
+
+		StringBuilder text = new StringBuilder();
+		FileReader reader = new FileReader(file);
+		char[] buffer = new char[8192];
+		for(int n; (n = reader.read(buffer)) != -1; )
+			text.append(buffer, 0, n);
+		reader.close();
+		return text.toString();
+	}
+}
@@ -0,0 +1,208 @@
+package common.test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import common.ArffReader;
+import common.MethodAggregator;
+
+/**
+ * a test class to check the statistics of common.MethodAggregator against the values
+ * computed from the methods of each file, with one and several threads and with the
+ * file names as string and as nominal attributes
+ */
+public class MethodAggregatorTest {
+
+	private static final int NUM_FILES = 300;
+
+	private static final int NUM_METHODS = 20000;
+
+	public static void main(String[] args) throws Exception {
+
+		Random random = new Random(1);
+		int[] files = new int[NUM_METHODS];
+		double[][] metrics = new double[NUM_METHODS][2];
+
+		for(int m=0; m<NUM_METHODS; m++)
+		{
+			// the methods of a file are spread over several chunks
+			files[m] = random.nextInt(NUM_FILES);
+			metrics[m][0] = 1 + random.nextInt(500);
+			// the CC of file 7 is always missing, other CC values sometimes
+			metrics[m][1] = files[m] == 7 || random.nextInt(20) == 0 ? Double.NaN : random.nextInt(30);
+		}
+
+		MethodAggregator.Statistic[] statistics = MethodAggregator.Statistic.values();
+
+		for(int nominal=0; nominal<2; nominal++)
+		{
+			File arffFile = File.createTempFile("MethodAggregatorTest", ".arff");
+			arffFile.deleteOnExit();
+			writeArff(arffFile, files, metrics, nominal == 1);
+
+			for(int numThreads=1; numThreads<=4; numThreads+=3)
+			{
+				MethodAggregator aggregator = new MethodAggregator();
+				aggregator.setStatistics(statistics);
+				aggregator.setNumThreads(numThreads);
+
+				File outFile = aggregator.aggregate(arffFile);
+				outFile.deleteOnExit();
+				Check.isTrue(outFile.getName().endsWith("_AG.arff"), "name of the aggregated file " + outFile.getName());
+
+				checkOutput(outFile, files, metrics, statistics, (nominal == 1 ? "nominal" : "string") + " names, " + numThreads + " threads");
+				outFile.delete();
+			}
+
+			MethodAggregator aggregator = new MethodAggregator();
+			File outFile = aggregator.aggregate(arffFile);
+			outFile.deleteOnExit();
+			checkOutput(outFile, files, metrics, MethodAggregator.DEFAULT_STATISTICS, "default statistics");
+			outFile.delete();
+
+			arffFile.delete();
+		}
+
+		System.out.println("MethodAggregatorTest passed");
+	}
+
+	private static void writeArff(File file, int[] files, double[][] metrics, boolean nominal) throws Exception {
+
+		FileWriter writer = new FileWriter(file);
+		writer.write("@relation methods\n");
+		if(nominal)
+		{
+			writer.write("@attribute 'File Name' {");
+			for(int f=NUM_FILES-1; f>=0; f--)
+				writer.write("'src/f" + f + ".c'" + (f > 0 ? "," : "}\n"));
+		}
+		else
+			writer.write("@attribute 'File Name' string\n");
+		writer.write("@attribute 'File Id' numeric\n");
+		writer.write("@attribute 'Method Id' numeric\n");
+		writer.write("@attribute 'Start Line' numeric\n");
+		writer.write("@attribute LOC numeric\n");
+		writer.write("@attribute CC numeric\n");
+		writer.write("@attribute defect {false, true}\n");
+		writer.write("@data\n");
+
+		for(int m=0; m<files.length; m++)
+		{
+			writer.write("'src/f" + files[m] + ".c'," + (1000 + files[m]) + "," + m + "," + (m * 7 % 1000)
+					+ "," + (int)metrics[m][0] + "," + (Double.isNaN(metrics[m][1]) ? "?" : "" + (int)metrics[m][1])
+					+ "," + (m % 3 == 0 ? "true" : "false") + "\n");
+		}
+		writer.close();
+	}
+
+	private static void checkOutput(File outFile, int[] files, double[][] metrics, MethodAggregator.Statistic[] statistics, String message) throws Exception {
+
+		// files in the order they first appear, with the class of their first method
+		List<Integer> order = new ArrayList<Integer>();
+		String[] classes = new String[NUM_FILES];
+		for(int m=0; m<files.length; m++)
+		{
+			if(classes[files[m]] == null)
+			{
+				order.add(Integer.valueOf(files[m]));
+				classes[files[m]] = m % 3 == 0 ? "true" : "false";
+			}
+		}
+
+		ArffReader reader = ArffReader.openArff(outFile);
+
+		int numAttributes = 2 + 2 * statistics.length + 1;
+		Check.equal("methods", reader.getRelation(), message + " relation");
+		Check.equal(Integer.valueOf(numAttributes), Integer.valueOf(reader.numAttributes()), message + " attributes");
+		Check.equal("File Name", reader.attributeName(0), message + " name attribute");
+		Check.equal("File Id", reader.attributeName(1), message + " id attribute");
+		for(int s=0; s<statistics.length; s++)
+		{
+			Check.equal("LOC " + statistics[s].label(), reader.attributeName(2 + s), message + " LOC attribute " + s);
+			Check.equal("CC " + statistics[s].label(), reader.attributeName(2 + statistics.length + s), message + " CC attribute " + s);
+		}
+		Check.equal("defect", reader.attributeName(numAttributes - 1), message + " class attribute");
+
+		int row = 0;
+		while(reader.next())
+		{
+			Check.isTrue(row < order.size(), message + " too many rows");
+			int file = order.get(row).intValue();
+
+			Check.equal("src/f" + file + ".c", reader.stringValue(0), message + " name row " + row);
+			Check.near(1000 + file, reader.value(1), 0, message + " id row " + row);
+
+			for(int k=0; k<2; k++)
+			{
+				double[] values = valuesOf(file, files, metrics, k);
+
+				for(int s=0; s<statistics.length; s++)
+				{
+					double expected = statistic(values, statistics[s]);
+					double actual = reader.value(2 + k * statistics.length + s);
+					Check.near(expected, actual, 1e-6 + Math.abs(expected) * 1e-9, message + " file " + file + " metric " + k + " " + statistics[s]);
+				}
+			}
+
+			Check.equal(classes[file], reader.stringValue(numAttributes - 1), message + " class row " + row);
+			row++;
+		}
+		reader.close();
+
+		Check.equal(Integer.valueOf(order.size()), Integer.valueOf(row), message + " rows");
+	}
+
+	private static double[] valuesOf(int file, int[] files, double[][] metrics, int metric) {
+
+		double[] values = new double[files.length];
+		int n = 0;
+		for(int m=0; m<files.length; m++)
+		{
+			if(files[m] == file && !Double.isNaN(metrics[m][metric]))
+				values[n++] = metrics[m][metric];
+		}
+
+		double[] result = new double[n];
+		System.arraycopy(values, 0, result, 0, n);
+		return result;
+	}
+
+	private static double statistic(double[] values, MethodAggregator.Statistic statistic) {
+
+		int n = values.length;
+		if(n == 0)
+			return Double.NaN;
+
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+
+		double sum = 0;
+		for(int i=0; i<n; i++)
+			sum += values[i];
+		double mean = sum / n;
+
+		switch(statistic)
+		{
+		case MIN:
+			return sorted[0];
+		case MAX:
+			return sorted[n - 1];
+		case TOTAL:
+			return sum;
+		case AVG:
+			return mean;
+		case MEDIAN:
+			return n % 2 == 1 ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2;
+		case STDDEV:
+			double squares = 0;
+			for(int i=0; i<n; i++)
+				squares += (values[i] - mean) * (values[i] - mean);
+			return n > 1 ? Math.sqrt(squares / (n - 1)) : 0;
+		}
+		throw new IllegalStateException(statistic.name());
+	}
+}
@@ -0,0 +1,186 @@
+package common.test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import common.ArffReader;
+import common.MetricHistory;
+
+/**
+ * a test class to check that the metrics recorded in common.MetricHistory are read back
+ * after the store is reopened, that a freeze recorded again replaces its values and that
+ * an interrupted recording is dropped
+ */
+public class MetricHistoryTest {
+
+	public static void main(String[] args) throws Exception {
+
+		File directory = File.createTempFile("MetricHistoryTest", "");
+		directory.delete();
+		File work = new File(directory.getPath() + "_csv");
+		work.mkdirs();
+
+		File fileCsv = new File(work, "FILE.csv");
+		File methodCsv = new File(work, "METHOD.csv");
+		File missingCsv = new File(work, "CLASS.csv");
+
+		// freeze_1: two files and their methods
+		writeFile(fileCsv, "File Id,File Name,LOC,CC,Note\n"
+				+ "1,a.c,100,5,x\n"
+				+ "2,b.c,200,?,y\n");
+		writeFile(methodCsv, "File Name,Method Name,Start Line,LOC,CC\n"
+				+ "a.c,run,10,30,3\n"
+				+ "a.c,stop,50,20,2\n");
+
+		MetricHistory history = new MetricHistory(directory);
+		history.record("freeze_1", new File[] { fileCsv, methodCsv, missingCsv, null });
+		history.close();
+
+		// freeze_2: b.c grows, a.c is gone, c.c is new
+		writeFile(fileCsv, "File Id,File Name,LOC,CC,Note\n"
+				+ "2,b.c,260,7,y\n"
+				+ "3,c.c,40,1,z\n");
+		writeFile(methodCsv, "File Name,Method Name,Start Line,LOC,CC\n");
+
+		history = new MetricHistory(directory);
+		history.record("freeze_2", new File[] { fileCsv, methodCsv });
+		history.close();
+
+		history = new MetricHistory(directory);
+		checkNames(history.getFreezes(), new String[] { "freeze_1", "freeze_2" }, "freezes");
+		checkNames(history.getMetrics(), new String[] { "LOC", "CC", "Note" }, "metrics");
+		checkNames(history.getEntities(), new String[] { "file:a.c", "file:b.c", "method:a.c/run", "method:a.c/stop", "file:c.c" }, "entities");
+
+		checkSeries(history.timeSeries("file:a.c", "LOC"), new double[] { 100, Double.NaN }, "a.c LOC");
+		checkSeries(history.timeSeries("file:b.c", "LOC"), new double[] { 200, 260 }, "b.c LOC");
+		checkSeries(history.timeSeries("file:b.c", "CC"), new double[] { Double.NaN, 7 }, "b.c missing CC");
+		checkSeries(history.timeSeries("file:c.c", "CC"), new double[] { Double.NaN, 1 }, "c.c CC");
+		checkSeries(history.timeSeries("method:a.c/stop", "LOC"), new double[] { 20, Double.NaN }, "method LOC");
+		checkSeries(history.timeSeries("file:a.c", "Note"), new double[] { Double.NaN, Double.NaN }, "string column");
+		checkSeries(history.timeSeries("file:x.c", "LOC"), new double[] { Double.NaN, Double.NaN }, "unknown entity");
+		checkSeries(history.timeSeries("file:a.c", "Start Line"), new double[] { Double.NaN, Double.NaN }, "line numbers are not metrics");
+
+		double[] values = history.values("method:a.c/run", "freeze_1");
+		Check.near(30, values[0], 0, "method values LOC");
+		Check.near(3, values[1], 0, "method values CC");
+		Check.equal(null, history.values("method:a.c/run", "freeze_2"), "values of an entity not in the freeze");
+		Check.equal(null, history.values("method:a.c/run", "freeze_3"), "values of an unknown freeze");
+
+		Check.near(60, history.delta("file:b.c", "LOC", "freeze_1", "freeze_2"), 0, "delta");
+		Check.isTrue(Double.isNaN(history.delta("file:b.c", "CC", "freeze_1", "freeze_2")), "delta of a missing value");
+		Check.isTrue(Double.isNaN(history.delta("file:a.c", "LOC", "freeze_1", "freeze_2")), "delta of an entity not in a freeze");
+		Check.isTrue(Double.isNaN(history.delta("file:b.c", "Size", "freeze_1", "freeze_2")), "delta of an unknown metric");
+
+		checkExportDeltas(history, work);
+
+		// freeze_1 is recorded again, its last recording is used
+		writeFile(fileCsv, "File Id,File Name,LOC,CC,Note\n"
+				+ "2,b.c,210,4,y\n");
+		history.record("freeze_1", new File[] { fileCsv });
+		checkSeries(history.timeSeries("file:b.c", "LOC"), new double[] { 210, 260 }, "recorded again");
+		history.close();
+
+		history = new MetricHistory(directory);
+		checkSeries(history.timeSeries("file:b.c", "LOC"), new double[] { 210, 260 }, "recorded again after reopening");
+		checkSeries(history.timeSeries("file:a.c", "LOC"), new double[] { 100, Double.NaN }, "earlier blocks are kept");
+		history.close();
+
+		// an index record whose values were not written and half of another record
+		// are left by an interrupted recording
+		File indexFile = new File(directory, "index.dat");
+		long validLength = indexFile.length();
+		RandomAccessFile index = new RandomAccessFile(indexFile, "rw");
+		index.seek(validLength);
+		index.writeInt(1);
+		index.writeInt(1);
+		index.writeLong(new File(directory, "values.dat").length());
+		index.writeInt(2);
+		index.writeInt(0);
+		index.writeInt(0);
+		index.close();
+
+		history = new MetricHistory(directory);
+		Check.equal(Long.valueOf(validLength), Long.valueOf(indexFile.length()), "interrupted records dropped");
+		checkSeries(history.timeSeries("file:b.c", "LOC"), new double[] { 210, 260 }, "after an interrupted recording");
+
+		writeFile(fileCsv, "File Id,File Name,LOC,CC,Note\n"
+				+ "2,b.c,300,8,y\n");
+		history.record("freeze_3", new File[] { fileCsv });
+		history.close();
+
+		history = new MetricHistory(directory);
+		checkSeries(history.timeSeries("file:b.c", "LOC"), new double[] { 210, 260, 300 }, "recorded after an interrupted recording");
+		history.close();
+
+		deleteDirectory(directory);
+		deleteDirectory(work);
+		System.out.println("MetricHistoryTest passed");
+	}
+
+	private static void checkExportDeltas(MetricHistory history, File work) throws Exception {
+
+		File arffFile = new File(work, "files.arff");
+		File outFile = new File(work, "files_delta.arff");
+		writeFile(arffFile, "@relation files\n"
+				+ "@attribute 'File Name' string\n"
+				+ "@attribute LOC numeric\n"
+				+ "@attribute CC numeric\n"
+				+ "@attribute Size numeric\n"
+				+ "@attribute defect {false, true}\n"
+				+ "@data\n"
+				+ "b.c,260,7,1,true\n"
+				+ "a.c,100,5,1,false\n");
+
+		history.exportDeltas("freeze_1", "freeze_2", arffFile, outFile);
+
+		ArffReader reader = ArffReader.openArff(outFile);
+		Check.equal(Integer.valueOf(7), Integer.valueOf(reader.numAttributes()), "delta attributes");
+		Check.equal("LOC" + MetricHistory.DELTA_SUFFIX, reader.attributeName(4), "LOC delta attribute");
+		Check.equal("CC" + MetricHistory.DELTA_SUFFIX, reader.attributeName(5), "CC delta attribute");
+		Check.equal("defect", reader.attributeName(6), "class attribute");
+
+		Check.isTrue(reader.next(), "delta row 1");
+		Check.equal("b.c", reader.stringValue(0), "delta row 1 name");
+		Check.near(60, reader.value(4), 0, "delta row 1 LOC");
+		Check.isTrue(reader.isMissing(5), "delta row 1 missing CC");
+		Check.equal("true", reader.stringValue(6), "delta row 1 class");
+
+		Check.isTrue(reader.next(), "delta row 2");
+		Check.isTrue(reader.isMissing(4), "delta row 2 entity not in freeze_2");
+		Check.near(1, reader.value(3), 0, "delta row 2 values kept");
+
+		Check.isTrue(!reader.next(), "delta rows");
+		reader.close();
+	}
+
+	private static void checkNames(List<String> names, String[] expected, String message) {
+
+		Check.equal(Integer.valueOf(expected.length), Integer.valueOf(names.size()), message + " " + names);
+		for(int i=0; i<expected.length; i++)
+			Check.equal(expected[i], names.get(i), message + " " + i);
+	}
+
+	private static void checkSeries(double[] series, double[] expected, String message) {
+
+		Check.equal(Integer.valueOf(expected.length), Integer.valueOf(series.length), message + " length");
+		for(int i=0; i<expected.length; i++)
+			Check.near(expected[i], series[i], 0, message + " " + i);
+	}
+
+	private static void writeFile(File file, String text) throws Exception {
+
+		FileWriter writer = new FileWriter(file);
+		writer.write(text);
+		writer.close();
+	}
+
+	private static void deleteDirectory(File directory) {
+
+		File[] files = directory.listFiles();
+		for(int i=0; files != null && i<files.length; i++)
+			files[i].delete();
+		directory.delete();
+	}
+}
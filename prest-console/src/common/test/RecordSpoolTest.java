@@ -0,0 +1,66 @@
+package common.test;
+
+import java.util.Random;
+
+import common.RecordSpool;
+
+/**
+ * a test class to check that common.RecordSpool returns its records sorted by their
+ * keys and in the order they were added for the same key, with the records in memory,
+ * with a few run files and with so many run files that they are merged in two passes
+ */
+public class RecordSpoolTest {
+
+	private static final int NUM_RECORDS = 5000;
+
+	private static final int NUM_KEYS = 300;
+
+	public static void main(String[] args) throws Exception {
+
+		Random random = new Random(1);
+		long[] keys = new long[NUM_RECORDS];
+		for(int k=0; k<NUM_RECORDS; k++)
+			keys[k] = random.nextInt(NUM_KEYS) - NUM_KEYS / 2;
+
+		// everything in memory, about a hundred runs, a run for each record
+		long[] budgets = { Long.MAX_VALUE, 3000, 0 };
+		for(int b=0; b<budgets.length; b++)
+		{
+			RecordSpool spool = new RecordSpool(budgets[b]);
+			try {
+				for(int k=0; k<NUM_RECORDS; k++)
+					spool.add(keys[k], toBytes(k));
+
+				RecordSpool.Cursor cursor = spool.cursor();
+				Check.isTrue(spool.getNumRuns() <= RecordSpool.MAX_FAN_IN, spool.getNumRuns() + " runs are merged at once");
+
+				long lastKey = Long.MIN_VALUE;
+				int lastIndex = -1;
+				int count = 0;
+				while(cursor.next())
+				{
+					int index = fromBytes(cursor.record());
+					String message = "record " + count + " with budget " + budgets[b];
+					Check.equal(Long.valueOf(keys[index]), Long.valueOf(cursor.key()), message);
+					Check.isTrue(cursor.key() > lastKey || (cursor.key() == lastKey && index > lastIndex), message + " is in order");
+					lastKey = cursor.key();
+					lastIndex = index;
+					count++;
+				}
+				Check.equal(Integer.valueOf(NUM_RECORDS), Integer.valueOf(count), "records with budget " + budgets[b]);
+			} finally {
+				spool.close();
+			}
+		}
+
+		System.out.println("RecordSpoolTest passed");
+	}
+
+	private static byte[] toBytes(int value) {
+		return new byte[] { (byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value };
+	}
+
+	private static int fromBytes(byte[] bytes) {
+		return (bytes[0] & 0xff) << 24 | (bytes[1] & 0xff) << 16 | (bytes[2] & 0xff) << 8 | (bytes[3] & 0xff);
+	}
+}
@@ -1,5 +1,11 @@
 package console;
 
+import java.io.File;
+
+import common.ArffTransform;
+import common.ChangeHistoryJoin;
+import common.MethodAggregator;
+
 public class CommandLineExplorer
 {
 	PackageExplorer packageExplorer;
@@ -39,6 +45,23 @@ public class CommandLineExplorer
 		{
 			packageExplorer.logFiltering(args[1]);
 		}
+		else if (args[0].equalsIgnoreCase("-transform"))
+		{
+			ArffTransform.Function function = null;
+			if (args.length == 3 || args.length == 4)
+			{
+				for (ArffTransform.Function f : ArffTransform.Function.values())
+					if (f.name().equalsIgnoreCase(args[2]))
+						function = f;
+			}
+
+			if (function == null)
+				listCommandLineOptions();
+			else if (args.length == 3)
+				packageExplorer.transform(args[1], function, null);
+			else
+				packageExplorer.transform(args[1], function, args[3].split(","));
+		}
 		else if (args[0].equalsIgnoreCase("-convertCsvToArff"))
 		{
 			if (args.length == 2)
@@ -48,7 +71,27 @@ public class CommandLineExplorer
 		}
 		else if (args[0].equalsIgnoreCase("-aggregateMethodToFile"))
 		{
-			packageExplorer.aggregateMethod2File(args[1]);
+			if (args.length == 2)
+				packageExplorer.aggregateMethod2File(args[1]);
+			if (args.length == 3)
+			{
+				String[] names = args[2].split(",");
+				MethodAggregator.Statistic[] statistics = new MethodAggregator.Statistic[names.length];
+				for (int i = 0; i < names.length; i++)
+				{
+					try
+					{
+						statistics[i] = MethodAggregator.Statistic.valueOf(names[i].trim().toUpperCase());
+					}
+					catch (IllegalArgumentException e)
+					{
+						System.out.println("Unknown statistic " + names[i].trim() + ", the statistics are "
+								+ valueNames(MethodAggregator.Statistic.values()));
+						return;
+					}
+				}
+				packageExplorer.aggregateMethod2File(args[1], statistics);
+			}
 		}
 		else if (args[0].equalsIgnoreCase("-predict"))
 		{
@@ -63,7 +106,35 @@ public class CommandLineExplorer
 		}
 		else if (args[0].equalsIgnoreCase("-addChanges"))
 		{
-			packageExplorer.addChanges(args[1],args[2], args[3], args[4], args[5]);
+			if (args.length == 6)
+				packageExplorer.addChanges(args[1],args[2], args[3], args[4], args[5]);
+			if (args.length == 7)
+			{
+				String[] names = args[6].split(",");
+				ChangeHistoryJoin.Feature[] features = new ChangeHistoryJoin.Feature[names.length];
+				for (int i = 0; i < names.length; i++)
+				{
+					try
+					{
+						features[i] = ChangeHistoryJoin.Feature.valueOf(names[i].trim().toUpperCase());
+					}
+					catch (IllegalArgumentException e)
+					{
+						System.out.println("Unknown feature " + names[i].trim() + ", the features are "
+								+ valueNames(ChangeHistoryJoin.Feature.values()));
+						return;
+					}
+				}
+				packageExplorer.addChanges(args[1],args[2], args[3], args[4], args[5], features);
+			}
+		}
+		else if (args[0].equalsIgnoreCase("-history"))
+		{
+			packageExplorer.printHistory(args[1], args[2], args[3]);
+		}
+		else if (args[0].equalsIgnoreCase("-historyDeltas"))
+		{
+			packageExplorer.exportHistoryDeltas(args[1], args[2], args[3], args[4], args[5]);
 		}
 		else
 		{
@@ -71,6 +142,63 @@ public class CommandLineExplorer
 		}
 	}
 
+	/**
+	 * Makes the relative paths among the arguments of a command absolute, so that a command
+	 * run by the daemon uses the files of the directory its client was started in
+	 *
+	 * @param args the command in the syntax of startExecFromCmdLine
+	 * @param directory the directory the relative paths are resolved against
+	 * @return a copy of the command with absolute paths
+	 */
+	public static String[] resolvePaths(String[] args, File directory)
+	{
+		String[] resolved = args.clone();
+		for (int i = 1; i < args.length; i++)
+		{
+			if (isPath(args[0], i) && args[i].length() > 0 && !new File(args[i]).isAbsolute())
+				resolved[i] = new File(directory, args[i]).getPath();
+		}
+		return resolved;
+	}
+
+	/**
+	 * @return the names of the values in lower case, separated by commas as on the command line
+	 */
+	private static String valueNames(Enum<?>[] values)
+	{
+		StringBuilder names = new StringBuilder();
+		for (int i = 0; i < values.length; i++)
+		{
+			if (i > 0)
+				names.append(',');
+			names.append(values[i].name().toLowerCase());
+		}
+		return names.toString();
+	}
+
+	/**
+	 * @return true if the argument at the index of the command is a file or a directory
+	 */
+	private static boolean isPath(String command, int index)
+	{
+		if (command.equalsIgnoreCase("-parse"))
+			// the freeze label and the flag of the output directories are not
+			return index == 1 || index >= 4;
+		if (command.equalsIgnoreCase("-addChanges"))
+			return index != 4 && index <= 5;
+		if (command.equalsIgnoreCase("-predict"))
+			return index <= 3;
+		if (command.equalsIgnoreCase("-historyDeltas"))
+			return index == 4 || index == 5;
+		if (command.equalsIgnoreCase("-convertCsvToArff"))
+			return index <= 2;
+		if (command.equalsIgnoreCase("-addProject") || command.equalsIgnoreCase("-setRepository")
+				|| command.equalsIgnoreCase("-logFilter") || command.equalsIgnoreCase("-transform")
+				|| command.equalsIgnoreCase("-aggregateMethodToFile"))
+			return index == 1;
+		return false;
+	}
+
 	public void listCommandLineOptions()
 	{
 		System.out.println("You entered a command with wrong syntax or wrong argument count.");
@@ -84,13 +212,25 @@ public class CommandLineExplorer
 				.println("-parse projectDirectory freezelabel -fm filelevelmetricsoutputdirectory methodlevelmetricsoutputdirectory");
 		System.out.println("-parse projectDirectory freezelabel -fcm filelevelmetricsoutputdirectory classlevelmetricsoutputdirectory methodlevelmetricsoutputdirectory");
 		System.out.println("aggregateMethodToFile methodpath");
+		System.out.println("aggregateMethodToFile methodpath min,max,total,avg,median,stddev");
 		System.out.println("-logFilter filepath");
+		System.out.println("-transform filepath log|zscore|minmax");
+		System.out.println("-transform filepath log|zscore|minmax column1,column2,...");
 		System.out.println("-convertCsvToArff filepath");
 		System.out.println("-convertCsvToArff filepath outfilepath");
+		System.out.println("-convertCsvToArff csvdirectory");
+		System.out.println("-convertCsvToArff csvdirectory outdirectory");
 		System.out.println("-predict trainfile testfile");
 		System.out.println("-predict trainfile testfile resultoutputpath");
 		System.out.println("-predict trainfile testfile  resultoutputpath filefilter");
 		System.out.println("-addChanges sourceroot changesfile methodfile freeze outputfile");
+		System.out.println("-addChanges sourceroot changesfile methodfile freeze outputfile freeze_count_between_changes,change_count,churn,last_changed_freeze");
+		System.out.println("-history projectname entity metric");
+		System.out.println("-historyDeltas projectname fromfreeze tofreeze arfffile outputfile");
+		System.out.println("-daemon");
+		System.out.println("-daemon port workers");
+		System.out.println("    listens on the local host; clients must send the token written to ~/.prest/daemon_port.token,");
+		System.out.println("    so any process that can read that file (at least those of the same user) can run commands");
 	}
 
 	/**
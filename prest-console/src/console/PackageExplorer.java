@@ -18,15 +18,18 @@ import java.util.HashMap;
 import java.util.List;
 
 import common.ApplicationProperties;
+import common.ArffTransform;
 import common.ArffUtils;
+import common.ChangeHistoryJoin;
 import common.DirectoryListing;
+import common.MethodAggregator;
+import common.MetricHistory;
+import common.ParseResult;
+import common.RunReport;
 import executor.ParserExecutor;
 import common.CsvToArff;
 import predictor.WekaRunner;
 import weka.core.Attribute;
-import weka.core.Instance;
-import weka.core.Instances;
-import weka.core.converters.ArffLoader;
 import weka.core.converters.CSVLoader;
 
 import org.apache.log4j.Logger;
@@ -126,11 +129,10 @@ public class PackageExplorer {
 	}
 
 	public void parseManualCmd(String projectDirectoryStr, String freeze, String fileCsvPath, String methodCsvPath, String classCsvPath) {
-		int result;
 		try {
 			File projectDirectory = new File(projectDirectoryStr);
-			result = ParserExecutor.parseDirectoryCmd(projectDirectory, fileCsvPath, methodCsvPath, classCsvPath, freeze);
-			if (result == ParserExecutor.PARSING_SUCCESSFUL) {
+			List<ParseResult> results = ParserExecutor.parseDirectoryCmd(projectDirectory, fileCsvPath, methodCsvPath, classCsvPath, freeze);
+			if (results != null) {
 				logger.info("Project parsed successfully.");
 //				DefectMatcher.main(new String[] {projectDirectory.getName(), releaseLabel, ApplicationProperties
 //						.get("repositorylocation")
@@ -149,91 +151,53 @@ public class PackageExplorer {
 	
 	public void convertCsvToArff(String fileName, String outputPath) {
 		CsvToArff c = new CsvToArff();
+		File csvFile = new File(fileName);
+		RunReport.start("convertCsvToArff " + fileName);
 		try {
 			CsvToArff cCommand = new CsvToArff();
 			cCommand.csvToArffCommand(fileName, outputPath);
 		} catch (Exception eCtoArff) {
 			logger.error("csv File name wrong or file corrupt!");
 		}
+		// the run report is written next to the csv files
+		RunReport.finish(csvFile.isDirectory() ? csvFile : csvFile.getAbsoluteFile().getParentFile());
 	}
 	/* This function applies log filtering on metric values.
-	 * input: filename (at file level) 
+	 * input: filename (arff file)
 	 * output: (true) if new file with log-filtered attributes
-	 * IMPORTANT!!: Due to hard-coded attribute indices, this function works for file level only.
 	 * */
 	public boolean logFiltering(String filename)
 	{
-		ArffLoader loader = new ArffLoader();
-		Instances data;
-		BufferedWriter writer = null;
-		boolean methodLevel = false;
-	    try 
-	    {
-	    	logger.info(filename);
-			loader.setSource(new File(filename));
-			data = loader.getDataSet();
-			data.setClassIndex(data.numAttributes()-1);
-			if(data.attribute(2).name().equals("Method Name"))
-				methodLevel = true;
-			
-			Instances newdata = new Instances(data, data.numInstances());
-			
-			for(int j=0; j<data.numAttributes(); j++)
-			{
-			//	System.out.println("Attribute: " + j);
-				for(int i=0; i<data.numInstances(); i++)
-				{
-			//		System.out.println("Instance: " + i);
-					if(j==0) //Filename
-					{
-						newdata.add(data.instance(i));
-						newdata.instance(i).setValue(j, data.instance(i).stringValue(j));
-					}
-					else if (j==1) //File ID
-						newdata.instance(i).setValue(j, data.instance(i).value(j));
-					else if (j==data.numAttributes()-1) //Class attribute
-						newdata.instance(i).setClassValue(data.instance(i).stringValue(j));
-					else
-					{
-						if(methodLevel)
-						{
-							if(j!= 2 && j!=3)
-							{
-								if(data.instance(i).value(j) != 0)
-									newdata.instance(i).setValue(j, Math.log(data.instance(i).value(j)));
-								else
-									newdata.instance(i).setValue(j, Math.log(0.0001));
-							}
-						}
-						else
-						{
-							if(data.instance(i).value(j) != 0)
-								newdata.instance(i).setValue(j, Math.log(data.instance(i).value(j)));
-							else
-								newdata.instance(i).setValue(j, Math.log(0.0001));
-						}
-					}
-				}
-			}
-		
-			logger.info("Writing to new file...");
-			String outFile = filename.substring(0, filename.lastIndexOf(".")); 
-			logger.info(outFile);
-			writer = new BufferedWriter(new FileWriter(outFile + "_LF.arff"));
-						
-			writer.write(newdata.toString());
-    	    writer.flush();
-    	    writer.close();
-    	    logger.info("Log filter is applied to " + filename + " successfully");
-		} 
-	    catch (IOException e) {
-			// TODO Auto-generated catch block
-			logger.error("Log filter could not be processed due to IOException");
+		return transform(filename, ArffTransform.Function.LOG, null);
+	}
+
+	/* This function applies a transform (log, z-score or min-max) on metric values,
+	 * streaming the rows of the file.
+	 * input: filename (arff file), the columns to transform or null for all metrics
+	 * output: (true) if new file with transformed attributes
+	 * */
+	public boolean transform(String filename, ArffTransform.Function function, String[] columnNames)
+	{
+		try
+		{
+			logger.info(filename);
+			ArffTransform transform = new ArffTransform(function);
+			transform.setColumnNames(columnNames);
+			File outFile = transform.transform(new File(filename));
+			logger.info(outFile.getPath());
+			logger.info(function.name() + " transform is applied to " + filename + " successfully");
+		}
+		catch (IOException e) {
+			logger.error("Transform could not be processed due to IOException");
 			e.printStackTrace();
 			return false;
 		}
-	    
-	    return true;  
+		catch (IllegalArgumentException e) {
+			logger.error(e.getMessage());
+			return false;
+		}
+
+		return true;
 	}
 
 	/* this function takes values at method level 
@@ -246,6 +210,16 @@ public class PackageExplorer {
 		return ArffUtils.aggregateMethod2File(file);
 	}
 
+	/* this function takes values at method level
+	 * and aggregates them up to file level with the given statistics.
+	 * input: filename (method level), statistics computed for each metric
+	 * output: (true) if new file with aggregated values
+	 * */
+	public boolean aggregateMethod2File(String file, MethodAggregator.Statistic[] statistics)
+	{
+		return ArffUtils.aggregateMethod2File(file, statistics);
+	}
+
 	public HashMap<String, File> getProjectNamesHashMap() {
 		return projectNamesHashMap;
 	}
@@ -282,10 +256,67 @@ public class PackageExplorer {
 	}
 	
 	public void addChanges(String sourceRoot, String arffFile, String changesFile, String freeze, String resultPath) {
-		ArffUtils.addChanges(sourceRoot, arffFile, changesFile, Integer.parseInt(freeze.charAt(7) + "" + freeze.charAt(9) + freeze.charAt(10)), resultPath);
+		ArffUtils.addChanges(sourceRoot, arffFile, changesFile, ChangeHistoryJoin.parseFreeze(freeze), resultPath);
+	}
+
+	public void addChanges(String sourceRoot, String arffFile, String changesFile, String freeze, String resultPath, ChangeHistoryJoin.Feature[] features) {
+		ArffUtils.addChanges(sourceRoot, arffFile, changesFile, ChangeHistoryJoin.parseFreeze(freeze), resultPath, features);
 	}
 
 	
+	/* prints the values of a metric of an entity over the recorded freezes of the project
+	 * input: project name, entity (i.e. file:a.java), metric name
+	 * */
+	public void printHistory(String projectName, String entity, String metric)
+	{
+		try
+		{
+			MetricHistory history = MetricHistory.openProject(projectName);
+			try
+			{
+				List<String> freezes = history.getFreezes();
+				double[] series = history.timeSeries(entity, metric);
+				for (int i = 0; i < series.length; i++)
+					System.out.println(freezes.get(i) + "," + (Double.isNaN(series[i]) ? "?" : String.valueOf(series[i])));
+			}
+			finally
+			{
+				history.close();
+			}
+		}
+		catch (IOException e)
+		{
+			logger.error("Metric history could not be read: " + e.getMessage());
+		}
+	}
+
+	/* adds the changes of the metrics between two freezes of the project to an arff file
+	 * input: project name, the freezes, arff file, output file
+	 * output: (true) if new file with the delta attributes
+	 * */
+	public boolean exportHistoryDeltas(String projectName, String fromFreeze, String toFreeze, String arffFile, String outFile)
+	{
+		try
+		{
+			MetricHistory history = MetricHistory.openProject(projectName);
+			try
+			{
+				history.exportDeltas(fromFreeze, toFreeze, new File(arffFile), new File(outFile));
+			}
+			finally
+			{
+				history.close();
+			}
+			logger.info("Metric deltas added to " + outFile + " successfully");
+		}
+		catch (IOException e)
+		{
+			logger.error("Metric deltas could not be exported: " + e.getMessage());
+			return false;
+		}
+		return true;
+	}
+
 	public void setRepoCmd(String repoPath)
 	{
 		ApplicationProperties.setRepositoryLocation(null, repoPath);
@@ -0,0 +1,196 @@
+package console;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.Properties;
+
+/**
+ * Sends a command to a running PrestDaemon, prints the output of the command as it runs
+ * and exits with the exit code of the command.
+ *
+ * <pre>
+ * usage: PrestClient [-port port] command arguments...
+ * </pre>
+ *
+ * The command is given in the syntax of the console, -shutdown stops the daemon once the
+ * commands it queued have run. Without -port the port of the daemon is the "daemonport"
+ * application property. The client sends the token the daemon wrote to getTokenFile(port)
+ * before the command, so only users who can read that file can run commands. The client
+ * also sends its working directory, against which the daemon resolves the relative paths
+ * of the command. The client exits with 4 if the daemon
+ * cannot be reached or its token cannot be read.
+ */
+public class PrestClient
+{
+	public static final int EXIT_UNREACHABLE = 4;
+
+	private static final String PROPERTIES_FILE_NAME = "application.properties";
+
+	public static void main(String[] args)
+	{
+		int port = -1;
+		int first = 0;
+		if (args.length >= 2 && args[0].equals("-port"))
+		{
+			port = Integer.parseInt(args[1]);
+			first = 2;
+		}
+		if (port == -1)
+		{
+			port = readPort();
+		}
+
+		String[] command = new String[args.length - first];
+		System.arraycopy(args, first, command, 0, command.length);
+
+		try
+		{
+			System.exit(send(port, command));
+		}
+		catch (IOException e)
+		{
+			System.err.println("PREST daemon on port " + port + " could not be reached: " + e.getMessage());
+			System.exit(EXIT_UNREACHABLE);
+		}
+	}
+
+	/**
+	 * Runs the command on the daemon and prints its output
+	 *
+	 * @param port
+	 * @param command
+	 * @return the exit code of the command
+	 * @throws IOException if the connection failed
+	 */
+	public static int send(int port, String[] command) throws IOException
+	{
+		String token = readToken(port);
+		Socket socket = new Socket(InetAddress.getByName("127.0.0.1"), port);
+		try
+		{
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			out.writeUTF(token);
+			out.writeUTF(System.getProperty("user.dir"));
+			out.writeInt(command.length);
+			for (int i = 0; i < command.length; i++)
+			{
+				out.writeUTF(command[i]);
+			}
+			out.flush();
+
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			byte[] buffer = new byte[8192];
+			while (true)
+			{
+				int frame;
+				try
+				{
+					frame = in.readByte();
+				}
+				catch (EOFException e)
+				{
+					throw new IOException("connection closed before the command ended");
+				}
+
+				if (frame == PrestDaemon.EXIT_FRAME)
+				{
+					System.out.flush();
+					return in.readInt();
+				}
+
+				int length = in.readInt();
+				if (length > buffer.length)
+				{
+					buffer = new byte[length];
+				}
+				in.readFully(buffer, 0, length);
+				System.out.write(buffer, 0, length);
+				System.out.flush();
+			}
+		}
+		finally
+		{
+			socket.close();
+		}
+	}
+
+	/**
+	 * @param port
+	 * @return the file the daemon on the port writes its token to, .prest/daemon_port.token
+	 *         in the home directory of the user
+	 */
+	public static File getTokenFile(int port)
+	{
+		return new File(System.getProperty("user.home") + File.separator + ".prest" + File.separator + "daemon_" + port
+				+ ".token");
+	}
+
+	/**
+	 * @throws IOException if the token file of the daemon cannot be read, i.e. the
+	 *         daemon is not running or was started by another user
+	 */
+	private static String readToken(int port) throws IOException
+	{
+		File tokenFile = getTokenFile(port);
+		BufferedReader reader;
+		try
+		{
+			reader = new BufferedReader(new InputStreamReader(new FileInputStream(tokenFile), "US-ASCII"));
+		}
+		catch (IOException e)
+		{
+			throw new IOException("token " + tokenFile.getPath() + " cannot be read");
+		}
+		try
+		{
+			String token = reader.readLine();
+			return token == null ? "" : token.trim();
+		}
+		finally
+		{
+			reader.close();
+		}
+	}
+
+	/**
+	 * Reads the port from the application properties file. ApplicationProperties is not
+	 * used, so that the client does not load the logging of the application.
+	 */
+	private static int readPort()
+	{
+		try
+		{
+			Properties properties = new Properties();
+			InputStream in = new FileInputStream(PROPERTIES_FILE_NAME);
+			try
+			{
+				properties.load(in);
+			}
+			finally
+			{
+				in.close();
+			}
+			String value = properties.getProperty("daemonport");
+			if (value != null)
+			{
+				return Integer.parseInt(value.trim());
+			}
+		}
+		catch (Exception e)
+		{
+			// no properties file or no port, the default port is used
+		}
+		return PrestDaemon.DEFAULT_PORT;
+	}
+}
@@ -1,6 +1,7 @@
 package console;
 
 import java.io.File;
+import java.io.IOException;
 
 import org.apache.log4j.Logger;
 
@@ -48,12 +49,41 @@ public class PrestConsoleApp {
 			logger.error("check your application.properties file no repository location selected");
 		}
 
-		if (fromCommandLine) {
+		if (fromCommandLine && cmdArguments[0].equalsIgnoreCase("-daemon")) {
+			startDaemon(cmdArguments);
+		}
+		else if (fromCommandLine) {
 			CommandLineExplorer cmdLineExplorer = new CommandLineExplorer();
 			cmdLineExplorer.startExecFromCmdLine(cmdArguments);
 		}
 	}
 
+	/**
+	 * Runs the commands sent by PrestClient until the daemon is shut down
+	 * 
+	 * @param args -daemon [port [workers]]
+	 */
+	public static void startDaemon(String[] args) {
+
+		int port = PrestDaemon.getDefaultPort();
+		int workers = PrestDaemon.getDefaultWorkers();
+		try {
+			if (args.length > 1)
+				port = Integer.parseInt(args[1]);
+			if (args.length > 2)
+				workers = Integer.parseInt(args[2]);
+		} catch (NumberFormatException e) {
+			logger.error("Port and worker count of the daemon must be numbers.");
+			return;
+		}
+
+		try {
+			new PrestDaemon(port, workers).run();
+		} catch (IOException e) {
+			logger.error("PREST daemon could not listen on port " + port + ": " + e.getMessage());
+		}
+	}
+
 
 
 	public static void changeWorkStyle(String[] args) {
@@ -0,0 +1,603 @@
+package console;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Layout;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+import org.apache.log4j.spi.LoggingEvent;
+
+import common.ApplicationProperties;
+import common.RunReport;
+
+/**
+ * Keeps PREST running and runs the commands sent by PrestClient, so that the commands do
+ * not pay the start of a virtual machine, the loading of the parsers and of Weka and the
+ * compilation of their code again.
+ *
+ * <p>The daemon listens on a port of the local host. A client sends its working directory
+ * and the arguments of one command line per connection, in the syntax of the console. The
+ * relative paths of the command are resolved against the working directory of the client,
+ * see CommandLineExplorer.resolvePaths. The commands are queued and run by a fixed number
+ * of workers. The output of a command to System.out and System.err and its log messages,
+ * including those of the threads it starts, are sent back to its client, followed by its
+ * exit code:
+ * <ul>
+ * <li>0 if the command ran without logging an error,</li>
+ * <li>1 if it logged errors,</li>
+ * <li>2 if it failed with an exception,</li>
+ * <li>5 if the client did not send the token of the daemon.</li>
+ * </ul>
+ * The command -shutdown stops accepting commands, the daemon stops after the queued
+ * commands have run.
+ *
+ * <p>The socket accepts connections of any process of the local host, so a client has to
+ * send a token before its command. The token and the command are read when the connection
+ * is accepted, within COMMAND_TIMEOUT, so a connection that sends nothing does not take a
+ * worker. The daemon writes a new random token at startup to .prest/daemon_&lt;port&gt;.token
+ * in the home directory of the user, see PrestClient.getTokenFile, and restricts the file
+ * and its directory to their owner. A command is only as protected as that file: any
+ * process of the user who started the daemon can read the token and run commands with the
+ * rights of the daemon, and where the file system does not restrict files to their owner,
+ * other users can too.
+ *
+ * <p>The port and the number of workers are the "daemonport" and "daemonworkers"
+ * application properties unless they are given to -daemon.
+ */
+public class PrestDaemon
+{
+	public static final int DEFAULT_PORT = 7390;
+
+	public static final String SHUTDOWN_COMMAND = "-shutdown";
+
+	/**
+	 * frame of the output of a command: an int length and the bytes
+	 */
+	static final int OUTPUT_FRAME = 1;
+
+	/**
+	 * frame of the end of a command: an int exit code
+	 */
+	static final int EXIT_FRAME = 2;
+
+	public static final int EXIT_OK = 0;
+
+	public static final int EXIT_ERRORS = 1;
+
+	public static final int EXIT_FAILED = 2;
+
+	public static final int EXIT_UNAUTHORIZED = 5;
+
+	/**
+	 * milliseconds a client has to send its token and its command
+	 */
+	static final int COMMAND_TIMEOUT = 5000;
+
+	static Logger logger = Logger.getLogger(PrestConsoleApp.class.getName());
+
+	/**
+	 * the command run by a thread, inherited by the threads the command starts
+	 */
+	private static InheritableThreadLocal<Job> currentJob = new InheritableThreadLocal<Job>();
+
+	private int port;
+
+	private int numWorkers;
+
+	private ServerSocket serverSocket;
+
+	/**
+	 * token a client sends before its command
+	 */
+	private String token;
+
+	private ExecutorService workers;
+
+	private volatile boolean shuttingDown = false;
+
+	public PrestDaemon(int port, int numWorkers)
+	{
+		this.port = port;
+		this.numWorkers = Math.max(1, numWorkers);
+	}
+
+	/**
+	 * @return the "daemonport" application property, the default port if it is not set
+	 */
+	public static int getDefaultPort()
+	{
+		return getIntProperty("daemonport", DEFAULT_PORT);
+	}
+
+	/**
+	 * @return the "daemonworkers" application property, the number of processors if it is
+	 *         not set
+	 */
+	public static int getDefaultWorkers()
+	{
+		return getIntProperty("daemonworkers", Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Accepts and runs commands until the daemon is shut down
+	 *
+	 * @throws IOException if the port cannot be listened on
+	 */
+	public void run() throws IOException
+	{
+		serverSocket = new ServerSocket(port, 50, InetAddress.getByName("127.0.0.1"));
+		// the token of a daemon running on the port is not replaced, as the port
+		// is only listened on by one daemon
+		File tokenFile = PrestClient.getTokenFile(port);
+		try
+		{
+			token = writeToken(tokenFile);
+		}
+		catch (IOException e)
+		{
+			serverSocket.close();
+			throw e;
+		}
+		workers = Executors.newFixedThreadPool(numWorkers);
+
+		// the output and the log messages of the commands are sent to their clients
+		System.setOut(new PrintStream(new JobOutputStream(System.out), true));
+		System.setErr(new PrintStream(new JobOutputStream(System.err), true));
+		Logger.getRootLogger().addAppender(new JobAppender());
+
+		logger.info("PREST daemon listening on port " + port + " with " + numWorkers + " workers");
+
+		try
+		{
+			while (!shuttingDown)
+			{
+				final Socket socket;
+				try
+				{
+					socket = serverSocket.accept();
+				}
+				catch (SocketException e)
+				{
+					// the socket is closed by the shutdown
+					break;
+				}
+
+				final Job job = acceptJob(socket);
+				if (job != null)
+				{
+					workers.execute(new Runnable() {
+						public void run()
+						{
+							runJob(job);
+						}
+					});
+				}
+			}
+		}
+		finally
+		{
+			workers.shutdown();
+			try
+			{
+				while (!workers.awaitTermination(1, TimeUnit.MINUTES))
+				{
+					logger.info("Waiting for the running commands");
+				}
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			tokenFile.delete();
+			logger.info("PREST daemon stopped");
+		}
+	}
+
+	/**
+	 * Writes a new random token to the file, which is restricted to its owner before
+	 * the token is written
+	 *
+	 * @return the token
+	 * @throws IOException if the file cannot be written
+	 */
+	private static String writeToken(File tokenFile) throws IOException
+	{
+		byte[] bytes = new byte[32];
+		new SecureRandom().nextBytes(bytes);
+		StringBuffer token = new StringBuffer();
+		for (int i = 0; i < bytes.length; i++)
+		{
+			token.append(String.format("%02x", new Object[] { Integer.valueOf(bytes[i] & 0xff) }));
+		}
+
+		File directory = tokenFile.getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs())
+		{
+			throw new IOException("Cannot create " + directory.getPath());
+		}
+		restrictToOwner(directory);
+
+		tokenFile.delete();
+		if (!tokenFile.createNewFile())
+		{
+			throw new IOException("Cannot create " + tokenFile.getPath());
+		}
+		restrictToOwner(tokenFile);
+
+		Writer writer = new OutputStreamWriter(new FileOutputStream(tokenFile), "US-ASCII");
+		try
+		{
+			writer.write(token.toString());
+		}
+		finally
+		{
+			writer.close();
+		}
+		tokenFile.deleteOnExit();
+		return token.toString();
+	}
+
+	/**
+	 * Takes the permissions of the file away from everyone but its owner. A file system
+	 * without permissions of the owner is logged.
+	 */
+	private static void restrictToOwner(File file)
+	{
+		// the first call of each pair clears the permission of everyone, the second
+		// gives it back to the owner
+		boolean restricted = file.setReadable(false, false) && file.setReadable(true, true)
+				&& file.setWritable(false, false) && file.setWritable(true, true)
+				&& file.setExecutable(false, false) && (!file.isDirectory() || file.setExecutable(true, true));
+		if (!restricted)
+		{
+			logger.warn(file.getPath() + " could not be restricted to its owner");
+		}
+	}
+
+	/**
+	 * Stops accepting commands, the commands already accepted are still run
+	 */
+	public void shutdown()
+	{
+		shuttingDown = true;
+		try
+		{
+			serverSocket.close();
+		}
+		catch (IOException e)
+		{
+			logger.warn("Daemon socket could not be closed: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Reads the token and the command of a connection in the accepting thread. A client
+	 * that sends another token is answered and its connection is closed, as is a
+	 * connection that does not send its command within COMMAND_TIMEOUT. The command
+	 * -shutdown is run here, so that no command is accepted after it.
+	 *
+	 * @return the job of the command to run, null if there is none
+	 */
+	private Job acceptJob(Socket socket)
+	{
+		try
+		{
+			socket.setSoTimeout(COMMAND_TIMEOUT);
+			Job job = new Job(socket);
+			if (!job.readCommand(token))
+			{
+				logger.warn("A client did not send the token of the daemon");
+				job.write("The token of the PREST daemon is wrong, the command was not run\n");
+				job.exit(EXIT_UNAUTHORIZED);
+				close(socket);
+				return null;
+			}
+
+			String[] args = job.getArgs();
+			if (args.length > 0 && args[0].equalsIgnoreCase(SHUTDOWN_COMMAND))
+			{
+				job.write("PREST daemon is shutting down after the queued commands\n");
+				job.exit(EXIT_OK);
+				close(socket);
+				shutdown();
+				return null;
+			}
+
+			// the command may run for long without reading from its client
+			socket.setSoTimeout(0);
+			return job;
+		}
+		catch (IOException e)
+		{
+			logger.warn("Connection to a client failed: " + e.getMessage());
+			close(socket);
+			return null;
+		}
+	}
+
+	/**
+	 * Runs a command and sends its exit code
+	 */
+	private void runJob(Job job)
+	{
+		try
+		{
+			job.exit(execute(job, job.getArgs()));
+		}
+		catch (IOException e)
+		{
+			logger.warn("Connection to a client failed: " + e.getMessage());
+		}
+		finally
+		{
+			close(job.getSocket());
+		}
+	}
+
+	private static void close(Socket socket)
+	{
+		try
+		{
+			socket.close();
+		}
+		catch (IOException e)
+		{
+		}
+	}
+
+	/**
+	 * Runs a command in the current thread with its output sent to the job
+	 *
+	 * @return the exit code of the command
+	 */
+	private int execute(Job job, String[] args)
+	{
+		currentJob.set(job);
+		try
+		{
+			if (args.length == 0 || args[0].equalsIgnoreCase("-daemon"))
+			{
+				new CommandLineExplorer().listCommandLineOptions();
+				return EXIT_FAILED;
+			}
+
+			new CommandLineExplorer().startExecFromCmdLine(args);
+			return job.getErrorCount() > 0 ? EXIT_ERRORS : EXIT_OK;
+		}
+		catch (Throwable t)
+		{
+			logger.error("Command failed: " + t, t);
+			return EXIT_FAILED;
+		}
+		finally
+		{
+			// a report left running by a failed command is not kept by the worker
+			RunReport.finish();
+			currentJob.remove();
+		}
+	}
+
+	private static int getIntProperty(String key, int defaultValue)
+	{
+		try
+		{
+			String value = ApplicationProperties.get(key, null, false);
+			if (value != null)
+			{
+				return Integer.parseInt(value.trim());
+			}
+		}
+		catch (RuntimeException e)
+		{
+			// not a number, the default is used
+		}
+		return defaultValue;
+	}
+
+	/**
+	 * A command and the connection to its client
+	 */
+	private static class Job
+	{
+		private Socket socket;
+
+		private DataInputStream in;
+
+		private DataOutputStream out;
+
+		private String[] args;
+
+		private int errorCount = 0;
+
+		/**
+		 * false when the client is gone, the output is discarded then
+		 */
+		private boolean connected = true;
+
+		Job(Socket socket) throws IOException
+		{
+			this.socket = socket;
+			in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		}
+
+		/**
+		 * Reads the command, with its relative paths resolved against the working
+		 * directory of the client
+		 *
+		 * @param token the token of the daemon, which the client sends first
+		 * @return false if the client sent another token
+		 * @throws IOException
+		 */
+		boolean readCommand(String token) throws IOException
+		{
+			// compared in a time independent of where the tokens differ
+			if (!MessageDigest.isEqual(token.getBytes("US-ASCII"), in.readUTF().getBytes("US-ASCII")))
+			{
+				return false;
+			}
+
+			File directory = new File(in.readUTF());
+			String[] command = new String[in.readInt()];
+			for (int i = 0; i < command.length; i++)
+			{
+				command[i] = in.readUTF();
+			}
+			args = CommandLineExplorer.resolvePaths(command, directory);
+			return true;
+		}
+
+		String[] getArgs()
+		{
+			return args;
+		}
+
+		Socket getSocket()
+		{
+			return socket;
+		}
+
+		synchronized void write(byte[] bytes, int offset, int length)
+		{
+			if (!connected || length == 0)
+			{
+				return;
+			}
+			try
+			{
+				out.writeByte(OUTPUT_FRAME);
+				out.writeInt(length);
+				out.write(bytes, offset, length);
+				out.flush();
+			}
+			catch (IOException e)
+			{
+				connected = false;
+			}
+		}
+
+		void write(String text)
+		{
+			byte[] bytes = text.getBytes();
+			write(bytes, 0, bytes.length);
+		}
+
+		synchronized void error()
+		{
+			errorCount++;
+		}
+
+		synchronized int getErrorCount()
+		{
+			return errorCount;
+		}
+
+		synchronized void exit(int exitCode) throws IOException
+		{
+			if (!connected)
+			{
+				return;
+			}
+			out.writeByte(EXIT_FRAME);
+			out.writeInt(exitCode);
+			out.flush();
+		}
+	}
+
+	/**
+	 * Writes to the client of the command of the thread, to the original stream if the
+	 * thread does not run a command
+	 */
+	private static class JobOutputStream extends OutputStream
+	{
+		private OutputStream original;
+
+		JobOutputStream(OutputStream original)
+		{
+			this.original = original;
+		}
+
+		public void write(int b) throws IOException
+		{
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			Job job = currentJob.get();
+			if (job != null)
+			{
+				job.write(b, off, len);
+			}
+			else
+			{
+				original.write(b, off, len);
+			}
+		}
+
+		public void flush() throws IOException
+		{
+			original.flush();
+		}
+	}
+
+	/**
+	 * Sends the log messages of a command to its client and counts its errors
+	 */
+	private static class JobAppender extends AppenderSkeleton
+	{
+		private Layout messageLayout = new PatternLayout("%-5p %m%n");
+
+		protected void append(LoggingEvent event)
+		{
+			Job job = currentJob.get();
+			if (job == null)
+			{
+				return;
+			}
+
+			if (event.getLevel().isGreaterOrEqual(Level.ERROR))
+			{
+				job.error();
+			}
+
+			StringBuffer message = new StringBuffer(messageLayout.format(event));
+			String[] stackTrace = event.getThrowableStrRep();
+			for (int i = 0; stackTrace != null && i < stackTrace.length; i++)
+			{
+				message.append(stackTrace[i]).append('\n');
+			}
+			job.write(message.toString());
+		}
+
+		public boolean requiresLayout()
+		{
+			return false;
+		}
+
+		public void close()
+		{
+		}
+	}
+}
@@ -1,22 +1,30 @@
 package executor;
 
 import java.io.File;
+import java.io.IOException;
 import java.text.DateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import parser.C.CParser;
 import parser.Cpp.cppParser.CPPParserExecutor;
 import parser.Java.JavaParserRelatedFiles.JavaParser;
 import parser.PLSql.PLSqlParserRelatedFiles.PLSqlParserExecuter;
 import parser.enumeration.Language;
+import parser.parserinterface.IDataSetParser;
 import parser.parserinterface.IParser;
+import parser.parserinterface.IStreamingParser;
 import parser.parserinterface.ParserInterfaceAndFileList;
 
 import common.ApplicationProperties;
 import common.DirectoryListing;
+import common.MetricHistory;
+import common.ParseDataSets;
 import common.ParseResult;
+import common.RunReport;
 import common.data.DataContext;
 import org.apache.log4j.Logger;
 
@@ -25,50 +33,115 @@ import console.PrestConsoleApp;
 public class ParserExecutor
 {
 
-	private static List<ParseResult> parserResultList = new ArrayList<ParseResult>();
 	private static Language currentLanguage;
 	public static final int PARSING_SUCCESSFUL = 0;
 	public static final int PARSING_CANCELLED = 1;
 	static Logger logger = Logger.getLogger(PrestConsoleApp.class.getName());
+	private static Map<String, Object> projectLocks = new HashMap<String, Object>();
+
+	/**
+	 * same as the parseDirectory function, but altered for the command line
+	 * execution
+	 * 
+	 * @return the results of the parsers which keep their metrics, each call
+	 *         has its own list; null if the parse was cancelled
+	 */
+	public static List<ParseResult> parseDirectoryCmd(File projectDirectory, String fileCsvPath, String methodCsvPath,
+			String classCsvPath, String freezeName) throws Exception
+	{
+		// the parses of a project write to the same history and result files,
+		// the commands of the daemon parse a project one at a time
+		synchronized (getProjectLock(getProjectName(projectDirectory, freezeName)))
+		{
+			return parseProjectDirectory(projectDirectory, fileCsvPath, methodCsvPath, classCsvPath, freezeName);
+		}
+	}
+
+	/**
+	 * @return the name of the project in the repository, which is the freeze
+	 *         name if one is given and the name of the directory otherwise
+	 */
+	private static String getProjectName(File projectDirectory, String freezeName)
+	{
+		return freezeName.equals("") ? projectDirectory.getName() : freezeName;
+	}
+
+	private static Object getProjectLock(String projectName)
+	{
+		synchronized (projectLocks)
+		{
+			Object lock = projectLocks.get(projectName);
+			if (lock == null)
+			{
+				lock = new Object();
+				projectLocks.put(projectName, lock);
+			}
+			return lock;
+		}
+	}
 
-	// same as the parseDirectory function, but altered for the command line
-	// execution
-	public static int parseDirectoryCmd(File projectDirectory, String fileCsvPath, String methodCsvPath, String classCsvPath, String freezeName)
-			throws Exception
+	private static List<ParseResult> parseProjectDirectory(File projectDirectory, String fileCsvPath, String methodCsvPath, String classCsvPath,
+			String freezeName) throws Exception
 	{
 
 		List<ParserInterfaceAndFileList> parserList = new ArrayList<ParserInterfaceAndFileList>();
 
+		RunReport.start("parse " + projectDirectory.getPath());
+		RunReport.Timer discovery = RunReport.time(RunReport.Stage.DISCOVERY);
 		parserList = findAppropriateParsers(projectDirectory);
+		long discoveredFiles = 0;
+		long discoveredBytes = 0;
+		for (int i = 0; parserList != null && i < parserList.size(); i++)
+		{
+			discoveredFiles += parserList.get(i).getFileList().size();
+			discoveredBytes += RunReport.totalLength(getFileNames(parserList.get(i).getFileList()));
+		}
+		discovery.stop(discoveredFiles, discoveredBytes, 0);
 		
 		//if freeze parameter provided project name set to freeze name
-		String projDir = "";
-		if(freezeName.equals(""))
-			projDir = projectDirectory.getName();
-		else
-			projDir = freezeName;
-		
+		String projDir = getProjectName(projectDirectory, freezeName);
+
+		// the result files of the successful parses, recorded in the history
+		// once all of the parsers are done
+		List<String[]> parsedResultFiles = new ArrayList<String[]>();
+
 		if (parserList == null)
 		{
-			return PARSING_CANCELLED;
+			RunReport.finish();
+			return null;
 		}
 		else
 		{
-			parserResultList.clear();
-			parserResultList = new ArrayList<ParseResult>();
+			List<ParseResult> parserResultList = new ArrayList<ParseResult>();
 			for (ParserInterfaceAndFileList parserAndFiles : parserList)
 			{
-				DataContext thisOne = parseProject(parserAndFiles.getParser(), parserAndFiles.getFileList(), projDir, fileCsvPath, methodCsvPath, classCsvPath);
+				// the metrics of a streaming parser are only written to the
+				// result files, they are not kept in the result list
+				if (parserAndFiles.getParser() instanceof IStreamingParser)
+				{
+					parseProjectPipeline((IStreamingParser) parserAndFiles.getParser(), parserAndFiles.getFileList(), projDir,
+							fileCsvPath, methodCsvPath, classCsvPath, parsedResultFiles);
+					continue;
+				}
+				ParseResult thisOne = parseProjectResult(parserAndFiles.getParser(), parserAndFiles.getFileList(), projDir, fileCsvPath,
+						methodCsvPath, classCsvPath, parsedResultFiles);
 				if (thisOne == null)
 				{
 
 				}
 				else
 				{
-					parserResultList.add(new ParseResult(parserAndFiles.getParser().getLanguage(), thisOne));
+					parserResultList.add(thisOne);
 				}
 			}
-			return PARSING_SUCCESSFUL;
+			// the metrics of every run are added to the history of the project,
+			// which is kept next to its parse results; a run without freeze is
+			// recorded under its time
+			recordHistory(projDir, freezeName.equals("") ? getRunTime() : freezeName, parsedResultFiles);
+			// the run report is written next to the parse results
+			RunReport.finish(new File(ApplicationProperties.get("repositorylocation") + File.separator + projDir
+					+ File.separator + "parse_results"));
+			return parserResultList;
 		}
 	}
 
@@ -136,95 +209,275 @@ public class ParserExecutor
 	public static DataContext parseProject(IParser aParser, List<File> fileList, String projectName, String fileCsvPath,
 			String methodCsvPath, String classCsvPath) throws Exception
 	{
+		return parseProject(aParser, fileList, projectName, fileCsvPath, methodCsvPath, classCsvPath, null);
+	}
+
+	/**
+	 * Parses the files and adds the names of the result files to
+	 * parsedResultFiles if the parse succeeded
+	 * 
+	 * @param parsedResultFiles
+	 *            null if the result files are not needed
+	 */
+	public static DataContext parseProject(IParser aParser, List<File> fileList, String projectName, String fileCsvPath,
+			String methodCsvPath, String classCsvPath, List<String[]> parsedResultFiles) throws Exception
+	{
 
 		if (aParser != null && fileList != null)
 		{
-			String[] fileNames = new String[fileList.size()];
-			for (int index = 0; index < fileList.size(); index++)
-			{
-				fileNames[index] = fileList.get(index).getAbsolutePath();
-			}
+			String[] fileNames = getFileNames(fileList);
 
 			DataContext metrics = null;
 			try
 			{
-				Date now = new Date();
-				DateFormat df = DateFormat.getDateTimeInstance();
-				String nowStr = df.format(now);
-				nowStr = nowStr.replaceAll(" ", "-");
-				nowStr = nowStr.replaceAll(":", ".");
-
-				String xmlFileName = ApplicationProperties.get("repositorylocation") + File.separator + projectName
-						+ File.separator + "parse_results" + File.separator + "parseResult" + "_"
-						+ aParser.getLanguage().getLangName() + "_" + nowStr + ".xml";
-
-				String packageCsvFileName = ApplicationProperties.get("repositorylocation") + File.separator + projectName
-						+ File.separator + "parse_results" + File.separator + "parseResult" + "_"
-						+ aParser.getLanguage().getLangName() + "_" + nowStr + "PACKAGE.csv";
-
-				String methodCsvFileName = "";
-				if (methodCsvPath.equals(""))
-				{
-					methodCsvFileName = ApplicationProperties.get("repositorylocation") + File.separator + projectName
-							+ File.separator + "parse_results" + File.separator + "parseResult" + "_"
-							+ aParser.getLanguage().getLangName() + "_" + nowStr + "METHOD.csv";
-				}
-				else
-				{
-					methodCsvFileName = methodCsvPath;
-				}
+				String[] resultFileNames = getResultFileNames(aParser, projectName, fileCsvPath, methodCsvPath, classCsvPath);
 
-				String fileCsvFileName = "";
+				metrics = aParser.startExecution(fileNames, projectName, resultFileNames[0], resultFileNames[1], resultFileNames[2],
+						resultFileNames[3], resultFileNames[4]);
 
-				if (fileCsvPath.equals(""))
-				{
-					fileCsvFileName = ApplicationProperties.get("repositorylocation") + File.separator + projectName
-							+ File.separator + "parse_results" + File.separator + "parseResult" + "_"
-							+ aParser.getLanguage().getLangName() + "_" + nowStr + "FILE.csv";
-				}
-				else
+				if (metrics != null && parsedResultFiles != null)
 				{
-					fileCsvFileName = fileCsvPath;
+					parsedResultFiles.add(resultFileNames);
 				}
+			}
+			catch (Exception e)
+			{
+				logger.error("Error while writing to files.");
+			}
 
-				String classCsvFileName = "";
+			return metrics;
 
-				if (classCsvPath.equals(""))
-				{
-					classCsvFileName = ApplicationProperties.get("repositorylocation") + File.separator + projectName
-							+ File.separator + "parse_results" + File.separator + "parseResult" + "_"
-							+ aParser.getLanguage().getLangName() + "_" + nowStr + "CLASS.csv";
-				}
-				else
+		}
+		else
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Parses the files like parseProject, but a parser which can create the
+	 * DataSets itself creates them directly from its containers, without
+	 * collecting the metrics into a DataContext first.
+	 * 
+	 * @return the result of the parse, null if the parse failed
+	 */
+	public static ParseResult parseProjectResult(IParser aParser, List<File> fileList, String projectName, String fileCsvPath,
+			String methodCsvPath, String classCsvPath) throws Exception
+	{
+		return parseProjectResult(aParser, fileList, projectName, fileCsvPath, methodCsvPath, classCsvPath, null);
+	}
+
+	/**
+	 * Parses the files like parseProjectResult and adds the names of the
+	 * result files to parsedResultFiles like parseProject
+	 */
+	public static ParseResult parseProjectResult(IParser aParser, List<File> fileList, String projectName, String fileCsvPath,
+			String methodCsvPath, String classCsvPath, List<String[]> parsedResultFiles) throws Exception
+	{
+		if (!(aParser instanceof IDataSetParser))
+		{
+			DataContext metrics = parseProject(aParser, fileList, projectName, fileCsvPath, methodCsvPath, classCsvPath,
+					parsedResultFiles);
+			if (metrics == null)
+			{
+				return null;
+			}
+			return new ParseResult(aParser.getLanguage(), metrics);
+		}
+
+		if (fileList != null)
+		{
+			String[] fileNames = getFileNames(fileList);
+
+			ParseDataSets dataSets = null;
+			try
+			{
+				String[] resultFileNames = getResultFileNames(aParser, projectName, fileCsvPath, methodCsvPath, classCsvPath);
+
+				dataSets = ((IDataSetParser) aParser).startExecutionToDataSets(fileNames, projectName, resultFileNames[0],
+						resultFileNames[1], resultFileNames[2], resultFileNames[3], resultFileNames[4]);
+
+				if (dataSets != null && parsedResultFiles != null)
 				{
-					classCsvFileName = classCsvPath;
+					parsedResultFiles.add(resultFileNames);
 				}
-
-				metrics = aParser.startExecution(fileNames, projectName, xmlFileName, packageCsvFileName, fileCsvFileName,
-						classCsvFileName, methodCsvFileName);
 			}
 			catch (Exception e)
 			{
 				logger.error("Error while writing to files.");
 			}
 
-			return metrics;
+			if (dataSets != null)
+			{
+				return new ParseResult(aParser.getLanguage(), dataSets);
+			}
+		}
+		return null;
+	}
 
+	/**
+	 * Parses the files with a streaming parser, which writes the metrics to the
+	 * result files as the files are parsed, and adds the names of the result
+	 * files to parsedResultFiles like parseProject
+	 * 
+	 * @return true if the parse succeeded
+	 */
+	public static boolean parseProjectPipeline(IStreamingParser aParser, List<File> fileList, String projectName,
+			String fileCsvPath, String methodCsvPath, String classCsvPath, List<String[]> parsedResultFiles)
+	{
+		if (fileList == null)
+		{
+			return false;
 		}
-		else
+
+		try
 		{
-			return null;
+			String[] resultFileNames = getResultFileNames(aParser, projectName, fileCsvPath, methodCsvPath, classCsvPath);
+
+			aParser.startPipeline(getFileNames(fileList), projectName, resultFileNames[0], resultFileNames[1],
+					resultFileNames[2], resultFileNames[3], resultFileNames[4]);
+
+			if (parsedResultFiles != null)
+			{
+				parsedResultFiles.add(resultFileNames);
+			}
+			return true;
+		}
+		catch (Exception e)
+		{
+			logger.error("Error while writing to files.");
+			return false;
+		}
+	}
+
+	/**
+	 * Records the package, file, class and method csv files of the successful
+	 * parses in the history of the project as the metrics of the freeze. The
+	 * history is only opened if a parse succeeded. A failure is logged, the
+	 * parse itself is not affected.
+	 */
+	private static void recordHistory(String projectName, String freeze, List<String[]> parsedResultFiles)
+	{
+		if (parsedResultFiles.isEmpty())
+		{
+			return;
+		}
+
+		List<File> csvFiles = new ArrayList<File>();
+		for (String[] resultFileNames : parsedResultFiles)
+		{
+			for (int i = 1; i < resultFileNames.length; i++)
+			{
+				csvFiles.add(new File(resultFileNames[i]));
+			}
+		}
+
+		try
+		{
+			MetricHistory history = MetricHistory.openProject(projectName);
+			try
+			{
+				history.record(freeze, csvFiles.toArray(new File[csvFiles.size()]));
+			}
+			finally
+			{
+				history.close();
+			}
+		}
+		catch (IOException e)
+		{
+			logger.error("Metrics could not be added to the history: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @return the time of the run as it is written in the names of the result
+	 *         files
+	 */
+	private static String getRunTime()
+	{
+		Date now = new Date();
+		DateFormat df = DateFormat.getDateTimeInstance();
+		String nowStr = df.format(now);
+		nowStr = nowStr.replaceAll(" ", "-");
+		nowStr = nowStr.replaceAll(":", ".");
+		return nowStr;
+	}
+
+	private static String[] getFileNames(List<File> fileList)
+	{
+		String[] fileNames = new String[fileList.size()];
+		for (int index = 0; index < fileList.size(); index++)
+		{
+			fileNames[index] = fileList.get(index).getAbsolutePath();
 		}
+		return fileNames;
 	}
 
-	public static void fillWithOldResults(List<String> oldParseResultFiles, List<Language> langList)
+	/**
+	 * @return the names of the xml file and of the package, file, class and
+	 *         method csv files the parser writes its results to
+	 */
+	private static String[] getResultFileNames(IParser aParser, String projectName, String fileCsvPath, String methodCsvPath,
+			String classCsvPath)
 	{
-		for (int l = 0; l < parserResultList.size(); l++)
+		String nowStr = getRunTime();
+
+		String xmlFileName = ApplicationProperties.get("repositorylocation") + File.separator + projectName
+				+ File.separator + "parse_results" + File.separator + "parseResult" + "_"
+				+ aParser.getLanguage().getLangName() + "_" + nowStr + ".xml";
+
+		String packageCsvFileName = ApplicationProperties.get("repositorylocation") + File.separator + projectName
+				+ File.separator + "parse_results" + File.separator + "parseResult" + "_"
+				+ aParser.getLanguage().getLangName() + "_" + nowStr + "PACKAGE.csv";
+
+		String methodCsvFileName = "";
+		if (methodCsvPath.equals(""))
+		{
+			methodCsvFileName = ApplicationProperties.get("repositorylocation") + File.separator + projectName
+					+ File.separator + "parse_results" + File.separator + "parseResult" + "_"
+					+ aParser.getLanguage().getLangName() + "_" + nowStr + "METHOD.csv";
+		}
+		else
+		{
+			methodCsvFileName = methodCsvPath;
+		}
+
+		String fileCsvFileName = "";
+
+		if (fileCsvPath.equals(""))
+		{
+			fileCsvFileName = ApplicationProperties.get("repositorylocation") + File.separator + projectName
+					+ File.separator + "parse_results" + File.separator + "parseResult" + "_"
+					+ aParser.getLanguage().getLangName() + "_" + nowStr + "FILE.csv";
+		}
+		else
+		{
+			fileCsvFileName = fileCsvPath;
+		}
+
+		String classCsvFileName = "";
+
+		if (classCsvPath.equals(""))
 		{
-			parserResultList.set(l, null);
+			classCsvFileName = ApplicationProperties.get("repositorylocation") + File.separator + projectName
+					+ File.separator + "parse_results" + File.separator + "parseResult" + "_"
+					+ aParser.getLanguage().getLangName() + "_" + nowStr + "CLASS.csv";
 		}
-		parserResultList.clear();
-		parserResultList = new ArrayList<ParseResult>();
+		else
+		{
+			classCsvFileName = classCsvPath;
+		}
+
+		return new String[] { xmlFileName, packageCsvFileName, fileCsvFileName, classCsvFileName, methodCsvFileName };
+	}
+
+	/**
+	 * @return the results read from the xml files of earlier parses
+	 */
+	public static List<ParseResult> readOldResults(List<String> oldParseResultFiles, List<Language> langList)
+	{
+		List<ParseResult> parserResultList = new ArrayList<ParseResult>();
 		for (int i = 0; i < oldParseResultFiles.size(); i++)
 		{
 			DataContext metrics = null;
@@ -245,18 +498,9 @@ public class ParserExecutor
 				}
 			}
 		}
-	}
-
-	public static List<ParseResult> getParserResultList()
-	{
 		return parserResultList;
 	}
 
-	public static void setParserResultList(List<ParseResult> parserResultList)
-	{
-		ParserExecutor.parserResultList = parserResultList;
-	}
-
 	public static Language getCurrentLanguage()
 	{
 		return currentLanguage;
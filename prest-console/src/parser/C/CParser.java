@@ -1,10 +1,22 @@
 package parser.C;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
 
 import parser.C.constants.CConstants;
 import parser.C.fileops.ConvertToDataContext;
@@ -12,12 +24,15 @@ import parser.C.fileops.Module;
 import parser.C.fileops.Parser;
 import parser.C.fileops.SourceFile;
 import parser.enumeration.Language;
-import parser.parserinterface.IParser;
+import parser.parserinterface.IStreamingParser;
 
 import common.ApplicationProperties;
+import common.ParsePipeline;
+import common.RecordSpool;
+import common.RunReport;
 import common.data.DataContext;
 
-public class CParser implements IParser {
+public class CParser implements IStreamingParser {
 
 	Language language = Language.C;
 	String workspace = "default_C_workspace";
@@ -87,6 +102,82 @@ public class CParser implements IParser {
 
 	}
 
+	/**
+	 * Parses the files like startExecution, but the files are parsed in a
+	 * ParsePipeline and only their records are kept until the results are
+	 * written. The records are kept in RecordSpools, which write them to
+	 * temporary run files when the memory budget of the parse is exceeded, and
+	 * the xml file and the function call matrix are written from the merged
+	 * records. The result files are the same as those of startExecution.
+	 */
+	public void startPipeline(String[] files, String projectName,
+			String xmlFileName, String packageCsvFileName,
+			String fileCsvFileName, String classCsvFileName,
+			String methodCsvFileName) throws Exception {
+		CALLGRAPHFILE = ApplicationProperties.get("repositorylocation") + File.separator + projectName + File.separator + "callGraph" + "_"
+				+ Language.C.getLangName() + ".csv";
+
+		// the nodes of the files with the same name are written together, at
+		// the position of the first of them, as they are by a DataContext
+		final long[] fileKeys = new long[files.length];
+		HashMap<Object, Integer> groups = new HashMap<Object, Integer>();
+		for (int i = 0; i < files.length; i++) {
+			Object name = DataContext.backReplaceProblemCharacters(new File(
+					files[i]).getName());
+			Integer group = groups.get(name);
+			if (group == null) {
+				group = Integer.valueOf(groups.size());
+				groups.put(name, group);
+			}
+			fileKeys[i] = ((long) group.intValue() << 32) | i;
+		}
+		groups = null;
+
+		long memoryBudget = ParsePipeline.getMemoryBudget();
+		final RecordSpool fileSpool = new RecordSpool(memoryBudget / 2);
+		final RecordSpool callSpool = new RecordSpool(memoryBudget / 2);
+		// the names are the rows and columns of the function call matrix
+		final List<String> functionNames = new ArrayList<String>();
+
+		try {
+			ParsePipeline<FileRecord> pipeline = new ParsePipeline<FileRecord>(
+					new ParsePipeline.FileParser<FileRecord>() {
+						public FileRecord parse(File file) throws Exception {
+							RunReport.Timer fileTimer = RunReport
+									.timeFile(RunReport.Stage.PARSING);
+							FileRecord record = new FileRecord(new Parser(file));
+							fileTimer.stopFile(file.getPath(), file.length());
+							return record;
+						}
+					});
+
+			final long[] tokens = new long[1];
+			RunReport.Timer parsing = RunReport.time(RunReport.Stage.PARSING);
+			pipeline.run(files, new ParsePipeline.RecordSink<FileRecord>() {
+				public void add(int index, FileRecord record)
+						throws IOException {
+					fileSpool.add(fileKeys[index], record.metrics);
+					callSpool.add(index, record.calls);
+					functionNames.addAll(Arrays.asList(record.functionNames));
+					tokens[0] += record.tokens;
+				}
+			});
+			parsing.stop(files.length, RunReport.totalLength(files), tokens[0]);
+
+			RunReport.Timer aggregation = RunReport
+					.time(RunReport.Stage.AGGREGATION);
+			writeFunctionCallMatrix(CALLGRAPHFILE, functionNames, callSpool);
+			aggregation.stop();
+
+			RunReport.Timer xmlWrite = RunReport.time(RunReport.Stage.XML_WRITE);
+			writeXml(xmlFileName, fileSpool);
+			xmlWrite.stop();
+		} finally {
+			fileSpool.close();
+			callSpool.close();
+		}
+	}
+
 	public Language getLanguage() {
 		return language;
 	}
@@ -157,4 +248,221 @@ public class CParser implements IParser {
 
 	}
 
+	/**
+	 * Writes the function call matrix like buildFunctionCallMatrix, one row at
+	 * a time
+	 * 
+	 * @param fileName
+	 * @param functionNames
+	 *            the names of the functions of all files
+	 * @param calls
+	 *            the records of the functions called by the functions of each
+	 *            file, in the order of the files
+	 */
+	private void writeFunctionCallMatrix(String fileName,
+			List<String> functionNames, RecordSpool calls) {
+		int dimension = functionNames.size();
+
+		// the columns of each name, a name may be the name of more functions
+		HashMap<String, List<Integer>> columns = new HashMap<String, List<Integer>>();
+		for (int j = 0; j < dimension; j++) {
+			List<Integer> nameColumns = columns.get(functionNames.get(j));
+			if (nameColumns == null) {
+				nameColumns = new ArrayList<Integer>(1);
+				columns.put(functionNames.get(j), nameColumns);
+			}
+			nameColumns.add(Integer.valueOf(j));
+		}
+
+		try {
+			Writer out = new BufferedWriter(new OutputStreamWriter(
+					new FileOutputStream(fileName)));
+			try {
+				StringBuffer line = new StringBuffer("*,");
+				for (int j = 0; j < dimension; j++) {
+					line.append(functionNames.get(j));
+					line.append(",");
+				}
+				line.append("\n");
+				out.write(line.toString());
+
+				char[] row = new char[dimension];
+				int i = 0;
+				RecordSpool.Cursor cursor = calls.cursor();
+				while (cursor.next()) {
+					DataInputStream in = new DataInputStream(
+							new ByteArrayInputStream(cursor.record()));
+					int numFunctions = in.readInt();
+					for (int m = 0; m < numFunctions; m++) {
+						Arrays.fill(row, '0');
+						int numCalled = in.readInt();
+						for (int c = 0; c < numCalled; c++) {
+							List<Integer> calledColumns = columns.get(in
+									.readUTF());
+							if (calledColumns != null) {
+								for (int k = 0; k < calledColumns.size(); k++) {
+									row[calledColumns.get(k).intValue()] = '1';
+								}
+							}
+						}
+
+						line.delete(0, line.length());
+						line.append(functionNames.get(i++));
+						line.append(",");
+						for (int j = 0; j < dimension; j++) {
+							line.append(row[j]);
+							line.append(",");
+						}
+						line.append("\n");
+						out.write(line.toString());
+					}
+				}
+			} finally {
+				out.close();
+			}
+		} catch (IOException ioe) {
+			System.out.println(ioe.getMessage());
+		}
+	}
+
+	/**
+	 * Writes the metrics of the files to the xml file as
+	 * DataContext.writeToFile writes the DataContext of startExecution, one
+	 * group of files with the same name at a time
+	 * 
+	 * @param xmlFileName
+	 * @param files
+	 *            the records of the metrics of the files
+	 * @throws IOException
+	 */
+	private void writeXml(String xmlFileName, RecordSpool files)
+			throws IOException {
+		Writer out = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(xmlFileName)));
+		try {
+			String fileOffset = DataContext.kOffset + DataContext.kOffset;
+
+			DataContext.writeXMLDeclaration(out);
+			DataContext.writeXMLStartTag(out, DataContext.kRootName, "");
+			DataContext.writeXMLStartTag(out, workspace, DataContext.kOffset);
+
+			DataContext group = null;
+			long groupNumber = -1;
+			RecordSpool.Cursor cursor = files.cursor();
+			while (cursor.next()) {
+				if (group != null && (cursor.key() >>> 32) != groupNumber) {
+					DataContext.writeXMLChildren(group, out, fileOffset);
+					group = null;
+				}
+				if (group == null) {
+					group = new DataContext();
+					groupNumber = cursor.key() >>> 32;
+				}
+
+				DataInputStream in = new DataInputStream(
+						new ByteArrayInputStream(cursor.record()));
+				String fileName = in.readUTF();
+				group.add(fileName, ConvertToDataContext
+						.createMetricsDataContext(fileName, readMetrics(in),
+								CConstants.FILE_METRICS_HEADER));
+
+				// the functions of a file are added to the node of the first
+				// file with its name, as in startExecution
+				DataContext fileDataContext = group.getNode(fileName);
+				int numFunctions = in.readInt();
+				for (int m = 0; m < numFunctions; m++) {
+					String functionName = in.readUTF();
+					fileDataContext.add(className + "/" + functionName,
+							ConvertToDataContext.createMetricsDataContext(
+									functionName, readMetrics(in),
+									CConstants.MODULE_METRICS_HEADER));
+				}
+			}
+			if (group != null) {
+				DataContext.writeXMLChildren(group, out, fileOffset);
+			}
+
+			DataContext.writeXMLEndTag(out, workspace, DataContext.kOffset);
+			DataContext.writeXMLEndTag(out, DataContext.kRootName, "");
+		} finally {
+			out.close();
+		}
+	}
+
+	private static String[] readMetrics(DataInputStream in) throws IOException {
+		String[] metrics = new String[in.readInt()];
+		for (int k = 0; k < metrics.length; k++) {
+			metrics[k] = in.readUTF();
+		}
+		return metrics;
+	}
+
+	private static void writeMetrics(DataOutputStream out, String[] metrics)
+			throws IOException {
+		out.writeInt(metrics.length);
+		for (int k = 0; k < metrics.length; k++) {
+			out.writeUTF(metrics[k]);
+		}
+	}
+
+	/**
+	 * The record of a parsed file: the metrics of the file and of its
+	 * functions, and the functions called by its functions
+	 */
+	private static class FileRecord {
+
+		byte[] metrics;
+
+		byte[] calls;
+
+		String[] functionNames;
+
+		/**
+		 * the operators and operands of the file
+		 */
+		long tokens;
+
+		FileRecord(Parser parser) throws IOException {
+			SourceFile sf = parser.getSourceFile();
+			tokens = sf.getHalsteadLength();
+			List<Module> functions = new ArrayList<Module>();
+			for (Module m : parser.getModules()) {
+				if (m.isHasBlock() && (m.getType() == Module.FUNCTION)
+						&& !(m.getName().equalsIgnoreCase(""))) {
+					functions.add(m);
+				}
+			}
+
+			ByteArrayOutputStream metricBytes = new ByteArrayOutputStream();
+			DataOutputStream metricOut = new DataOutputStream(metricBytes);
+			ByteArrayOutputStream callBytes = new ByteArrayOutputStream();
+			DataOutputStream callOut = new DataOutputStream(callBytes);
+			functionNames = new String[functions.size()];
+
+			metricOut.writeUTF(sf.getName());
+			writeMetrics(metricOut, sf.getAllMetrics());
+			metricOut.writeInt(functions.size());
+			callOut.writeInt(functions.size());
+
+			for (int k = 0; k < functions.size(); k++) {
+				Module m = functions.get(k);
+				functionNames[k] = m.getName();
+
+				metricOut.writeUTF(m.getName());
+				writeMetrics(metricOut, m.getAllMetrics());
+
+				LinkedHashSet<String> called = new LinkedHashSet<String>(m
+						.getCalledFunctions());
+				callOut.writeInt(called.size());
+				for (String name : called) {
+					callOut.writeUTF(name);
+				}
+			}
+
+			metricOut.close();
+			callOut.close();
+			metrics = metricBytes.toByteArray();
+			calls = callBytes.toByteArray();
+		}
+	}
 }
@@ -11,6 +11,19 @@ public class ConvertToDataContext {
 
 	public static DataContext createMetricsDataContext(Module m, boolean type)
 			throws IOException {
+		return createMetricsDataContext(m.getName(), m.getAllMetrics(), type);
+	}
+
+	/**
+	 * @param name
+	 *            the name of the file or module
+	 * @param metrics
+	 *            the metrics of the file or module, as returned by
+	 *            Module.getAllMetrics
+	 * @param type
+	 */
+	public static DataContext createMetricsDataContext(String name,
+			String[] metrics, boolean type) throws IOException {
 
 		String[] header;
 		String[] value;
@@ -19,20 +32,19 @@ public class ConvertToDataContext {
 			header = new String[CConstants.MAX_COLUMNS + 1];
 			header[0] = "name";
 			value = new String[CConstants.MAX_COLUMNS + 1];
-			value[0] = m.getName();
+			value[0] = name;
 			shift = 1;
 		} else {
 			header = new String[CConstants.MAX_COLUMNS + 2];
 			header[0] = "name";
 			value = new String[CConstants.MAX_COLUMNS + 2];
-			value[0] = m.getName();
+			value[0] = name;
 			shift = 1;
 		}
 		for (int i = 0; i < CConstants.COLUMN_NAMES.length; i++) {
 			header[shift + i] = CConstants.COLUMN_NAMES[i];
 		}
 
-		String[] metrics = m.getAllMetrics();
 		for (int i = 0; i < metrics.length; i++) {
 			value[shift + i] = metrics[i];
 		}
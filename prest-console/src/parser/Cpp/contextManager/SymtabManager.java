@@ -28,6 +28,18 @@ public class SymtabManager {
 		scopeStack[depth] = new Scope(null);
 	}
 
+	/**
+	 * Forgets the scopes and type names of the files parsed before, so that a
+	 * parse of a process that parses several projects starts as in a new one.
+	 */
+	public static void reset() {
+		scopeTable.clear();
+		for (int i = 0; i < scopeStack.length; i++)
+			scopeStack[i] = null;
+		depth = 0;
+		scopeStack[depth] = new Scope(null);
+	}
+
 	/**
 	 * Opens a new scope (with optional name and type flag).
 	 */
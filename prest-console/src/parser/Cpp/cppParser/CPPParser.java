@@ -26,6 +26,16 @@ public final class CPPParser implements CPPParserConstants {
 
 	public ClassContainer IdentifyModules(String fileNames[]) {
 
+		// the container holds the modules of this call only, and the scopes
+		// and the state of the parser are those of a new parser
+		col = new ClassContainer();
+		SymtabManager.reset();
+		isPublic = false;
+		lastQualifiedId = "";
+		classTrace = "";
+		curMethod = "";
+		methodMetric = null;
+
 		for (int i = 0; i < fileNames.length; i++) {
 			try {
 				ReInit(new FileInputStream(new File(fileNames[i])));
@@ -3,11 +3,13 @@ package parser.Cpp.cppParser;
 
 import parser.Java.MetricsRelatedFiles.ClassContainer;
 import parser.enumeration.Language;
-import parser.parserinterface.IParser;
+import parser.parserinterface.IDataSetParser;
 
+import common.ParseDataSets;
+import common.RunReport;
 import common.data.DataContext;
 
-public class CPPParserExecutor implements IParser {
+public class CPPParserExecutor implements IDataSetParser {
 
 	public CPPParserExecutor() {
 		super();
@@ -15,22 +17,54 @@ public class CPPParserExecutor implements IParser {
 
 	Language language = Language.CPP;
 
+	/**
+	 * the parser is generated as a static parser, it can be constructed once and parses
+	 * the files of one project at a time
+	 */
+	private static CPPParser parser;
+
 	public DataContext startExecution(String fileNames[], String projectName,
 			String xmlFileName, String packageCsvFileName,
 		    String fileCsvFileName, String classCsvFileName, String methodCsvFileName) {
 
-		CPPParser parser = new CPPParser(System.in);
+		return parse(fileNames, xmlFileName, packageCsvFileName,
+				fileCsvFileName, classCsvFileName, methodCsvFileName).getDataContextFormat();
+	}
+
+	public ParseDataSets startExecutionToDataSets(String fileNames[], String projectName,
+			String xmlFileName, String packageCsvFileName,
+		    String fileCsvFileName, String classCsvFileName, String methodCsvFileName) {
+
+		return parse(fileNames, xmlFileName, packageCsvFileName,
+				fileCsvFileName, classCsvFileName, methodCsvFileName).getParseDataSets();
+	}
+
+	private ClassContainer parse(String fileNames[], String xmlFileName, String packageCsvFileName,
+		    String fileCsvFileName, String classCsvFileName, String methodCsvFileName) {
 
-		ClassContainer con = parser.IdentifyModules(fileNames);
+		RunReport.Timer parsing = RunReport.time(RunReport.Stage.PARSING);
+		ClassContainer con = identifyModules(fileNames);
+		parsing.stop(fileNames.length, RunReport.totalLength(fileNames), 0);
 		try {
+			RunReport.Timer xmlWrite = RunReport.time(RunReport.Stage.XML_WRITE);
 			con.writeToFileAsXml(xmlFileName);
+			xmlWrite.stop();
+			RunReport.Timer csvWrite = RunReport.time(RunReport.Stage.CSV_WRITE);
 			con.writeToFileAsXls(xmlFileName, packageCsvFileName,
 				    fileCsvFileName, classCsvFileName, methodCsvFileName); // converts the given xml to csv file
+			csvWrite.stop();
 		} catch (Exception e) {
 			System.out.println("file exception");
 			e.printStackTrace();
 		}
-		return con.getDataContextFormat();
+		return con;
+	}
+
+	private static synchronized ClassContainer identifyModules(String fileNames[]) {
+
+		if (parser == null)
+			parser = new CPPParser(System.in);
+		return parser.IdentifyModules(fileNames);
 	}
 
 	public Language getLanguage() {
@@ -17,10 +17,12 @@ import parser.Java.MetricsRelatedFiles.SparseMatrix;
 import parser.Java.MetricsRelatedFiles.Symbols;
 import parser.Jsp.JspToJavaConvertor;
 import parser.enumeration.Language;
-import parser.parserinterface.IParser;
+import parser.parserinterface.IDataSetParser;
 import org.apache.log4j.Logger;
 
 
+import common.ParseDataSets;
+import common.RunReport;
 import common.data.DataContext;
 import console.PrestConsoleApp;
 
@@ -35,7 +37,7 @@ enum CurrentState {
 	ModuleIdentification, MetricCollection
 }
 
-public class JavaParser implements JavaParserConstants, IParser {
+public class JavaParser implements JavaParserConstants, IDataSetParser {
 
 
 	static Logger logger = Logger.getLogger(PrestConsoleApp.class.getName());
@@ -139,6 +141,7 @@ public class JavaParser implements JavaParserConstants, IParser {
 
 		for (int i = 0; i < filesToTraverse.length; i++) {
 
+			RunReport.Timer fileTimer = RunReport.timeFile(RunReport.Stage.PARSING);
 			try {
 				if (filesToTraverse[i].endsWith(".jsp")) {
 					JspToJavaConvertor jCon = new JspToJavaConvertor();
@@ -162,6 +165,7 @@ public class JavaParser implements JavaParserConstants, IParser {
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
+			fileTimer.stopFile(filesToTraverse[i], new File(filesToTraverse[i]).length());
 
 		}
 	}
@@ -175,6 +179,7 @@ public class JavaParser implements JavaParserConstants, IParser {
 		fileMetrics = null;
 		methodMetrics = null;
 		for (int i = 0; i < filesToTraverse.length; i++) {
+			RunReport.Timer fileTimer = RunReport.timeFile(RunReport.Stage.PARSING);
 			try {
 				if (filesToTraverse[i].endsWith("jsp")) {
 					JspToJavaConvertor jCon = new JspToJavaConvertor();
@@ -200,6 +205,7 @@ public class JavaParser implements JavaParserConstants, IParser {
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
+			fileTimer.stopFile(filesToTraverse[i], new File(filesToTraverse[i]).length());
 		}
 	}
 
@@ -212,10 +218,53 @@ public class JavaParser implements JavaParserConstants, IParser {
 			String fileCsvFileName, String classCsvFileName,
 			String methodCsvFileName) {
 
+		collectMetrics(filesToTraverse, projectName, xmlFileName,
+				packageCsvFileName, fileCsvFileName, classCsvFileName,
+				methodCsvFileName);
+
+		logger.info("DataContext dc = container.getDataContextFormat();");
+		RunReport.Timer aggregation = RunReport.time(RunReport.Stage.AGGREGATION);
+		DataContext dc = container.getDataContextFormat();
+		aggregation.stop();
+		container = null;
+
+		return dc;
+	}
+
+	public ParseDataSets startExecutionToDataSets(String filesToTraverse[],
+			String projectName, String xmlFileName, String packageCsvFileName,
+			String fileCsvFileName, String classCsvFileName,
+			String methodCsvFileName) {
+
+		collectMetrics(filesToTraverse, projectName, xmlFileName,
+				packageCsvFileName, fileCsvFileName, classCsvFileName,
+				methodCsvFileName);
+
+		logger.info("ParseDataSets dataSets = container.getParseDataSets();");
+		RunReport.Timer aggregation = RunReport.time(RunReport.Stage.AGGREGATION);
+		ParseDataSets dataSets = container.getParseDataSets();
+		aggregation.stop();
+		container = null;
+
+		return dataSets;
+	}
+
+	/**
+	 * Collects the metrics of the files into the container and writes them
+	 * to the xml and csv files
+	 */
+	private void collectMetrics(String filesToTraverse[], String projectName,
+			String xmlFileName, String packageCsvFileName,
+			String fileCsvFileName, String classCsvFileName,
+			String methodCsvFileName) {
+
+		// the time of a file is the time of both passes over it
+		RunReport.Timer parsing = RunReport.time(RunReport.Stage.PARSING);
 		moduleIdentificationMethod(filesToTraverse); // identify the modules
 		logger.info("module identification done");
 		metricCollectionMethod(filesToTraverse); // collect the metrics
 		logger.info("metric collection done");
+		parsing.stop(filesToTraverse.length, RunReport.totalLength(filesToTraverse), 0);
 		// call graph will be produced later.
 		/*try {
 
@@ -234,7 +283,9 @@ public class JavaParser implements JavaParserConstants, IParser {
 
 		try {
 			logger.info("writing from container to xml file");
+			RunReport.Timer xmlWrite = RunReport.time(RunReport.Stage.XML_WRITE);
 			container.writeToFileAsXml(xmlFileName);
+			xmlWrite.stop();
 			logger.info("xml written");
 		} catch (Exception e) {
 			logger.error("writing to xml file failed");
@@ -243,19 +294,15 @@ public class JavaParser implements JavaParserConstants, IParser {
 
 		try {
 			logger.info("writing from container to csv files");
+			RunReport.Timer csvWrite = RunReport.time(RunReport.Stage.CSV_WRITE);
 			container.writeToFileAsXls(xmlFileName, packageCsvFileName,
 					fileCsvFileName, classCsvFileName, methodCsvFileName); // converts
+			csvWrite.stop();
 			logger.info("csv files written");
 		} catch (Exception e) {
 			logger.error("writing to csv file failed");
 			e.printStackTrace();
 		}
-
-		logger.info("DataContext dc = container.getDataContextFormat();");
-		DataContext dc = container.getDataContextFormat();
-		container = null;
-
-		return dc;
 	}
 
 	private void generateCallGraph(ClassContainer container, String csvFileName) {
@@ -7,7 +7,9 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 
+import common.MetricDataSetBuilder;
 import common.NodePair;
+import common.ParseDataSets;
 import common.data.DataContext;
 
 /*
@@ -318,103 +320,93 @@ public class ClassContainer
 		return dataContext;
 	}
 
+	/**
+	 * Creates the DataSets of the packages, files, classes and methods
+	 * directly from the metrics in the container, without building a
+	 * DataContext first. Like getDataContextFormat(), it empties the
+	 * container.
+	 */
+	public ParseDataSets getParseDataSets()
+	{
+		int numMethods = 0;
+		for (PackageMetrics pm : packages.values())
+			for (String fileName : pm.getFileNameList())
+			{
+				FileMetrics fm = pm.getFile(fileName);
+				for (String className : fm.getClassNameList())
+				{
+					ClassMetrics cm = fm.getClass(className);
+					for (String methodName : cm.getMethodNameList())
+						if (!cm.getMethod(methodName).name.contains("implicitConstructor"))
+							numMethods++;
+				}
+			}
+
+		MetricDataSetBuilder packageBuilder = new MetricDataSetBuilder("Package DataSet");
+		MetricDataSetBuilder fileBuilder = new MetricDataSetBuilder("File DataSet");
+		MetricDataSetBuilder classBuilder = new MetricDataSetBuilder("Class DataSet");
+		MetricDataSetBuilder methodBuilder = ParseDataSets.createMethodDataSetBuilder(numMethods);
+
+		for (String packageName : getPackageNameList())
+		{
+			PackageMetrics pm = getPackage(packageName);
+			packageBuilder.add(packageName, withoutNullValues(getPackageInfo(pm)));
+
+			for (String fileName : pm.getFileNameList())
+			{
+				FileMetrics fm = pm.getFile(fileName);
+				fileBuilder.add(fileName, withoutNullValues(getFileInfo(fm)));
+
+				for (String className : fm.getClassNameList())
+				{
+					ClassMetrics cm = fm.getClass(className);
+					classBuilder.add(className, withoutNullValues(getClassInfo(cm)));
+
+					for (String methodName : cm.getMethodNameList())
+					{
+						MethodMetrics mm = cm.getMethod(methodName);
+						if (!mm.name.contains("implicitConstructor"))
+							methodBuilder.add(methodName, withoutNullValues(getMethodInfo(mm)));
+						cm.deleteMethod(methodName);
+					}
+					fm.deleteClass(className);
+				}
+				pm.deleteFile(fileName);
+			}
+			this.deletePackage(packageName);
+		}
+
+		return new ParseDataSets(packageBuilder.getDataSet(), fileBuilder.getDataSet(), classBuilder.getDataSet(), methodBuilder
+				.getDataSet());
+	}
+
+	/**
+	 * Leaves out the metrics without a value, as a DataContext does
+	 */
+	private static List<NodePair> withoutNullValues(List<NodePair> info)
+	{
+		for (int i = info.size() - 1; i >= 0; i--)
+			if (info.get(i).getValue() == null)
+				info.remove(i);
+		return info;
+	}
+
 	public void addPackageInfo(DataContext dataContext, PackageMetrics packageMetricsToAdd)
 	{
-		dataContext.add(packageMetricsToAdd.getNameNode());
-		dataContext.add(packageMetricsToAdd.getIdNode());
-		dataContext.add(packageMetricsToAdd.getCylomaticDensityNode());
-		dataContext.add(packageMetricsToAdd.getDecisionDensityNode());
-		dataContext.add(packageMetricsToAdd.getEssentialDensityNode());
-
-		dataContext.add(packageMetricsToAdd.getBranchCountNode());
-		dataContext.add(packageMetricsToAdd.getConditionCountNode());
-		dataContext.add(packageMetricsToAdd.getCyclomaticComplexityNode());
-		dataContext.add(packageMetricsToAdd.getDecisionCountNode());
-		dataContext.add(packageMetricsToAdd.getEssentialComplexityNode());
-
-		dataContext.add(packageMetricsToAdd.getLOCNode());
-		dataContext.add(packageMetricsToAdd.getTotalOperandsNode());
-		dataContext.add(packageMetricsToAdd.getTotalOperatorsNode());
-		dataContext.add(packageMetricsToAdd.getUniqueOperandsCountNode());
-		dataContext.add(packageMetricsToAdd.getUniqueOperatorsCountNode());
-
-		dataContext.add(packageMetricsToAdd.getHalsteadDifficultyNode());
-		dataContext.add(packageMetricsToAdd.getHalsteadLengthNode());
-		dataContext.add(packageMetricsToAdd.getHalsteadLevelNode());
-		dataContext.add(packageMetricsToAdd.getHalsteadProgrammingEffortNode());
-		dataContext.add(packageMetricsToAdd.getHalsteadProgrammingTimeNode());
-
-		dataContext.add(packageMetricsToAdd.getHalsteadVolumeNode());
-		dataContext.add(packageMetricsToAdd.getMaintenanceSeverityNode());
+		for (NodePair nodePair : getPackageInfo(packageMetricsToAdd))
+			dataContext.add(nodePair);
 	}
 
 	public void addFileInfo(DataContext dataContext, FileMetrics fileMetricsToAdd, NodePair packageId)
 	{
-		dataContext.add(fileMetricsToAdd.getNameNode());
-		dataContext.add(fileMetricsToAdd.getIdNode());
-		// dataContext.add(packageId);
-		dataContext.add(fileMetricsToAdd.getCylomaticDensityNode());
-		dataContext.add(fileMetricsToAdd.getDecisionDensityNode());
-		dataContext.add(fileMetricsToAdd.getEssentialDensityNode());
-
-		dataContext.add(fileMetricsToAdd.getBranchCountNode());
-		dataContext.add(fileMetricsToAdd.getConditionCountNode());
-		dataContext.add(fileMetricsToAdd.getCyclomaticComplexityNode());
-		dataContext.add(fileMetricsToAdd.getDecisionCountNode());
-		dataContext.add(fileMetricsToAdd.getEssentialComplexityNode());
-		dataContext.add(fileMetricsToAdd.getLOCNode());
-		dataContext.add(fileMetricsToAdd.getTotalOperandsNode());
-		dataContext.add(fileMetricsToAdd.getTotalOperatorsNode());
-		dataContext.add(fileMetricsToAdd.getUniqueOperandsCountNode());
-		dataContext.add(fileMetricsToAdd.getUniqueOperatorsCountNode());
-		dataContext.add(fileMetricsToAdd.getHalsteadDifficultyNode());
-		dataContext.add(fileMetricsToAdd.getHalsteadLengthNode());
-		dataContext.add(fileMetricsToAdd.getHalsteadLevelNode());
-		dataContext.add(fileMetricsToAdd.getHalsteadProgrammingEffortNode());
-		dataContext.add(fileMetricsToAdd.getHalsteadProgrammingTimeNode());
-		dataContext.add(fileMetricsToAdd.getHalsteadVolumeNode());
-		dataContext.add(fileMetricsToAdd.getMaintenanceSeverityNode());
-
+		for (NodePair nodePair : getFileInfo(fileMetricsToAdd))
+			dataContext.add(nodePair);
 	}
 
 	public void addClassInfo(DataContext dataContext, ClassMetrics classMetricsToAdd, NodePair packageId, NodePair fileId)
 	{
-
-		dataContext.add(classMetricsToAdd.getNameNode());
-		dataContext.add(classMetricsToAdd.getIdNode());
-		// dataContext.add(packageId);
-		// dataContext.add(fileId);
-		dataContext.add(classMetricsToAdd.getCylomaticDensityNode());
-
-		dataContext.add(classMetricsToAdd.getDecisionDensityNode());
-		dataContext.add(classMetricsToAdd.getEssentialDensityNode());
-		dataContext.add(classMetricsToAdd.getBranchCountNode());
-		dataContext.add(classMetricsToAdd.getConditionCountNode());
-		dataContext.add(classMetricsToAdd.getCyclomaticComplexityNode());
-
-		dataContext.add(classMetricsToAdd.getDecisionCountNode());
-		dataContext.add(classMetricsToAdd.getEssentialComplexityNode());
-		dataContext.add(classMetricsToAdd.getLOCNode());
-		dataContext.add(classMetricsToAdd.getTotalOperandsNode());
-		dataContext.add(classMetricsToAdd.getTotalOperatorsNode());
-
-		dataContext.add(classMetricsToAdd.getUniqueOperandsCountNode());
-		dataContext.add(classMetricsToAdd.getUniqueOperatorsCountNode());
-		dataContext.add(classMetricsToAdd.getHalsteadDifficultyNode());
-		dataContext.add(classMetricsToAdd.getHalsteadLengthNode());
-		dataContext.add(classMetricsToAdd.getHalsteadLevelNode());
-
-		dataContext.add(classMetricsToAdd.getHalsteadProgrammingEffortNode());
-		dataContext.add(classMetricsToAdd.getHalsteadProgrammingTimeNode());
-		dataContext.add(classMetricsToAdd.getHalsteadVolumeNode());
-		dataContext.add(classMetricsToAdd.getMaintenanceSeverityNode());
-		dataContext.add(classMetricsToAdd.getCouplingBetweenObjectsNode());
-
-		dataContext.add(classMetricsToAdd.getFanInNode());
-		dataContext.add(classMetricsToAdd.getNumberOfChildrenNode());
-		dataContext.add(classMetricsToAdd.getPercentageOfPubDataNode());
-		dataContext.add(classMetricsToAdd.getResponseForClassNode());
-		dataContext.add(classMetricsToAdd.getWeightedMethodsNode());
+		for (NodePair nodePair : getClassInfo(classMetricsToAdd))
+			dataContext.add(nodePair);
 	}
 
 	public void addMethodInfo(DataContext dataContext, MethodMetrics methodMetricsToAdd, NodePair packageId, NodePair fileId,
@@ -423,39 +415,175 @@ public class ClassContainer
 		if (methodMetricsToAdd.name.contains("implicitConstructor"))
 			return;
 
+		for (NodePair nodePair : getMethodInfo(methodMetricsToAdd))
+			dataContext.add(nodePair);
+	}
+
+	/**
+	 * @param packageMetricsToAdd
+	 * @return the name, id and metrics of the package, in the order they are
+	 *         added to a DataContext
+	 */
+	public List<NodePair> getPackageInfo(PackageMetrics packageMetricsToAdd)
+	{
+		List<NodePair> info = new ArrayList<NodePair>();
+		info.add(packageMetricsToAdd.getNameNode());
+		info.add(packageMetricsToAdd.getIdNode());
+		info.add(packageMetricsToAdd.getCylomaticDensityNode());
+		info.add(packageMetricsToAdd.getDecisionDensityNode());
+		info.add(packageMetricsToAdd.getEssentialDensityNode());
+
+		info.add(packageMetricsToAdd.getBranchCountNode());
+		info.add(packageMetricsToAdd.getConditionCountNode());
+		info.add(packageMetricsToAdd.getCyclomaticComplexityNode());
+		info.add(packageMetricsToAdd.getDecisionCountNode());
+		info.add(packageMetricsToAdd.getEssentialComplexityNode());
+
+		info.add(packageMetricsToAdd.getLOCNode());
+		info.add(packageMetricsToAdd.getTotalOperandsNode());
+		info.add(packageMetricsToAdd.getTotalOperatorsNode());
+		info.add(packageMetricsToAdd.getUniqueOperandsCountNode());
+		info.add(packageMetricsToAdd.getUniqueOperatorsCountNode());
+
+		info.add(packageMetricsToAdd.getHalsteadDifficultyNode());
+		info.add(packageMetricsToAdd.getHalsteadLengthNode());
+		info.add(packageMetricsToAdd.getHalsteadLevelNode());
+		info.add(packageMetricsToAdd.getHalsteadProgrammingEffortNode());
+		info.add(packageMetricsToAdd.getHalsteadProgrammingTimeNode());
+
+		info.add(packageMetricsToAdd.getHalsteadVolumeNode());
+		info.add(packageMetricsToAdd.getMaintenanceSeverityNode());
+
+		return info;
+	}
+
+	/**
+	 * @param fileMetricsToAdd
+	 * @return the name, id and metrics of the file, in the order they are
+	 *         added to a DataContext
+	 */
+	public List<NodePair> getFileInfo(FileMetrics fileMetricsToAdd)
+	{
+		List<NodePair> info = new ArrayList<NodePair>();
+		info.add(fileMetricsToAdd.getNameNode());
+		info.add(fileMetricsToAdd.getIdNode());
+		// info.add(packageId);
+		info.add(fileMetricsToAdd.getCylomaticDensityNode());
+		info.add(fileMetricsToAdd.getDecisionDensityNode());
+		info.add(fileMetricsToAdd.getEssentialDensityNode());
+
+		info.add(fileMetricsToAdd.getBranchCountNode());
+		info.add(fileMetricsToAdd.getConditionCountNode());
+		info.add(fileMetricsToAdd.getCyclomaticComplexityNode());
+		info.add(fileMetricsToAdd.getDecisionCountNode());
+		info.add(fileMetricsToAdd.getEssentialComplexityNode());
+		info.add(fileMetricsToAdd.getLOCNode());
+		info.add(fileMetricsToAdd.getTotalOperandsNode());
+		info.add(fileMetricsToAdd.getTotalOperatorsNode());
+		info.add(fileMetricsToAdd.getUniqueOperandsCountNode());
+		info.add(fileMetricsToAdd.getUniqueOperatorsCountNode());
+		info.add(fileMetricsToAdd.getHalsteadDifficultyNode());
+		info.add(fileMetricsToAdd.getHalsteadLengthNode());
+		info.add(fileMetricsToAdd.getHalsteadLevelNode());
+		info.add(fileMetricsToAdd.getHalsteadProgrammingEffortNode());
+		info.add(fileMetricsToAdd.getHalsteadProgrammingTimeNode());
+		info.add(fileMetricsToAdd.getHalsteadVolumeNode());
+		info.add(fileMetricsToAdd.getMaintenanceSeverityNode());
+
+		return info;
+	}
+
+	/**
+	 * @param classMetricsToAdd
+	 * @return the name, id and metrics of the class, in the order they are
+	 *         added to a DataContext
+	 */
+	public List<NodePair> getClassInfo(ClassMetrics classMetricsToAdd)
+	{
+		List<NodePair> info = new ArrayList<NodePair>();
+
+		info.add(classMetricsToAdd.getNameNode());
+		info.add(classMetricsToAdd.getIdNode());
+		// info.add(packageId);
+		// info.add(fileId);
+		info.add(classMetricsToAdd.getCylomaticDensityNode());
+
+		info.add(classMetricsToAdd.getDecisionDensityNode());
+		info.add(classMetricsToAdd.getEssentialDensityNode());
+		info.add(classMetricsToAdd.getBranchCountNode());
+		info.add(classMetricsToAdd.getConditionCountNode());
+		info.add(classMetricsToAdd.getCyclomaticComplexityNode());
+
+		info.add(classMetricsToAdd.getDecisionCountNode());
+		info.add(classMetricsToAdd.getEssentialComplexityNode());
+		info.add(classMetricsToAdd.getLOCNode());
+		info.add(classMetricsToAdd.getTotalOperandsNode());
+		info.add(classMetricsToAdd.getTotalOperatorsNode());
+
+		info.add(classMetricsToAdd.getUniqueOperandsCountNode());
+		info.add(classMetricsToAdd.getUniqueOperatorsCountNode());
+		info.add(classMetricsToAdd.getHalsteadDifficultyNode());
+		info.add(classMetricsToAdd.getHalsteadLengthNode());
+		info.add(classMetricsToAdd.getHalsteadLevelNode());
+
+		info.add(classMetricsToAdd.getHalsteadProgrammingEffortNode());
+		info.add(classMetricsToAdd.getHalsteadProgrammingTimeNode());
+		info.add(classMetricsToAdd.getHalsteadVolumeNode());
+		info.add(classMetricsToAdd.getMaintenanceSeverityNode());
+		info.add(classMetricsToAdd.getCouplingBetweenObjectsNode());
+
+		info.add(classMetricsToAdd.getFanInNode());
+		info.add(classMetricsToAdd.getNumberOfChildrenNode());
+		info.add(classMetricsToAdd.getPercentageOfPubDataNode());
+		info.add(classMetricsToAdd.getResponseForClassNode());
+		info.add(classMetricsToAdd.getWeightedMethodsNode());
+
+		return info;
+	}
+
+	/**
+	 * @param methodMetricsToAdd
+	 * @return the name, id and metrics of the method, in the order they are
+	 *         added to a DataContext
+	 */
+	public List<NodePair> getMethodInfo(MethodMetrics methodMetricsToAdd)
+	{
+		List<NodePair> info = new ArrayList<NodePair>();
 		NodePair nameNode = new NodePair(methodMetricsToAdd.getNameNode().getName(), methodMetricsToAdd.getNameNode().getValue());
-		dataContext.add(nameNode);
-		dataContext.add(methodMetricsToAdd.getIdNode());
-		// dataContext.add(packageId);
-		// dataContext.add(fileId);
-		// dataContext.add(classId);
-
-		dataContext.add(methodMetricsToAdd.getCylomaticDensityNode());
-		dataContext.add(methodMetricsToAdd.getDecisionDensityNode());
-		dataContext.add(methodMetricsToAdd.getEssentialDensityNode());
-		dataContext.add(methodMetricsToAdd.getBranchCountNode());
-		dataContext.add(methodMetricsToAdd.getConditionCountNode());
-
-		dataContext.add(methodMetricsToAdd.getCyclomaticComplexityNode());
-		dataContext.add(methodMetricsToAdd.getDecisionCountNode());
-		dataContext.add(methodMetricsToAdd.getEssentialComplexityNode());
-		dataContext.add(methodMetricsToAdd.getLOCNode());
-		dataContext.add(methodMetricsToAdd.getTotalOperandsNode());
-
-		dataContext.add(methodMetricsToAdd.getTotalOperatorsNode());
-		dataContext.add(methodMetricsToAdd.getUniqueOperandsCountNode());
-		dataContext.add(methodMetricsToAdd.getUniqueOperatorsCountNode());
-		dataContext.add(methodMetricsToAdd.getHalsteadDifficultyNode());
-		dataContext.add(methodMetricsToAdd.getHalsteadLengthNode());
-
-		dataContext.add(methodMetricsToAdd.getHalsteadLevelNode());
-		dataContext.add(methodMetricsToAdd.getHalsteadProgrammingEffortNode());
-		dataContext.add(methodMetricsToAdd.getHalsteadProgrammingTimeNode());
-		dataContext.add(methodMetricsToAdd.getHalsteadVolumeNode());
-		dataContext.add(methodMetricsToAdd.getMaintenanceSeverityNode());
+		info.add(nameNode);
+		info.add(methodMetricsToAdd.getIdNode());
+		// info.add(packageId);
+		// info.add(fileId);
+		// info.add(classId);
+
+		info.add(methodMetricsToAdd.getCylomaticDensityNode());
+		info.add(methodMetricsToAdd.getDecisionDensityNode());
+		info.add(methodMetricsToAdd.getEssentialDensityNode());
+		info.add(methodMetricsToAdd.getBranchCountNode());
+		info.add(methodMetricsToAdd.getConditionCountNode());
+
+		info.add(methodMetricsToAdd.getCyclomaticComplexityNode());
+		info.add(methodMetricsToAdd.getDecisionCountNode());
+		info.add(methodMetricsToAdd.getEssentialComplexityNode());
+		info.add(methodMetricsToAdd.getLOCNode());
+		info.add(methodMetricsToAdd.getTotalOperandsNode());
+
+		info.add(methodMetricsToAdd.getTotalOperatorsNode());
+		info.add(methodMetricsToAdd.getUniqueOperandsCountNode());
+		info.add(methodMetricsToAdd.getUniqueOperatorsCountNode());
+		info.add(methodMetricsToAdd.getHalsteadDifficultyNode());
+		info.add(methodMetricsToAdd.getHalsteadLengthNode());
+
+		info.add(methodMetricsToAdd.getHalsteadLevelNode());
+		info.add(methodMetricsToAdd.getHalsteadProgrammingEffortNode());
+		info.add(methodMetricsToAdd.getHalsteadProgrammingTimeNode());
+		info.add(methodMetricsToAdd.getHalsteadVolumeNode());
+		info.add(methodMetricsToAdd.getMaintenanceSeverityNode());
 		//
-		//		dataContext.add(methodMetricsToAdd.getFormalParametersNode());
-		//		dataContext.add(methodMetricsToAdd.getCallPairLengthNode());
+		//		info.add(methodMetricsToAdd.getFormalParametersNode());
+		//		info.add(methodMetricsToAdd.getCallPairLengthNode());
+
+		return info;
 	}
 
 	// FILE
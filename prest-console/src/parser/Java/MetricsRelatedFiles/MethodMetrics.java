@@ -351,7 +351,7 @@ public class MethodMetrics {
 				String.valueOf(getEssentialComplexity()));
 	}
 
-	public static int getGlobalIdCounter() {
+	public static synchronized int getGlobalIdCounter() {
 		return globalIdCounter++;
 	}
 
@@ -532,4 +532,4 @@ public class MethodMetrics {
 				String.valueOf(getMaintenanceSeverity()));
 	}
 
-}
\ No newline at end of file
+}
\ No newline at end of file
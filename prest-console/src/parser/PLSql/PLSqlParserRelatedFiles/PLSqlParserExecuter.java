@@ -24,6 +24,7 @@ import parser.PLSql.MetricsRelatedFiles.PLSqlPackageMetrics;
 import parser.enumeration.Language;
 import parser.parserinterface.IParser;
 
+import common.RunReport;
 import common.data.DataContext;
 
 public class PLSqlParserExecuter implements IParser {
@@ -48,6 +49,18 @@ public class PLSqlParserExecuter implements IParser {
 			String fileCsvFileName, String classCsvFileName,
 			String methodCsvFileName) throws Exception {
 
+		// SoftwareMetrics collects the metrics of a file in static fields,
+		// so one project is parsed at a time
+		synchronized (SoftwareMetrics.class) {
+			return parse(files, xmlFileName, packageCsvFileName,
+					fileCsvFileName, methodCsvFileName);
+		}
+	}
+
+	private DataContext parse(String[] files, String xmlFileName,
+			String packageCsvFileName, String fileCsvFileName,
+			String methodCsvFileName) throws Exception {
+
 		SoftwareMetrics.addAllStaticRules();
 
 		//DataContext generalDC = new DataContext();
@@ -72,6 +85,7 @@ public class PLSqlParserExecuter implements IParser {
 			correctFile(fileAddress);
 			
 			//START: collect metrics from PLSQL source file
+			RunReport.Timer parsing = RunReport.time(RunReport.Stage.PARSING);
 			try{
 				//initialize (reset) PLSqlContainer
 				SoftwareMetrics.resetPLSqlContainer();
@@ -90,6 +104,7 @@ public class PLSqlParserExecuter implements IParser {
 			finally{
 				SoftwareMetrics.finishAll();
 				plsqlContainer = SoftwareMetrics.getPLSqlContainer();
+				parsing.stopFile(fileAddress, new File(fileAddress).length());
 				
 //				copyfile(originalFile, fileAddress);
 //				deletefile(originalFile);
@@ -133,11 +148,15 @@ public class PLSqlParserExecuter implements IParser {
 			//END: fill the DataContext
 
 			//write cvs files
+			RunReport.Timer csvWrite = RunReport.time(RunReport.Stage.CSV_WRITE);
 			writeCsv(plsqlContainer, fileCsvFileName, packageCsvFileName, methodCsvFileName);
+			csvWrite.stop();
 		}
 		//********************************************************************
 		//write xml file
+		RunReport.Timer xmlWrite = RunReport.time(RunReport.Stage.XML_WRITE);
 		metrics.writeToFile(xmlFileName);
+		xmlWrite.stop();
 
 		return metrics;
 	}
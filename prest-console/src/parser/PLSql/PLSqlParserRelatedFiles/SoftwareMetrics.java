@@ -914,6 +914,7 @@ public class SoftwareMetrics
 	private ModuleDetails rootModuleDetails;
 	private ModuleDetails activeModuleDetails;
 	private static HashMap<String,TokenRules> ruleMap = new HashMap<String,TokenRules>(1024);
+	private static boolean staticRulesAdded = false;
 	private volatile static SoftwareMetrics uniqueInstance;
 	/**
 	 * Private constructor, only called from getInstance()
@@ -1113,6 +1114,9 @@ public class SoftwareMetrics
 	
 	public static void addAllStaticRules(){
 		SoftwareMetrics.start("Whole", "Run", 0); // Make sure singleton exists
+		// the rules are kept in the static rule map, they are added once
+		if (staticRulesAdded)
+			return;
 		SoftwareMetrics.addRule("^=", 0.0, 1, 0, false);
 		SoftwareMetrics.addRule("<<", 0.0, 1, 0, false);
 		SoftwareMetrics.addRule("<", 0.0, 1, 0, false);
@@ -1705,5 +1709,6 @@ public class SoftwareMetrics
 		SoftwareMetrics.addRule("xor", 0.0, 1, 0, false);
 		SoftwareMetrics.addRule("'yy'", 0.0, 1, 0, false);
 		SoftwareMetrics.addRule("'yyyy'", 0.0, 1, 0, false);
+		staticRulesAdded = true;
 	}
 }
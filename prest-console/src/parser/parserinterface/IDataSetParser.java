@@ -0,0 +1,13 @@
+package parser.parserinterface;
+
+import common.ParseDataSets;
+
+/**
+ * A parser which can create the DataSets of the parsed files directly from
+ * its own containers, without collecting the metrics into a DataContext
+ */
+public interface IDataSetParser extends IParser {
+
+	public ParseDataSets startExecutionToDataSets(String filesToTraverse[], String projectName, String xmlFileName,
+			String packageCsvFileName, String fileCsvFileName, String classCsvFileName, String methodCsvFileName) throws Exception;
+}
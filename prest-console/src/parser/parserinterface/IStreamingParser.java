@@ -0,0 +1,25 @@
+package parser.parserinterface;
+
+/**
+ * A parser which writes the metrics of the parsed files to the result files
+ * as the files are parsed, keeping a bounded amount of them in memory. The
+ * metrics are not returned, they are read from the result files.
+ * 
+ * <p>The files are parsed independently of each other by the threads of a
+ * ParsePipeline, so only a parser whose metrics of a file depend on that file
+ * alone can stream them. Only the C parser does:
+ * <ul>
+ * <li>the C++ parser is a static JavaCC parser whose symbol table is shared
+ * by the files of a project, the types declared in one file are needed to
+ * parse the next, and the methods of a class are collected from all of the
+ * files it is defined in before the class is written</li>
+ * <li>the PL/SQL parser collects the metrics of a file in the static fields of
+ * SoftwareMetrics, so its files cannot be parsed concurrently; it already
+ * appends the csv rows of each file as soon as the file is parsed</li>
+ * </ul>
+ */
+public interface IStreamingParser extends IParser {
+
+	public void startPipeline(String filesToTraverse[], String projectName, String xmlFileName, String packageCsvFileName,
+			String fileCsvFileName, String classCsvFileName, String methodCsvFileName) throws Exception;
+}
@@ -21,6 +21,7 @@ import weka.filters.*;
 
 import org.apache.log4j.Logger;
 
+import common.RunReport;
 import console.PrestConsoleApp;
 
 public class WekaRunner
@@ -113,6 +114,7 @@ public class WekaRunner
 		String output = "";
 		output += "train file: " + trainPath + "\n";
 		output += "test file: " + testPath + "\n";
+		RunReport.start("predict " + trainPath + " " + testPath);
 		try
 		{
 			Date now = new Date();
@@ -164,8 +166,11 @@ public class WekaRunner
 				cls = new J48();
 			}
 
+			RunReport.Timer training = RunReport.time(RunReport.Stage.TRAINING);
 			cls.buildClassifier(trainData);
+			training.stop(1, new File(trainPath).length(), 0);
 
+			RunReport.Timer scoring = RunReport.time(RunReport.Stage.SCORING);
 			Evaluation eval = new Evaluation(trainData);
 
 			//if cross validate is selected use cross validation else use test data
@@ -228,6 +233,7 @@ public class WekaRunner
 					}
 				}
 			}
+			scoring.stop(1, new File(testPath).length(), 0);
 			output = " tp:" + tpC +  " fp:" + fpC +  " tn:" + tnC +  " fn:" + fnC +  "\n"  + output;
 			output = " pd:" + (1.0 * tpC/(tpC + fnC)) +  " pf:" + (1.0 *fpC /(fpC + tnC)) +  "\n" + output;
 			writeToFile(findPredResultPath(trainPath), fileNames, nowStr, output, outputPath);
@@ -238,6 +244,9 @@ public class WekaRunner
 			e.printStackTrace();
 			logger.error("There was a problem during the execution of Weka.");
 		}
+		// the run report is written next to the results
+		RunReport.finish(outputPath.equals("") ? new File(findPredResultPath(trainPath)) : new File(outputPath)
+				.getAbsoluteFile().getParentFile());
 
 		return output;
 	}
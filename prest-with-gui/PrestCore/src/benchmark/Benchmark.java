@@ -0,0 +1,51 @@
+package benchmark;
+
+import java.io.File;
+
+/**
+ * An operation whose time is measured by the BenchmarkRunner.
+ *
+ * <p>setUp prepares the input of the operation once, then run is called repeatedly, first
+ * in the warmup iterations whose times are discarded and then in the measured iterations.
+ * Only the time of run is measured.
+ */
+public abstract class Benchmark {
+
+	private String name;
+
+	public Benchmark(String name)
+	{
+		this.name = name;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Prepares the input of the operation
+	 *
+	 * @param workDirectory an empty directory for the files of the benchmark
+	 * @throws Exception
+	 */
+	public void setUp(File workDirectory) throws Exception
+	{
+	}
+
+	/**
+	 * Runs the operation once
+	 *
+	 * @return the result of the operation, which is kept by the runner so that the
+	 *         operation is not optimized away
+	 * @throws Exception
+	 */
+	public abstract Object run() throws Exception;
+
+	/**
+	 * Releases what setUp prepared
+	 */
+	public void tearDown()
+	{
+	}
+}
@@ -0,0 +1,366 @@
+package benchmark;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Runs the benchmarks of PrestBenchmarks and compares their results with a baseline.
+ *
+ * <p>Each benchmark is set up in its own temporary directory, run for the warmup iterations
+ * and then for the measured iterations. An iteration runs the operation until the
+ * iteration time has passed and its result is the mean time of an operation. The result
+ * of a benchmark is the mean of its iterations and their standard deviation as its error.
+ * The results are written as csv: benchmark, iterations, ms/op, error.
+ *
+ * <p>The calibration benchmark is run in every run. Its time in the results against its
+ * time in the baseline is the speed of the machine against the one the baseline was
+ * measured on, and the baseline means are scaled by it before they are compared, so a
+ * baseline measured on another machine still applies. A benchmark has regressed if its
+ * mean time less its error exceeds the scaled baseline mean by more than the threshold
+ * percentage. The exit code is 1 if any benchmark has regressed.
+ *
+ * <pre>
+ * usage: BenchmarkRunner [-wi n] [-i n] [-t ms] [-corpus dir] [-o results.csv]
+ *                        [-b baseline.csv] [-threshold percent] [benchmark prefixes]
+ *        BenchmarkRunner -compare results.csv baseline.csv [-threshold percent]
+ * </pre>
+ */
+public class BenchmarkRunner {
+
+	private static final String CSV_HEADER = "benchmark,iterations,msPerOp,error";
+
+	/**
+	 * name of the benchmark the others are compared relative to
+	 */
+	public static final String CALIBRATION = "calibration";
+
+	private int warmupIterations = 3;
+
+	private int iterations = 5;
+
+	private long iterationMillis = 1000;
+
+	private double threshold = 10;
+
+	/**
+	 * the results of the operations, kept so that they are not optimized away
+	 */
+	private volatile Object sink;
+
+	public static void main(String[] args)
+	{
+		BenchmarkRunner runner = new BenchmarkRunner();
+		File corpus = new File("cppParserProj" + File.separator + "TestTargets");
+		String output = null;
+		String baseline = null;
+		String compare = null;
+		List<String> prefixes = new ArrayList<String>();
+
+		try {
+			for(int i=0; i<args.length; i++)
+			{
+				if(args[i].equals("-wi"))
+					runner.warmupIterations = Integer.parseInt(args[++i]);
+				else if(args[i].equals("-i"))
+					runner.iterations = Math.max(1, Integer.parseInt(args[++i]));
+				else if(args[i].equals("-t"))
+					runner.iterationMillis = Long.parseLong(args[++i]);
+				else if(args[i].equals("-corpus"))
+					corpus = new File(args[++i]);
+				else if(args[i].equals("-o"))
+					output = args[++i];
+				else if(args[i].equals("-b"))
+					baseline = args[++i];
+				else if(args[i].equals("-threshold"))
+					runner.threshold = Double.parseDouble(args[++i]);
+				else if(args[i].equals("-compare"))
+				{
+					compare = args[++i];
+					baseline = args[++i];
+				}
+				else
+					prefixes.add(args[i]);
+			}
+		} catch (RuntimeException e) {
+			System.out.println("usage: BenchmarkRunner [-wi n] [-i n] [-t ms] [-corpus dir] [-o results.csv]");
+			System.out.println("                       [-b baseline.csv] [-threshold percent] [benchmark prefixes]");
+			System.out.println("       BenchmarkRunner -compare results.csv baseline.csv [-threshold percent]");
+			System.exit(2);
+		}
+
+		try {
+			Map<String, Result> results;
+			if(compare != null)
+				results = readResults(compare);
+			else
+			{
+				results = runner.runAll(PrestBenchmarks.create(corpus), prefixes);
+				if(output != null)
+					writeResults(results, output);
+			}
+
+			if(baseline != null && runner.compare(results, readResults(baseline)))
+				System.exit(1);
+		} catch (Exception e) {
+			e.printStackTrace();
+			System.exit(2);
+		}
+	}
+
+	/**
+	 * Runs the benchmarks whose names start with one of the prefixes, all of them if there
+	 * are no prefixes, and the calibration
+	 *
+	 * @return the results by the names of the benchmarks
+	 * @throws Exception
+	 */
+	public Map<String, Result> runAll(List<Benchmark> benchmarks, List<String> prefixes) throws Exception
+	{
+		Map<String, Result> results = new LinkedHashMap<String, Result>();
+
+		for(int b=0; b<benchmarks.size(); b++)
+		{
+			Benchmark benchmark = benchmarks.get(b);
+			if(!benchmark.getName().equals(CALIBRATION) && !selected(benchmark.getName(), prefixes))
+				continue;
+
+			Result result = run(benchmark);
+			results.put(benchmark.getName(), result);
+			System.out.println(format(benchmark.getName(), result));
+		}
+
+		return results;
+	}
+
+	/**
+	 * Sets up, runs and tears down a benchmark. The output of the operations to
+	 * System.out is discarded.
+	 *
+	 * @return the result of the measured iterations
+	 * @throws Exception
+	 */
+	public Result run(Benchmark benchmark) throws Exception
+	{
+		File workDirectory = File.createTempFile("prestbench", "");
+		workDirectory.delete();
+		workDirectory.mkdirs();
+
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			public void write(int b) {
+			}
+			public void write(byte[] b, int off, int len) {
+			}
+		}));
+
+		try {
+			benchmark.setUp(workDirectory);
+
+			for(int i=0; i<warmupIterations; i++)
+				iteration(benchmark);
+
+			double[] times = new double[iterations];
+			for(int i=0; i<iterations; i++)
+				times[i] = iteration(benchmark);
+
+			return new Result(iterations, mean(times), standardDeviation(times));
+		} finally {
+			System.setOut(console);
+			benchmark.tearDown();
+			delete(workDirectory);
+		}
+	}
+
+	/**
+	 * Runs the operation until the iteration time has passed, at least once
+	 *
+	 * @return the mean time of an operation in milliseconds
+	 * @throws Exception
+	 */
+	private double iteration(Benchmark benchmark) throws Exception
+	{
+		long start = System.nanoTime();
+		long end = start + iterationMillis * 1000000L;
+		int operations = 0;
+		long now;
+
+		do {
+			sink = benchmark.run();
+			operations++;
+			now = System.nanoTime();
+		} while(now < end);
+
+		return (now - start) / 1e6 / operations;
+	}
+
+	/**
+	 * Prints the results next to the baseline scaled by the calibration
+	 *
+	 * @return true if a benchmark has regressed
+	 * @throws IOException if the results or the baseline have no calibration
+	 */
+	public boolean compare(Map<String, Result> results, Map<String, Result> baseline) throws IOException
+	{
+		boolean regressed = false;
+
+		Result calibration = results.get(CALIBRATION);
+		Result baseCalibration = baseline.get(CALIBRATION);
+		if(calibration == null || baseCalibration == null)
+			throw new IOException("the results and the baseline need a " + CALIBRATION + " result");
+		double scale = calibration.msPerOp / baseCalibration.msPerOp;
+
+		System.out.println(String.format(Locale.US, "this machine takes %.2f times the time of the baseline", scale));
+		System.out.println(String.format(Locale.US, "%-24s %12s %12s %9s  %s", "benchmark", "baseline", "ms/op", "change", ""));
+		for(Map.Entry<String, Result> entry : results.entrySet())
+		{
+			if(entry.getKey().equals(CALIBRATION))
+				continue;
+
+			Result result = entry.getValue();
+			Result base = baseline.get(entry.getKey());
+
+			if(base == null)
+			{
+				System.out.println(String.format(Locale.US, "%-24s %12s %12.3f %9s  %s", entry.getKey(), "-", result.msPerOp, "", "new"));
+				continue;
+			}
+
+			double expected = base.msPerOp * scale;
+			double change = (result.msPerOp - expected) / expected * 100;
+			String status = "";
+			if(result.msPerOp - result.error > expected * (1 + threshold / 100))
+			{
+				status = "REGRESSED";
+				regressed = true;
+			}
+			else if(result.msPerOp + result.error < expected * (1 - threshold / 100))
+				status = "improved";
+
+			System.out.println(String.format(Locale.US, "%-24s %12.3f %12.3f %+8.1f%%  %s", entry.getKey(), expected, result.msPerOp, change, status));
+		}
+
+		return regressed;
+	}
+
+	public static Map<String, Result> readResults(String fileName) throws IOException
+	{
+		Map<String, Result> results = new LinkedHashMap<String, Result>();
+		BufferedReader in = new BufferedReader(new FileReader(fileName));
+
+		try {
+			String line = in.readLine();
+			if(line == null || !line.trim().equals(CSV_HEADER))
+				throw new IOException(fileName + " is not a benchmark results file");
+
+			while((line = in.readLine()) != null)
+			{
+				if(line.trim().length() == 0)
+					continue;
+
+				String[] values = line.split(",");
+				if(values.length != 4)
+					throw new IOException("malformed line in " + fileName + ": " + line);
+
+				results.put(values[0], new Result(Integer.parseInt(values[1].trim()),
+						Double.parseDouble(values[2].trim()), Double.parseDouble(values[3].trim())));
+			}
+		} finally {
+			in.close();
+		}
+
+		return results;
+	}
+
+	public static void writeResults(Map<String, Result> results, String fileName) throws IOException
+	{
+		Writer out = new BufferedWriter(new FileWriter(fileName));
+
+		try {
+			out.write(CSV_HEADER + "\n");
+			for(Map.Entry<String, Result> entry : results.entrySet())
+			{
+				Result result = entry.getValue();
+				out.write(String.format(Locale.US, "%s,%d,%.4f,%.4f\n", entry.getKey(), result.iterations, result.msPerOp, result.error));
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	private static boolean selected(String name, List<String> prefixes)
+	{
+		if(prefixes.isEmpty())
+			return true;
+
+		for(int i=0; i<prefixes.size(); i++)
+			if(name.startsWith(prefixes.get(i)))
+				return true;
+
+		return false;
+	}
+
+	private static String format(String name, Result result)
+	{
+		return String.format(Locale.US, "%-24s %12.3f ms/op  +- %.3f  (%d iterations)", name, result.msPerOp, result.error, result.iterations);
+	}
+
+	private static double mean(double[] values)
+	{
+		double sum = 0;
+		for(int i=0; i<values.length; i++)
+			sum += values[i];
+		return sum / values.length;
+	}
+
+	private static double standardDeviation(double[] values)
+	{
+		if(values.length < 2)
+			return 0;
+
+		double mean = mean(values);
+		double sum = 0;
+		for(int i=0; i<values.length; i++)
+			sum += (values[i] - mean) * (values[i] - mean);
+		return Math.sqrt(sum / (values.length - 1));
+	}
+
+	private static void delete(File file)
+	{
+		File[] children = file.listFiles();
+		if(children != null)
+			for(int i=0; i<children.length; i++)
+				delete(children[i]);
+		file.delete();
+	}
+
+	/**
+	 * The mean time of an operation of a benchmark
+	 */
+	public static class Result {
+
+		int iterations;
+
+		double msPerOp;
+
+		double error;
+
+		Result(int iterations, double msPerOp, double error)
+		{
+			this.iterations = iterations;
+			this.msPerOp = msPerOp;
+			this.error = error;
+		}
+	}
+}
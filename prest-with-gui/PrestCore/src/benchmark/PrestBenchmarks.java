@@ -0,0 +1,383 @@
+package benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import parser.C.CParser;
+import parser.Cpp.cppParser.CPPParser;
+import parser.Java.JavaParserRelatedFiles.JavaParser;
+import parser.Java.MetricsRelatedFiles.ClassContainer;
+import parser.PLSql.PLSqlParserRelatedFiles.PLSqlParserExecuter;
+import predictor.WekaRunner;
+import categorizer.aiCategorizer.decisionTree.DecisionTree;
+import categorizer.aiCategorizer.naiveBayes.NaiveBayes;
+import categorizer.core.Categorizer;
+import categorizer.core.DataSet;
+import categorizer.core.util.Arff2DataSet;
+
+import common.DataContext;
+
+import definitions.application.ApplicationProperties;
+
+/**
+ * The benchmarks of the parsers, of the xml and csv outputs and of the categorizers.
+ *
+ * <p>The sources and data sets are generated by SyntheticCorpus with a fixed seed. The
+ * C++ parser is measured on the checked-in test targets of the C++ parser project if their
+ * directory is given, on generated sources otherwise. The first benchmark is the
+ * calibration, a fixed workload of plain Java the others are compared relative to.
+ */
+public class PrestBenchmarks {
+
+	private static final long SEED = 0;
+
+	private static final int NUM_SOURCE_FILES = 40;
+
+	private static final int NUM_METHODS = 15;
+
+	private static final int NUM_ROWS = 2000;
+
+	private static final int NUM_METRICS = 10;
+
+	private static final int CALIBRATION_SIZE = 200000;
+
+	/**
+	 * the C++ parser is a static parser which can be constructed only once
+	 */
+	private static CPPParser cppParser;
+
+	/**
+	 * @param cppCorpus the directory of the C++ sources, null to generate them
+	 * @return the benchmarks
+	 */
+	public static List<Benchmark> create(final File cppCorpus)
+	{
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+		benchmarks.add(new Benchmark(BenchmarkRunner.CALIBRATION) {
+			private double[] values;
+			private String[] words;
+
+			public void setUp(File workDirectory) {
+				Random random = new Random(SEED);
+				values = new double[CALIBRATION_SIZE];
+				words = new String[CALIBRATION_SIZE];
+				for(int i=0; i<CALIBRATION_SIZE; i++)
+				{
+					values[i] = random.nextDouble();
+					words[i] = "word" + random.nextInt(CALIBRATION_SIZE / 4);
+				}
+			}
+
+			public Object run() {
+				double[] sorted = values.clone();
+				Arrays.sort(sorted);
+
+				HashMap<String, Integer> counts = new HashMap<String, Integer>();
+				for(int i=0; i<words.length; i++)
+				{
+					Integer count = counts.get(words[i]);
+					counts.put(words[i], Integer.valueOf(count == null ? 1 : count.intValue() + 1));
+				}
+				return new Object[] { sorted, counts };
+			}
+		});
+
+		benchmarks.add(new Benchmark("parse.java") {
+			private String[] files;
+			private File out;
+
+			public void setUp(File workDirectory) throws Exception {
+				files = new SyntheticCorpus(SEED).writeJavaSources(new File(workDirectory, "src"), NUM_SOURCE_FILES, NUM_METHODS);
+				out = initRepository(workDirectory);
+			}
+
+			public Object run() throws Exception {
+				return new JavaParser(System.in).startExecution(files, "bench", path(out, "java.xml"),
+						path(out, "package.csv"), path(out, "file.csv"), path(out, "class.csv"), path(out, "method.csv"));
+			}
+		});
+
+		benchmarks.add(new Benchmark("parse.c") {
+			private String[] files;
+			private File out;
+
+			public void setUp(File workDirectory) throws Exception {
+				files = new SyntheticCorpus(SEED).writeCSources(new File(workDirectory, "src"), NUM_SOURCE_FILES, NUM_METHODS);
+				out = initRepository(workDirectory);
+			}
+
+			public Object run() throws Exception {
+				return new CParser().startExecution(files, "bench", path(out, "c.xml"),
+						path(out, "package.csv"), path(out, "file.csv"), path(out, "class.csv"), path(out, "method.csv"));
+			}
+		});
+
+		benchmarks.add(new Benchmark("parse.cpp") {
+			private String[] files;
+
+			public void setUp(File workDirectory) throws Exception {
+				files = cppSources(cppCorpus, workDirectory);
+			}
+
+			public Object run() throws Exception {
+				return getCppParser().IdentifyModules(files);
+			}
+		});
+
+		benchmarks.add(new Benchmark("parse.plsql") {
+			private String[] files;
+			private File out;
+
+			public void setUp(File workDirectory) throws Exception {
+				files = new SyntheticCorpus(SEED).writePLSqlSources(new File(workDirectory, "src"), NUM_SOURCE_FILES, NUM_METHODS);
+				out = initRepository(workDirectory);
+			}
+
+			public Object run() throws Exception {
+				// the parser corrects the files in place, the corrected files are parsed
+				// again by the following iterations
+				return new PLSqlParserExecuter().startExecution(files, "bench", path(out, "plsql.xml"),
+						path(out, "package.csv"), path(out, "file.csv"), path(out, "class.csv"), path(out, "method.csv"));
+			}
+		});
+
+		benchmarks.add(new Benchmark("datacontext.write") {
+			private DataContext dataContext;
+			private String xml;
+
+			public void setUp(File workDirectory) throws Exception {
+				dataContext = parseJava(workDirectory);
+				xml = path(workDirectory, "written.xml");
+			}
+
+			public Object run() throws Exception {
+				dataContext.writeToFile(xml);
+				return xml;
+			}
+		});
+
+		benchmarks.add(new Benchmark("datacontext.read") {
+			private String xml;
+
+			public void setUp(File workDirectory) throws Exception {
+				xml = path(workDirectory, "written.xml");
+				parseJava(workDirectory).writeToFile(xml);
+			}
+
+			public Object run() throws Exception {
+				return DataContext.readFromFile(xml);
+			}
+		});
+
+		benchmarks.add(new Benchmark("csv.classcontainer") {
+			private ClassContainer container;
+			private File out;
+
+			public void setUp(File workDirectory) throws Exception {
+				container = getCppParser().IdentifyModules(cppSources(cppCorpus, workDirectory));
+				out = workDirectory;
+			}
+
+			public Object run() throws Exception {
+				container.writeToFileAsXls(path(out, "cpp.xml"), path(out, "package.csv"),
+						path(out, "file.csv"), path(out, "class.csv"), path(out, "method.csv"));
+				return container;
+			}
+		});
+
+		benchmarks.add(new Benchmark("arff.load") {
+			private String arff;
+
+			public void setUp(File workDirectory) throws Exception {
+				arff = path(workDirectory, "train.arff");
+				new SyntheticCorpus(SEED).writeDefectArff(new File(arff), NUM_ROWS, NUM_METRICS);
+			}
+
+			public Object run() throws Exception {
+				return new Arff2DataSet(arff).reader();
+			}
+		});
+
+		benchmarks.add(new CategorizerTraining("decisiontree.train", DecisionTree.class));
+		benchmarks.add(new CategorizerScoring("decisiontree.score", DecisionTree.class));
+		benchmarks.add(new CategorizerTraining("naivebayes.train", NaiveBayes.class));
+		benchmarks.add(new CategorizerScoring("naivebayes.score", NaiveBayes.class));
+
+		benchmarks.add(new Benchmark("weka.predict") {
+			private String train;
+			private String test;
+
+			public void setUp(File workDirectory) throws Exception {
+				SyntheticCorpus corpus = new SyntheticCorpus(SEED);
+				train = path(workDirectory, "train.arff");
+				test = path(workDirectory, "test.arff");
+				corpus.writeDefectArff(new File(train), NUM_ROWS, NUM_METRICS);
+				corpus.writeDefectArff(new File(test), NUM_ROWS, NUM_METRICS);
+			}
+
+			public Object run() throws Exception {
+				String predictions = WekaRunner.runWeka(train, test, "Naive Bayes", "", "false", "");
+				if(predictions.startsWith("error"))
+					throw new IllegalStateException(predictions);
+				return predictions;
+			}
+		});
+
+		return benchmarks;
+	}
+
+	/**
+	 * Trains a categorizer on the generated training set
+	 */
+	private static class CategorizerTraining extends Benchmark {
+
+		private Class<? extends Categorizer> categorizerClass;
+
+		protected DataSet trainSet;
+
+		protected DataSet testSet;
+
+		CategorizerTraining(String name, Class<? extends Categorizer> categorizerClass)
+		{
+			super(name);
+			this.categorizerClass = categorizerClass;
+		}
+
+		public void setUp(File workDirectory) throws Exception
+		{
+			SyntheticCorpus corpus = new SyntheticCorpus(SEED);
+			File train = new File(workDirectory, "train.arff");
+			File test = new File(workDirectory, "test.arff");
+			corpus.writeDefectArff(train, NUM_ROWS, NUM_METRICS);
+			corpus.writeDefectArff(test, NUM_ROWS, NUM_METRICS);
+
+			trainSet = new Arff2DataSet(train.getPath()).reader();
+			testSet = new Arff2DataSet(test.getPath()).reader();
+		}
+
+		protected Categorizer train() throws Exception
+		{
+			Categorizer categorizer = categorizerClass.newInstance();
+			categorizer.loadDataSet(trainSet);
+			categorizer.setTestSet(testSet);
+			categorizer.buildCategorizer();
+			return categorizer;
+		}
+
+		public Object run() throws Exception
+		{
+			return train();
+		}
+	}
+
+	/**
+	 * Categorizes the generated test set with a categorizer trained once
+	 */
+	private static class CategorizerScoring extends CategorizerTraining {
+
+		private Categorizer categorizer;
+
+		CategorizerScoring(String name, Class<? extends Categorizer> categorizerClass)
+		{
+			super(name, categorizerClass);
+		}
+
+		public void setUp(File workDirectory) throws Exception
+		{
+			super.setUp(workDirectory);
+			categorizer = train();
+		}
+
+		public Object run() throws Exception
+		{
+			return categorizer.categorize(testSet.getDataItems());
+		}
+	}
+
+	private static synchronized CPPParser getCppParser()
+	{
+		if(cppParser == null)
+			cppParser = new CPPParser(System.in);
+		return cppParser;
+	}
+
+	/**
+	 * @return the C++ sources of the corpus directory, or generated sources if there is no
+	 *         corpus directory
+	 * @throws IOException
+	 */
+	private static String[] cppSources(File cppCorpus, File workDirectory) throws IOException
+	{
+		if(cppCorpus == null || !cppCorpus.isDirectory())
+			return new SyntheticCorpus(SEED).writeCSources(new File(workDirectory, "src"), NUM_SOURCE_FILES, NUM_METHODS);
+
+		List<String> files = new ArrayList<String>();
+		collectCppSources(cppCorpus, files);
+		return files.toArray(new String[files.size()]);
+	}
+
+	private static void collectCppSources(File directory, List<String> files)
+	{
+		File[] children = directory.listFiles();
+		Arrays.sort(children);
+
+		for(int i=0; i<children.length; i++)
+		{
+			String name = children[i].getName().toLowerCase();
+			if(children[i].isDirectory())
+				collectCppSources(children[i], files);
+			else if(name.endsWith(".cpp") || name.endsWith(".h") || name.endsWith(".c"))
+				files.add(children[i].getPath());
+		}
+	}
+
+	/**
+	 * Parses the generated java sources
+	 *
+	 * @return the metrics of the sources
+	 */
+	private static DataContext parseJava(File workDirectory) throws Exception
+	{
+		String[] files = new SyntheticCorpus(SEED).writeJavaSources(new File(workDirectory, "src"), NUM_SOURCE_FILES, NUM_METHODS);
+		File out = initRepository(workDirectory);
+		return new JavaParser(System.in).startExecution(files, "bench", path(out, "java.xml"),
+				path(out, "package.csv"), path(out, "file.csv"), path(out, "class.csv"), path(out, "method.csv"));
+	}
+
+	/**
+	 * Makes the work directory the repository of the application, the parsers write the
+	 * call graphs of a project into its directory in the repository
+	 *
+	 * @return the directory of the project
+	 * @throws IOException
+	 */
+	private static File initRepository(File workDirectory) throws IOException
+	{
+		File properties = new File(workDirectory, "application.properties");
+		Writer out = new BufferedWriter(new FileWriter(properties));
+		try {
+			out.write("repositorylocation = " + workDirectory.getAbsolutePath().replace('\\', '/') + "\n");
+		} finally {
+			out.close();
+		}
+		ApplicationProperties.initiateManual(properties.getPath());
+
+		File project = new File(workDirectory, "bench");
+		project.mkdirs();
+		return project;
+	}
+
+	private static String path(File directory, String name)
+	{
+		return new File(directory, name).getPath();
+	}
+}
@@ -0,0 +1,218 @@
+package benchmark;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the sources and data sets the benchmarks run on. The same seed always
+ * generates the same files, so the results of different runs are comparable.
+ */
+public class SyntheticCorpus {
+
+	private Random random;
+
+	public SyntheticCorpus(long seed)
+	{
+		random = new Random(seed);
+	}
+
+	/**
+	 * Writes numFiles java files of numMethods methods each into the package directories
+	 * of the directory
+	 *
+	 * @return the paths of the files
+	 * @throws IOException
+	 */
+	public String[] writeJavaSources(File directory, int numFiles, int numMethods) throws IOException
+	{
+		List<String> paths = new ArrayList<String>();
+
+		for(int f=0; f<numFiles; f++)
+		{
+			String packageName = "pkg" + (f % 4);
+			File packageDirectory = new File(directory, packageName);
+			packageDirectory.mkdirs();
+
+			File file = new File(packageDirectory, "Class" + f + ".java");
+			Writer out = new BufferedWriter(new FileWriter(file));
+			try {
+				out.write("package " + packageName + ";\n\n");
+				out.write("import java.util.ArrayList;\nimport java.util.List;\n\n");
+				out.write("/**\n * generated class " + f + "\n */\n");
+				out.write("public class Class" + f + (f > 0 ? " extends pkg" + ((f - 1) % 4) + ".Class" + (f - 1) : "") + " {\n\n");
+				out.write("\tprivate int count;\n\n\tprivate List<String> names = new ArrayList<String>();\n\n");
+
+				for(int m=0; m<numMethods; m++)
+				{
+					out.write("\tpublic int method" + m + "(int a, int b) {\n");
+					out.write("\t\tint result = a;\n");
+					int statements = 2 + random.nextInt(6);
+					for(int s=0; s<statements; s++)
+					{
+						switch(random.nextInt(4))
+						{
+						case 0:
+							out.write("\t\tfor (int i = 0; i < b; i++) {\n\t\t\tresult += i * " + s + ";\n\t\t}\n");
+							break;
+						case 1:
+							out.write("\t\tif (result > " + random.nextInt(100) + " && b != 0) {\n\t\t\tresult = result / b;\n\t\t} else {\n\t\t\tresult++;\n\t\t}\n");
+							break;
+						case 2:
+							out.write("\t\twhile (result < " + random.nextInt(1000) + ") {\n\t\t\tresult = result * 2 + count;\n\t\t}\n");
+							break;
+						default:
+							out.write("\t\tnames.add(\"name\" + result);\n\t\tcount = names.size();\n");
+						}
+					}
+					if(m > 0)
+						out.write("\t\tresult += method" + (m - 1) + "(result, b);\n");
+					out.write("\t\treturn result;\n\t}\n\n");
+				}
+				out.write("}\n");
+			} finally {
+				out.close();
+			}
+			paths.add(file.getPath());
+		}
+
+		return paths.toArray(new String[paths.size()]);
+	}
+
+	/**
+	 * Writes numFiles c files of numFunctions functions each into the directory
+	 *
+	 * @return the paths of the files
+	 * @throws IOException
+	 */
+	public String[] writeCSources(File directory, int numFiles, int numFunctions) throws IOException
+	{
+		directory.mkdirs();
+		String[] paths = new String[numFiles];
+
+		for(int f=0; f<numFiles; f++)
+		{
+			File file = new File(directory, "source" + f + ".c");
+			Writer out = new BufferedWriter(new FileWriter(file));
+			try {
+				out.write("#include <stdio.h>\n\n/* generated file " + f + " */\n\n");
+				for(int m=0; m<numFunctions; m++)
+				{
+					out.write("int f" + f + "_" + m + "(int a, int b)\n{\n\tint i, r = a;\n");
+					int statements = 2 + random.nextInt(6);
+					for(int s=0; s<statements; s++)
+					{
+						switch(random.nextInt(3))
+						{
+						case 0:
+							out.write("\tfor (i = 0; i < b; i++)\n\t\tr += i * " + s + ";\n");
+							break;
+						case 1:
+							out.write("\tif (r > " + random.nextInt(100) + " && b)\n\t\tr = r / b;\n\telse\n\t\tr++;\n");
+							break;
+						default:
+							out.write("\tswitch (r % 3) {\n\tcase 0: r += 2; break;\n\tdefault: r--;\n\t}\n");
+						}
+					}
+					if(m > 0)
+						out.write("\tr += f" + f + "_" + (m - 1) + "(r, b);\n");
+					out.write("\tprintf(\"%d\\n\", r);\n\treturn r;\n}\n\n");
+				}
+			} finally {
+				out.close();
+			}
+			paths[f] = file.getPath();
+		}
+
+		return paths;
+	}
+
+	/**
+	 * Writes numFiles PL/SQL files with a package body of numProcedures procedures each
+	 * into the directory
+	 *
+	 * @return the paths of the files
+	 * @throws IOException
+	 */
+	public String[] writePLSqlSources(File directory, int numFiles, int numProcedures) throws IOException
+	{
+		directory.mkdirs();
+		String[] paths = new String[numFiles];
+
+		for(int f=0; f<numFiles; f++)
+		{
+			File file = new File(directory, "package" + f + ".sql");
+			Writer out = new BufferedWriter(new FileWriter(file));
+			try {
+				out.write("CREATE OR REPLACE PACKAGE BODY pkg" + f + " AS\n\n");
+				for(int m=0; m<numProcedures; m++)
+				{
+					out.write("  PROCEDURE proc" + m + "(p_value IN NUMBER) IS\n    v_total NUMBER := 0;\n  BEGIN\n");
+					int statements = 2 + random.nextInt(5);
+					for(int s=0; s<statements; s++)
+					{
+						switch(random.nextInt(3))
+						{
+						case 0:
+							out.write("    FOR i IN 1 .. p_value LOOP\n      v_total := v_total + i * " + s + ";\n    END LOOP;\n");
+							break;
+						case 1:
+							out.write("    IF v_total > " + random.nextInt(100) + " THEN\n      v_total := v_total - 1;\n    ELSE\n      v_total := v_total + 1;\n    END IF;\n");
+							break;
+						default:
+							out.write("    UPDATE table" + (s % 3) + " SET amount = v_total WHERE id = p_value;\n");
+						}
+					}
+					out.write("  END proc" + m + ";\n\n");
+				}
+				out.write("END pkg" + f + ";\n/\n");
+			} finally {
+				out.close();
+			}
+			paths[f] = file.getPath();
+		}
+
+		return paths;
+	}
+
+	/**
+	 * Writes an arff file of defect data: the file name, numMetrics numeric metrics and the
+	 * nominal class "defective". The metrics of the defective rows are higher. The file names
+	 * are "file0" to the number of rows, so the files of the same number of rows have the
+	 * same header, as a training and a test set must.
+	 *
+	 * @throws IOException
+	 */
+	public void writeDefectArff(File file, int numRows, int numMetrics) throws IOException
+	{
+		Writer out = new BufferedWriter(new FileWriter(file));
+		try {
+			out.write("@relation defects\n\n@attribute 'File Name' {");
+			for(int r=0; r<numRows; r++)
+				out.write((r > 0 ? "," : "") + "file" + r);
+			out.write("}\n");
+			for(int k=0; k<numMetrics; k++)
+				out.write("@attribute metric" + k + " numeric\n");
+			out.write("@attribute defective {false,true}\n\n@data\n");
+
+			for(int r=0; r<numRows; r++)
+			{
+				boolean defective = random.nextDouble() < 0.3;
+				out.write("file" + r);
+				for(int k=0; k<numMetrics; k++)
+				{
+					double value = Math.abs(random.nextGaussian() * (k + 1) * 10 + (defective ? 15 : 0));
+					out.write("," + Math.round(value * 100) / 100.0);
+				}
+				out.write("," + defective + "\n");
+			}
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -66,12 +66,25 @@ public class ConfusionMatrix implements ContextBuilder{
 	 * categorized as columnName
 	 */
 	public void increment(String rowName, String columnName)
+	{
+		increment(rowName, columnName, 1);
+	}
+	
+	/**
+	 * @param rowName
+	 * @param columnName
+	 * @param count
+	 * 
+	 * Increases the count of the DataItems that are actually rowName, 
+	 * categorized as columnName by count
+	 */
+	public void increment(String rowName, String columnName, double count)
 	{
 		try{
 			Vector oldValueVector = matrix.getNode(rowName).getElements2(columnName);
 			double oldValue = Double.parseDouble((String)oldValueVector.get(0));
 			matrix.getNode(rowName).remove(columnName);
-			matrix.getNode(rowName).add(new NodePair(columnName, String.valueOf(oldValue+1)));
+			matrix.getNode(rowName).add(new NodePair(columnName, String.valueOf(oldValue+count)));
 		}catch(Exception e)
 		{
 			Logger.error("Error in " + this.getClass().getName() + ".add");
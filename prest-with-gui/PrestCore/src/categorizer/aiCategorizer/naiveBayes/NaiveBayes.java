@@ -1,6 +1,5 @@
 package categorizer.aiCategorizer.naiveBayes;
 
-import java.util.HashMap;
 import java.util.Vector;
 
 import categorizer.aiCategorizer.core.AICategorizer;
@@ -9,7 +8,6 @@ import categorizer.core.CategorizerNotValidException;
 import categorizer.core.ClassNotNominalException;
 import categorizer.core.DataHeader;
 import categorizer.core.DataItem;
-import categorizer.core.DistributionFinder;
 import categorizer.core.UnsupportedDataContextException;
 
 import common.DataContext;
@@ -29,6 +27,11 @@ public class NaiveBayes extends AICategorizer {
 	 */
 	private DataContext priors;
 	
+	/**
+	 * Holds the parameters used in categorizing
+	 */
+	private NaiveBayesModel model;
+	
 	/**
 	 * Holds the class values
 	 * This object is just for ease of use
@@ -68,62 +71,20 @@ public class NaiveBayes extends AICategorizer {
 	@Override
 	public ConfusionMatrix buildCategorizer() throws Exception {
 		
-		classIndex = dataSet.getClassIndex();
-		
-		if(classIndex == -1)
-		{
-			for(int i=dataSet.getDataHeaders().length -1; i>=0; i--)
-			{
-				if(dataSet.getDataHeaders()[i].isNominal())
-				{
-					classIndex = i;
-					break;
-				}
-			}
-		}
-		
-		classes = dataSet.getDataHeaders()[classIndex].getAvailableValue();
+		classIndex = findClassIndex();
 		
 		if(!dataSet.getDataHeaders()[classIndex].isNominal())
 			throw new ClassNotNominalException();
 		
-		for(int i=0; i<classes.length; i++)
-		{
-			priors.add(new NodePair(classes[i], String.valueOf(0)));
-			System.out.println(classes[i]);
-		}
-	
-		System.out.println("#######################");
-		for(int i=0; i<dataSet.getDataItems().length; i++)
-		{
-			if(!dataSet.getDataItems()[i].getDataFields()[classIndex].getStringValue().equals("?"))
-			{
-				Vector tempVector = priors.getElements2(dataSet.getDataItems()[i].getDataFields()[classIndex].getStringValue());
-				if(tempVector != null && tempVector.size() >= 0)
-				{
-					int count = Integer.parseInt((String)tempVector.get(0));
-					count++;
-					priors.remove(dataSet.getDataItems()[i].getDataFields()[classIndex].getStringValue());
-					priors.add(new NodePair(dataSet.getDataItems()[i].getDataFields()[classIndex].getStringValue(),String.valueOf(count)));
-				}
-			}
-//			System.out.println(dataSet.getDataItems()[i].getDataFields()[dataSet.getDataHeaders().length - 1].getStringValue());
-		}
-		
-		for(int i=0; i<classes.length; i++)
-		{		
-			int count = 0 ;
-			Vector tempVector = priors.getElements2(classes[i]);
-			if(tempVector != null && tempVector.size() >= 0)
-				count = Integer.parseInt((String)tempVector.get(0)) + 1;
-			priors.remove(classes[i]);	
-			priors.add(new NodePair(classes[i],String.valueOf(((double)count )/ (dataSet.getDataItems().length + classes.length))));
-		}
+		classes = dataSet.getDataHeaders()[classIndex].getAvailableValue();
 		
-		DistributionFinder distFinder = new DistributionFinder();
-		distFinder.findDistributions(dataSet,classes);
+		model = new NaiveBayesModel();
+		model.train(dataSet, classIndex);
 		
-//		return null;
+		// the distributions and priors are kept in the data headers and the
+		// priors DataContext as well, so that the categorizer can be stored
+		model.setDistributions(dataSet.getDataHeaders());
+		priors = model.storePriors();
 		
 		valid = true;
 		return super.validate(testSet);
@@ -137,80 +98,96 @@ public class NaiveBayes extends AICategorizer {
 	 */
 	@Override
 	public DataItem categorize(DataItem dataItem) throws Exception{
-		// TODO Auto-generated method stub
 
 		dataItem = super.categorize(dataItem);
 		
 		if(!valid)
 			throw new CategorizerNotValidException();
 		
-		HashMap priorMap = priors.getBaseMap();
-		System.out.println("######## Categorize #############");
+		NaiveBayesModel model = getModel();
+		
+		int decided = model.categorize(dataItem, new double[classes.length]);
+		
+		dataItem.getDataFields()[model.getClassIndex()].load(classes[decided]);  
+		
+		return dataItem;
+	}
+	
+	/**
+	 * Categorizes all of the dataItems at once. DataHeaders are checked only once
+	 * for the items sharing the same DataHeader array.
+	 * 
+	 * @see categorizer.core.Categorizer#categorize(categorizer.core.DataItem[])
+	 */
+	@Override
+	public DataItem[] categorize(DataItem[] dataItems) throws Exception{
+		
+		if(!valid)
+			throw new CategorizerNotValidException();
 		
-		classIndex = dataSet.getClassIndex();
+		DataHeader[] checkedDataHeaders = null;
 		
-		if(classIndex == -1)
+		for(int i=0; i<dataItems.length; i++)
 		{
-			for(int i=dataSet.getDataHeaders().length -1; i>=0; i--)
+			if(dataItems[i].getDataHeaders() != checkedDataHeaders)
 			{
-				if(dataSet.getDataHeaders()[i].isNominal())
-				{
-					classIndex = i;
-					break;
-				}
+				checkDataHeaders(dataItems[i].getDataHeaders());
+				checkedDataHeaders = dataItems[i].getDataHeaders();
 			}
 		}
 		
-		classes = dataSet.getDataHeaders()[classIndex].getAvailableValue();
-			
-		double[] probs = new double[classes.length];
+		dataItems = applyVirtualHeaders(dataItems);
+		
+		NaiveBayesModel model = getModel();
 		
-		double maxValue = 0 - Double.MAX_VALUE;
-		int maxIndex = 0;
+		int[] decided = model.categorize(dataItems);
+		
+		for(int i=0; i<dataItems.length; i++)
+			dataItems[i].getDataFields()[model.getClassIndex()].load(classes[decided[i]]);
+		
+		return dataItems;
+	}
+	
+	/**
+	 * @return the model of the categorizer, 
+	 * creates it from the stored distributions if the categorizer is loaded
+	 */
+	private NaiveBayesModel getModel()
+	{
+		if(model == null)
+		{
+			if(classIndex == -1)
+				classIndex = findClassIndex();
+			
+			classes = dataSet.getDataHeaders()[classIndex].getAvailableValue();
+			
+			model = new NaiveBayesModel();
+			model.load(dataSet, classIndex, priors);
+		}
 		
+		return model;
+	}
+	
+	/**
+	 * @return the class index of the dataSet, the last nominal attribute if it is not set
+	 */
+	private int findClassIndex()
+	{
+		int index = dataSet.getClassIndex();
 		
-		for(int i=0; i<classes.length; i++)
+		if(index == -1)
 		{
-			probs[i] = 0;
-			for(int j=0; j<dataSet.getDataHeaders().length; j++)
+			for(int i=dataSet.getDataHeaders().length -1; i>=0; i--)
 			{
-				DataHeader dataHeader = dataSet.getDataHeaders()[j];
-				
-				if(j != classIndex && dataHeader.isValid())
+				if(dataSet.getDataHeaders()[i].isNominal())
 				{
-					if(dataHeader.isNominal())
-				//		probs[i] += Math.log(dataHeader.getDistributions().probability(classes[i], dataItem.getDataFields()[j].getStringValue()));
-						probs[i] += dataHeader.getDistributions().probability(classes[i], dataItem.getDataFields()[j].getStringValue());
-					else
-				//		probs[i] += Math.log(dataHeader.getDistributions().probability(classes[i], Double.parseDouble(dataItem.getDataFields()[j].getStringValue())));
-						probs[i] += dataHeader.getDistributions().probability(classes[i], Double.parseDouble(dataItem.getDataFields()[j].getStringValue()));
-					
-//					System.out.println("---------- : " + probs[i]);
+					index = i;
+					break;
 				}
 			}
-			
-			 probs[i] += Math.log(Double.parseDouble( String.valueOf(priorMap.get(classes[i]))));
-			 
-			 System.out.println("Class : " + classes[i] + "  prob: " + probs[i] );
-			 
-			 if(probs[i] > maxValue)
-			 {
-				 maxIndex = i;
-				 maxValue = probs[i];	
-			 }
 		}
 		
-		System.out.println("Decided Class : " + classes[maxIndex] + "  prob: " + maxValue );
-		
-		dataItem.getDataFields()[classIndex].load(classes[maxIndex]);  
-/*		
-		System.out.println("##########################");
-		for(int i=0; i<dataItem.getDataFields().length; i++)
-		{
-			System.out.println(" >>>>>> " + dataItem.getDataFields()[i].getDataHeader().getLabel() + " : " + dataItem.getDataFields()[i].getStringValue());
-		}
-*/			
-		return dataItem;
+		return index;
 	}
 
 	
@@ -222,6 +199,7 @@ public class NaiveBayes extends AICategorizer {
 		super.load(categorizerDataContext);
 		DataContext catSpecific = categorizerDataContext.getNode(categorizerSpecificTag); 
 		priors = catSpecific.getNode(priorsTag);
+		model = null;
 		
 		Vector tempVector = catSpecific.getElements2(classIndexTag);
 		if(tempVector != null && tempVector.size() > 0)
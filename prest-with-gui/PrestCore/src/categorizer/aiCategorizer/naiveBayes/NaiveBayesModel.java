@@ -0,0 +1,516 @@
+package categorizer.aiCategorizer.naiveBayes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Vector;
+
+import categorizer.core.DataField;
+import categorizer.core.DataHeader;
+import categorizer.core.DataItem;
+import categorizer.core.DataSet;
+import categorizer.core.Distribution;
+import categorizer.core.DistributionStatistics;
+import categorizer.core.Distributions;
+import categorizer.core.FrequencyDistribution;
+import categorizer.core.IllegalDataException;
+import categorizer.core.ProbabilityDistribution;
+
+import categorizer.distribution.NormalDistribution;
+
+import common.DataContext;
+import common.NodePair;
+
+/**
+ * Holds the parameters of the Naive Bayes Classifier in primitive arrays.
+ *
+ * <p>The priors and the per class parameters of every attribute (mean and variance for
+ * numeric attributes, normalized frequencies for nominal ones) are collected in a single
+ * pass over the data items. Scoring is a plain loop over these arrays that sums the
+ * log probabilities of the attributes, so no DataContext lookup or string conversion is
+ * done per item.
+ *
+ * <p>Parameters of feature f and class c are kept at index f * classes.length + c.
+ */
+public class NaiveBayesModel {
+
+	/**
+	 * log probability of an attribute value that was not seen in the training set
+	 */
+	private final static double unknownLogProbability = Math.log(Double.MIN_VALUE);
+
+	/**
+	 * log of the constant sqrt(2 * PI) of the normal distribution
+	 */
+	private final static double logSqrtTwoPi = Math.log(Math.sqrt(2 * Math.PI));
+
+	/**
+	 * Holds the class values
+	 */
+	private String[] classes;
+
+	/**
+	 * Holds the index of each class value in classes
+	 */
+	private HashMap<String, Integer> classValueIndexes;
+
+	/**
+	 * index of the class attribute in the data fields
+	 */
+	private int classIndex;
+
+	/**
+	 * index of the data field of each feature
+	 */
+	private int[] featureIndexes;
+
+	/**
+	 * true if the feature is nominal
+	 */
+	private boolean[] nominal;
+
+	/**
+	 * prior probabilities of the classes
+	 */
+	private double[] priors;
+
+	/**
+	 * log of the prior probabilities of the classes
+	 */
+	private double[] logPriors;
+
+	/**
+	 * means of the numeric features per class
+	 */
+	private double[] means;
+
+	/**
+	 * variances of the numeric features per class
+	 */
+	private double[] variances;
+
+	/**
+	 * constant part of the log probability of the numeric features per class,
+	 * i.e. -log(standardDeviation) - log(sqrt(2 * PI))
+	 */
+	private double[] logNormalizers;
+
+	/**
+	 * inverse of the standard deviations of the numeric features per class
+	 */
+	private double[] inverseStdDevs;
+
+	/**
+	 * available values of the nominal features
+	 */
+	private String[][] keys;
+
+	/**
+	 * index of each available value of the nominal features
+	 */
+	private List<HashMap<String, Integer>> keyIndexes;
+
+	/**
+	 * normalized frequencies of the nominal features per class and available value
+	 */
+	private double[][] frequencies;
+
+	/**
+	 * log of the normalized frequencies, kept as [feature][value * classes.length + class]
+	 */
+	private double[][] logFrequencies;
+
+
+	/**
+	 * default constructor
+	 */
+	public NaiveBayesModel() {
+	}
+
+
+	/**
+	 * Calculates the priors and the parameters of all features in one pass over the
+	 * data items of the dataSet, using DistributionStatistics
+	 *
+	 * @param dataSet
+	 * @param classIndex
+	 * @throws IllegalDataException if a nominal value is not one of the available values
+	 */
+	public void train(DataSet dataSet, int classIndex) throws IllegalDataException
+	{
+		initialize(dataSet.getDataHeaders(), classIndex);
+
+		DataItem[] dataItems = dataSet.getDataItems();
+		int numClasses = classes.length;
+
+		DistributionStatistics statistics = new DistributionStatistics(dataSet.getDataHeaders(), classIndex, classes, featureIndexes);
+		statistics.collect(dataItems);
+
+		for(int c=0; c<numClasses; c++)
+		{
+			priors[c] = ((double)(statistics.getClassCount(c) + 1)) / (dataItems.length + numClasses);
+			logPriors[c] = Math.log(priors[c]);
+		}
+
+		for(int f=0; f<featureIndexes.length; f++)
+		{
+			for(int c=0; c<numClasses; c++)
+			{
+				int p = f * numClasses + c;
+
+				if(nominal[f])
+					frequencies[p] = statistics.getFrequencies(f, c);
+				else
+				{
+					means[p] = statistics.getMean(f, c);
+					variances[p] = statistics.getVariance(f, c);
+				}
+			}
+		}
+
+		prepareScoring();
+	}
+
+
+	/**
+	 * Creates the model from the distributions of the dataHeaders and the priors
+	 * stored by a previously built categorizer
+	 *
+	 * @param dataSet
+	 * @param classIndex
+	 * @param priorsContext
+	 */
+	public void load(DataSet dataSet, int classIndex, DataContext priorsContext)
+	{
+		DataHeader[] dataHeaders = dataSet.getDataHeaders();
+
+		initialize(dataHeaders, classIndex);
+
+		int numClasses = classes.length;
+
+		for(int c=0; c<numClasses; c++)
+		{
+			Vector<?> tempVector = priorsContext.getElements2(classes[c]);
+			if(tempVector != null && tempVector.size() > 0)
+				priors[c] = Double.parseDouble((String)tempVector.get(0));
+			logPriors[c] = Math.log(priors[c]);
+		}
+
+		for(int f=0; f<featureIndexes.length; f++)
+		{
+			Distributions distributions = dataHeaders[featureIndexes[f]].getDistributions();
+
+			for(int d=0; distributions != null && distributions.getDistributions() != null && d<distributions.getDistributions().length; d++)
+			{
+				Distribution distribution = distributions.getDistributions()[d];
+				Integer classValueIndex = classValueIndexes.get(distribution.getClassValue());
+				if(classValueIndex == null)
+					continue;
+
+				int p = f * numClasses + classValueIndex.intValue();
+
+				if(nominal[f])
+				{
+					for(int v=0; v<keys[f].length; v++)
+						frequencies[p][v] = distribution.probability(keys[f][v]);
+				}
+				else if(distribution instanceof ProbabilityDistribution)
+				{
+					means[p] = ((ProbabilityDistribution)distribution).getMean();
+					variances[p] = ((ProbabilityDistribution)distribution).getVariance();
+
+					// unique data is stored with the smallest possible variance
+					if(variances[p] == Double.MIN_VALUE)
+						variances[p] = 0;
+				}
+			}
+		}
+
+		prepareScoring();
+
+		// features without a distribution for a class do not contribute to its probability
+		for(int f=0; f<featureIndexes.length; f++)
+		{
+			Distributions distributions = dataHeaders[featureIndexes[f]].getDistributions();
+
+			for(int c=0; c<numClasses; c++)
+			{
+				if(findDistribution(distributions, classes[c]) == null)
+				{
+					int p = f * numClasses + c;
+
+					if(nominal[f])
+						for(int v=0; v<keys[f].length; v++)
+							logFrequencies[f][v * numClasses + c] = 0;
+					else
+					{
+						logNormalizers[p] = 0;
+						inverseStdDevs[p] = 0;
+					}
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Finds the class of the dataItem
+	 *
+	 * @param dataItem
+	 * @param scores array of classes.length to hold the log probabilities of the classes
+	 * @return index of the class with the highest probability
+	 */
+	public int categorize(DataItem dataItem, double[] scores)
+	{
+		int numClasses = classes.length;
+		DataField[] dataFields = dataItem.getDataFields();
+
+		System.arraycopy(logPriors, 0, scores, 0, numClasses);
+
+		for(int f=0; f<featureIndexes.length; f++)
+		{
+			DataField dataField = dataFields[featureIndexes[f]];
+
+			if(nominal[f])
+			{
+				Integer keyIndex = keyIndexes.get(f).get(dataField.getStringValue());
+
+				if(keyIndex == null)
+				{
+					for(int c=0; c<numClasses; c++)
+						scores[c] += unknownLogProbability;
+				}
+				else
+				{
+					double[] logFrequency = logFrequencies[f];
+					int base = keyIndex.intValue() * numClasses;
+					for(int c=0; c<numClasses; c++)
+						scores[c] += logFrequency[base + c];
+				}
+			}
+			else
+			{
+				double value = DistributionStatistics.numericValue(dataField);
+				int base = f * numClasses;
+				for(int c=0; c<numClasses; c++)
+				{
+					double z = (value - means[base + c]) * inverseStdDevs[base + c];
+					scores[c] += logNormalizers[base + c] - 0.5 * z * z;
+				}
+			}
+		}
+
+		double maxValue = 0 - Double.MAX_VALUE;
+		int maxIndex = 0;
+
+		for(int c=0; c<numClasses; c++)
+		{
+			if(scores[c] > maxValue)
+			{
+				maxIndex = c;
+				maxValue = scores[c];
+			}
+		}
+
+		return maxIndex;
+	}
+
+
+	/**
+	 * Finds the classes of all dataItems
+	 *
+	 * @param dataItems
+	 * @return index of the class with the highest probability for each dataItem
+	 */
+	public int[] categorize(DataItem[] dataItems)
+	{
+		int[] decided = new int[dataItems.length];
+		double[] scores = new double[classes.length];
+
+		for(int i=0; i<dataItems.length; i++)
+			decided[i] = categorize(dataItems[i], scores);
+
+		return decided;
+	}
+
+
+	/**
+	 * Sets the distributions of the feature dataHeaders from the parameters of the model,
+	 * so that they can be stored with the categorizer
+	 *
+	 * @param dataHeaders
+	 */
+	public void setDistributions(DataHeader[] dataHeaders)
+	{
+		int numClasses = classes.length;
+
+		for(int f=0; f<featureIndexes.length; f++)
+		{
+			Distributions distributions = new Distributions(numClasses);
+			distributions.setClasses(classes);
+
+			for(int c=0; c<numClasses; c++)
+			{
+				int p = f * numClasses + c;
+
+				if(nominal[f])
+					distributions.setDistribution(c, new FrequencyDistribution(classes[c], keys[f], frequencies[p]));
+				else
+					distributions.setDistribution(c, new NormalDistribution(classes[c], means[p], variances[p]));
+			}
+
+			dataHeaders[featureIndexes[f]].setDistributions(distributions);
+		}
+	}
+
+
+	/**
+	 * @return the DataContext holding the prior probability of each class
+	 */
+	public DataContext storePriors()
+	{
+		DataContext dataContext = new DataContext();
+
+		for(int c=0; c<classes.length; c++)
+			dataContext.add(new NodePair(classes[c], String.valueOf(priors[c])));
+
+		return dataContext;
+	}
+
+
+	/**
+	 * @return the classes
+	 */
+	public String[] getClasses() {
+		return classes;
+	}
+
+
+	/**
+	 * @return the classIndex
+	 */
+	public int getClassIndex() {
+		return classIndex;
+	}
+
+
+	/**
+	 * @return the priors
+	 */
+	public double[] getPriors() {
+		return priors;
+	}
+
+
+	/**
+	 * Resolves the features and allocates the parameter arrays
+	 *
+	 * @param dataHeaders
+	 * @param classIndex
+	 */
+	private void initialize(DataHeader[] dataHeaders, int classIndex)
+	{
+		this.classIndex = classIndex;
+		this.classes = dataHeaders[classIndex].getAvailableValue();
+
+		classValueIndexes = new HashMap<String, Integer>();
+		for(int c=classes.length - 1; c>=0; c--)
+			classValueIndexes.put(classes[c], Integer.valueOf(c));
+
+		int numFeatures = 0;
+		for(int j=0; j<dataHeaders.length; j++)
+			if(j != classIndex && dataHeaders[j].isValid())
+				numFeatures++;
+
+		featureIndexes = new int[numFeatures];
+		nominal = new boolean[numFeatures];
+		keys = new String[numFeatures][];
+		keyIndexes = new ArrayList<HashMap<String, Integer>>(numFeatures);
+
+		int numClasses = classes.length;
+		priors = new double[numClasses];
+		logPriors = new double[numClasses];
+		means = new double[numFeatures * numClasses];
+		variances = new double[numFeatures * numClasses];
+		logNormalizers = new double[numFeatures * numClasses];
+		inverseStdDevs = new double[numFeatures * numClasses];
+		frequencies = new double[numFeatures * numClasses][];
+		logFrequencies = new double[numFeatures][];
+
+		int f = 0;
+		for(int j=0; j<dataHeaders.length; j++)
+		{
+			if(j == classIndex || !dataHeaders[j].isValid())
+				continue;
+
+			featureIndexes[f] = j;
+			nominal[f] = dataHeaders[j].isNominal();
+			keyIndexes.add(nominal[f] ? new HashMap<String, Integer>() : null);
+
+			if(nominal[f])
+			{
+				keys[f] = dataHeaders[j].getAvailableValue();
+				for(int v=0; v<keys[f].length; v++)
+					keyIndexes.get(f).put(keys[f][v], Integer.valueOf(v));
+
+				for(int c=0; c<numClasses; c++)
+					frequencies[f * numClasses + c] = new double[keys[f].length];
+				logFrequencies[f] = new double[keys[f].length * numClasses];
+			}
+			f++;
+		}
+	}
+
+
+	/**
+	 * Precalculates the values used in categorize from the means, variances and frequencies
+	 */
+	private void prepareScoring()
+	{
+		int numClasses = classes.length;
+
+		for(int f=0; f<featureIndexes.length; f++)
+		{
+			for(int c=0; c<numClasses; c++)
+			{
+				int p = f * numClasses + c;
+
+				if(nominal[f])
+				{
+					for(int v=0; v<keys[f].length; v++)
+						logFrequencies[f][v * numClasses + c] = Math.log(frequencies[p][v]);
+				}
+				else if(variances[p] == 0)
+				{
+					// all values are the same, the log probability is fixed as in NormalDistribution
+					logNormalizers[p] = 1.0;
+					inverseStdDevs[p] = 0;
+				}
+				else
+				{
+					double standardDev = Math.sqrt(variances[p]);
+					logNormalizers[p] = 0 - Math.log(standardDev) - logSqrtTwoPi;
+					inverseStdDevs[p] = 1 / standardDev;
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * @param distributions
+	 * @param classValue
+	 * @return the distribution of the classValue, null if not found
+	 */
+	private static Distribution findDistribution(Distributions distributions, String classValue)
+	{
+		for(int d=0; distributions != null && distributions.getDistributions() != null && d<distributions.getDistributions().length; d++)
+		{
+			Distribution distribution = distributions.getDistributions()[d];
+			if(distribution != null && classValue.equals(distribution.getClassValue()))
+				return distribution;
+		}
+
+		return null;
+	}
+}
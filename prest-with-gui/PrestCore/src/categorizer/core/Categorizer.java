@@ -1,6 +1,7 @@
 package categorizer.core;
 
 import java.lang.reflect.Constructor;
+import java.util.HashMap;
 import java.util.Vector;
 
 import categorizer.aiCategorizer.core.ConfusionMatrix;
@@ -325,6 +326,36 @@ public abstract class Categorizer implements ContextBuilder, OptionHandler{
 	 *  with its class set
 	 */
 	public DataItem categorize(DataItem dataItem) throws Exception
+	{
+		checkDataHeaders(dataItem.getDataHeaders());
+		
+		return applyVirtualHeaders(dataItem);
+	}
+	
+	/**
+	 * Categorizes all of the given dataItems. Subclasses that can classify a whole
+	 * array faster than one item at a time should override this method, the default
+	 * implementation simply calls categorize for each of the items.
+	 * 
+	 * @param dataItems
+	 * @return dataItems with their classes set
+	 */
+	public DataItem[] categorize(DataItem[] dataItems) throws Exception
+	{
+		for(int i=0; i<dataItems.length; i++)
+			dataItems[i] = categorize(dataItems[i]);
+		
+		return dataItems;
+	}
+	
+	/**
+	 * Compares the real DataHeaders of the dataSet, i.e. DataHeaders other than the 
+	 * virtual ones, with the given DataHeaders of a DataItem 
+	 * 
+	 * @param dataItemDataHeaders
+	 * @throws InvalidDataItemException if any of the real DataHeaders is missing
+	 */
+	protected void checkDataHeaders(DataHeader[] dataItemDataHeaders) throws InvalidDataItemException
 	{
 		DataHeader[] dataSetTotalDataHeaders = dataSet.getDataHeaders();
 		
@@ -361,10 +392,6 @@ public abstract class Categorizer implements ContextBuilder, OptionHandler{
 			dataSetRealDataHeaders = dataSet.getDataHeaders();
 		}
 		
-		
-		
-		DataHeader[] dataItemDataHeaders = dataItem.getDataHeaders();
-		
 		boolean invalidDataItem = true;
 		
 		// compare the real DataHeaders of the dataSet with the given DataItem instance;
@@ -382,7 +409,16 @@ public abstract class Categorizer implements ContextBuilder, OptionHandler{
 			if(invalidDataItem)
 				throw new InvalidDataItemException();
 		}
-		
+	}
+	
+	/**
+	 * Adds the values of the virtual headers of the dataSet to the given dataItem
+	 * 
+	 * @param dataItem
+	 * @return the modified dataItem
+	 */
+	protected DataItem applyVirtualHeaders(DataItem dataItem) throws Exception
+	{
 		int numDataSetDataHeaders = dataSet.getDataHeaders().length;
 		
 		int numDataSetVirtualHeaders = 0;
@@ -399,6 +435,34 @@ public abstract class Categorizer implements ContextBuilder, OptionHandler{
 		return dataItem;
 	}
 	
+	/**
+	 * Adds the values of the virtual headers of the dataSet to all of the given dataItems.
+	 * The virtual headers are compiled once for the batch and all of their values are
+	 * added to a dataItem at once.
+	 * 
+	 * @param dataItems
+	 * @return the modified dataItems
+	 */
+	protected DataItem[] applyVirtualHeaders(DataItem[] dataItems) throws Exception
+	{
+		VirtualMetric[] virtualHeaders = dataSet.getVirtualHeaders();
+		
+		if(virtualHeaders == null || virtualHeaders.length == 0 || dataItems.length == 0)
+			return dataItems;
+		
+		int numDataSetDataHeaders = dataSet.getDataHeaders().length;
+		
+		for(int i=0; i<dataItems.length; i++)
+		{
+			if( numDataSetDataHeaders-virtualHeaders.length == dataItems[i].getDataHeaders().length )
+				dataItems[i].setVirtualHeaders(virtualHeaders);
+		}
+		
+		VirtualMetricProgram.compile(virtualHeaders, dataItems[0].getDataFields()).apply(dataItems);
+		
+		return dataItems;
+	}
+	
 
 	/**
 	 * Loads only the Option from DataContext
@@ -524,13 +588,41 @@ public abstract class Categorizer implements ContextBuilder, OptionHandler{
 		
 		confusionMatrix = new ConfusionMatrix(dataHeader.getAvailableValue());
 		
-		for(int i=0 ; i < data.getDataItems().length ; i++)
+		DataItem[] dataItems = data.getDataItems();
+		String[] actualValues = new String[dataItems.length];
+		
+		for(int i=0 ; i < dataItems.length ; i++)
+			actualValues[i] = dataItems[i].getDataFields()[classIndex].getStringValue();
+		
+		dataItems = this.categorize(dataItems);
+		
+		// the results are counted first and added to the confusion matrix once for each cell
+		String[] labels = dataHeader.getAvailableValue();
+		HashMap<String, Integer> labelIndexes = new HashMap<String, Integer>();
+		for(int i=labels.length - 1; i>=0; i--)
+			labelIndexes.put(labels[i], Integer.valueOf(i));
+		
+		int[][] counts = new int[labels.length][labels.length];
+		
+		for(int i=0 ; i < dataItems.length ; i++)
 		{
-			String tempFieldValue = new String( data.getDataItems()[i].getDataFields()[classIndex].getStringValue() );	
-			data.getDataItems()[i] = this.categorize(data.getDataItems()[i]);
-			confusionMatrix.increment(tempFieldValue, data.getDataItems()[i].getDataFields()[classIndex].getStringValue());
+			String categorizedValue = dataItems[i].getDataFields()[classIndex].getStringValue();
+			Integer row = labelIndexes.get(actualValues[i]);
+			Integer column = labelIndexes.get(categorizedValue);
+			
+			if(row != null && column != null)
+				counts[row.intValue()][column.intValue()]++;
+			else
+				confusionMatrix.increment(actualValues[i], categorizedValue);
 		}
 		
+		for(int i=0; i<labels.length; i++)
+			for(int j=0; j<labels.length; j++)
+				if(counts[i][j] > 0)
+					confusionMatrix.increment(labels[i], labels[j], counts[i][j]);
+		
+		data.setDataItems(dataItems);
+		
 		createPerformanceMetrics();
 		
 		return confusionMatrix;
@@ -8,7 +8,6 @@ import java.util.Vector;
 
 import common.monitor.Logger;
 
-import categorizer.distribution.NormalDistribution;
 
 /**
  * this class is intended to find the distribution for the
@@ -26,37 +25,41 @@ public class DistributionFinder {
 	}
 
 	/**
+	 * Finds the distributions of all data headers for each of the classes and sets them
+	 * to the data headers. The statistics of all headers are collected in a single pass
+	 * over the data items.
+	 * 
 	 * @param dataSet
+	 * @param classes
 	 */
 	public void findDistributions(DataSet dataSet, String[] classes) throws Exception{
+		findDistributions(dataSet, classes, 1);
+	}
+	
+	/**
+	 * Finds the distributions of all data headers for each of the classes and sets them
+	 * to the data headers. The data headers are split into numThreads blocks whose 
+	 * statistics are collected in parallel.
+	 * 
+	 * @param dataSet
+	 * @param classes
+	 * @param numThreads
+	 */
+	public void findDistributions(DataSet dataSet, String[] classes, int numThreads) throws Exception{
 		
 		int classIndex = dataSet.getDataHeaders().length - 1;
 		if(dataSet.getClassIndex() != -1 && classIndex != dataSet.getClassIndex())
 			classIndex = dataSet.getClassIndex();
 		
-		for (int i = 0; i < dataSet.getDataHeaders().length; i++) {
-
-			
-				DataHeader dataHeader = ((DataHeader) dataSet.getDataHeaders()[i]);
-				Distributions distributions = new Distributions(classes.length);
-				distributions.setClasses(classes);
-				if(!dataHeader.isNominal()) {
-					for(int j=0; j<classes.length; j++)
-					{
-						NormalDistribution normalDistribution = new NormalDistribution(dataSet,i,j);
-						distributions.setDistribution(j, normalDistribution);
-					}
-				} else {
-					for(int j=0; j<classes.length; j++)
-					{
-						FrequencyDistribution frequencyDistribution = new FrequencyDistribution (dataSet,i,j);
-						distributions.setDistribution(j, frequencyDistribution);
-					}
-				}
-				
-				dataHeader.setDistributions(distributions);
-			
-		}
+		int[] headerIndexes = new int[dataSet.getDataHeaders().length];
+		for (int i = 0; i < headerIndexes.length; i++)
+			headerIndexes[i] = i;
+		
+		DistributionStatistics statistics = new DistributionStatistics(dataSet.getDataHeaders(), classIndex, classes, headerIndexes);
+		statistics.collect(dataSet.getDataItems(), numThreads);
+		
+		for (int i = 0; i < headerIndexes.length; i++)
+			dataSet.getDataHeaders()[i].setDistributions(statistics.createDistributions(i));
 	}
 
 	public void setDistribution(DataSet dataSet, int index, int classValueIndex, String distributionName) throws Exception {
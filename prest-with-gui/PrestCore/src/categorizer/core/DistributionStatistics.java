@@ -0,0 +1,361 @@
+/**
+ *
+ */
+package categorizer.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import categorizer.distribution.NormalDistribution;
+
+/**
+ * Collects the sufficient statistics of the distributions of a set of data headers
+ * for every class value: count, mean and sum of squared differences (Welford) for
+ * numeric headers and the frequency table for nominal headers.
+ *
+ * <p>The statistics of all headers are collected in a single pass over the data items,
+ * optionally split into blocks of headers that are processed in parallel. The
+ * Distributions objects are created from the collected statistics at the end.
+ *
+ * <p>Statistics of header h and class c are kept at index h * classes.length + c.
+ */
+public class DistributionStatistics {
+
+	/**
+	 * Holds the class values
+	 */
+	private String[] classes;
+
+	/**
+	 * Holds the index of each class value in classes
+	 */
+	private HashMap<String, Integer> classValueIndexes;
+
+	/**
+	 * index of the class attribute in the data fields
+	 */
+	private int classIndex;
+
+	/**
+	 * index of the data field of each header whose statistics are collected
+	 */
+	private int[] headerIndexes;
+
+	/**
+	 * true if the header is nominal
+	 */
+	private boolean[] nominal;
+
+	/**
+	 * available values of the nominal headers
+	 */
+	private String[][] keys;
+
+	/**
+	 * index of each available value of the nominal headers
+	 */
+	private List<HashMap<String, Integer>> keyIndexes;
+
+	/**
+	 * number of data items of each class value
+	 */
+	private long[] classCounts;
+
+	/**
+	 * means of the numeric headers per class
+	 */
+	private double[] means;
+
+	/**
+	 * sums of squared differences from the mean of the numeric headers per class
+	 */
+	private double[] m2;
+
+	/**
+	 * counts of the available values of the nominal headers,
+	 * kept as [header][value * classes.length + class]
+	 */
+	private int[][] counts;
+
+
+	/**
+	 * @param dataHeaders
+	 * @param classIndex
+	 * @param classes the class values, in the order of the distributions to be created
+	 * @param headerIndexes indexes of the dataHeaders whose statistics will be collected
+	 */
+	public DistributionStatistics(DataHeader[] dataHeaders, int classIndex, String[] classes, int[] headerIndexes)
+	{
+		this.classIndex = classIndex;
+		this.classes = classes;
+		this.headerIndexes = headerIndexes;
+
+		classValueIndexes = new HashMap<String, Integer>();
+		for(int c=classes.length - 1; c>=0; c--)
+			classValueIndexes.put(classes[c], Integer.valueOf(c));
+
+		int numHeaders = headerIndexes.length;
+		int numClasses = classes.length;
+
+		nominal = new boolean[numHeaders];
+		keys = new String[numHeaders][];
+		keyIndexes = new ArrayList<HashMap<String, Integer>>(numHeaders);
+		counts = new int[numHeaders][];
+		classCounts = new long[numClasses];
+		means = new double[numHeaders * numClasses];
+		m2 = new double[numHeaders * numClasses];
+
+		for(int h=0; h<numHeaders; h++)
+		{
+			DataHeader dataHeader = dataHeaders[headerIndexes[h]];
+			nominal[h] = dataHeader.isNominal();
+			keyIndexes.add(nominal[h] ? new HashMap<String, Integer>() : null);
+
+			if(nominal[h])
+			{
+				keys[h] = dataHeader.getAvailableValue();
+				for(int v=keys[h].length - 1; v>=0; v--)
+					keyIndexes.get(h).put(keys[h][v], Integer.valueOf(v));
+				counts[h] = new int[keys[h].length * numClasses];
+			}
+		}
+	}
+
+
+	/**
+	 * Collects the statistics of all headers from the dataItems
+	 *
+	 * @param dataItems
+	 * @throws IllegalDataException if a nominal value is not one of the available values
+	 */
+	public void collect(DataItem[] dataItems) throws IllegalDataException
+	{
+		collect(dataItems, 1);
+	}
+
+	/**
+	 * Collects the statistics of all headers from the dataItems. The headers are split
+	 * into numThreads blocks and each block is collected by a separate thread.
+	 *
+	 * @param dataItems
+	 * @param numThreads
+	 * @throws IllegalDataException if a nominal value is not one of the available values
+	 */
+	public void collect(final DataItem[] dataItems, int numThreads) throws IllegalDataException
+	{
+		final int[] itemClasses = findItemClasses(dataItems);
+
+		int numHeaders = headerIndexes.length;
+
+		if(numThreads <= 1 || numHeaders <= 1)
+		{
+			collect(dataItems, itemClasses, 0, numHeaders);
+			return;
+		}
+
+		numThreads = Math.min(numThreads, numHeaders);
+		int blockSize = (numHeaders + numThreads - 1) / numThreads;
+
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		ArrayList<Future<Object>> futures = new ArrayList<Future<Object>>();
+
+		try{
+			for(int from=0; from<numHeaders; from+=blockSize)
+			{
+				final int blockFrom = from;
+				final int blockTo = Math.min(from + blockSize, numHeaders);
+
+				futures.add(executor.submit(new Callable<Object>() {
+					public Object call() throws Exception {
+						collect(dataItems, itemClasses, blockFrom, blockTo);
+						return null;
+					}
+				}));
+			}
+
+			for(int i=0; i<futures.size(); i++)
+			{
+				try {
+					futures.get(i).get();
+				} catch (ExecutionException e) {
+					if(e.getCause() instanceof IllegalDataException)
+						throw (IllegalDataException)e.getCause();
+					throw new RuntimeException(e.getCause());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException(e);
+				}
+			}
+		}
+		finally{
+			executor.shutdown();
+		}
+	}
+
+
+	/**
+	 * @param h index of the header in headerIndexes
+	 * @return the Distributions of the header, one for each class value
+	 */
+	public Distributions createDistributions(int h)
+	{
+		Distributions distributions = new Distributions(classes.length);
+		distributions.setClasses(classes);
+
+		for(int c=0; c<classes.length; c++)
+		{
+			if(nominal[h])
+				distributions.setDistribution(c, new FrequencyDistribution(classes[c], keys[h], getFrequencies(h, c)));
+			else
+				distributions.setDistribution(c, new NormalDistribution(classes[c], getMean(h, c), getVariance(h, c)));
+		}
+
+		return distributions;
+	}
+
+	/**
+	 * @param c index of the class value
+	 * @return the number of data items of the class value
+	 */
+	public long getClassCount(int c)
+	{
+		return classCounts[c];
+	}
+
+	/**
+	 * @param h index of the header in headerIndexes
+	 * @param c index of the class value
+	 * @return the mean of the numeric header for the class value
+	 */
+	public double getMean(int h, int c)
+	{
+		if(classCounts[c] == 0)
+			return Double.NaN;
+
+		return means[h * classes.length + c];
+	}
+
+	/**
+	 * @param h index of the header in headerIndexes
+	 * @param c index of the class value
+	 * @return the (population) variance of the numeric header for the class value
+	 */
+	public double getVariance(int h, int c)
+	{
+		return m2[h * classes.length + c] / classCounts[c];
+	}
+
+	/**
+	 * The frequencies are smoothed by adding one to the count of every available value
+	 *
+	 * @param h index of the header in headerIndexes
+	 * @param c index of the class value
+	 * @return the normalized frequencies of the available values of the nominal header
+	 * for the class value
+	 */
+	public double[] getFrequencies(int h, int c)
+	{
+		double[] frequencies = new double[keys[h].length];
+
+		for(int v=0; v<keys[h].length; v++)
+			frequencies[v] = ((double)(counts[h][v * classes.length + c] + 1)) / (classCounts[c] + keys[h].length);
+
+		return frequencies;
+	}
+
+
+	/**
+	 * Finds the class value index of every data item and counts the class values
+	 *
+	 * @param dataItems
+	 * @return the class value index of each dataItem, -1 if it is not one of the classes
+	 */
+	private int[] findItemClasses(DataItem[] dataItems)
+	{
+		int[] itemClasses = new int[dataItems.length];
+
+		for(int i=0; i<dataItems.length; i++)
+		{
+			Integer classValueIndex = classValueIndexes.get(dataItems[i].getDataFields()[classIndex].getStringValue());
+
+			if(classValueIndex == null)
+				itemClasses[i] = -1;
+			else
+			{
+				itemClasses[i] = classValueIndex.intValue();
+				classCounts[itemClasses[i]]++;
+			}
+		}
+
+		return itemClasses;
+	}
+
+	/**
+	 * Collects the statistics of the headers in [from, to)
+	 *
+	 * @param dataItems
+	 * @param itemClasses
+	 * @param from
+	 * @param to
+	 * @throws IllegalDataException
+	 */
+	private void collect(DataItem[] dataItems, int[] itemClasses, int from, int to) throws IllegalDataException
+	{
+		int numClasses = classes.length;
+
+		// number of items of each class seen so far, needed by the Welford update
+		long[] seen = new long[numClasses];
+
+		for(int i=0; i<dataItems.length; i++)
+		{
+			int c = itemClasses[i];
+			if(c == -1)
+				continue;
+
+			long n = ++seen[c];
+			DataField[] dataFields = dataItems[i].getDataFields();
+
+			for(int h=from; h<to; h++)
+			{
+				DataField dataField = dataFields[headerIndexes[h]];
+
+				if(nominal[h])
+				{
+					Integer keyIndex = keyIndexes.get(h).get(dataField.getStringValue());
+					if(keyIndex == null)
+						throw new IllegalDataException();
+
+					counts[h][keyIndex.intValue() * numClasses + c]++;
+				}
+				else
+				{
+					int p = h * numClasses + c;
+					double value = numericValue(dataField);
+					double delta = value - means[p];
+					means[p] += delta / n;
+					m2[p] += delta * (value - means[p]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param dataField
+	 * @return the double value of a numeric dataField
+	 */
+	public static double numericValue(DataField dataField)
+	{
+		Object value = dataField.getValue();
+
+		if(value instanceof Double)
+			return ((Double)value).doubleValue();
+
+		return Double.parseDouble(dataField.getStringValue());
+	}
+}
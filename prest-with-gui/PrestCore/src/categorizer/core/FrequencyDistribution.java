@@ -79,7 +79,7 @@ public class FrequencyDistribution extends Distribution {
 		try {
 			Vector tempVector = frequencies.getElements2((String) variable);
 			if(tempVector != null && tempVector.size() > 0)
-				return Double.parseDouble((String)tempVector.get(0));
+				return Math.log(Double.parseDouble((String)tempVector.get(0)));
 			else
 				return Math.log(Double.MIN_VALUE);
 
@@ -108,6 +108,22 @@ public class FrequencyDistribution extends Distribution {
 		className = "categorizer.core.FrequencyDistribution" ;
 	}
 	
+	/**
+	 * @param classValue
+	 * @param keys is the array of attribute values
+	 * @param normalizedFrequencies holds the normalized frequency of each key
+	 */
+	public FrequencyDistribution(String classValue, String[] keys, double[] normalizedFrequencies)
+	{
+		this(classValue, keys);
+		
+		frequencies = new DataContext();
+		
+		for (int i = 0; i < keys.length; i++) {
+			frequencies.add(new NodePair(keys[i], String.valueOf(normalizedFrequencies[i])));
+		}
+	}
+	
 	/**
 	 * @param keys is the array of attribute values
 	 * @param dataItems
@@ -30,4 +30,34 @@ public enum MetricOperator {
     	return this.unary;
     }
 
+    /**
+     * Applies the operator to the operands
+     * @param first
+     * @param second ignored if the operator is unary
+     * @return the result of the operation
+     */
+    public double evaluate(double first, double second)
+    {
+    	switch(this)
+    	{
+    	case ADD:
+    		return first + second;
+    	case SUB:
+    		return first - second;
+    	case MUL:
+    		return first * second;
+    	case DIV:
+    		return first / second;
+    	case NOT:
+    		return 0 - first;
+    	case LOG:
+    		return Math.log(first);
+    	case POW:
+    		return Math.pow(first, second);
+    	case EXP:
+    		return Math.exp(first);
+    	}
+    	throw new IllegalStateException(name());
+    }
+
 }
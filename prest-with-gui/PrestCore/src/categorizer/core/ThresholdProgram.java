@@ -0,0 +1,523 @@
+/**
+ *
+ */
+package categorizer.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A set of thresholds compiled into flat arrays for a given layout of data fields.
+ *
+ * <p>While compiling, the labels of the threshold dataHeaders and of the dataHeader
+ * operands are resolved to data field indexes once, so evaluating a threshold is an
+ * array access and a double comparison instead of a scan over the data fields with
+ * label comparisons.
+ *
+ * <p>Each fired threshold votes for its class value and the class value with the most
+ * votes is decided, in the same way as StaticCategorizer. A tie is decided as the
+ * previous StaticCategorizer did, by the iteration order of a HashMap holding the fired
+ * class values in the order they first fired. Thresholds can also be explained, i.e.
+ * the thresholds that fired for a dataItem can be listed.
+ */
+public class ThresholdProgram {
+
+	/**
+	 * the compiled thresholds
+	 */
+	private Threshold[] thresholds;
+
+	/**
+	 * operator of each threshold
+	 */
+	private ThresholdOperator[] operators;
+
+	/**
+	 * true if the threshold compares nominal values
+	 */
+	private boolean[] nominal;
+
+	/**
+	 * data field index of the value of each threshold
+	 */
+	private int[] columns;
+
+	/**
+	 * data field index of the first operand, -1 if the operand is a constant
+	 */
+	private int[] operandColumns;
+
+	/**
+	 * value of the first operand if it is a numeric constant
+	 */
+	private double[] operandValues;
+
+	/**
+	 * value of the first operand if it is a nominal constant
+	 */
+	private String[] nominalOperandValues;
+
+	/**
+	 * data field index of the second operand of BTW, -1 if the operand is a constant
+	 */
+	private int[] secondOperandColumns;
+
+	/**
+	 * value of the second operand of BTW if it is a constant
+	 */
+	private double[] secondOperandValues;
+
+	/**
+	 * index of the class value of each threshold in classValues
+	 */
+	private int[] thresholdClasses;
+
+	/**
+	 * distinct class values of the thresholds, in the order of the thresholds
+	 */
+	private String[] classValues;
+
+	/**
+	 * data field indexes whose numeric values are read for every dataItem
+	 */
+	private int[] numericColumns;
+
+	/**
+	 * number of data fields in the layout the program is compiled for
+	 */
+	private int numColumns;
+
+
+	/**
+	 * use compile to create a program
+	 */
+	private ThresholdProgram() {
+	}
+
+
+	/**
+	 * Compiles the thresholds of the valid dataHeaders for dataItems whose data fields are
+	 * laid out as the given dataFields
+	 *
+	 * @param dataHeaders dataHeaders holding the thresholds
+	 * @param dataFields data fields of a sample dataItem
+	 * @return the compiled program
+	 * @throws UnsupportedThresholdException if a threshold can not be evaluated on the layout
+	 */
+	public static ThresholdProgram compile(DataHeader[] dataHeaders, DataField[] dataFields) throws UnsupportedThresholdException
+	{
+		ArrayList<Threshold> thresholdList = new ArrayList<Threshold>();
+
+		for(int i=0; i<dataHeaders.length && i<dataFields.length; i++)
+		{
+			Threshold[] headerThresholds = dataHeaders[i].getThresholds();
+
+			if(dataHeaders[i].isValid())
+				for(int j=0; headerThresholds != null && j<headerThresholds.length; j++)
+					thresholdList.add(headerThresholds[j]);
+		}
+
+		ThresholdProgram program = new ThresholdProgram();
+		int n = thresholdList.size();
+
+		program.numColumns = dataFields.length;
+		program.thresholds = thresholdList.toArray(new Threshold[n]);
+		program.operators = new ThresholdOperator[n];
+		program.nominal = new boolean[n];
+		program.columns = new int[n];
+		program.operandColumns = new int[n];
+		program.operandValues = new double[n];
+		program.nominalOperandValues = new String[n];
+		program.secondOperandColumns = new int[n];
+		program.secondOperandValues = new double[n];
+		program.thresholdClasses = new int[n];
+
+		HashMap<String, Integer> classValueMap = new HashMap<String, Integer>();
+		ArrayList<String> classValueList = new ArrayList<String>();
+		for(int r=0; r<n; r++)
+		{
+			if(!classValueMap.containsKey(program.thresholds[r].getClassValue()))
+			{
+				classValueMap.put(program.thresholds[r].getClassValue(), Integer.valueOf(classValueList.size()));
+				classValueList.add(program.thresholds[r].getClassValue());
+			}
+		}
+		program.classValues = classValueList.toArray(new String[classValueList.size()]);
+
+		boolean[] numericColumn = new boolean[dataFields.length];
+
+		for(int r=0; r<n; r++)
+		{
+			Threshold threshold = program.thresholds[r];
+			Operand[] operands = threshold.getOperands();
+
+			program.operators[r] = threshold.getOperator();
+			program.nominal[r] = threshold.getDataHeader().isNominal();
+			program.columns[r] = findColumn(dataFields, threshold.getDataHeader().getLabel());
+			program.thresholdClasses[r] = classValueMap.get(threshold.getClassValue()).intValue();
+			program.operandColumns[r] = -1;
+			program.secondOperandColumns[r] = -1;
+
+			if(program.operators[r] == null || operands == null || operands.length == 0
+					|| (program.operators[r] == ThresholdOperator.BTW && operands.length < 2))
+				throw new UnsupportedThresholdException();
+
+			if(program.nominal[r])
+			{
+				if(program.operators[r] != ThresholdOperator.EQU)
+					throw new UnsupportedThresholdException();
+
+				if(operands[0].isDataHeader())
+					program.operandColumns[r] = findColumn(dataFields, operandLabel(operands[0]));
+				else
+					program.nominalOperandValues[r] = String.valueOf(operands[0].getOperandValue());
+			}
+			else
+			{
+				numericColumn[program.columns[r]] = true;
+
+				if(operands[0].isDataHeader())
+				{
+					program.operandColumns[r] = findColumn(dataFields, operandLabel(operands[0]));
+					numericColumn[program.operandColumns[r]] = true;
+				}
+				else
+					program.operandValues[r] = ((Number)operands[0].getOperandValue()).doubleValue();
+
+				if(program.operators[r] == ThresholdOperator.BTW)
+				{
+					if(operands[1].isDataHeader())
+					{
+						program.secondOperandColumns[r] = findColumn(dataFields, operandLabel(operands[1]));
+						numericColumn[program.secondOperandColumns[r]] = true;
+					}
+					else
+						program.secondOperandValues[r] = ((Number)operands[1].getOperandValue()).doubleValue();
+				}
+			}
+		}
+
+		int numNumericColumns = 0;
+		for(int k=0; k<numericColumn.length; k++)
+			if(numericColumn[k])
+				numNumericColumns++;
+
+		program.numericColumns = new int[numNumericColumns];
+		for(int k=0, m=0; k<numericColumn.length; k++)
+			if(numericColumn[k])
+				program.numericColumns[m++] = k;
+
+		return program;
+	}
+
+
+	/**
+	 * @param dataFields
+	 * @return true if the program was compiled for the layout of the dataFields
+	 */
+	public boolean isCompiledFor(DataField[] dataFields)
+	{
+		return dataFields.length == numColumns;
+	}
+
+	/**
+	 * @return number of thresholds in the program
+	 */
+	public int size()
+	{
+		return thresholds.length;
+	}
+
+	/**
+	 * @param index
+	 * @return the threshold at the index
+	 */
+	public Threshold getThreshold(int index)
+	{
+		return thresholds[index];
+	}
+
+
+	/**
+	 * Evaluates all thresholds on the dataItem
+	 *
+	 * @param dataItem
+	 * @return the class value with the most fired thresholds, null if none of them fired
+	 */
+	public String evaluate(DataItem dataItem)
+	{
+		return decide(vote(dataItem.getDataFields(), new double[numColumns], new Ballot(classValues.length)));
+	}
+
+	/**
+	 * Evaluates all thresholds on each of the dataItems
+	 *
+	 * @param dataItems
+	 * @return the decided class value for each dataItem, null if none of the thresholds fired
+	 */
+	public String[] evaluate(DataItem[] dataItems)
+	{
+		String[] decided = new String[dataItems.length];
+		double[] row = new double[numColumns];
+		Ballot ballot = new Ballot(classValues.length);
+
+		for(int i=0; i<dataItems.length; i++)
+			decided[i] = decide(vote(dataItems[i].getDataFields(), row, ballot));
+
+		return decided;
+	}
+
+	/**
+	 * @param dataItem
+	 * @return the thresholds that fire for the dataItem
+	 */
+	public Threshold[] firedThresholds(DataItem dataItem)
+	{
+		DataField[] dataFields = dataItem.getDataFields();
+		double[] row = readRow(dataFields, new double[numColumns]);
+		ArrayList<Threshold> fired = new ArrayList<Threshold>();
+
+		for(int r=0; r<thresholds.length; r++)
+			if(fires(r, dataFields, row))
+				fired.add(thresholds[r]);
+
+		return fired.toArray(new Threshold[fired.size()]);
+	}
+
+	/**
+	 * @param dataItem
+	 * @return a description of the thresholds that fire for the dataItem and the decided class
+	 */
+	public String explain(DataItem dataItem)
+	{
+		Threshold[] fired = firedThresholds(dataItem);
+		StringBuffer buffer = new StringBuffer();
+
+		for(int i=0; i<fired.length; i++)
+		{
+			buffer.append(describe(fired[i]));
+			buffer.append('\n');
+		}
+
+		buffer.append("class : ");
+		buffer.append(evaluate(dataItem));
+
+		return buffer.toString();
+	}
+
+	/**
+	 * @param threshold
+	 * @return the threshold in the form "label operator operand(s) => class"
+	 */
+	public static String describe(Threshold threshold)
+	{
+		StringBuffer buffer = new StringBuffer();
+		Operand[] operands = threshold.getOperands();
+
+		buffer.append(threshold.getDataHeader().getLabel());
+		buffer.append(' ');
+		buffer.append(threshold.getOperator().operator());
+
+		for(int i=0; operands != null && i<operands.length; i++)
+		{
+			buffer.append(' ');
+			if(operands[i].isDataHeader())
+				buffer.append(operandLabel(operands[i]));
+			else
+				buffer.append(operands[i].getOperandValue());
+		}
+
+		buffer.append(" => ");
+		buffer.append(threshold.getClassValue());
+
+		return buffer.toString();
+	}
+
+
+	/**
+	 * Counts the fired thresholds of each class value
+	 *
+	 * @param dataFields
+	 * @param row holds the numeric values of the data fields
+	 * @param ballot holds the counts of the class values
+	 * @return ballot
+	 */
+	private Ballot vote(DataField[] dataFields, double[] row, Ballot ballot)
+	{
+		readRow(dataFields, row);
+
+		for(int c=0; c<ballot.votes.length; c++)
+			ballot.votes[c] = 0;
+		ballot.numFired = 0;
+
+		for(int r=0; r<thresholds.length; r++)
+		{
+			if(fires(r, dataFields, row))
+			{
+				int c = thresholdClasses[r];
+				if(ballot.votes[c]++ == 0)
+					ballot.firedClasses[ballot.numFired++] = c;
+			}
+		}
+
+		return ballot;
+	}
+
+	/**
+	 * @param ballot
+	 * @return the class value with the most votes, null if there is no vote
+	 */
+	private String decide(Ballot ballot)
+	{
+		int maxVotes = 0;
+		int numMaxVotes = 0;
+		String classValue = null;
+
+		for(int k=0; k<ballot.numFired; k++)
+		{
+			int c = ballot.firedClasses[k];
+			if(ballot.votes[c] > maxVotes)
+			{
+				maxVotes = ballot.votes[c];
+				numMaxVotes = 1;
+				classValue = classValues[c];
+			}
+			else if(ballot.votes[c] == maxVotes)
+				numMaxVotes++;
+		}
+
+		if(numMaxVotes > 1)
+			classValue = breakTie(ballot, maxVotes);
+
+		return classValue;
+	}
+
+	/**
+	 * Decides between the class values with the most votes in the iteration order of
+	 * a HashMap holding the fired class values in the order they first fired, which
+	 * is how the previous StaticCategorizer decided
+	 *
+	 * @param ballot
+	 * @param maxVotes
+	 * @return the first class value with maxVotes votes in the iteration order
+	 */
+	private String breakTie(Ballot ballot, int maxVotes)
+	{
+		HashMap<String, Integer> classMap = new HashMap<String, Integer>();
+		for(int k=0; k<ballot.numFired; k++)
+			classMap.put(classValues[ballot.firedClasses[k]], Integer.valueOf(ballot.votes[ballot.firedClasses[k]]));
+
+		for(Map.Entry<String, Integer> entry : classMap.entrySet())
+			if(entry.getValue().intValue() == maxVotes)
+				return entry.getKey();
+
+		return null;
+	}
+
+	/**
+	 * Reads the numeric values used by the thresholds into row
+	 *
+	 * @param dataFields
+	 * @param row
+	 * @return row
+	 */
+	private double[] readRow(DataField[] dataFields, double[] row)
+	{
+		for(int k=0; k<numericColumns.length; k++)
+			row[numericColumns[k]] = DistributionStatistics.numericValue(dataFields[numericColumns[k]]);
+
+		return row;
+	}
+
+	/**
+	 * @param r index of the threshold
+	 * @param dataFields
+	 * @param row
+	 * @return true if the threshold fires
+	 */
+	private boolean fires(int r, DataField[] dataFields, double[] row)
+	{
+		if(nominal[r])
+		{
+			String operand = operandColumns[r] == -1 ? nominalOperandValues[r] : dataFields[operandColumns[r]].getStringValue();
+			return operand.equals(dataFields[columns[r]].getValue());
+		}
+
+		double value = row[columns[r]];
+		double operand = operandColumns[r] == -1 ? operandValues[r] : row[operandColumns[r]];
+
+		switch(operators[r])
+		{
+			case GT:
+				return operand < value;
+			case GTE:
+				return operand <= value;
+			case LT:
+				return operand > value;
+			case LTE:
+				return operand >= value;
+			case EQU:
+				return operand == value;
+			case BTW:
+				double secondOperand = secondOperandColumns[r] == -1 ? secondOperandValues[r] : row[secondOperandColumns[r]];
+				return operand <= value && secondOperand >= value;
+		}
+
+		return false;
+	}
+
+	/**
+	 * @param dataFields
+	 * @param label
+	 * @return index of the first data field whose dataHeader has the label, ignoring case
+	 * @throws UnsupportedThresholdException if there is no such data field
+	 */
+	private static int findColumn(DataField[] dataFields, String label) throws UnsupportedThresholdException
+	{
+		for(int k=0; k<dataFields.length; k++)
+			if(dataFields[k].getDataHeader() != null && dataFields[k].getDataHeader().getLabel().equalsIgnoreCase(label))
+				return k;
+
+		throw new UnsupportedThresholdException();
+	}
+
+	/**
+	 * @param operand
+	 * @return label of a dataHeader operand, which is either the dataHeader or its stored label
+	 */
+	private static String operandLabel(Operand operand)
+	{
+		if(operand.getOperandValue() instanceof DataHeader)
+			return ((DataHeader)operand.getOperandValue()).getLabel();
+
+		return String.valueOf(operand.getOperandValue());
+	}
+
+
+	/**
+	 * the votes of the class values for a dataItem
+	 */
+	private static class Ballot {
+
+		/**
+		 * number of fired thresholds of each class value
+		 */
+		int[] votes;
+
+		/**
+		 * class values with votes, in the order they first fired
+		 */
+		int[] firedClasses;
+
+		/**
+		 * number of class values in firedClasses
+		 */
+		int numFired;
+
+		Ballot(int numClassValues) {
+			votes = new int[numClassValues];
+			firedClasses = new int[numClassValues];
+		}
+	}
+}
@@ -151,31 +151,7 @@ public class VirtualMetric implements ContextBuilder{
 	 */
 	public DataSet modifySet(DataSet dataSet)
 	{
-		DataHeader[] dataHeaders = new DataHeader[dataSet.getDataHeaders().length + 1];
-		
-		for(int i=0; i<dataHeaders.length-1 ; i++)
-		{
-			dataHeaders[i] = dataSet.getDataHeaders()[i];
-		}
-		dataHeader = new DataHeader();
-		dataHeader.setLabel(label);
-		dataHeader.setNominal(false);
-		
-		dataHeaders[dataHeaders.length-1] = dataHeader;
-		
-		dataSet.setDataHeaders(dataHeaders);
-				
-		DataItem[] dataItems = dataSet.getDataItems();
-		
-		for(int i=0; i<dataItems.length; i++)
-		{
-			DataItem dataItem = dataItems[i];
-			dataItem = modifyItem(dataItem);
-		}
-		
-		dataSet.setDataItems(dataItems);
-		
-		return dataSet;
+		return VirtualMetricProgram.modifySet(dataSet, new VirtualMetric[]{this}, 1);
 	}
 	
 	/**
@@ -195,23 +171,12 @@ public class VirtualMetric implements ContextBuilder{
 		DataField dataField = new DataField();
 		dataField.setDataHeader(dataHeader);
 
-		if(this.operator.equals(MetricOperator.ADD)){
-			dataField.load(String.valueOf(((Double)getValue(dataItem, operands[0])  + (Double)getValue(dataItem, operands[1]))));
-		}else if(this.operator.equals(MetricOperator.SUB)){
-			dataField.load(String.valueOf(((Double)getValue(dataItem, operands[0])  - (Double)getValue(dataItem, operands[1]))));
-		}else if(this.operator.equals(MetricOperator.MUL)){
-			dataField.load(String.valueOf(((Double)getValue(dataItem, operands[0]) * (Double)getValue(dataItem, operands[1]))));
-		}else if(this.operator.equals(MetricOperator.DIV)){
-			dataField.load(String.valueOf(((Double)getValue(dataItem, operands[0])  / (Double)getValue(dataItem, operands[1]))));
-		}else if(this.operator.equals(MetricOperator.NOT)){
-			dataField.load(String.valueOf((0 - (Double)getValue(dataItem, operands[0]))));
-		}else if(this.operator.equals(MetricOperator.LOG)){
-			dataField.load(String.valueOf(Math.log((Double)getValue(dataItem, operands[0]))));
-		}else if(this.operator.equals(MetricOperator.POW)){
-			dataField.load(String.valueOf(Math.pow((Double)getValue(dataItem, operands[0]),(Double)getValue(dataItem, operands[1]))));
-		}else if(this.operator.equals(MetricOperator.EXP)){
-			dataField.load(String.valueOf(Math.exp((Double)getValue(dataItem, operands[0]))));
-		}
+		double first = ((Double)getValue(dataItem, operands[0])).doubleValue();
+		double second = 0;
+		if(!operator.isUnary())
+			second = ((Double)getValue(dataItem, operands[1])).doubleValue();
+		
+		dataField.setValue(Double.valueOf(operator.evaluate(first, second)));
 		
 		dataFields[dataFields.length - 1] = dataField;
 		dataItem.setDataFields(dataFields);
@@ -0,0 +1,377 @@
+/**
+ *
+ */
+package categorizer.core;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A sequence of virtual metrics compiled into flat arrays for a given layout of data fields.
+ *
+ * <p>While compiling, the labels of the dataHeader operands are resolved to column indexes
+ * once. A virtual metric can refer to the label of a virtual metric that comes before it,
+ * so nested expressions are evaluated in the order of the virtual metrics, each one reading
+ * the values computed by the previous ones.
+ *
+ * <p>Applying the program to a dataItem grows its data fields once by the number of virtual
+ * metrics and sets the computed double values directly, without converting them to strings.
+ * The dataItems of a batch can be split into blocks that are processed in parallel.
+ */
+public class VirtualMetricProgram {
+
+	/**
+	 * the compiled virtual metrics
+	 */
+	private VirtualMetric[] virtualMetrics;
+
+	/**
+	 * number of data fields of the layout the program is compiled for
+	 */
+	private int numColumns;
+
+	/**
+	 * dataHeader of the data field created for each virtual metric
+	 */
+	private DataHeader[] dataHeaders;
+
+	/**
+	 * operator of each virtual metric
+	 */
+	private MetricOperator[] operators;
+
+	/**
+	 * column of the first operand, -1 if the operand is a constant.
+	 * Columns from numColumns on are the values of the preceding virtual metrics
+	 */
+	private int[] firstColumns;
+
+	/**
+	 * value of the first operand if it is a constant
+	 */
+	private double[] firstValues;
+
+	/**
+	 * column of the second operand, -1 if the operand is a constant or the operator is unary
+	 */
+	private int[] secondColumns;
+
+	/**
+	 * value of the second operand if it is a constant
+	 */
+	private double[] secondValues;
+
+	/**
+	 * data field columns read by the program
+	 */
+	private int[] referencedColumns;
+
+	/**
+	 * dataHeaders of the referencedColumns in the layout the program is compiled for
+	 */
+	private DataHeader[] referencedDataHeaders;
+
+
+	private VirtualMetricProgram()
+	{
+	}
+
+	/**
+	 * Compiles the virtualMetrics for the layout of the dataFields
+	 *
+	 * @param virtualMetrics
+	 * @param dataFields
+	 * @return the compiled program
+	 * @throws IllegalArgumentException if an operand refers to an unknown label
+	 * or a binary operator lacks its second operand
+	 */
+	public static VirtualMetricProgram compile(VirtualMetric[] virtualMetrics, DataField[] dataFields)
+	{
+		VirtualMetricProgram program = new VirtualMetricProgram();
+
+		int numMetrics = virtualMetrics.length;
+
+		program.virtualMetrics = virtualMetrics;
+		program.numColumns = dataFields.length;
+		program.dataHeaders = new DataHeader[numMetrics];
+		program.operators = new MetricOperator[numMetrics];
+		program.firstColumns = new int[numMetrics];
+		program.firstValues = new double[numMetrics];
+		program.secondColumns = new int[numMetrics];
+		program.secondValues = new double[numMetrics];
+
+		// labels of the data fields followed by the labels of the virtual metrics
+		String[] labels = new String[dataFields.length + numMetrics];
+		for(int i=0; i<dataFields.length; i++)
+			labels[i] = dataFields[i].getDataHeader().getLabel();
+
+		ArrayList<Integer> referencedColumns = new ArrayList<Integer>();
+
+		for(int k=0; k<numMetrics; k++)
+		{
+			VirtualMetric virtualMetric = virtualMetrics[k];
+			Operand[] operands = virtualMetric.getOperands();
+
+			program.dataHeaders[k] = virtualMetric.getDataHeader();
+			program.operators[k] = virtualMetric.getOperator();
+
+			program.firstColumns[k] = resolve(operands[0], labels, dataFields.length, dataFields.length + k, referencedColumns);
+			if(program.firstColumns[k] == -1)
+				program.firstValues[k] = ((Double)operands[0].getOperandValue()).doubleValue();
+
+			program.secondColumns[k] = -1;
+			if(!program.operators[k].isUnary())
+			{
+				if(operands.length < 2)
+					throw new IllegalArgumentException(virtualMetric.getLabel() + " lacks its second operand");
+
+				program.secondColumns[k] = resolve(operands[1], labels, dataFields.length, dataFields.length + k, referencedColumns);
+				if(program.secondColumns[k] == -1)
+					program.secondValues[k] = ((Double)operands[1].getOperandValue()).doubleValue();
+			}
+
+			labels[dataFields.length + k] = program.dataHeaders[k] == null ? null : program.dataHeaders[k].getLabel();
+		}
+
+		program.referencedColumns = new int[referencedColumns.size()];
+		program.referencedDataHeaders = new DataHeader[referencedColumns.size()];
+		for(int i=0; i<program.referencedColumns.length; i++)
+		{
+			program.referencedColumns[i] = referencedColumns.get(i).intValue();
+			program.referencedDataHeaders[i] = dataFields[program.referencedColumns[i]].getDataHeader();
+		}
+
+		return program;
+	}
+
+	/**
+	 * Appends the virtualMetrics to the dataHeaders of the dataSet and adds their values
+	 * to all dataItems in a single pass
+	 *
+	 * @param dataSet
+	 * @param virtualMetrics
+	 * @param numThreads
+	 * @return the modified dataSet
+	 */
+	public static DataSet modifySet(DataSet dataSet, VirtualMetric[] virtualMetrics, int numThreads)
+	{
+		DataHeader[] oldDataHeaders = dataSet.getDataHeaders();
+		DataHeader[] dataHeaders = new DataHeader[oldDataHeaders.length + virtualMetrics.length];
+
+		System.arraycopy(oldDataHeaders, 0, dataHeaders, 0, oldDataHeaders.length);
+
+		for(int k=0; k<virtualMetrics.length; k++)
+		{
+			DataHeader dataHeader = new DataHeader();
+			dataHeader.setLabel(virtualMetrics[k].getLabel());
+			dataHeader.setNominal(false);
+
+			virtualMetrics[k].setDataHeader(dataHeader);
+			dataHeaders[oldDataHeaders.length + k] = dataHeader;
+		}
+
+		dataSet.setDataHeaders(dataHeaders);
+
+		DataItem[] dataItems = dataSet.getDataItems();
+
+		if(dataItems.length > 0)
+			compile(virtualMetrics, dataItems[0].getDataFields()).apply(dataItems, numThreads);
+
+		return dataSet;
+	}
+
+
+	/**
+	 * @param dataFields
+	 * @return true if the program was compiled for the layout of the dataFields
+	 */
+	public boolean isCompiledFor(DataField[] dataFields)
+	{
+		if(dataFields.length != numColumns)
+			return false;
+
+		for(int i=0; i<referencedColumns.length; i++)
+			if(dataFields[referencedColumns[i]].getDataHeader() != referencedDataHeaders[i])
+				return false;
+
+		return true;
+	}
+
+	/**
+	 * @return the compiled virtual metrics
+	 */
+	public VirtualMetric[] getVirtualMetrics()
+	{
+		return virtualMetrics;
+	}
+
+
+	/**
+	 * Adds the values of all virtual metrics to the dataItem. A dataItem with a different
+	 * layout of data fields is modified by the virtual metrics one by one.
+	 *
+	 * @param dataItem
+	 * @return the modified dataItem
+	 */
+	public DataItem apply(DataItem dataItem)
+	{
+		DataField[] dataFields = dataItem.getDataFields();
+
+		if(!isCompiledFor(dataFields))
+		{
+			for(int k=0; k<virtualMetrics.length; k++)
+				dataItem = virtualMetrics[k].modifyItem(dataItem);
+
+			return dataItem;
+		}
+
+		int numMetrics = operators.length;
+
+		DataField[] newDataFields = new DataField[numColumns + numMetrics];
+		System.arraycopy(dataFields, 0, newDataFields, 0, numColumns);
+
+		double[] values = new double[numMetrics];
+
+		for(int k=0; k<numMetrics; k++)
+		{
+			double first = firstColumns[k] == -1 ? firstValues[k] : value(newDataFields, values, firstColumns[k]);
+			double second = secondColumns[k] == -1 ? secondValues[k] : value(newDataFields, values, secondColumns[k]);
+
+			values[k] = operators[k].evaluate(first, second);
+
+			DataField dataField = new DataField(dataHeaders[k]);
+			dataField.setValue(Double.valueOf(values[k]));
+			newDataFields[numColumns + k] = dataField;
+		}
+
+		dataItem.setDataFields(newDataFields);
+
+		return dataItem;
+	}
+
+	/**
+	 * Adds the values of all virtual metrics to the dataItems
+	 *
+	 * @param dataItems
+	 */
+	public void apply(DataItem[] dataItems)
+	{
+		apply(dataItems, 0, dataItems.length);
+	}
+
+	/**
+	 * Adds the values of all virtual metrics to the dataItems. The dataItems are split
+	 * into numThreads blocks and each block is processed by a separate thread.
+	 *
+	 * @param dataItems
+	 * @param numThreads
+	 */
+	public void apply(final DataItem[] dataItems, int numThreads)
+	{
+		if(numThreads <= 1 || dataItems.length <= 1)
+		{
+			apply(dataItems);
+			return;
+		}
+
+		numThreads = Math.min(numThreads, dataItems.length);
+		int blockSize = (dataItems.length + numThreads - 1) / numThreads;
+
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		ArrayList<Future<Object>> futures = new ArrayList<Future<Object>>();
+
+		try{
+			for(int from=0; from<dataItems.length; from+=blockSize)
+			{
+				final int blockFrom = from;
+				final int blockTo = Math.min(from + blockSize, dataItems.length);
+
+				futures.add(executor.submit(new Callable<Object>() {
+					public Object call() throws Exception {
+						apply(dataItems, blockFrom, blockTo);
+						return null;
+					}
+				}));
+			}
+
+			for(int i=0; i<futures.size(); i++)
+			{
+				try {
+					futures.get(i).get();
+				} catch (ExecutionException e) {
+					if(e.getCause() instanceof RuntimeException)
+						throw (RuntimeException)e.getCause();
+					throw new RuntimeException(e.getCause());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException(e);
+				}
+			}
+		}
+		finally{
+			executor.shutdown();
+		}
+	}
+
+
+	/**
+	 * Adds the values of all virtual metrics to the dataItems in [from, to)
+	 *
+	 * @param dataItems
+	 * @param from
+	 * @param to
+	 */
+	private void apply(DataItem[] dataItems, int from, int to)
+	{
+		for(int i=from; i<to; i++)
+			dataItems[i] = apply(dataItems[i]);
+	}
+
+	/**
+	 * @param dataFields
+	 * @param values values of the virtual metrics computed so far
+	 * @param column
+	 * @return the value of the column
+	 */
+	private double value(DataField[] dataFields, double[] values, int column)
+	{
+		if(column >= numColumns)
+			return values[column - numColumns];
+
+		return ((Double)dataFields[column].getValue()).doubleValue();
+	}
+
+	/**
+	 * Resolves a dataHeader operand to the first column with its label
+	 *
+	 * @param operand
+	 * @param labels
+	 * @param numDataFields number of labels that belong to data fields
+	 * @param numLabels number of labels that can be referred to
+	 * @param referencedColumns data field columns read by the program
+	 * @return the column of the operand, -1 if the operand is a constant
+	 */
+	private static int resolve(Operand operand, String[] labels, int numDataFields, int numLabels, ArrayList<Integer> referencedColumns)
+	{
+		if(!operand.isDataHeader())
+			return -1;
+
+		String headerName = (String)operand.getOperandValue();
+
+		for(int i=0; i<numLabels; i++)
+		{
+			if(labels[i] != null && labels[i].equalsIgnoreCase(headerName))
+			{
+				if(i < numDataFields && !referencedColumns.contains(Integer.valueOf(i)))
+					referencedColumns.add(Integer.valueOf(i));
+				return i;
+			}
+		}
+
+		throw new IllegalArgumentException("Unknown operand " + headerName);
+	}
+}
@@ -1,14 +1,9 @@
 package categorizer.core.util;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.util.StringTokenizer;
-import java.util.Vector;
-import java.util.regex.Pattern;
+import java.util.ArrayList;
 
 import categorizer.core.DataField;
 import categorizer.core.DataHeader;
@@ -16,35 +11,47 @@ import categorizer.core.DataItem;
 import categorizer.core.DataSet;
 import categorizer.core.UnsupportedDataContextException;
 
-import common.DataContext;
+import common.ArffReader;
 
 /**
- * Class to read data from files given in arff format, and create the
+ * Class to read data from files given in arff (or csv) format, and create the
  * corresponding DataSet object
- * 
+ *
+ * The file is read by common.ArffReader in a single pass, numeric values are
+ * parsed directly from the characters of a line and nominal values are shared
+ * with the available values of their DataHeader.
+ *
  * @author secil.karagulle
  * @author ovunc.bozcan
  */
 
 public class Arff2DataSet {
 
-	private File f;
+	/**
+	 * labels of the attributes which are not metrics but identify the data items
+	 */
+	private static final String[] nameAttributes = { "Package Name",
+			"File Name", "Method Name", "Class Name" };
 
-	private FileInputStream inS;
+	private File f;
 
-	private BufferedReader br;
+	private ArffReader arffReader;
 
 	private DataSet dataSet;
 
-	private DataContext dataContext;
-
 	private DataHeader[] dataHeaders;
 
-	Vector dataHeaderNodes;
+	/**
+	 * attribute index in the file of each DataHeader
+	 */
+	private int[] attributes;
 
-	private DataItem[] dataItems;
+	/**
+	 * attribute index in the file of the name of the data items, -1 if there is none
+	 */
+	private int nameAttribute;
 
-	Vector dataItemNodes;
+	private DataItem[] dataItems;
 
 	public Arff2DataSet(String fileDirectory) throws FileNotFoundException {
 
@@ -52,223 +59,166 @@ public class Arff2DataSet {
 
 		if (!(f.exists()))
 			throw new FileNotFoundException();
-
-		else {
-			inS = new FileInputStream(f);
-			br = new BufferedReader(new InputStreamReader(inS));
-		}
-	}
-
-	private boolean containsOnlyNumbers(String str) {
-
-		// It can't contain only numbers if it's null or empty...
-		if (str == null || str.length() == 0)
-			return false;
-
-		for (int i = 0; i < str.length(); i++) {
-
-			// If we find a non-digit character we return false.
-			if (!(Character.isDigit(str.charAt(i)) || str.charAt(i) == '.'))
-				return false;
-		}
-
-		return true;
-	}
-
-	/**
-	 * @param line
-	 * @return true if the given line is either a commented or a n empty line
-	 */
-	private boolean isNegligible(String line) {
-
-		if (line.startsWith("%") || line.equals(""))
-			return true;
-		else
-			return false;
 	}
 
 	/**
 	 * @throws IOException
 	 * @throws UnsupportedDataContextException
 	 *             reads DataHeaders which appear as attributes inbetween
-	 *             "@relation" and "@data" lines in the arff file
+	 *             "@relation" and "@data" lines in the arff file. String and
+	 *             date attributes, and the attributes naming the data items,
+	 *             are not metrics, so they have no DataHeaders
 	 */
 	public void readDataHeaders() throws IOException,
 			UnsupportedDataContextException {
 
-		String line;
-		dataHeaderNodes = new Vector();
-		StringTokenizer st;
-		Pattern pt;
-
-		while (((line = br.readLine()) != null)
-				&& !(line.startsWith("@DATA") || line.startsWith("@data"))) {
-
-			if (!isNegligible(line)
-					&& !line.startsWith("@attribute 'Package Name'")
-					&& !line.startsWith("@attribute 'File Name'")
-					&& !line.startsWith("@attribute 'Method Name'")
-					&& !line.startsWith("@attribute 'Class Name'")) {
-				DataHeader dataHeader = new DataHeader();
-
-				if (line.contains("{")) // then the data header is a nominal one
-					dataHeader.setNominal(true);
-
-				else
-					dataHeader.setNominal(false);
-
-				// st = new StringTokenizer(line, " ");
-				pt = Pattern.compile("[,\\s]+");
-				String[] splittedLine = pt.split(line);
-
-				// if( (st.nextToken().contains("@")) ); // @attribute is read,
-				// do nothing
-				if (splittedLine[0].contains("@"))
-					;
-
-				// dataHeader.setLabel(st.nextToken()); // set the label of the
-				// DataHeader to the second token
-				dataHeader.setLabel(splittedLine[1]);
-
-				if (dataHeader.isNominal()) {
-
-					Vector<String> availableValueVector = new Vector<String>();
-
-					// while(st.hasMoreTokens()){
-					for (int i = 2; i < splittedLine.length; i++) {
-						// String value = st.nextToken();
-						String value = splittedLine[i];
-						if (value.startsWith("{"))
-							value = value.substring(1);
-						if (value.endsWith(",") || value.endsWith("}"))
-							value = value.substring(0, value.length() - 1);
-						// value.replace("{", "");
-						// value.replace(",", "");
-						// value.replace("}", "");
-						availableValueVector.add(value);
-					}
-
-					String[] availableValueArray = new String[availableValueVector
-							.size()];
-
-					for (int i = 0; i < availableValueArray.length; i++) {
-						availableValueArray[i] = availableValueVector.get(i);
-					}
-					dataHeader.setAvailableValue(availableValueArray);
-				}
+		if (arffReader == null)
+			open();
 
-				dataHeaderNodes.add(dataHeader);
-			}
-		}
+		ArrayList<DataHeader> dataHeaderNodes = new ArrayList<DataHeader>();
+		ArrayList<Integer> attributeNodes = new ArrayList<Integer>();
+		nameAttribute = -1;
+
+		for (int i = 0; i < arffReader.numAttributes(); i++) {
 
-		dataHeaders = new DataHeader[dataHeaderNodes.size()];
+			int type = arffReader.attributeType(i);
 
-		for (int i = 0; i < dataHeaderNodes.size(); i++) {
-			// DataHeader dataHeader = new DataHeader();
+			if (type == ArffReader.STRING || type == ArffReader.DATE
+					|| isNameAttribute(arffReader.attributeName(i))) {
+				if (nameAttribute == -1)
+					nameAttribute = i;
+				continue;
+			}
+
+			DataHeader dataHeader = new DataHeader();
+			dataHeader.setLabel(arffReader.attributeName(i));
 
-			// dataHeader.load((DataContext)dataHeaderNodes.get(i));
+			if (type == ArffReader.NOMINAL) {
+				dataHeader.setNominal(true);
+				dataHeader.setAvailableValue(arffReader.nominalValues(i));
+			} else
+				dataHeader.setNominal(false);
 
-			// dataHeaders[i] = dataHeader;
-			dataHeaders[i] = (DataHeader) dataHeaderNodes.get(i);
+			dataHeaderNodes.add(dataHeader);
+			attributeNodes.add(Integer.valueOf(i));
 		}
+
+		dataHeaders = dataHeaderNodes.toArray(new DataHeader[dataHeaderNodes
+				.size()]);
+
+		attributes = new int[attributeNodes.size()];
+		for (int i = 0; i < attributes.length; i++)
+			attributes[i] = attributeNodes.get(i).intValue();
 	}
 
 	/**
 	 * @throws IOException
 	 *             reads DataItems which appear after the "@data" line in arff
-	 *             file. Each DataItem is equal to a line of strings seperated
-	 *             by commas, and each DataField is each of these strings
-	 * 
+	 *             file. Each DataItem is equal to a line of values seperated
+	 *             by commas, and each DataField is each of these values
+	 *
 	 */
 	public void readDataItems() throws IOException {
 
-		String line;
-		Vector dataItemNodes = new Vector();
-		StringTokenizer st;
-		Pattern pt;
-
-		while ((line = br.readLine()) != null) {
-
-			if (!isNegligible(line)) {
-
-				DataItem dataItem = new DataItem();
-				DataField[] dataFields = new DataField[dataHeaderNodes.size()];
-
-				pt = Pattern.compile("[,\\s]+");
-				String[] splittedLine = pt.split(line);
-				int colCount = 0;
-				for (int i = 0; i < splittedLine.length; i++) {
-					if (containsOnlyNumbers(splittedLine[i])
-							|| splittedLine[i].startsWith("false")) {
-						DataField dataField = new DataField();
-						dataField.setDataHeader(dataHeaders[colCount]);
-						dataField.load(splittedLine[i]);
-						dataFields[colCount] = dataField;
-						colCount++;
-					}
+		ArrayList<DataItem> dataItemNodes = new ArrayList<DataItem>();
+
+		try {
+			while (arffReader.next()) {
+
+				DataField[] dataFields = new DataField[dataHeaders.length];
+
+				for (int i = 0; i < dataHeaders.length; i++) {
+					DataField dataField = new DataField(dataHeaders[i]);
+
+					if (dataHeaders[i].isNominal())
+						dataField.setValue(arffReader.stringValue(attributes[i]));
+					else
+						dataField.setValue(Double.valueOf(arffReader.value(attributes[i])));
+
+					dataFields[i] = dataField;
 				}
 
-				dataItem.setDataFields(dataFields);
+				DataItem dataItem = new DataItem(dataFields);
 				dataItem.setDataHeaders(dataHeaders);
+
+				if (nameAttribute != -1)
+					dataItem.setItemName(arffReader.stringValue(nameAttribute));
+
 				dataItemNodes.add(dataItem);
 			}
+		} finally {
+			arffReader.close();
 		}
 
-		dataItems = new DataItem[dataItemNodes.size()];
+		dataItems = dataItemNodes.toArray(new DataItem[dataItemNodes.size()]);
+	}
 
-		for (int i = 0; i < dataItemNodes.size(); i++) {
-			// DataItem dataItem = new DataItem();
-			// dataItem.load((DataContext)dataItemNodes.get(i));
-			// dataItems[i] = dataItem;
-			dataItems[i] = (DataItem) dataItemNodes.get(i);
+	/**
+	 * Reads the values of the DataHeaders into columns instead of DataItems.
+	 * Nominal values are kept as the index of the value in the available
+	 * values of their DataHeader and missing values as NaN.
+	 *
+	 * @return the values of each DataHeader, in the order of getDataHeaders()
+	 * @throws IOException
+	 * @throws UnsupportedDataContextException
+	 */
+	public double[][] readColumns() throws IOException,
+			UnsupportedDataContextException {
+
+		if (dataHeaders == null)
+			readDataHeaders();
+
+		try {
+			return arffReader.readColumns(attributes);
+		} finally {
+			arffReader.close();
 		}
 	}
 
 	public DataSet reader() throws IOException, UnsupportedDataContextException {
 
-		String line;
-		String token;
+		dataSet = new DataSet();
 
-		if (br.equals(null)) // if the file is empty
-			throw new IOException();
-
-		else
-			// else, create the corresponding DataSet
-			dataSet = new DataSet();
+		readDataHeaders();
+		dataSet.setDataHeaders(dataHeaders);
 
-		while ((line = br.readLine()) != null) {
+		readDataItems();
+		dataSet.setDataItems(dataItems);
 
-			if (!(isNegligible(line))) {
+		return dataSet;
+	}
 
-				if (line.startsWith("@RELATION")
-						|| line.startsWith("@relation")) {
+	/**
+	 * @return the DataHeaders read from the file
+	 */
+	public DataHeader[] getDataHeaders() {
+		return dataHeaders;
+	}
 
-					readDataHeaders();
-					dataSet.setDataHeaders(dataHeaders); // put these
-					// DataHeaders in
-					// the DataSet
-				}
+	/**
+	 * Opens the file as a csv file if its extension is csv, as an arff file
+	 * otherwise
+	 *
+	 * @throws IOException
+	 */
+	private void open() throws IOException {
 
-				readDataItems();
-				dataSet.setDataItems(dataItems);
-			}
-		}
-		return dataSet;
+		if (f.getName().toLowerCase().endsWith(".csv"))
+			arffReader = ArffReader.openCsv(f);
+		else
+			arffReader = ArffReader.openArff(f);
 	}
 
 	/**
-	 * RegEx içeren bir String split örneği
-	 * 
-	 * @param args
-	 * @throws Exception
+	 * @param label
+	 * @return true if the attribute with the label names the data items
 	 */
-	// public static void main(String[] args) throws Exception {
-	// // Create a pattern to match breaks
-	// Pattern p = Pattern.compile("[,\\s]+");
-	// // Split input with the pattern
-	// String[] result =
-	// p.split("one,two, three four , five , ");
-	// for (int i=0; i<result.length; i++)
-	// System.out.println(i + " : " + result[i]);
-	// }
+	private boolean isNameAttribute(String label) {
+
+		for (int i = 0; i < nameAttributes.length; i++)
+			if (nameAttributes[i].equals(label))
+				return true;
+
+		return false;
+	}
 }
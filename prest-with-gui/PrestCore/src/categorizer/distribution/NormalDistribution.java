@@ -72,6 +72,33 @@ public class NormalDistribution extends ProbabilityDistribution {
 		className = "categorizer.distribution.NormalDistribution" ;
 	}
 	
+	/**
+	 * @param classValue
+	 * @param mean
+	 * @param variance
+	 * creates the distribution from an already calculated mean and variance,
+	 * e.g. from the statistics collected while building a categorizer
+	 */
+	public NormalDistribution(String classValue, double mean, double variance)
+	{
+		this.classValue = classValue;
+		className = "categorizer.distribution.NormalDistribution" ;
+		
+		n_mean = mean;
+		n_variance = variance;
+		n_standardDev = Math.sqrt(variance);
+		
+		if(n_variance == 0)
+		{
+			isUniqueData = true;
+			n_variance = Double.MIN_VALUE;
+			n_standardDev = Double.MIN_VALUE;
+		}
+		
+		super.setMean(n_mean);
+		super.setVariance(n_variance);
+	}
+	
 	/**
 	 * @param dataItems
 	 * @param index
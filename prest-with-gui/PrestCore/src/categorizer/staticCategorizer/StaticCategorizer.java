@@ -1,22 +1,30 @@
 package categorizer.staticCategorizer;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Set;
-
 import categorizer.aiCategorizer.core.ConfusionMatrix;
 import categorizer.core.Categorizer;
+import categorizer.core.DataHeader;
 import categorizer.core.DataItem;
-import categorizer.core.Threshold;
+import categorizer.core.ThresholdProgram;
+import categorizer.core.UnsupportedThresholdException;
 
 public class StaticCategorizer extends Categorizer {
 
+	/**
+	 * Holds the thresholds of the dataSet compiled for the data fields of the last categorized dataItem
+	 */
+	private ThresholdProgram program;
+	
+	/**
+	 * Holds the dataHeaders of the dataItem the program is compiled for
+	 */
+	private DataHeader[] programDataHeaders;
 	
 	
 	/* (non-Javadoc)
 	 * @see categorizer.core.Categorizer#buildCategorizer()
 	 */
 	public ConfusionMatrix buildCategorizer() throws Exception {
+		program = null;
 		return validate(dataSet);
 	}
 
@@ -27,63 +35,91 @@ public class StaticCategorizer extends Categorizer {
 	 */
 	public DataItem categorize(DataItem dataItem) throws Exception {
 		
-		HashMap classMap = new HashMap();
-		int classIndex = dataSet.getDataHeaders().length - 1;
-		if(dataSet.getClassIndex() != -1 && classIndex != dataSet.getClassIndex())
-			classIndex = dataSet.getClassIndex();
+		int classIndex = getClassIndex();
 		
-		String[] classes = dataSet.getDataHeaders()[classIndex].getAvailableValue();
-		String classValue = classes[0];		
+		String classValue = getProgram(dataItem).evaluate(dataItem);
 		
-		for(int i=0; i<dataItem.getDataFields().length; i++)
-		{
-			if(dataSet.getDataHeaders()[i].isValid())
-			{
-				Threshold thresholds[] = dataSet.getDataHeaders()[i].getThresholds();
-				for(int j=0; thresholds!=null && j<thresholds.length; j++)
-				{
-					if(thresholds[j].compare(dataItem))
-					{
-						int count = 0;
-						if(classMap.containsKey(thresholds[j].getClassValue()))
-							count = (Integer)classMap.get(thresholds[j].getClassValue());
-						count++; 
-						classMap.put(thresholds[j].getClassValue(), count);
-					}
-				}
-			}
-		}
+		if(classValue == null)
+			classValue = dataSet.getDataHeaders()[classIndex].getAvailableValue()[0];
+		
+		dataItem.getDataFields()[classIndex].load(classValue);		
 		
+		return dataItem;
+	}
 	
-		Set classSet = classMap.keySet();
+	/**
+	 * Categorizes all of the dataItems by evaluating the compiled thresholds in a batch.
+	 * The thresholds are compiled again for each call, so changes in the thresholds of
+	 * the dataSet are always taken into account.
+	 * 
+	 * @see categorizer.core.Categorizer#categorize(categorizer.core.DataItem[])
+	 */
+	public DataItem[] categorize(DataItem[] dataItems) throws Exception {
+		
+		if(dataItems.length == 0)
+			return dataItems;
+		
+		int classIndex = getClassIndex();
+		String defaultClassValue = dataSet.getDataHeaders()[classIndex].getAvailableValue()[0];
+		
+		program = null;
+		
+		ThresholdProgram batchProgram = getProgram(dataItems[0]);
 		
-		if(classSet != null && classSet.size() > 0)
+		for(int i=1; i<dataItems.length; i++)
 		{
-			int classCount = 0;
-			Iterator iterator = classSet.iterator();
-			while(iterator.hasNext())
+			if(!batchProgram.isCompiledFor(dataItems[i].getDataFields()) || dataItems[i].getDataHeaders() != programDataHeaders)
 			{
-				String temp = (String)iterator.next();
-				if(classMap.containsKey(temp))
-				{
-					int count = (Integer)classMap.get(temp);
-					if(count > classCount)
-					{
-						classCount = count;
-						classValue = temp;
-					}
-				}
+				// dataItems with different layouts of data fields are categorized one by one
+				return super.categorize(dataItems);
 			}
 		}
 		
+		String[] classValues = batchProgram.evaluate(dataItems);
 		
-		dataItem.getDataFields()[classIndex].load(classValue);		
+		for(int i=0; i<dataItems.length; i++)
+			dataItems[i].getDataFields()[classIndex].load(classValues[i] == null ? defaultClassValue : classValues[i]);
 		
-		return dataItem;
+		return dataItems;
+	}
+	
+	/**
+	 * Explains the categorization of a dataItem
+	 * 
+	 * @param dataItem
+	 * @return the thresholds that fire for the dataItem and the decided class
+	 * @throws Exception
+	 */
+	public String explain(DataItem dataItem) throws Exception {
+		return getProgram(dataItem).explain(dataItem);
+	}
+	
+	/**
+	 * @param dataItem
+	 * @return the thresholds of the dataSet compiled for the data fields of the dataItem
+	 * @throws UnsupportedThresholdException
+	 */
+	private ThresholdProgram getProgram(DataItem dataItem) throws UnsupportedThresholdException
+	{
+		if(program == null || !program.isCompiledFor(dataItem.getDataFields()) || dataItem.getDataHeaders() != programDataHeaders)
+		{
+			program = ThresholdProgram.compile(dataSet.getDataHeaders(), dataItem.getDataFields());
+			programDataHeaders = dataItem.getDataHeaders();
+		}
+		
+		return program;
 	}
-
-
-
 	
+	/**
+	 * @return the class index of the dataSet, the last dataHeader if it is not set
+	 */
+	private int getClassIndex()
+	{
+		int classIndex = dataSet.getDataHeaders().length - 1;
+		if(dataSet.getClassIndex() != -1 && classIndex != dataSet.getClassIndex())
+			classIndex = dataSet.getClassIndex();
+		
+		return classIndex;
+	}
 
 }
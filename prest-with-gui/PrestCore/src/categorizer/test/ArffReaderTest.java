@@ -0,0 +1,304 @@
+package categorizer.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.Random;
+
+import common.ArffReader;
+
+/**
+ * a test class to check the streaming common.ArffReader: the fast number parsing
+ * against Double.parseDouble, quoted values, sparse rows, missing values and the
+ * types, doubled quotes and charset of csv files
+ */
+public class ArffReaderTest {
+
+	public static void main(String[] args) throws Exception {
+
+		checkNumbers();
+		checkQuotedValues();
+		checkSparseRows();
+		checkMissingValues();
+		checkCsv();
+
+		System.out.println("ArffReaderTest passed");
+	}
+
+	private static void checkNumbers() throws Exception {
+
+		String[] edgeCases = new String[] {
+			"0", "-0", "+0", "0.0", "-0.0", "1", "-1", "+17", "5.", ".5", "-.5", "007", "0.000123",
+			"1e3", "1E-3", "-2.5e+10", "1e22", "1e23", "1e-22", "1e-23", "1e308", "1e309", "1e-400", "1e400",
+			"123456789012345", "1234567890123456", "12345678901234567890", "0.12345678901234567890",
+			"9007199254740993", "2.2250738585072014E-308", "4.9E-324", "1.7976931348623157E308",
+			"1d", "2.5f", "1e", "1e+", "-", "+", ".", "e5", "--1", "1.2.3", "0x10", "abc", "NaN", "-Infinity"
+		};
+
+		for(int i=0; i<edgeCases.length; i++)
+			checkNumber(edgeCases[i]);
+
+		Random random = new Random(1);
+		for(int i=0; i<20000; i++)
+		{
+			double value = Double.longBitsToDouble(random.nextLong());
+			if(!Double.isNaN(value))
+				checkNumber(Double.toString(value));
+
+			checkNumber(Long.toString(random.nextLong() >> random.nextInt(64)));
+			checkNumber(String.format("%." + random.nextInt(12) + "f", new Object[] { Double.valueOf(random.nextGaussian() * 1000) }));
+			checkNumber(random.nextInt(100000) + "e" + (random.nextInt(60) - 30));
+		}
+	}
+
+	/**
+	 * reads the text as the value of a numeric attribute, both as an arff and as a csv
+	 * field, and compares the value with Double.parseDouble
+	 */
+	private static void checkNumber(String text) throws Exception {
+
+		double expected;
+		try{
+			expected = Double.parseDouble(text);
+		}catch(NumberFormatException e){
+			expected = Double.NaN;
+		}
+
+		ArffReader arff = new ArffReader(new StringReader("@relation r\n@attribute x numeric\n@data\n" + text + "\n"), false);
+		Check.isTrue(arff.next(), "arff row of " + text);
+		Check.equal(Long.valueOf(Double.doubleToLongBits(expected)), Long.valueOf(Double.doubleToLongBits(arff.value(0))), "value of " + text);
+
+		ArffReader csv = new ArffReader(new StringReader("x,y\n" + text + ",1\n"), true);
+		Check.isTrue(csv.next(), "csv row of " + text);
+		Check.equal(Long.valueOf(Double.doubleToLongBits(expected)), Long.valueOf(Double.doubleToLongBits(csv.value(0))), "csv value of " + text);
+	}
+
+	private static void checkQuotedValues() throws Exception {
+
+		String arff =
+			"% a comment\n" +
+			"@relation 'quoted relation'\n" +
+			"@attribute 'file name' string\n" +
+			"@attribute kind {'a b', \"c,d\", plain, 'it\\'s'}\n" +
+			"@attribute size numeric\n" +
+			"\n" +
+			"@data\n" +
+			"'a, b', 'a b', 1\n" +
+			"\"x\\ty\\nz\", \"c,d\", '2'\n" +
+			"plain , plain , 3 \n" +
+			"'it\\'s', 'it\\'s', 4\n" +
+			"'q', other, 5\n";
+
+		ArffReader reader = new ArffReader(new StringReader(arff), false);
+
+		Check.equal("quoted relation", reader.getRelation(), "relation");
+		Check.equal(Integer.valueOf(3), Integer.valueOf(reader.numAttributes()), "number of attributes");
+		Check.equal("file name", reader.attributeName(0), "quoted attribute name");
+		Check.equal(Integer.valueOf(ArffReader.STRING), Integer.valueOf(reader.attributeType(0)), "string type");
+		Check.equal(Integer.valueOf(ArffReader.NOMINAL), Integer.valueOf(reader.attributeType(1)), "nominal type");
+		Check.equal(Integer.valueOf(ArffReader.NUMERIC), Integer.valueOf(reader.attributeType(2)), "numeric type");
+
+		String[] values = reader.nominalValues(1);
+		Check.equal(Integer.valueOf(4), Integer.valueOf(values.length), "number of nominal values");
+		Check.equal("a b", values[0], "nominal value 0");
+		Check.equal("c,d", values[1], "nominal value 1");
+		Check.equal("plain", values[2], "nominal value 2");
+		Check.equal("it's", values[3], "nominal value 3");
+
+		Check.isTrue(reader.next(), "row 1");
+		Check.equal("a, b", reader.stringValue(0), "quoted comma");
+		Check.equal(Integer.valueOf(0), Integer.valueOf(reader.nominalIndex(1)), "quoted nominal");
+		Check.near(1, reader.value(2), 0, "number after a quoted value");
+
+		Check.isTrue(reader.next(), "row 2");
+		Check.equal("x\ty\nz", reader.stringValue(0), "escapes");
+		Check.equal(Integer.valueOf(1), Integer.valueOf(reader.nominalIndex(1)), "double quoted nominal");
+		Check.near(2, reader.value(2), 0, "quoted number");
+
+		Check.isTrue(reader.next(), "row 3");
+		Check.equal("plain", reader.stringValue(0), "spaces around a value");
+		Check.near(2, reader.value(1), 0, "nominal value as its index");
+		Check.near(3, reader.value(2), 0, "number followed by a space");
+
+		Check.isTrue(reader.next(), "row 4");
+		Check.equal("it's", reader.stringValue(0), "escaped quote");
+		Check.equal(Integer.valueOf(3), Integer.valueOf(reader.nominalIndex(1)), "escaped nominal");
+
+		Check.isTrue(reader.next(), "row 5");
+		Check.equal(Integer.valueOf(-1), Integer.valueOf(reader.nominalIndex(1)), "undeclared nominal");
+		Check.isTrue(Double.isNaN(reader.value(1)), "value of an undeclared nominal");
+		Check.equal("other", reader.stringValue(1), "string of an undeclared nominal");
+
+		Check.isTrue(!reader.next(), "end of data");
+		reader.close();
+
+		checkError("@relation r\n@attribute x string\n@data\n'open\n", "unterminated quote");
+		checkError("@relation r\n@attribute x numeric\n@attribute y numeric\n@data\n1\n", "too few values");
+		checkError("@relation r\n@attribute x numeric\n@data\n1,2\n", "too many values");
+	}
+
+	private static void checkSparseRows() throws Exception {
+
+		String arff =
+			"@relation sparse\n" +
+			"@attribute a numeric\n" +
+			"@attribute b {first, second}\n" +
+			"@attribute c numeric\n" +
+			"@attribute d string\n" +
+			"@data\n" +
+			"{0 1.5, 3 'x y'}\n" +
+			"{ 1 second ,2 -4 }\n" +
+			"{}\n" +
+			"{2 ?}\n" +
+			"1,first,2,z\n";
+
+		ArffReader reader = new ArffReader(new StringReader(arff), false);
+
+		Check.isTrue(reader.next(), "sparse row 1");
+		Check.near(1.5, reader.value(0), 0, "given sparse value");
+		Check.near(0, reader.value(1), 0, "absent nominal");
+		Check.equal("first", reader.stringValue(1), "absent nominal is the first value");
+		Check.near(0, reader.value(2), 0, "absent numeric");
+		Check.equal("0", reader.stringValue(2), "string of an absent numeric");
+		Check.equal("x y", reader.stringValue(3), "quoted sparse value");
+
+		Check.isTrue(reader.next(), "sparse row 2");
+		Check.near(0, reader.value(0), 0, "absent after a given row");
+		Check.equal(Integer.valueOf(1), Integer.valueOf(reader.nominalIndex(1)), "given nominal");
+		Check.near(-4, reader.value(2), 0, "value before '}'");
+
+		Check.isTrue(reader.next(), "empty sparse row");
+		for(int i=0; i<3; i++)
+		{
+			Check.isTrue(!reader.isMissing(i), "absent is not missing " + i);
+			Check.near(0, reader.value(i), 0, "empty sparse row " + i);
+		}
+
+		Check.isTrue(reader.next(), "sparse missing row");
+		Check.isTrue(reader.isMissing(2), "missing sparse value");
+		Check.isTrue(Double.isNaN(reader.value(2)), "value of a missing sparse value");
+
+		Check.isTrue(reader.next(), "dense row after sparse rows");
+		Check.near(1, reader.value(0), 0, "dense value 0");
+		Check.near(0, reader.value(1), 0, "dense value 1");
+		Check.near(2, reader.value(2), 0, "dense value 2");
+		Check.equal("z", reader.stringValue(3), "dense value 3");
+
+		Check.isTrue(!reader.next(), "end of sparse data");
+		reader.close();
+
+		checkError("@relation r\n@attribute x numeric\n@data\n{1 2}\n", "index out of range");
+		checkError("@relation r\n@attribute x numeric\n@data\n{0 2\n", "unterminated sparse row");
+	}
+
+	private static void checkMissingValues() throws Exception {
+
+		String arff =
+			"@relation missing\n" +
+			"@attribute a numeric\n" +
+			"@attribute b {x, y}\n" +
+			"@attribute c string\n" +
+			"@data\n" +
+			"?, ?, ?\n" +
+			"'?', y, '?'\n" +
+			"1, x, ?\n";
+
+		ArffReader reader = new ArffReader(new StringReader(arff), false);
+
+		Check.isTrue(reader.next(), "missing row");
+		for(int i=0; i<3; i++)
+			Check.isTrue(reader.isMissing(i), "missing " + i);
+		Check.isTrue(Double.isNaN(reader.value(0)), "missing numeric");
+		Check.equal(Integer.valueOf(-1), Integer.valueOf(reader.nominalIndex(1)), "missing nominal");
+		Check.equal("?", reader.stringValue(2), "missing string");
+
+		Check.isTrue(reader.next(), "quoted question marks");
+		Check.isTrue(!reader.isMissing(0), "a quoted '?' is not missing");
+		Check.isTrue(Double.isNaN(reader.value(0)), "a quoted '?' is not a number");
+		Check.isTrue(!reader.isMissing(2), "a quoted '?' string");
+
+		double[][] columns = reader.readColumns(new int[] { 0, 1, 2 });
+		Check.equal(Integer.valueOf(1), Integer.valueOf(columns[0].length), "remaining rows");
+		Check.near(1, columns[0][0], 0, "numeric column");
+		Check.near(0, columns[1][0], 0, "nominal column");
+		Check.isTrue(Double.isNaN(columns[2][0]), "string column");
+		reader.close();
+
+		ArffReader csv = new ArffReader(new StringReader("a,b,c\n,?, \n1,,2\n"), true);
+		Check.isTrue(csv.next(), "csv missing row 1");
+		Check.isTrue(csv.isMissing(0), "empty csv field");
+		Check.isTrue(csv.isMissing(1), "'?' csv field");
+		Check.isTrue(csv.isMissing(2), "blank csv field");
+		Check.isTrue(csv.next(), "csv missing row 2");
+		Check.isTrue(!csv.isMissing(0), "csv value");
+		Check.isTrue(csv.isMissing(1), "empty csv field between values");
+		Check.near(2, csv.value(2), 0, "csv value after an empty field");
+		csv.close();
+	}
+
+	private static void checkCsv() throws Exception {
+
+		File file = File.createTempFile("ArffReaderTest", ".csv");
+		file.deleteOnExit();
+
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		writer.write("'file name',size,kind,\"ratio \"\"r\"\"\"\n");
+		writer.write("a.c,10,small,0.5\n");
+		writer.write("\"b, c.c\",,large,1e-3\n");
+		writer.write("d.c,12,small,?\n");
+		writer.write("\"e \"\"q\"\" \u00f6.c\",-3,medium,2\n");
+		writer.close();
+
+		ArffReader reader = ArffReader.openCsv(file);
+
+		Check.equal(null, reader.getRelation(), "csv relation");
+		Check.equal(Integer.valueOf(4), Integer.valueOf(reader.numAttributes()), "csv attributes");
+		Check.equal("file name", reader.attributeName(0), "quoted csv name");
+		Check.equal(Integer.valueOf(ArffReader.NOMINAL), Integer.valueOf(reader.attributeType(0)), "csv names are nominal");
+		Check.equal(Integer.valueOf(ArffReader.NUMERIC), Integer.valueOf(reader.attributeType(1)), "csv numbers with an empty field");
+		Check.equal(Integer.valueOf(ArffReader.NOMINAL), Integer.valueOf(reader.attributeType(2)), "csv words");
+		Check.equal(Integer.valueOf(ArffReader.NUMERIC), Integer.valueOf(reader.attributeType(3)), "csv numbers with a '?'");
+
+		String[] kinds = reader.nominalValues(2);
+		Check.equal(Integer.valueOf(3), Integer.valueOf(kinds.length), "csv nominal values");
+		Check.equal("small", kinds[0], "values in the order of appearance 0");
+		Check.equal("large", kinds[1], "values in the order of appearance 1");
+		Check.equal("medium", kinds[2], "values in the order of appearance 2");
+		Check.equal("b, c.c", reader.nominalValues(0)[1], "quoted csv value");
+		Check.equal("e \"q\" \u00f6.c", reader.nominalValues(0)[3], "csv value with doubled quotes in UTF-8");
+		Check.equal("ratio \"r\"", reader.attributeName(3), "csv name with doubled quotes");
+
+		double[][] columns = reader.readColumns(new int[] { 1, 2, 3 });
+		double[][] expected = new double[][] {
+			{ 10, Double.NaN, 12, -3 },
+			{ 0, 1, 0, 2 },
+			{ 0.5, 1e-3, Double.NaN, 2 }
+		};
+
+		for(int c=0; c<expected.length; c++)
+		{
+			Check.equal(Integer.valueOf(expected[c].length), Integer.valueOf(columns[c].length), "csv rows");
+			for(int r=0; r<expected[c].length; r++)
+				Check.near(expected[c][r], columns[c][r], 0, "csv column " + c + " row " + r);
+		}
+
+		reader.close();
+		file.delete();
+	}
+
+	private static void checkError(String arff, String message) throws Exception {
+
+		ArffReader reader = new ArffReader(new StringReader(arff), false);
+		try{
+			while(reader.next())
+				;
+		}catch(java.io.IOException e){
+			reader.close();
+			return;
+		}
+
+		throw new AssertionError(message + ": IOException expected");
+	}
+}
@@ -0,0 +1,59 @@
+package categorizer.test;
+
+import java.util.Random;
+
+import categorizer.core.DataField;
+import categorizer.core.DataHeader;
+import categorizer.core.DataItem;
+
+/**
+ * the generated data set of the categorizer tests: three numeric metrics, a nominal
+ * language and the nominal class defective. The metrics of the defective items are
+ * shifted by one and the defective items are never written in cpp.
+ */
+public class DefectData {
+
+	public static DataHeader[] createDataHeaders()
+	{
+		DataHeader[] dataHeaders = new DataHeader[5];
+
+		for(int i=0; i<3; i++)
+			dataHeaders[i] = new DataHeader("metric" + i, false, -Double.MAX_VALUE, Double.MAX_VALUE, null);
+
+		dataHeaders[3] = new DataHeader("language", true, 0, 0, new String[]{"java", "c", "cpp"});
+		dataHeaders[4] = new DataHeader("defective", true, 0, 0, new String[]{"false", "true"});
+
+		for(int i=0; i<dataHeaders.length; i++)
+			dataHeaders[i].setValid(true);
+
+		return dataHeaders;
+	}
+
+	public static DataItem[] createDataItems(DataHeader[] dataHeaders, int count, Random random)
+	{
+		DataItem[] dataItems = new DataItem[count];
+
+		for(int i=0; i<count; i++)
+		{
+			boolean defective = random.nextBoolean();
+			DataField[] dataFields = new DataField[dataHeaders.length];
+
+			for(int j=0; j<3; j++)
+			{
+				dataFields[j] = new DataField(dataHeaders[j]);
+				dataFields[j].load(String.valueOf(random.nextGaussian() * (j + 1) + (defective ? 1 : 0)));
+			}
+
+			dataFields[3] = new DataField(dataHeaders[3]);
+			dataFields[3].load(dataHeaders[3].getAvailableValue()[random.nextInt(defective ? 2 : 3)]);
+
+			dataFields[4] = new DataField(dataHeaders[4]);
+			dataFields[4].load(String.valueOf(defective));
+
+			dataItems[i] = new DataItem(dataFields);
+			dataItems[i].setDataHeaders(dataHeaders);
+		}
+
+		return dataItems;
+	}
+}
@@ -0,0 +1,71 @@
+package categorizer.test;
+
+import java.util.Random;
+
+import categorizer.core.DataHeader;
+import categorizer.core.DataItem;
+import categorizer.core.DataSet;
+import categorizer.core.DistributionStatistics;
+import categorizer.core.FrequencyDistribution;
+import categorizer.core.IllegalDataException;
+import categorizer.distribution.NormalDistribution;
+
+/**
+ * a test class to check the one-pass categorizer.core.DistributionStatistics against
+ * the per header and class NormalDistribution and FrequencyDistribution constructors
+ */
+public class DistributionStatisticsTest {
+
+	public static void main(String[] args) throws Exception {
+
+		DataHeader[] dataHeaders = DefectData.createDataHeaders();
+		DataItem[] dataItems = DefectData.createDataItems(dataHeaders, 2000, new Random(1));
+		dataItems[dataItems.length / 2].getDataFields()[4].load("unknown");
+		DataSet dataSet = new DataSet(dataItems, dataHeaders);
+		dataSet.setClassIndex(dataHeaders.length - 1);
+
+		String[] classes = dataHeaders[4].getAvailableValue();
+		int[] headerIndexes = new int[] { 0, 1, 2, 3 };
+
+		for(int numThreads=1; numThreads<=3; numThreads+=2)
+		{
+			DistributionStatistics statistics = new DistributionStatistics(dataHeaders, 4, classes, headerIndexes);
+			statistics.collect(dataItems, numThreads);
+
+			long total = 0;
+			for(int c=0; c<classes.length; c++)
+			{
+				total += statistics.getClassCount(c);
+
+				for(int h=0; h<3; h++)
+				{
+					NormalDistribution expected = new NormalDistribution(dataSet, h, c);
+					Check.near(expected.getMean(), statistics.getMean(h, c), 1e-9, "mean of metric" + h + " for " + classes[c]);
+					Check.near(expected.getVariance(), statistics.getVariance(h, c), 1e-9, "variance of metric" + h + " for " + classes[c]);
+				}
+
+				FrequencyDistribution expected = new FrequencyDistribution(dataSet, 3, c);
+				double[] frequencies = statistics.getFrequencies(3, c);
+				String[] keys = dataHeaders[3].getAvailableValue();
+				for(int v=0; v<keys.length; v++)
+					Check.near(expected.probability(keys[v]), frequencies[v], 1e-12, "frequency of " + keys[v] + " for " + classes[c]);
+			}
+
+			// the item with an unknown class value is not counted
+			Check.equal(Long.valueOf(dataItems.length - 1), Long.valueOf(total), "number of counted items with " + numThreads + " threads");
+		}
+
+		// a nominal value that is not available is rejected
+		DataItem[] illegal = DefectData.createDataItems(dataHeaders, 10, new Random(2));
+		illegal[3].getDataFields()[3].load("fortran");
+		boolean rejected = false;
+		try {
+			new DistributionStatistics(dataHeaders, 4, classes, headerIndexes).collect(illegal);
+		} catch (IllegalDataException e) {
+			rejected = true;
+		}
+		Check.isTrue(rejected, "an unavailable nominal value is rejected");
+
+		System.out.println("DistributionStatisticsTest passed");
+	}
+}
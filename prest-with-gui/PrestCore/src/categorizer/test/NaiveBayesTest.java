@@ -0,0 +1,123 @@
+package categorizer.test;
+
+import java.util.Random;
+
+import categorizer.aiCategorizer.naiveBayes.NaiveBayes;
+import categorizer.aiCategorizer.naiveBayes.NaiveBayesModel;
+import categorizer.core.DataField;
+import categorizer.core.DataHeader;
+import categorizer.core.DataItem;
+import categorizer.core.DataSet;
+import categorizer.core.FrequencyDistribution;
+import categorizer.distribution.NormalDistribution;
+
+/**
+ * a test class to check the scores of categorizer.aiCategorizer.naiveBayes.NaiveBayesModel
+ * against the ones of the former NaiveBayes, which scored with the NormalDistribution and
+ * FrequencyDistribution of each header and class, and to measure the time of training and
+ * of categorizing the data items in a batch
+ */
+public class NaiveBayesTest {
+
+	private final static int numDataItems = 1000000;
+
+	private final static int numCheckedItems = 2000;
+
+	public static void main(String[] args) throws Exception {
+
+		Random random = new Random(0);
+		DataHeader[] dataHeaders = DefectData.createDataHeaders();
+
+		DataSet checkedSet = new DataSet(DefectData.createDataItems(dataHeaders, numCheckedItems, random), dataHeaders);
+		checkedSet.setClassIndex(dataHeaders.length - 1);
+		DataItem[] checkedItems = DefectData.createDataItems(dataHeaders, numCheckedItems, random);
+		checkScores(checkedSet, checkedItems);
+
+		DataSet dataSet = new DataSet(DefectData.createDataItems(dataHeaders, numDataItems, random), dataHeaders);
+		dataSet.setClassIndex(dataHeaders.length - 1);
+
+		NaiveBayes naiveBayes = new NaiveBayes();
+		naiveBayes.loadDataSet(dataSet);
+		naiveBayes.setTestSet(new DataSet(DefectData.createDataItems(dataHeaders, 1000, random), dataHeaders));
+
+		long start = System.currentTimeMillis();
+		naiveBayes.buildCategorizer();
+		System.out.println("Training took " + (System.currentTimeMillis() - start) + " ms");
+		System.out.println(naiveBayes.getConfusionMatrix().toString());
+
+		DataItem[] testItems = DefectData.createDataItems(dataHeaders, numDataItems, random);
+
+		start = System.currentTimeMillis();
+		naiveBayes.categorize(testItems);
+		System.out.println("Categorizing " + numDataItems + " items took " + (System.currentTimeMillis() - start) + " ms");
+
+		System.out.println("NaiveBayesTest passed");
+	}
+
+	/**
+	 * Trains the model on the data set and compares the scores of the data items with
+	 * the log prior of each class plus the log probabilities of the former distributions.
+	 * The former NaiveBayes added the frequency of a nominal value instead of its log, so
+	 * the log is taken here.
+	 */
+	private static void checkScores(DataSet dataSet, DataItem[] dataItems) throws Exception
+	{
+		DataHeader[] dataHeaders = dataSet.getDataHeaders();
+		int classIndex = dataHeaders.length - 1;
+		String[] classes = dataHeaders[classIndex].getAvailableValue();
+
+		NaiveBayesModel model = new NaiveBayesModel();
+		model.train(dataSet, classIndex);
+
+		double[] logPriors = new double[classes.length];
+		NormalDistribution[][] normals = new NormalDistribution[3][classes.length];
+		FrequencyDistribution[] frequencies = new FrequencyDistribution[classes.length];
+
+		for(int c=0; c<classes.length; c++)
+		{
+			int count = 0;
+			for(int i=0; i<dataSet.getDataItems().length; i++)
+				if(dataSet.getDataItems()[i].getDataFields()[classIndex].getStringValue().equals(classes[c]))
+					count++;
+			logPriors[c] = Math.log(((double)(count + 1)) / (dataSet.getDataItems().length + classes.length));
+
+			for(int h=0; h<3; h++)
+				normals[h][c] = new NormalDistribution(dataSet, h, c);
+			frequencies[c] = new FrequencyDistribution(dataSet, 3, c);
+		}
+
+		double[] scores = new double[classes.length];
+		int[] decided = new int[dataItems.length];
+		for(int i=0; i<dataItems.length; i++)
+		{
+			DataField[] dataFields = dataItems[i].getDataFields();
+			decided[i] = model.categorize(dataItems[i], scores);
+
+			int expectedClass = 0;
+			double maxScore = 0 - Double.MAX_VALUE;
+			for(int c=0; c<classes.length; c++)
+			{
+				double expected = logPriors[c] + Math.log(frequencies[c].probability(dataFields[3].getStringValue()));
+				for(int h=0; h<3; h++)
+					expected += normals[h][c].logProbability(Double.parseDouble(dataFields[h].getStringValue()));
+
+				Check.near(expected, scores[c], 1e-9, "score of " + classes[c] + " for item " + i);
+				if(expected > maxScore)
+				{
+					expectedClass = c;
+					maxScore = expected;
+				}
+			}
+			Check.equal(Integer.valueOf(expectedClass), Integer.valueOf(decided[i]), "class of item " + i);
+		}
+
+		// NaiveBayes decides as its model
+		NaiveBayes naiveBayes = new NaiveBayes();
+		naiveBayes.loadDataSet(dataSet);
+		naiveBayes.setTestSet(dataSet);
+		naiveBayes.buildCategorizer();
+		naiveBayes.categorize(dataItems);
+		for(int i=0; i<dataItems.length; i++)
+			Check.equal(classes[decided[i]], dataItems[i].getDataFields()[classIndex].getStringValue(), "class of item " + i + " by NaiveBayes");
+	}
+}
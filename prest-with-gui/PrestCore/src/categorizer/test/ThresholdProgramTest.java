@@ -0,0 +1,191 @@
+package categorizer.test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Random;
+
+import categorizer.core.DataField;
+import categorizer.core.DataHeader;
+import categorizer.core.DataItem;
+import categorizer.core.DataSet;
+import categorizer.core.Operand;
+import categorizer.core.Threshold;
+import categorizer.core.ThresholdOperator;
+import categorizer.staticCategorizer.StaticCategorizer;
+
+/**
+ * a test class to check the decisions of categorizer.staticCategorizer.StaticCategorizer,
+ * which evaluates a compiled categorizer.core.ThresholdProgram, against the previous
+ * decision made with Threshold.compare and a HashMap of the fired class values.
+ * Most of the generated dataItems fire the same number of thresholds of several
+ * class values, so the ties are decided in the previous order too.
+ */
+public class ThresholdProgramTest {
+
+	private final static int numMetrics = 4;
+	private final static int numDataItems = 5000;
+
+	public static void main(String[] args) throws Exception {
+
+		Random random = new Random(3);
+
+		// "Aa" and "BB" have the same hash code; a HashMap of all the class values is
+		// resized and iterates in a different order than a HashMap of a few of them
+		String[] classes = new String[20];
+		for(int c=0; c<18; c++)
+			classes[c] = "class" + c;
+		classes[18] = "Aa";
+		classes[19] = "BB";
+
+		DataHeader[] dataHeaders = createDataHeaders(classes, random);
+		DataSet dataSet = new DataSet(createDataItems(dataHeaders, numDataItems, random), dataHeaders);
+		dataSet.setClassIndex(numMetrics);
+
+		DataItem[] dataItems = dataSet.getDataItems();
+		String[] expected = new String[dataItems.length];
+		int ties = 0;
+		for(int i=0; i<dataItems.length; i++)
+		{
+			expected[i] = previousDecision(dataHeaders, classes, dataItems[i]);
+			if(isTie(dataHeaders, dataItems[i]))
+				ties++;
+		}
+		Check.isTrue(ties > numDataItems / 10, "the dataItems have ties, " + ties);
+
+		StaticCategorizer staticCategorizer = new StaticCategorizer();
+		staticCategorizer.loadDataSet(dataSet);
+
+		staticCategorizer.categorize(dataItems);
+		for(int i=0; i<dataItems.length; i++)
+			Check.equal(expected[i], dataItems[i].getDataFields()[numMetrics].getStringValue(), "batch decision of dataItem " + i);
+
+		for(int i=0; i<dataItems.length; i++)
+		{
+			staticCategorizer.categorize(dataItems[i]);
+			Check.equal(expected[i], dataItems[i].getDataFields()[numMetrics].getStringValue(), "decision of dataItem " + i);
+		}
+
+		System.out.println("ThresholdProgramTest passed, " + ties + " ties");
+	}
+
+	/**
+	 * the decision of StaticCategorizer before the thresholds were compiled
+	 */
+	private static String previousDecision(DataHeader[] dataHeaders, String[] classes, DataItem dataItem) throws Exception
+	{
+		HashMap<String, Integer> classMap = new HashMap<String, Integer>();
+		String classValue = classes[0];
+
+		for(int i=0; i<dataItem.getDataFields().length; i++)
+		{
+			Threshold[] thresholds = dataHeaders[i].getThresholds();
+			for(int j=0; dataHeaders[i].isValid() && thresholds!=null && j<thresholds.length; j++)
+			{
+				if(thresholds[j].compare(dataItem))
+				{
+					Integer count = classMap.get(thresholds[j].getClassValue());
+					classMap.put(thresholds[j].getClassValue(), Integer.valueOf(count == null ? 1 : count.intValue() + 1));
+				}
+			}
+		}
+
+		int classCount = 0;
+		Iterator<String> iterator = classMap.keySet().iterator();
+		while(iterator.hasNext())
+		{
+			String temp = iterator.next();
+			int count = classMap.get(temp).intValue();
+			if(count > classCount)
+			{
+				classCount = count;
+				classValue = temp;
+			}
+		}
+
+		return classValue;
+	}
+
+	/**
+	 * @return true if more than one class value has the most fired thresholds
+	 */
+	private static boolean isTie(DataHeader[] dataHeaders, DataItem dataItem) throws Exception
+	{
+		HashMap<String, Integer> classMap = new HashMap<String, Integer>();
+		int maxCount = 0;
+		for(int i=0; i<numMetrics; i++)
+		{
+			Threshold[] thresholds = dataHeaders[i].getThresholds();
+			for(int j=0; j<thresholds.length; j++)
+			{
+				if(thresholds[j].compare(dataItem))
+				{
+					Integer count = classMap.get(thresholds[j].getClassValue());
+					count = Integer.valueOf(count == null ? 1 : count.intValue() + 1);
+					classMap.put(thresholds[j].getClassValue(), count);
+					maxCount = Math.max(maxCount, count.intValue());
+				}
+			}
+		}
+
+		int numMax = 0;
+		for(Integer count : classMap.values())
+			if(count.intValue() == maxCount)
+				numMax++;
+
+		return numMax > 1;
+	}
+
+	/**
+	 * creates numeric metrics with GT and LT thresholds, which use every class value,
+	 * and a nominal class header
+	 */
+	private static DataHeader[] createDataHeaders(String[] classes, Random random)
+	{
+		DataHeader[] dataHeaders = new DataHeader[numMetrics + 1];
+
+		for(int i=0; i<numMetrics; i++)
+			dataHeaders[i] = new DataHeader("metric" + i, false, -Double.MAX_VALUE, Double.MAX_VALUE, null);
+		dataHeaders[numMetrics] = new DataHeader("class", true, 0, 0, classes);
+
+		for(int i=0; i<dataHeaders.length; i++)
+			dataHeaders[i].setValid(true);
+
+		for(int i=0; i<numMetrics; i++)
+		{
+			Threshold[] thresholds = new Threshold[6];
+			for(int j=0; j<thresholds.length; j++)
+			{
+				thresholds[j] = new Threshold(dataHeaders[i], random.nextBoolean() ? ThresholdOperator.GT : ThresholdOperator.LT,
+						new Operand[] { new Operand(false, Double.valueOf(random.nextDouble())) });
+				thresholds[j].setClassValue(classes[(i * thresholds.length + j) % classes.length]);
+			}
+			dataHeaders[i].setThresholds(thresholds);
+		}
+
+		return dataHeaders;
+	}
+
+	private static DataItem[] createDataItems(DataHeader[] dataHeaders, int count, Random random)
+	{
+		DataItem[] dataItems = new DataItem[count];
+
+		for(int i=0; i<count; i++)
+		{
+			DataField[] dataFields = new DataField[dataHeaders.length];
+
+			for(int j=0; j<numMetrics; j++)
+			{
+				dataFields[j] = new DataField(dataHeaders[j]);
+				dataFields[j].load(String.valueOf(random.nextDouble()));
+			}
+
+			dataFields[numMetrics] = new DataField(dataHeaders[numMetrics]);
+			dataFields[numMetrics].load(dataHeaders[numMetrics].getAvailableValue()[0]);
+
+			dataItems[i] = new DataItem(dataFields);
+			dataItems[i].setDataHeaders(dataHeaders);
+		}
+
+		return dataItems;
+	}
+}
@@ -1,74 +1,304 @@
 package common;
 
-import weka.core.Instances;
-import weka.core.converters.CSVLoader;
+import weka.core.Utils;
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class CsvToArff {
 
-    public CsvToArff() {
+    /**
+     * number of rows the types of the columns are inferred from
+     */
+    public static final int SAMPLE_SIZE = 1000;
 
+    public CsvToArff() {
     }
 
     public void convertProject(File projectPath) throws Exception {
 	File csvSources = new File(projectPath.getPath() + File.separator +"parse_results" + File.separator);
 	String[] projectFiles = csvSources.list();
 
+	List<File> csvFiles = new ArrayList<File>();
+	List<File> arffFiles = new ArrayList<File>();
+
 	for (int i = 0; i < projectFiles.length; i++) {
 	    if (projectFiles[i].endsWith("csv")
 		    && !projectFiles[i].startsWith("callGraph_Java")) {
-		this.csvToArff(projectPath.getPath() + File.separator +  "parse_results" + File.separator
-			+ projectFiles[i], projectFiles[i], projectPath
-			.getPath());
+		csvFiles.add(new File(csvSources, projectFiles[i]));
+		arffFiles.add(new File(projectPath.getPath() + File.separator
+			+ "arff_files" + File.separator
+			+ arffFileName(projectFiles[i])));
 	    }
 
 	}
 
+	convertAll(csvFiles, arffFiles, Runtime.getRuntime().availableProcessors());
     }
 
+    /**
+     * Converts a csv file, or all csv files of a directory in parallel. The
+     * arff file of a csv file is written to the arff_files directory next to
+     * the directory of the csv file.
+     */
     public int csvToArffCommand(String csvFilePath) {
-    	try {
-    	    CSVLoader loader = new CSVLoader();
-    	    loader.setSource(new File(csvFilePath));
-    	    Instances data = loader.getDataSet();
-    	    String path = csvFilePath.substring(0, csvFilePath
-    				    .lastIndexOf(File.separator));
-    	    String fileName = csvFilePath.substring(csvFilePath.lastIndexOf(File.separator)+1);    	    
-    	    BufferedWriter writer = new BufferedWriter(new FileWriter(
-    		    path.substring(0,path.lastIndexOf(File.separator))
-    			    + File.separator +"arff_files" + File.separator
-    			    + fileName.substring(0, fileName
-    				    .lastIndexOf('.')) + ".arff"));
-    	    writer.write(data.toString());
-    	    writer.flush();
-    	    writer.close();
-
-    	} catch (Exception e) {
-    	    System.out.println(e.getMessage());
-    	}
-    	return 1;
-        }
-    private int csvToArff(String csvFilePath, String csvFileName,
-	    String projectPath) {
-	try {
-	    CSVLoader loader = new CSVLoader();
-	    loader.setSource(new File(csvFilePath));
-	    Instances data = loader.getDataSet();
-
-	    BufferedWriter writer = new BufferedWriter(new FileWriter(
-		    projectPath
-			    + File.separator +"arff_files" + File.separator
-			    + csvFileName.substring(0, csvFileName
-				    .lastIndexOf('.')) + ".arff"));
-	    writer.write(data.toString());
-	    writer.flush();
-	    writer.close();
+	File csvFile = new File(csvFilePath);
 
+	if (csvFile.isDirectory()) {
+	    String[] names = csvFile.list();
+	    List<File> csvFiles = new ArrayList<File>();
+	    List<File> arffFiles = new ArrayList<File>();
+
+	    for (int i = 0; i < names.length; i++) {
+		if (names[i].toLowerCase().endsWith(".csv")) {
+		    csvFiles.add(new File(csvFile, names[i]));
+		    arffFiles.add(defaultArffFile(new File(csvFile, names[i])));
+		}
+	    }
+
+	    convertAll(csvFiles, arffFiles, Runtime.getRuntime().availableProcessors());
+	    return 1;
+	}
+
+	try {
+	    convert(csvFile, defaultArffFile(csvFile));
 	} catch (Exception e) {
 	    System.out.println(e.getMessage());
 	}
 	return 1;
     }
-}
\ No newline at end of file
+
+    /**
+     * Converts the csv files to the arff files, numThreads files at a time.
+     * A file which cannot be converted is reported and the others are still
+     * converted.
+     *
+     * @param csvFiles
+     * @param arffFiles the arff file of each csv file
+     * @param numThreads
+     */
+    public void convertAll(final List<File> csvFiles, final List<File> arffFiles, int numThreads) {
+	if (csvFiles.size() == 0)
+	    return;
+
+	ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(numThreads, csvFiles.size())));
+	List<Future<Object>> futures = new ArrayList<Future<Object>>();
+
+	try {
+	    for (int i = 0; i < csvFiles.size(); i++) {
+		final File csvFile = csvFiles.get(i);
+		final File arffFile = arffFiles.get(i);
+
+		futures.add(executor.submit(new Callable<Object>() {
+		    public Object call() throws Exception {
+			convert(csvFile, arffFile);
+			return null;
+		    }
+		}));
+	    }
+
+	    for (int i = 0; i < futures.size(); i++) {
+		try {
+		    futures.get(i).get();
+		} catch (ExecutionException e) {
+		    System.out.println(csvFiles.get(i).getPath() + ": " + e.getCause().getMessage());
+		} catch (InterruptedException e) {
+		    Thread.currentThread().interrupt();
+		    return;
+		}
+	    }
+	} finally {
+	    executor.shutdown();
+	}
+    }
+
+    /**
+     * Converts a csv file to an arff file without loading the rows into
+     * memory. The types of the columns are inferred from the first
+     * SAMPLE_SIZE rows: a column is numeric if all its values there are
+     * numbers or missing, nominal otherwise. A pass over the file collects
+     * the values of the nominal columns and checks that the numeric columns
+     * hold only numbers, then the rows are written one at a time in a second
+     * pass. Only if a later row proves a column of the sample wrong is the
+     * file read once more for the values of that column.
+     *
+     * The arff file is the same as the one written by weka's CSVLoader.
+     *
+     * @param csvFile
+     * @param arffFile
+     * @throws IOException
+     */
+    public void convert(File csvFile, File arffFile) throws IOException {
+	ArffReader reader = openCsv(csvFile);
+	int numAttributes = reader.numAttributes();
+	String[] names = new String[numAttributes];
+	boolean[] numeric = new boolean[numAttributes];
+
+	try {
+	    String[] rawNames = readRawNames(csvFile);
+	    for (int i = 0; i < numAttributes; i++) {
+		names[i] = rawNames != null && rawNames.length == numAttributes ? rawNames[i] : reader.attributeName(i);
+		numeric[i] = true;
+	    }
+
+	    for (int row = 0; row < SAMPLE_SIZE && reader.next(); row++)
+		for (int i = 0; i < numAttributes; i++)
+		    if (numeric[i] && !reader.isMissing(i) && Double.isNaN(reader.value(i)))
+			numeric[i] = false;
+	} finally {
+	    reader.close();
+	}
+
+	List<LinkedHashSet<String>> values = new ArrayList<LinkedHashSet<String>>();
+	for (int i = 0; i < numAttributes; i++)
+	    values.add(numeric[i] ? null : new LinkedHashSet<String>());
+
+	boolean[] mistyped = new boolean[numAttributes];
+	boolean anyMistyped = false;
+
+	reader = openCsv(csvFile);
+	try {
+	    while (reader.next())
+		for (int i = 0; i < numAttributes; i++) {
+		    if (reader.isMissing(i))
+			continue;
+		    if (!numeric[i])
+			values.get(i).add(reader.stringValue(i));
+		    else if (!mistyped[i] && Double.isNaN(reader.value(i))) {
+			mistyped[i] = true;
+			anyMistyped = true;
+		    }
+		}
+	} finally {
+	    reader.close();
+	}
+
+	if (anyMistyped) {
+	    for (int i = 0; i < numAttributes; i++)
+		if (mistyped[i]) {
+		    numeric[i] = false;
+		    values.set(i, new LinkedHashSet<String>());
+		}
+
+	    reader = openCsv(csvFile);
+	    try {
+		while (reader.next())
+		    for (int i = 0; i < numAttributes; i++)
+			if (mistyped[i] && !reader.isMissing(i))
+			    values.get(i).add(reader.stringValue(i));
+	    } finally {
+		reader.close();
+	    }
+	}
+
+	reader = openCsv(csvFile);
+	BufferedWriter writer = new BufferedWriter(new FileWriter(arffFile));
+	try {
+	    writer.write("@relation " + Utils.quote(csvFile.getName()) + "\n\n");
+
+	    for (int i = 0; i < numAttributes; i++) {
+		writer.write("@attribute " + Utils.quote(names[i]) + " ");
+		if (numeric[i])
+		    writer.write("numeric");
+		else {
+		    writer.write('{');
+		    int k = 0;
+		    for (String value : values.get(i)) {
+			if (k++ > 0)
+			    writer.write(',');
+			writer.write(Utils.quote(value));
+		    }
+		    writer.write('}');
+		}
+		writer.write('\n');
+	    }
+	    writer.write("\n@data\n");
+
+	    boolean first = true;
+	    while (reader.next()) {
+		if (!first)
+		    writer.write('\n');
+		first = false;
+
+		for (int i = 0; i < numAttributes; i++) {
+		    if (i > 0)
+			writer.write(',');
+		    if (reader.isMissing(i))
+			writer.write('?');
+		    else if (numeric[i])
+			writer.write(Utils.doubleToString(reader.value(i), 6));
+		    else
+			writer.write(Utils.quote(reader.stringValue(i)));
+		}
+	    }
+	    writer.flush();
+	} finally {
+	    writer.close();
+	    reader.close();
+	}
+    }
+
+    /**
+     * CSVLoader keeps the spaces around the names of the attributes, which
+     * ArffReader trims, so the names are read from the header line as they are
+     *
+     * @param csvFile
+     * @return the names in the header line, null if it has quoted names
+     * @throws IOException
+     */
+    private static String[] readRawNames(File csvFile) throws IOException {
+	BufferedReader reader = new BufferedReader(new FileReader(csvFile));
+	try {
+	    String line = reader.readLine();
+	    if (line == null || line.indexOf('\'') != -1 || line.indexOf('"') != -1)
+		return null;
+
+	    String[] names = line.split(",", -1);
+	    for (int i = 0; i < names.length; i++) {
+		int start = 0;
+		int end = names[i].length();
+		while (start < end && names[i].charAt(start) < ' ')
+		    start++;
+		while (end > start && names[i].charAt(end - 1) < ' ')
+		    end--;
+		names[i] = names[i].substring(start, end);
+	    }
+	    return names;
+	} finally {
+	    reader.close();
+	}
+    }
+
+    private static ArffReader openCsv(File csvFile) throws IOException {
+	return new ArffReader(new InputStreamReader(new FileInputStream(csvFile)), true);
+    }
+
+    /**
+     * @return the arff file in the arff_files directory next to the
+     *         directory of the csv file
+     */
+    private static File defaultArffFile(File csvFile) {
+	String path = csvFile.getAbsolutePath();
+	path = path.substring(0, path.lastIndexOf(File.separator));
+	return new File(path.substring(0, path.lastIndexOf(File.separator))
+		+ File.separator + "arff_files" + File.separator
+		+ arffFileName(csvFile.getName()));
+    }
+
+    private static String arffFileName(String csvFileName) {
+	return csvFileName.substring(0, csvFileName.lastIndexOf('.')) + ".arff";
+    }
+}
@@ -0,0 +1,163 @@
+package common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import categorizer.core.DataField;
+import categorizer.core.DataHeader;
+import categorizer.core.DataItem;
+import categorizer.core.DataSet;
+
+/**
+ * Builds the DataSet of one metric level (package, file, class or method) one
+ * item at a time, directly from the metrics of each item.
+ *
+ * The DataHeaders are created from the metrics of the first item, every item
+ * gets a "Risk Level" field and all items share the same DataHeader array.
+ * Optionally only a page of the items is kept, in which case the items
+ * outside the page are dropped as soon as they are added.
+ */
+public class MetricDataSetBuilder {
+
+	private String title;
+
+	private DataHeader[] dataHeaders;
+
+	private DataHeader riskLevelDataHeader;
+
+	private List<DataItem> dataItemList = new ArrayList<DataItem>();
+
+	/**
+	 * number of items added so far
+	 */
+	private int count;
+
+	/**
+	 * first item of the page
+	 */
+	private int pageStart = 0;
+
+	/**
+	 * item after the last item of the page
+	 */
+	private int pageEnd = Integer.MAX_VALUE;
+
+	/**
+	 * total number of items to be added, needed to mark the end of a page
+	 */
+	private int size = -1;
+
+	public MetricDataSetBuilder(String title) {
+		this.title = title;
+	}
+
+	/**
+	 * Keeps only the items in [start, end). If the page ends before the last
+	 * item, an item marking the end of the page is added after it.
+	 *
+	 * @param start
+	 * @param end
+	 * @param size
+	 *            total number of items to be added
+	 */
+	public void setPage(int start, int end, int size) {
+		this.pageStart = start;
+		this.pageEnd = end;
+		this.size = size;
+	}
+
+	/**
+	 * Adds an item, metrics named "name" or "id" are not DataFields
+	 *
+	 * @param name
+	 * @param metrics
+	 */
+	public void add(String name, List<NodePair> metrics) {
+		if (dataHeaders == null)
+			createDataHeaders(metrics);
+
+		int index = count++;
+
+		if (index < pageStart || index >= pageEnd)
+			return;
+
+		List<DataField> dataFieldList = new ArrayList<DataField>(metrics.size());
+		int i = 0;
+		for (NodePair nodePair : metrics) {
+			if (!nodePair.getName().equals("name")
+					&& !nodePair.getName().equals("id")) {
+				DataField dataField = new DataField(dataHeaders[i]);
+				dataField.load(nodePair.getValue());
+				dataFieldList.add(dataField);
+				i++;
+			}
+		}
+		DataField dataField = new DataField(riskLevelDataHeader);
+		dataField.load("False");
+		dataFieldList.add(dataField);
+
+		DataItem dataItem = new DataItem();
+		dataItem.setItemName(name);
+		dataItem.setDataFields(dataFieldList.toArray(new DataField[dataFieldList.size()]));
+		dataItem.setDataHeaders(dataHeaders);
+		dataItemList.add(dataItem);
+
+		if (index == pageEnd - 1 && index != size - 1) {// group end
+			DataField[] dummy = new DataField[dataFieldList.size()];
+			for (int k = 0; k < dummy.length; k++) {
+				dummy[k] = new DataField();
+				dummy[k].setValue("");
+			}
+			DataItem groupend = new DataItem();
+			groupend.setItemName("--END OF PAGE, TRANSFER AGAIN FOR NEXT PAGE--");
+			groupend.setDataFields(dummy);
+			groupend.setDataHeaders(dataHeaders);
+			dataItemList.add(groupend);
+		}
+	}
+
+	/**
+	 * @return number of items added so far
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the DataSet of the added items
+	 */
+	public DataSet getDataSet() {
+		DataSet dataSet = new DataSet();
+		dataSet.setTitle(title);
+
+		if (dataHeaders != null) {
+			dataSet.setDataHeaders(dataHeaders);
+			dataSet.setClassIndex(dataHeaders.length - 1);
+			dataSet.setDataItems(dataItemList.toArray(new DataItem[dataItemList.size()]));
+		}
+
+		return dataSet;
+	}
+
+	private void createDataHeaders(List<NodePair> metrics) {
+		List<DataHeader> dataHeaderList = new ArrayList<DataHeader>();
+
+		for (NodePair aPair : metrics) {
+			if (!aPair.getName().equals("name")
+					&& !aPair.getName().equals("id")) {
+				DataHeader dataHeader = new DataHeader();
+				dataHeader.setLabel(aPair.getName());
+				dataHeader.setNominal(false);
+				dataHeaderList.add(dataHeader);
+			}
+		}
+		riskLevelDataHeader = new DataHeader();
+		riskLevelDataHeader.setLabel("Risk Level");
+		riskLevelDataHeader.setNominal(true);
+		String[] riskLevels = { "False", "True" };
+		riskLevelDataHeader.setAvailableValue(riskLevels);
+		dataHeaderList.add(riskLevelDataHeader);
+
+		dataHeaders = dataHeaderList.toArray(new DataHeader[dataHeaderList.size()]);
+	}
+}
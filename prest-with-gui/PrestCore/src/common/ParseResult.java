@@ -4,8 +4,6 @@
  */
 package common;
 
-import java.util.List;
-
 import categorizer.core.DataSet;
 import parser.enumeration.Language;
 
@@ -25,25 +23,23 @@ public class ParseResult {
     public ParseResult(Language language, DataContext collectedMetrics) {
         if (language != null && collectedMetrics != null) {
             parserLanguage = language;
-            parseMetricGroups = null;
-            parseDataSets = null;
-            parseMetricGroups = new ParseMetricGroups(collectedMetrics);   
-            if (parserLanguage == parser.enumeration.Language.PLSQL) {
-				//if language is PLSQL then replace package and file metrics
-				replace(parseMetricGroups);
-			}
-			collectedMetrics = null;
-            parseDataSets = new ParseDataSets(parseMetricGroups);
-            parseMetricGroups = null;
+            //if language is PLSQL then replace package and file metrics
+            parseDataSets = new ParseDataSets(collectedMetrics,
+                    parserLanguage == parser.enumeration.Language.PLSQL);
         }
     }
 
-    private void replace(ParseMetricGroups parseMetricGroups2) {
-    	List<MetricGroup> tempGroup = parseMetricGroups2.getFileMetrics();
-    	parseMetricGroups2.setFileMetrics(parseMetricGroups2.getPackageMetrics());
-    	parseMetricGroups2.setPackageMetrics(tempGroup);
-		
-	}
+    /**
+     * Creates the result of a parser which creates the DataSets itself,
+     * without collecting the metrics into a DataContext
+     * 
+     * @param language
+     * @param parseDataSets
+     */
+    public ParseResult(Language language, ParseDataSets parseDataSets) {
+        this.parserLanguage = language;
+        this.parseDataSets = parseDataSets;
+    }
 
 	public ParseDataSets getParseDataSets() {
         return this.parseDataSets;
@@ -57,7 +53,16 @@ public class ParseResult {
         this.parseDataSets = parseDataSets;
     }
 
+    /**
+     * The MetricGroups are not kept by the parse, they are created from the
+     * DataSets when they are first asked for
+     * 
+     * @return the MetricGroups of the DataSets
+     */
     public ParseMetricGroups getParseMetricGroups() {
+        if (this.parseMetricGroups == null && this.parseDataSets != null) {
+            this.parseMetricGroups = new ParseMetricGroups(this.parseDataSets);
+        }
         return this.parseMetricGroups;
     }
 
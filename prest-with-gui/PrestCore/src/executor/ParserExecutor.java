@@ -17,12 +17,14 @@ import parser.Java.JavaParserRelatedFiles.JavaParser;
 import parser.Jsp.JspToJavaConvertor;
 import parser.PLSql.PLSqlParserRelatedFiles.PLSqlParserExecuter;
 import parser.enumeration.Language;
+import parser.parserinterface.IDataSetParser;
 import parser.parserinterface.IParser;
 import parser.parserinterface.ParserInterfaceAndFileList;
 import categorizer.core.DataSet;
 
 import common.DataContext;
 import common.DirectoryListing;
+import common.ParseDataSets;
 import common.ParseResult;
 import common.monitor.Logger;
 import definitions.application.ApplicationProperties;
@@ -76,16 +78,15 @@ public class ParserExecutor {
 					.getName());
 			parserResultList = new ArrayList<ParseResult>();
 			for (ParserInterfaceAndFileList parserAndFiles : parserList) {
-				DataContext thisOne = parseProject(parserAndFiles.getParser(),
-						parserAndFiles.getFileList(), projectDirectory
-								.getName());
+				ParseResult thisOne = parseProjectResult(parserAndFiles
+						.getParser(), parserAndFiles.getFileList(),
+						projectDirectory.getName());
 				if (thisOne == null) {
 					Logger.error("Error in parsing with: "
 							+ parserAndFiles.getParser().getLanguage()
 									.getLangName());
 				} else {
-					parserResultList.add(new ParseResult(parserAndFiles
-							.getParser().getLanguage(), thisOne));
+					parserResultList.add(thisOne);
 				}
 			}
 			return PARSING_SUCCESSFUL;
@@ -107,16 +108,15 @@ public class ParserExecutor {
 			parserResultList = new ArrayList<ParseResult>();
 			
 			for (ParserInterfaceAndFileList parserAndFiles : parserList) {
-				DataContext thisOne = parseProject(parserAndFiles.getParser(),
-						parserAndFiles.getFileList(), projectDirectory
-								.getName());
+				ParseResult thisOne = parseProjectResult(parserAndFiles
+						.getParser(), parserAndFiles.getFileList(),
+						projectDirectory.getName());
 				if (thisOne == null) {
 					Logger.error("Error in parsing with: "
 							+ parserAndFiles.getParser().getLanguage()
 									.getLangName());
 				} else {
-					parserResultList.add(new ParseResult(parserAndFiles
-							.getParser().getLanguage(), thisOne));
+					parserResultList.add(thisOne);
 				}
 			}
 			return PARSING_SUCCESSFUL;
@@ -198,84 +198,19 @@ public class ParserExecutor {
 
 	public static DataContext parseProject(IParser aParser,
 			List<File> fileList, String projectName) throws Exception {
-		String fileSeparator = "";
 
 		if (aParser != null && fileList != null) {
-			String[] fileNames = new String[fileList.size()];
-			for (int index = 0; index < fileList.size(); index++) {
-				fileNames[index] = fileList.get(index).getAbsolutePath();
-				
-				// just for once get the separator for the current operating system
-				if(index == 0){
-					fileSeparator = fileList.get(index).separator.toString();
-				}
-			}
+			String[] fileNames = getFileNames(fileList);
 
 			DataContext metrics = null;
 			try {
-				File directoryToCreate = new File (ApplicationProperties
-				.get("repositorylocation")
-				+ fileSeparator
-				+ projectName
-				+ fileSeparator+ "parse_results");
-				
-				// if the directory does not exist, then we create it
-				if (!directoryToCreate.exists()) {
-					directoryToCreate.mkdir();
-				}
-				
-				String xmlFileName = ApplicationProperties
-						.get("repositorylocation")
-						+ fileSeparator
-						+ projectName
-						+ fileSeparator+ "parse_results"+ fileSeparator +"parseResult"
-						+ "_"
-						+ aParser.getLanguage().getLangName()
-						+ "_"
-						+ Calendar.getInstance().getTimeInMillis() + ".xml";
-				String packageCsvFileName = ApplicationProperties
-						.get("repositorylocation")
-						+ fileSeparator
-						+ projectName
-						+ fileSeparator+ "parse_results"+ fileSeparator +"parseResult"
-						+ "_"
-						+ aParser.getLanguage().getLangName()
-						+ "_"
-						+ Calendar.getInstance().getTimeInMillis()
-						+ "PACKAGE.csv";
-				String fileCsvFileName = ApplicationProperties
-						.get("repositorylocation")
-						+ fileSeparator
-						+ projectName
-						+ fileSeparator+ "parse_results"+ fileSeparator +"parseResult"
-						+ "_"
-						+ aParser.getLanguage().getLangName()
-						+ "_"
-						+ Calendar.getInstance().getTimeInMillis() + "FILE.csv";
-				String classCsvFileName = ApplicationProperties
-						.get("repositorylocation")
-						+ fileSeparator
-						+ projectName
-						+ fileSeparator+ "parse_results"+ fileSeparator +"parseResult"
-						+ "_"
-						+ aParser.getLanguage().getLangName()
-						+ "_"
-						+ Calendar.getInstance().getTimeInMillis()
-						+ "CLASS.csv";
-				String methodCsvFileName = ApplicationProperties
-						.get("repositorylocation")
-						+ fileSeparator
-						+ projectName
-						+ fileSeparator+ "parse_results"+ fileSeparator +"parseResult"
-						+ "_"
-						+ aParser.getLanguage().getLangName()
-						+ "_"
-						+ Calendar.getInstance().getTimeInMillis()
-						+ "METHOD.csv";
+				String[] resultFileNames = getResultFileNames(aParser,
+						fileList, projectName);
 
 				metrics = aParser.startExecution(fileNames, projectName,
-						xmlFileName, packageCsvFileName, fileCsvFileName,
-						classCsvFileName, methodCsvFileName);
+						resultFileNames[0], resultFileNames[1],
+						resultFileNames[2], resultFileNames[3],
+						resultFileNames[4]);
 			} catch (Exception e) {
 				Logger.error(ParserExecutor.class.getName() + " "
 						+ "error in parsing " + projectName + " "
@@ -289,6 +224,134 @@ public class ParserExecutor {
 		}
 	}
 
+	/**
+	 * Parses the files like parseProject, but a parser which can create the
+	 * DataSets itself creates them directly from its containers, without
+	 * collecting the metrics into a DataContext first.
+	 * 
+	 * @return the result of the parse, null if the parse failed
+	 */
+	public static ParseResult parseProjectResult(IParser aParser,
+			List<File> fileList, String projectName) throws Exception {
+		if (!(aParser instanceof IDataSetParser)) {
+			DataContext metrics = parseProject(aParser, fileList, projectName);
+			if (metrics == null) {
+				return null;
+			}
+			return new ParseResult(aParser.getLanguage(), metrics);
+		}
+
+		if (fileList != null) {
+			String[] fileNames = getFileNames(fileList);
+
+			ParseDataSets dataSets = null;
+			try {
+				String[] resultFileNames = getResultFileNames(aParser,
+						fileList, projectName);
+
+				dataSets = ((IDataSetParser) aParser).startExecutionToDataSets(
+						fileNames, projectName, resultFileNames[0],
+						resultFileNames[1], resultFileNames[2],
+						resultFileNames[3], resultFileNames[4]);
+			} catch (Exception e) {
+				Logger.error(ParserExecutor.class.getName() + " "
+						+ "error in parsing " + projectName + " "
+						+ e.getMessage());
+			}
+
+			if (dataSets != null) {
+				return new ParseResult(aParser.getLanguage(), dataSets);
+			}
+		}
+		return null;
+	}
+
+	private static String[] getFileNames(List<File> fileList) {
+		String[] fileNames = new String[fileList.size()];
+		for (int index = 0; index < fileList.size(); index++) {
+			fileNames[index] = fileList.get(index).getAbsolutePath();
+		}
+		return fileNames;
+	}
+
+	/**
+	 * Creates the parse_results directory of the project if it does not exist
+	 * 
+	 * @return the names of the xml file and of the package, file, class and
+	 *         method csv files the parser writes its results to
+	 */
+	private static String[] getResultFileNames(IParser aParser,
+			List<File> fileList, String projectName) {
+		// just for once get the separator for the current operating system
+		String fileSeparator = "";
+		if (fileList.size() > 0) {
+			fileSeparator = fileList.get(0).separator.toString();
+		}
+
+		File directoryToCreate = new File (ApplicationProperties
+		.get("repositorylocation")
+		+ fileSeparator
+		+ projectName
+		+ fileSeparator+ "parse_results");
+		
+		// if the directory does not exist, then we create it
+		if (!directoryToCreate.exists()) {
+			directoryToCreate.mkdir();
+		}
+		
+		String xmlFileName = ApplicationProperties
+				.get("repositorylocation")
+				+ fileSeparator
+				+ projectName
+				+ fileSeparator+ "parse_results"+ fileSeparator +"parseResult"
+				+ "_"
+				+ aParser.getLanguage().getLangName()
+				+ "_"
+				+ Calendar.getInstance().getTimeInMillis() + ".xml";
+		String packageCsvFileName = ApplicationProperties
+				.get("repositorylocation")
+				+ fileSeparator
+				+ projectName
+				+ fileSeparator+ "parse_results"+ fileSeparator +"parseResult"
+				+ "_"
+				+ aParser.getLanguage().getLangName()
+				+ "_"
+				+ Calendar.getInstance().getTimeInMillis()
+				+ "PACKAGE.csv";
+		String fileCsvFileName = ApplicationProperties
+				.get("repositorylocation")
+				+ fileSeparator
+				+ projectName
+				+ fileSeparator+ "parse_results"+ fileSeparator +"parseResult"
+				+ "_"
+				+ aParser.getLanguage().getLangName()
+				+ "_"
+				+ Calendar.getInstance().getTimeInMillis() + "FILE.csv";
+		String classCsvFileName = ApplicationProperties
+				.get("repositorylocation")
+				+ fileSeparator
+				+ projectName
+				+ fileSeparator+ "parse_results"+ fileSeparator +"parseResult"
+				+ "_"
+				+ aParser.getLanguage().getLangName()
+				+ "_"
+				+ Calendar.getInstance().getTimeInMillis()
+				+ "CLASS.csv";
+		String methodCsvFileName = ApplicationProperties
+				.get("repositorylocation")
+				+ fileSeparator
+				+ projectName
+				+ fileSeparator+ "parse_results"+ fileSeparator +"parseResult"
+				+ "_"
+				+ aParser.getLanguage().getLangName()
+				+ "_"
+				+ Calendar.getInstance().getTimeInMillis()
+				+ "METHOD.csv";
+
+		return new String[] { xmlFileName, packageCsvFileName,
+				fileCsvFileName, classCsvFileName, methodCsvFileName };
+	}
+
 	public static void fillWithOldResults(List<String> oldParseResultFiles,
 			List<Language> langList) {
 		for (int l = 0; l < parserResultList.size(); l++) {
@@ -29,6 +29,9 @@ public final class CPPParser implements CPPParserConstants {
 
 	public ClassContainer IdentifyModules(String fileNames[]) {
 
+		// the container holds the modules of this call only
+		col = new ClassContainer();
+
 		for (int i = 0; i < fileNames.length; i++) {
 			try {
 				ReInit(new FileInputStream(new File(fileNames[i])));
@@ -9,12 +9,13 @@ import metricCollector.JavaMethodMetrics;
 import metricCollector.JavaPackageMetrics;
 import parser.Java.MetricsRelatedFiles.ClassContainer;
 import parser.enumeration.Language;
-import parser.parserinterface.IParser;
+import parser.parserinterface.IDataSetParser;
 
 import common.DataContext;
+import common.ParseDataSets;
 import common.monitor.Logger;
 
-public class CPPParserExecutor implements IParser {
+public class CPPParserExecutor implements IDataSetParser {
 
 	public CPPParserExecutor() {
 		super();
@@ -26,6 +27,21 @@ public class CPPParserExecutor implements IParser {
 			String xmlFileName, String packageCsvFileName,
 		    String fileCsvFileName, String classCsvFileName, String methodCsvFileName) {
 
+		return parse(fileNames, xmlFileName, packageCsvFileName,
+				fileCsvFileName, classCsvFileName, methodCsvFileName).getDataContextFormat();
+	}
+
+	public ParseDataSets startExecutionToDataSets(String fileNames[], String projectName,
+			String xmlFileName, String packageCsvFileName,
+		    String fileCsvFileName, String classCsvFileName, String methodCsvFileName) {
+
+		return parse(fileNames, xmlFileName, packageCsvFileName,
+				fileCsvFileName, classCsvFileName, methodCsvFileName).getParseDataSets();
+	}
+
+	private ClassContainer parse(String fileNames[], String xmlFileName, String packageCsvFileName,
+		    String fileCsvFileName, String classCsvFileName, String methodCsvFileName) {
+
 		CPPParser parser = new CPPParser(System.in);
 
 		ClassContainer con = parser.IdentifyModules(fileNames);
@@ -38,7 +54,7 @@ public class CPPParserExecutor implements IParser {
 			e.printStackTrace();
 			Logger.error(e.getMessage());
 		}
-		return con.getDataContextFormat();
+		return con;
 	}
 
 	/*
@@ -17,9 +17,10 @@ import parser.Java.MetricsRelatedFiles.SparseMatrix;
 import parser.Java.MetricsRelatedFiles.Symbols;
 import parser.Jsp.JspToJavaConvertor;
 import parser.enumeration.Language;
-import parser.parserinterface.IParser;
+import parser.parserinterface.IDataSetParser;
 
 import common.DataContext;
+import common.ParseDataSets;
 
 import definitions.application.ApplicationProperties;
 
@@ -33,7 +34,7 @@ enum CurrentState {
 	ModuleIdentification, MetricCollection
 }
 
-public class JavaParser implements JavaParserConstants, IParser {
+public class JavaParser implements JavaParserConstants, IDataSetParser {
 
 	// explanation:
 	// burada class trace, current method, current file, method, package
@@ -213,6 +214,40 @@ public class JavaParser implements JavaParserConstants, IParser {
 			String fileCsvFileName, String classCsvFileName,
 			String methodCsvFileName) {
 
+		collectMetrics(filesToTraverse, projectName, xmlFileName,
+				packageCsvFileName, fileCsvFileName, classCsvFileName,
+				methodCsvFileName);
+
+		DataContext dc = container.getDataContextFormat();
+		container = null;
+
+		return dc;
+	}
+
+	public ParseDataSets startExecutionToDataSets(String filesToTraverse[],
+			String projectName, String xmlFileName, String packageCsvFileName,
+			String fileCsvFileName, String classCsvFileName,
+			String methodCsvFileName) {
+
+		collectMetrics(filesToTraverse, projectName, xmlFileName,
+				packageCsvFileName, fileCsvFileName, classCsvFileName,
+				methodCsvFileName);
+
+		ParseDataSets dataSets = container.getParseDataSets();
+		container = null;
+
+		return dataSets;
+	}
+
+	/**
+	 * Collects the metrics of the files into the container and writes them
+	 * to the xml and csv files
+	 */
+	private void collectMetrics(String filesToTraverse[], String projectName,
+			String xmlFileName, String packageCsvFileName,
+			String fileCsvFileName, String classCsvFileName,
+			String methodCsvFileName) {
+
 		moduleIdentificationMethod(filesToTraverse); // identify the modules
 		System.out.println("module identification done");
 		metricCollectionMethod(filesToTraverse); // collect the metrics
@@ -258,11 +293,6 @@ public class JavaParser implements JavaParserConstants, IParser {
 			System.out.println("writing to csv file failed");
 			e.printStackTrace();
 		}
-
-		DataContext dc = container.getDataContextFormat();
-		container = null;
-
-		return dc;
 	}
 
 	private void generateCallGraph(ClassContainer container, String csvFileName) {
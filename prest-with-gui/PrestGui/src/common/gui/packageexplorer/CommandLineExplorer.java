@@ -21,6 +21,7 @@ public class CommandLineExplorer {
 		System.out.println("-addProject projectDirectory");
 		System.out.println("-parse projectDirectory");
 		System.out.println("-convertCsvToArff filepath");
+		System.out.println("-convertCsvToArff csvdirectory");
 		System.out.println("-predict trainfile testfile");
 
 	}